@@ -163,6 +163,46 @@ public interface StructuredFile
     void writeBlock( long block, int off, byte[] buf, int index,
                      int length ) throws IOException;
 
+    /**
+     * Reads {@code count} consecutive blocks starting at {@code firstBlock}
+     * into {@code buf} starting at {@code off} inclusive.
+     *
+     * @param firstBlock index of the first block to read.
+     * @param count number of blocks to read.
+     * @param buf array to store the data in.
+     * @param off offset to start writing data into {@code buf}.
+     *
+     * @throws NullPointerException if {@code buf} is {@code null}.
+     * @throws IndexOutOfBoundsException if {@code firstBlock} is negative,
+     * or {@code count} is negative, or {@code firstBlock + count} is greater
+     * than {@code getBlockCount()}, or {@code off} is negative, or
+     * {@code count * getBlockSize()} is greater than the length of
+     * {@code buf} minus {@code off}.
+     * @throws IOException if reading fails.
+     */
+    void readBlocks( long firstBlock, int count, byte[] buf,
+                     int off ) throws IOException;
+
+    /**
+     * Writes {@code count} consecutive blocks starting at {@code firstBlock}
+     * from {@code buf} starting at {@code off} inclusive.
+     *
+     * @param firstBlock index of the first block to write.
+     * @param count number of blocks to write.
+     * @param buf data to write into the blocks beginning at {@code off}.
+     * @param off offset to start reading data from {@code buf}.
+     *
+     * @throws NullPointerException if {@code buf} is {@code null}.
+     * @throws IndexOutOfBoundsException if {@code firstBlock} is negative,
+     * or {@code count} is negative, or {@code firstBlock + count} is greater
+     * than {@code getBlockCount()}, or {@code off} is negative, or
+     * {@code count * getBlockSize()} is greater than the length of
+     * {@code buf} minus {@code off}.
+     * @throws IOException if writing fails.
+     */
+    void writeBlocks( long firstBlock, int count, byte[] buf,
+                      int off ) throws IOException;
+
     /**
      * Releases any system resources associated with an instance. A closed
      * instance cannot perform input or output operations and cannot be
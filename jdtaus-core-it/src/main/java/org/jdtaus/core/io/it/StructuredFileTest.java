@@ -111,6 +111,7 @@ public abstract class StructuredFileTest extends TestCase
         this.testInsertBlocks();
         this.testDeleteBlocks();
         this.testReadWriteBlock();
+        this.testReadWriteBlocks();
     }
 
     //----------------------------------------------------------------TestCase--
@@ -254,5 +255,65 @@ public abstract class StructuredFileTest extends TestCase
 
     }
 
+    /**
+     * Test of readBlocks and writeBlocks methods of class
+     * org.jdtaus.common.io.StructuredFile.
+     */
+    public void testReadWriteBlocks() throws Exception
+    {
+        final int blockSize = this.structuredFile.getBlockSize();
+        final byte[] data = this.getFilledBlock( 12 * blockSize, ( byte ) 'A' );
+        final byte[] read = new byte[ 12 * blockSize ];
+
+        for ( int i = 0; i < data.length; i++ )
+        {
+            data[i] = ( byte ) ( 'A' + i % 26 );
+        }
+
+        this.structuredFile.insertBlocks( 0L, 10L );
+        this.structuredFile.writeBlocks( 0L, 10, this.getFilledBlock(
+                                         10 * blockSize, INIT_CHAR ), 0 );
+
+        // Writes blocks 2 to 6 from data starting at block 3 of data.
+        this.structuredFile.writeBlocks( 2L, 5, data, 3 * blockSize );
+        this.structuredFile.readBlocks( 0L, 10, read, blockSize );
+
+        for ( int i = 0; i < 10 * blockSize; i++ )
+        {
+            Assert.assertEquals( i >= 2 * blockSize && i < 7 * blockSize
+                                 ? data[i + blockSize]
+                                 : INIT_CHAR, read[i + blockSize] );
+
+        }
+
+        this.structuredFile.readBlocks( 10L, 0, read, 0 );
+
+        try
+        {
+            this.structuredFile.readBlocks( 5L, 6, read, 0 );
+            throw new AssertionError();
+        }
+        catch ( final IndexOutOfBoundsException e )
+        {
+            Assert.assertNotNull( e.getMessage() );
+            System.out.println( e.toString() );
+        }
+
+        try
+        {
+            this.structuredFile.writeBlocks( 0L, 10, data, 3 * blockSize );
+            throw new AssertionError();
+        }
+        catch ( final IndexOutOfBoundsException e )
+        {
+            Assert.assertNotNull( e.getMessage() );
+            System.out.println( e.toString() );
+        }
+
+        this.structuredFile.deleteBlocks( 0L,
+                                          this.structuredFile.getBlockCount() );
+
+    }
+
     //-------------------------------------------------------------------Tests--
 }
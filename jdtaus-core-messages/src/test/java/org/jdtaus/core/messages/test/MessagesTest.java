@@ -33,6 +33,7 @@ import org.jdtaus.core.messages.IllegalPropertyMessage;
 import org.jdtaus.core.messages.IllegalStringMessage;
 import org.jdtaus.core.messages.InsertsBlocksMessage;
 import org.jdtaus.core.messages.MandatoryPropertyMessage;
+import org.jdtaus.core.messages.SortsBlocksMessage;
 import org.jdtaus.core.messages.UndefinedApplicationStateMessage;
 import org.jdtaus.core.text.Message;
 
@@ -51,6 +52,7 @@ public class MessagesTest extends TestCase
         this.assertNotNull( new ExceptionMessage( new IllegalArgumentException( "TEST" ) ) );
         this.assertNotNull( new DeletesBlocksMessage() );
         this.assertNotNull( new InsertsBlocksMessage() );
+        this.assertNotNull( new SortsBlocksMessage() );
         this.assertNotNull( new MandatoryPropertyMessage() );
         this.assertNotNull( new IllegalPropertyMessage() );
         this.assertNotNull( new UndefinedApplicationStateMessage() );
@@ -0,0 +1,625 @@
+/*
+ *  jDTAUS Core Utilities
+ *  Copyright (C) 2005 Christian Schulte
+ *  <cs@schulte.it>
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+package org.jdtaus.core.io.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.LinkedList;
+import java.util.Locale;
+import org.jdtaus.core.container.ContainerFactory;
+import org.jdtaus.core.io.FileOperations;
+import org.jdtaus.core.lang.spi.Executor;
+
+/**
+ * Asynchronous reads and writes of a {@code FileOperations} implementation.
+ * <p>This implementation submits reads and writes of ranges of a file as
+ * requests performed in the background using the {@code Executor} of the
+ * system so that I/O overlaps with processing in the calling thread. Methods
+ * {@code readAsync()} and {@code writeAsync()} return an
+ * {@code AsyncFileRequest} completion handle immediately. Requests are
+ * performed one after the other in the order they have been submitted so
+ * that a request to a range of the file overlapping the range of an earlier
+ * request always observes the effect of the earlier request. The number of
+ * requests submitted but not complete is limited by configuration property
+ * {@code defaultMaximumRequests} (defaults to {@code 16}). Submitting a
+ * request when that limit is reached waits for the oldest request to
+ * complete.</p>
+ *
+ * <p><b>Note:</b><br>
+ * The buffer of a request must not be accessed until the request is complete
+ * and the {@code FileOperations} backing the instance must not be used
+ * otherwise until the instance is closed.</p>
+ *
+ * @author <a href="mailto:cs@schulte.it">Christian Schulte</a>
+ * @version $JDTAUS$
+ *
+ * @see AsyncFileRequest
+ */
+public final class AsyncFileOperations
+{
+    //--Dependencies------------------------------------------------------------
+
+// <editor-fold defaultstate="collapsed" desc=" Generated Code ">//GEN-BEGIN:jdtausDependencies
+    // This section is managed by jdtaus-container-mojo.
+
+    /**
+     * Gets the configured <code>Locale</code> implementation.
+     *
+     * @return The configured <code>Locale</code> implementation.
+     */
+    private Locale getLocale()
+    {
+        return (Locale) ContainerFactory.getContainer().
+            getDependency( this, "Locale" );
+
+    }
+
+    /**
+     * Gets the configured <code>Executor</code> implementation.
+     *
+     * @return The configured <code>Executor</code> implementation.
+     */
+    private Executor getExecutor()
+    {
+        return (Executor) ContainerFactory.getContainer().
+            getDependency( this, "Executor" );
+
+    }
+
+// </editor-fold>//GEN-END:jdtausDependencies
+
+    //------------------------------------------------------------Dependencies--
+    //--Properties--------------------------------------------------------------
+
+// <editor-fold defaultstate="collapsed" desc=" Generated Code ">//GEN-BEGIN:jdtausProperties
+    // This section is managed by jdtaus-container-mojo.
+
+    /**
+     * Gets the value of property <code>defaultMaximumRequests</code>.
+     *
+     * @return Default maximum number of requests submitted but not complete.
+     */
+    private java.lang.Integer getDefaultMaximumRequests()
+    {
+        return (java.lang.Integer) ContainerFactory.getContainer().
+            getProperty( this, "defaultMaximumRequests" );
+
+    }
+
+// </editor-fold>//GEN-END:jdtausProperties
+
+    //--------------------------------------------------------------Properties--
+    //--AsyncFileOperations-----------------------------------------------------
+
+    /** {@code FileOperations} requests are performed with. */
+    private final FileOperations fileOperations;
+
+    /** Maximum number of requests submitted but not complete. */
+    private Integer maximumRequests;
+
+    /** Flags the instance as beeing closed. */
+    private boolean closed;
+
+    /** Lock guarding the queue of requests. */
+    private final Object lock = new Object();
+
+    /** Requests not yet performed; guarded by {@code lock}. */
+    private final LinkedList queue = new LinkedList();
+
+    /**
+     * Number of requests submitted but not complete; guarded by
+     * {@code lock}.
+     */
+    private int pendingRequests;
+
+    /** Flags requests as beeing performed; guarded by {@code lock}. */
+    private boolean running;
+
+    /**
+     * Creates a new {@code AsyncFileOperations} instance taking the
+     * {@code FileOperations} requests are performed with.
+     *
+     * @param fileOperations the {@code FileOperations} requests are performed
+     * with.
+     *
+     * @throws NullPointerException if {@code fileOperations} is {@code null}.
+     */
+    public AsyncFileOperations( final FileOperations fileOperations )
+    {
+        super();
+
+        if ( fileOperations == null )
+        {
+            throw new NullPointerException( "fileOperations" );
+        }
+
+        this.fileOperations = fileOperations;
+    }
+
+    /**
+     * Creates a new {@code AsyncFileOperations} instance taking the
+     * {@code FileOperations} requests are performed with and the maximum
+     * number of requests submitted but not complete.
+     *
+     * @param fileOperations the {@code FileOperations} requests are performed
+     * with.
+     * @param maximumRequests the maximum number of requests submitted but not
+     * complete.
+     *
+     * @throws NullPointerException if {@code fileOperations} is {@code null}.
+     */
+    public AsyncFileOperations( final FileOperations fileOperations,
+                                final int maximumRequests )
+    {
+        this( fileOperations );
+
+        if ( maximumRequests > 0 )
+        {
+            this.maximumRequests = new Integer( maximumRequests );
+        }
+    }
+
+    /**
+     * Gets the {@code FileOperations} implementation requests are performed
+     * with.
+     *
+     * @return the {@code FileOperations} implementation requests are
+     * performed with.
+     */
+    public FileOperations getFileOperations()
+    {
+        return this.fileOperations;
+    }
+
+    /**
+     * Gets the maximum number of requests submitted but not complete.
+     *
+     * @return the maximum number of requests submitted but not complete.
+     */
+    public int getMaximumRequests()
+    {
+        if ( this.maximumRequests == null )
+        {
+            this.maximumRequests = this.getDefaultMaximumRequests();
+        }
+
+        return this.maximumRequests.intValue();
+    }
+
+    /**
+     * Gets the number of requests submitted but not complete.
+     *
+     * @return the number of requests submitted but not complete.
+     */
+    public int getPendingRequests()
+    {
+        synchronized ( this.lock )
+        {
+            return this.pendingRequests;
+        }
+    }
+
+    /**
+     * Submits a request reading a range of the file.
+     * <p>The request reads {@code len} bytes starting at {@code position}
+     * into {@code buf} starting at {@code off} unless the end of the file is
+     * reached first.</p>
+     *
+     * @param position the position of the file to start reading at.
+     * @param buf the buffer to read into.
+     * @param off the offset of {@code buf} to start reading into.
+     * @param len the number of bytes to read.
+     *
+     * @return the handle of the submitted request.
+     *
+     * @throws NullPointerException if {@code buf} is {@code null}.
+     * @throws IllegalArgumentException if {@code position} is negative.
+     * @throws IndexOutOfBoundsException if {@code off} or {@code len} is
+     * negative or {@code off + len} is greater than {@code buf.length}.
+     * @throws IOException if waiting for a request to complete is interrupted
+     * or if the instance already is closed.
+     */
+    public AsyncFileRequest readAsync( final long position, final byte[] buf,
+                                       final int off, final int len )
+        throws IOException
+    {
+        this.assertValidArguments( position, buf, off, len );
+        return this.submit(
+            new AsyncFileRequest( position, buf, off, len, false ) );
+
+    }
+
+    /**
+     * Submits a request writing a range of the file.
+     * <p>The request writes {@code len} bytes of {@code buf} starting at
+     * {@code off} to the file starting at {@code position}.</p>
+     *
+     * @param position the position of the file to start writing at.
+     * @param buf the buffer to write.
+     * @param off the offset of {@code buf} to start writing from.
+     * @param len the number of bytes to write.
+     *
+     * @return the handle of the submitted request.
+     *
+     * @throws NullPointerException if {@code buf} is {@code null}.
+     * @throws IllegalArgumentException if {@code position} is negative.
+     * @throws IndexOutOfBoundsException if {@code off} or {@code len} is
+     * negative or {@code off + len} is greater than {@code buf.length}.
+     * @throws IOException if waiting for a request to complete is interrupted
+     * or if the instance already is closed.
+     */
+    public AsyncFileRequest writeAsync( final long position, final byte[] buf,
+                                        final int off, final int len )
+        throws IOException
+    {
+        this.assertValidArguments( position, buf, off, len );
+        return this.submit(
+            new AsyncFileRequest( position, buf, off, len, true ) );
+
+    }
+
+    /**
+     * Waits for all submitted requests to complete and flushes the
+     * {@code FileOperations} backing the instance if it is an instance of
+     * {@code FlushableFileOperations}.
+     *
+     * @throws IOException if flushing fails, if waiting is interrupted or if
+     * the instance already is closed.
+     */
+    public void flush() throws IOException
+    {
+        this.assertNotClosed();
+        this.awaitRequests();
+
+        if ( this.fileOperations instanceof FlushableFileOperations )
+        {
+            ( (FlushableFileOperations) this.fileOperations ).flush();
+        }
+    }
+
+    /**
+     * Closes the instance.
+     * <p>This method waits for all submitted requests to complete and closes
+     * the {@code FileOperations} backing the instance. Failures of requests
+     * are reported by their handles only.</p>
+     *
+     * @throws IOException if closing fails, if waiting is interrupted or if
+     * the instance already is closed.
+     */
+    public void close() throws IOException
+    {
+        this.assertNotClosed();
+        this.awaitRequests();
+        this.closed = true;
+        this.fileOperations.close();
+    }
+
+    /**
+     * Queues a request and starts performing requests using the
+     * {@code Executor} of the system if not already running.
+     *
+     * @param request the request to queue.
+     *
+     * @return {@code request}.
+     *
+     * @throws IOException if waiting for a request to complete is interrupted
+     * or if the instance already is closed.
+     */
+    private AsyncFileRequest submit( final AsyncFileRequest request )
+        throws IOException
+    {
+        this.assertNotClosed();
+
+        boolean start = false;
+
+        synchronized ( this.lock )
+        {
+            try
+            {
+                while ( this.pendingRequests >= this.getMaximumRequests() )
+                {
+                    this.lock.wait();
+                }
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException( e.getMessage() );
+            }
+
+            this.queue.addLast( request );
+            this.pendingRequests++;
+
+            if ( !this.running )
+            {
+                this.running = true;
+                start = true;
+            }
+        }
+
+        if ( start )
+        {
+            Throwable failure = null;
+
+            try
+            {
+                this.getExecutor().executeAsynchronously( new Runnable()
+                {
+
+                    public void run()
+                    {
+                        performRequests();
+                    }
+
+                } );
+            }
+            catch ( RuntimeException e )
+            {
+                failure = e;
+                throw e;
+            }
+            catch ( Error e )
+            {
+                failure = e;
+                throw e;
+            }
+            finally
+            {
+                if ( failure != null )
+                {
+                    this.cancelRequests( failure );
+                }
+            }
+        }
+
+        return request;
+    }
+
+    /**
+     * Completes all queued requests with a failure after performing requests
+     * could not be started or had to be stopped.
+     *
+     * @param failure the exception starting or performing requests failed
+     * with.
+     */
+    private void cancelRequests( final Throwable failure )
+    {
+        synchronized ( this.lock )
+        {
+            while ( this.queue.size() > 0 )
+            {
+                ( (AsyncFileRequest) this.queue.removeFirst() ).
+                    complete( 0, failure );
+
+                this.pendingRequests--;
+            }
+
+            this.running = false;
+            this.lock.notifyAll();
+        }
+    }
+
+    /**
+     * Performs queued requests in the order they have been submitted until
+     * the queue is empty.
+     * <p>This method is executed asynchronously.</p>
+     */
+    private void performRequests()
+    {
+        while ( true )
+        {
+            final AsyncFileRequest request;
+
+            synchronized ( this.lock )
+            {
+                if ( this.queue.size() == 0 )
+                {
+                    this.running = false;
+                    this.lock.notifyAll();
+                    return;
+                }
+
+                request = (AsyncFileRequest) this.queue.removeFirst();
+            }
+
+            int result = 0;
+            Throwable failure = null;
+
+            try
+            {
+                result = this.perform( request );
+            }
+            catch ( IOException e )
+            {
+                failure = e;
+            }
+            catch ( RuntimeException e )
+            {
+                failure = e;
+            }
+            catch ( Error e )
+            {
+                failure = e;
+            }
+            finally
+            {
+                request.complete( result, failure );
+
+                synchronized ( this.lock )
+                {
+                    this.pendingRequests--;
+                    this.lock.notifyAll();
+                }
+            }
+
+            if ( failure instanceof Error )
+            { // Stop performing requests.
+                this.cancelRequests( failure );
+                return;
+            }
+        }
+    }
+
+    /**
+     * Performs a request.
+     *
+     * @param request the request to perform.
+     *
+     * @return the number of bytes transferred or {@code FileOperations.EOF}
+     * if a read request starts at or beyond the end of the file.
+     *
+     * @throws IOException if performing the request fails.
+     */
+    private int perform( final AsyncFileRequest request ) throws IOException
+    {
+        final byte[] buf = request.getBuffer();
+        final int off = request.getOffset();
+        final int len = request.getLength();
+
+        this.fileOperations.setFilePointer( request.getPosition() );
+
+        if ( request.isWrite() )
+        {
+            this.fileOperations.write( buf, off, len );
+            return len;
+        }
+
+        int total = 0;
+
+        while ( total < len )
+        {
+            final int read =
+                this.fileOperations.read( buf, off + total, len - total );
+
+            if ( read == FileOperations.EOF )
+            {
+                break;
+            }
+
+            total += read;
+        }
+
+        return total == 0 && len > 0 ? FileOperations.EOF : total;
+    }
+
+    /**
+     * Waits for all submitted requests to complete.
+     *
+     * @throws IOException if waiting is interrupted.
+     */
+    private void awaitRequests() throws IOException
+    {
+        synchronized ( this.lock )
+        {
+            try
+            {
+                while ( this.running )
+                {
+                    this.lock.wait();
+                }
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException( e.getMessage() );
+            }
+        }
+    }
+
+    /**
+     * Checks the arguments of a request.
+     *
+     * @param position the position of the file the request starts at.
+     * @param buf the buffer of the request.
+     * @param off the offset of {@code buf} the data of the request starts at.
+     * @param len the number of bytes of the request.
+     *
+     * @throws NullPointerException if {@code buf} is {@code null}.
+     * @throws IllegalArgumentException if {@code position} is negative.
+     * @throws IndexOutOfBoundsException if {@code off} or {@code len} is
+     * negative or {@code off + len} is greater than {@code buf.length}.
+     */
+    private void assertValidArguments( final long position, final byte[] buf,
+                                       final int off, final int len )
+    {
+        if ( buf == null )
+        {
+            throw new NullPointerException( "buf" );
+        }
+        if ( position < 0L )
+        {
+            throw new IllegalArgumentException( Long.toString( position ) );
+        }
+        if ( off < 0 )
+        {
+            throw new IndexOutOfBoundsException( Integer.toString( off ) );
+        }
+        if ( len < 0 )
+        {
+            throw new IndexOutOfBoundsException( Integer.toString( len ) );
+        }
+        if ( off + len > buf.length )
+        {
+            throw new IndexOutOfBoundsException( Integer.toString( off + len ) );
+        }
+    }
+
+    /**
+     * Checks that the instance is not closed.
+     *
+     * @throws IOException if the instance is closed.
+     */
+    private void assertNotClosed() throws IOException
+    {
+        if ( this.closed )
+        {
+            throw new IOException( this.getAlreadyClosedMessage(
+                this.getLocale() ) );
+
+        }
+    }
+
+    //-----------------------------------------------------AsyncFileOperations--
+    //--Messages----------------------------------------------------------------
+
+// <editor-fold defaultstate="collapsed" desc=" Generated Code ">//GEN-BEGIN:jdtausMessages
+    // This section is managed by jdtaus-container-mojo.
+
+    /**
+     * Gets the text of message <code>alreadyClosed</code>.
+     * <blockquote><pre>Instanz geschlossen - keine E/A-Operationen möglich.</pre></blockquote>
+     * <blockquote><pre>Instance closed - cannot perform I/O.</pre></blockquote>
+     *
+     * @param locale The locale of the message instance to return.
+     *
+     * @return Message stating that an instance is already closed.
+     */
+    private String getAlreadyClosedMessage( final Locale locale )
+    {
+        return ContainerFactory.getContainer().
+            getMessage( this, "alreadyClosed", locale, null );
+
+    }
+
+// </editor-fold>//GEN-END:jdtausMessages
+
+    //----------------------------------------------------------------Messages--
+}
@@ -0,0 +1,211 @@
+/*
+ *  jDTAUS Core Utilities
+ *  Copyright (C) 2005 Christian Schulte
+ *  <cs@schulte.it>
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+package org.jdtaus.core.io.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+/**
+ * Completion handle of a request submitted to an
+ * {@code AsyncFileOperations} instance.
+ * <p>A request is created by methods {@code readAsync()} and
+ * {@code writeAsync()} of class {@code AsyncFileOperations} and completes
+ * when the data of the request has been transferred. Method
+ * {@code await()} waits for the request to complete and returns the number
+ * of bytes transferred or throws the exception the request failed with. The
+ * buffer of a request must not be accessed until the request is
+ * complete.</p>
+ *
+ * @author <a href="mailto:cs@schulte.it">Christian Schulte</a>
+ * @version $JDTAUS$
+ *
+ * @see AsyncFileOperations
+ */
+public final class AsyncFileRequest
+{
+    //--AsyncFileRequest--------------------------------------------------------
+
+    /** Position of the file the request starts at. */
+    private final long position;
+
+    /** Buffer of the request. */
+    private final byte[] buffer;
+
+    /** Offset of {@code buffer} the data of the request starts at. */
+    private final int offset;
+
+    /** Number of bytes of the request. */
+    private final int length;
+
+    /** Flags the request as writing to the file. */
+    private final boolean write;
+
+    /** Flags the request as beeing complete; guarded by {@code this}. */
+    private boolean done;
+
+    /** Number of bytes transferred; guarded by {@code this}. */
+    private int result;
+
+    /** Exception the request failed with; guarded by {@code this}. */
+    private Throwable failure;
+
+    /**
+     * Creates a new {@code AsyncFileRequest} instance.
+     *
+     * @param position the position of the file the request starts at.
+     * @param buffer the buffer of the request.
+     * @param offset the offset of {@code buffer} the data starts at.
+     * @param length the number of bytes of the request.
+     * @param write {@code true} if the request writes to the file;
+     * {@code false} if the request reads from the file.
+     */
+    AsyncFileRequest( final long position, final byte[] buffer,
+                      final int offset, final int length,
+                      final boolean write )
+    {
+        super();
+        this.position = position;
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+        this.write = write;
+    }
+
+    /**
+     * Gets the position of the file the request starts at.
+     *
+     * @return the position of the file the request starts at.
+     */
+    public long getPosition()
+    {
+        return this.position;
+    }
+
+    /**
+     * Gets the number of bytes of the request.
+     *
+     * @return the number of bytes of the request.
+     */
+    public int getLength()
+    {
+        return this.length;
+    }
+
+    /**
+     * Flags the request as writing to the file.
+     *
+     * @return {@code true} if the request writes to the file; {@code false}
+     * if the request reads from the file.
+     */
+    public boolean isWrite()
+    {
+        return this.write;
+    }
+
+    /**
+     * Flags the request as beeing complete.
+     *
+     * @return {@code true} if the request completed successfully or failed;
+     * {@code false} if the request is still pending.
+     */
+    public synchronized boolean isDone()
+    {
+        return this.done;
+    }
+
+    /**
+     * Waits for the request to complete.
+     *
+     * @return the number of bytes transferred. For a read request this is
+     * the number of bytes read which is less than the length of the request
+     * if the end of the file was reached, or {@code -1} if the request
+     * starts at or beyond the end of the file. For a write request this is
+     * the length of the request.
+     *
+     * @throws IOException if the request failed or waiting is interrupted.
+     */
+    public synchronized int await() throws IOException
+    {
+        try
+        {
+            while ( !this.done )
+            {
+                this.wait();
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException( e.getMessage() );
+        }
+
+        if ( this.failure instanceof IOException )
+        {
+            throw (IOException) this.failure;
+        }
+        if ( this.failure instanceof RuntimeException )
+        {
+            throw (RuntimeException) this.failure;
+        }
+        if ( this.failure instanceof Error )
+        {
+            throw (Error) this.failure;
+        }
+
+        return this.result;
+    }
+
+    /**
+     * Gets the buffer of the request.
+     *
+     * @return the buffer of the request.
+     */
+    byte[] getBuffer()
+    {
+        return this.buffer;
+    }
+
+    /**
+     * Gets the offset of the buffer the data of the request starts at.
+     *
+     * @return the offset of the buffer the data of the request starts at.
+     */
+    int getOffset()
+    {
+        return this.offset;
+    }
+
+    /**
+     * Completes the request.
+     *
+     * @param result the number of bytes transferred.
+     * @param failure the exception the request failed with or {@code null}.
+     */
+    synchronized void complete( final int result, final Throwable failure )
+    {
+        this.result = result;
+        this.failure = failure;
+        this.done = true;
+        this.notifyAll();
+    }
+
+    //--------------------------------------------------------AsyncFileRequest--
+}
@@ -0,0 +1,639 @@
+/*
+ *  jDTAUS Core Utilities
+ *  Copyright (C) 2005 Christian Schulte
+ *  <cs@schulte.it>
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+package org.jdtaus.core.io.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import org.jdtaus.core.container.ContainerFactory;
+import org.jdtaus.core.io.StructuredFile;
+import org.jdtaus.core.lang.spi.Executor;
+import org.jdtaus.core.lang.spi.MemoryManager;
+
+/**
+ * Sequential scan of the blocks of a {@code StructuredFile}.
+ * <p>This implementation reads the blocks of a range of a
+ * {@code StructuredFile} in chunks of consecutive blocks using the
+ * {@code readBlocks()} method. Two buffers each holding one chunk are used.
+ * While the blocks of one buffer are handed out, the next chunk is read into
+ * the other buffer using the {@code Executor} of the system so that reading
+ * overlaps with processing the blocks. The number of blocks of a chunk is
+ * controlled by configuration property {@code defaultChunkSize} holding the
+ * number of bytes of a chunk (defaults to {@code 65536} - 64 kB).</p>
+ *
+ * <p>Blocks are scanned in ascending or, if requested, in descending order.
+ * Method {@code next()} returns a read-only view of the data of the next
+ * block backed by the buffer the block has been read into without copying.
+ * The same {@code ByteBuffer} instance is returned for all blocks of a chunk
+ * with its position and limit set to the data of the block so that the view
+ * is valid only until the next call to method {@code next()}.</p>
+ *
+ * <p><b>Note:</b><br>
+ * This implementation is not thread-safe. Since chunks are read in the
+ * background, the {@code StructuredFile} must not be used otherwise until
+ * the cursor is closed.</p>
+ *
+ * @author <a href="mailto:cs@schulte.it">Christian Schulte</a>
+ * @version $JDTAUS$
+ */
+public final class BlockCursor
+{
+    //--Dependencies------------------------------------------------------------
+
+// <editor-fold defaultstate="collapsed" desc=" Generated Code ">//GEN-BEGIN:jdtausDependencies
+    // This section is managed by jdtaus-container-mojo.
+
+    /**
+     * Gets the configured <code>MemoryManager</code> implementation.
+     *
+     * @return The configured <code>MemoryManager</code> implementation.
+     */
+    private MemoryManager getMemoryManager()
+    {
+        return (MemoryManager) ContainerFactory.getContainer().
+            getDependency( this, "MemoryManager" );
+
+    }
+
+    /**
+     * Gets the configured <code>Locale</code> implementation.
+     *
+     * @return The configured <code>Locale</code> implementation.
+     */
+    private Locale getLocale()
+    {
+        return (Locale) ContainerFactory.getContainer().
+            getDependency( this, "Locale" );
+
+    }
+
+    /**
+     * Gets the configured <code>Executor</code> implementation.
+     *
+     * @return The configured <code>Executor</code> implementation.
+     */
+    private Executor getExecutor()
+    {
+        return (Executor) ContainerFactory.getContainer().
+            getDependency( this, "Executor" );
+
+    }
+
+// </editor-fold>//GEN-END:jdtausDependencies
+
+    //------------------------------------------------------------Dependencies--
+    //--Properties--------------------------------------------------------------
+
+// <editor-fold defaultstate="collapsed" desc=" Generated Code ">//GEN-BEGIN:jdtausProperties
+    // This section is managed by jdtaus-container-mojo.
+
+    /**
+     * Gets the value of property <code>defaultChunkSize</code>.
+     *
+     * @return Default number of bytes of one chunk of blocks read with one call.
+     */
+    private java.lang.Integer getDefaultChunkSize()
+    {
+        return (java.lang.Integer) ContainerFactory.getContainer().
+            getProperty( this, "defaultChunkSize" );
+
+    }
+
+// </editor-fold>//GEN-END:jdtausProperties
+
+    //--------------------------------------------------------------Properties--
+    //--BlockCursor-------------------------------------------------------------
+
+    /** The {@code StructuredFile} to scan. */
+    private final StructuredFile file;
+
+    /** Index of the first block of the range to scan. */
+    private final long firstBlock;
+
+    /** Number of blocks of the range to scan. */
+    private final long blockCount;
+
+    /** Flags the blocks to be scanned in descending order. */
+    private final boolean reverse;
+
+    /** Number of blocks of one chunk. */
+    private final int chunkBlocks;
+
+    /** Number of chunks of the range to scan. */
+    private final long chunkCount;
+
+    /** Buffers holding chunks. */
+    private byte[][] buffers;
+
+    /** Read-only views of {@code buffers}. */
+    private ByteBuffer[] views;
+
+    /** Index of the buffer holding the current chunk. */
+    private int current;
+
+    /** Index of the first block of the current chunk. */
+    private long chunkFirstBlock;
+
+    /** Number of blocks of the current chunk. */
+    private int chunkBlockCount;
+
+    /** Number of blocks of the current chunk handed out. */
+    private int chunkPosition;
+
+    /** Index of the next chunk to read. */
+    private long nextChunk;
+
+    /** Number of blocks handed out. */
+    private long position;
+
+    /** Index of the block handed out last. */
+    private long block = -1L;
+
+    /** Flags the instance as beeing closed. */
+    private boolean closed;
+
+    /** Lock guarding the chunk read in the background. */
+    private final Object lock = new Object();
+
+    /** Flags a chunk as beeing read; guarded by {@code lock}. */
+    private boolean readPending;
+
+    /** Exception thrown reading a chunk; guarded by {@code lock}. */
+    private Throwable readFailure;
+
+    /** Index of the buffer the chunk is read into; guarded by {@code lock}. */
+    private int readBuffer;
+
+    /** Index of the first block of the chunk read; guarded by {@code lock}. */
+    private long readFirstBlock;
+
+    /** Number of blocks of the chunk read; guarded by {@code lock}. */
+    private int readBlockCount;
+
+    /**
+     * Creates a new {@code BlockCursor} instance scanning all blocks of a
+     * {@code StructuredFile} in ascending order.
+     *
+     * @param file the {@code StructuredFile} to scan.
+     *
+     * @throws NullPointerException if {@code file} is {@code null}.
+     * @throws IOException if getting the number of blocks of {@code file}
+     * fails.
+     */
+    public BlockCursor( final StructuredFile file ) throws IOException
+    {
+        this( file, 0L, file == null ? 0L : file.getBlockCount(), false, 0 );
+    }
+
+    /**
+     * Creates a new {@code BlockCursor} instance scanning a range of blocks of
+     * a {@code StructuredFile}.
+     *
+     * @param file the {@code StructuredFile} to scan.
+     * @param firstBlock the index of the first block of the range to scan.
+     * @param blockCount the number of blocks of the range to scan.
+     * @param reverse {@code true} to scan the blocks in descending order;
+     * {@code false} to scan the blocks in ascending order.
+     *
+     * @throws NullPointerException if {@code file} is {@code null}.
+     * @throws IndexOutOfBoundsException if {@code firstBlock} is negative,
+     * or {@code blockCount} is negative, or {@code firstBlock + blockCount} is
+     * greater than {@code file.getBlockCount()}.
+     * @throws IOException if getting the number of blocks of {@code file}
+     * fails.
+     */
+    public BlockCursor( final StructuredFile file, final long firstBlock,
+                        final long blockCount, final boolean reverse )
+        throws IOException
+    {
+        this( file, firstBlock, blockCount, reverse, 0 );
+    }
+
+    /**
+     * Creates a new {@code BlockCursor} instance scanning a range of blocks of
+     * a {@code StructuredFile} taking the number of blocks of one chunk.
+     *
+     * @param file the {@code StructuredFile} to scan.
+     * @param firstBlock the index of the first block of the range to scan.
+     * @param blockCount the number of blocks of the range to scan.
+     * @param reverse {@code true} to scan the blocks in descending order;
+     * {@code false} to scan the blocks in ascending order.
+     * @param chunkBlocks the number of blocks of one chunk or {@code 0} to
+     * use the number of blocks of property {@code defaultChunkSize}.
+     *
+     * @throws NullPointerException if {@code file} is {@code null}.
+     * @throws IndexOutOfBoundsException if {@code firstBlock} is negative,
+     * or {@code blockCount} is negative, or {@code firstBlock + blockCount} is
+     * greater than {@code file.getBlockCount()}.
+     * @throws IOException if getting the number of blocks of {@code file}
+     * fails.
+     */
+    public BlockCursor( final StructuredFile file, final long firstBlock,
+                        final long blockCount, final boolean reverse,
+                        final int chunkBlocks ) throws IOException
+    {
+        super();
+
+        if ( file == null )
+        {
+            throw new NullPointerException( "file" );
+        }
+
+        final long fileBlocks = file.getBlockCount();
+
+        if ( firstBlock < 0L || firstBlock > fileBlocks )
+        {
+            throw new ArrayIndexOutOfBoundsException( (int) firstBlock );
+        }
+        if ( blockCount < 0L || blockCount > fileBlocks - firstBlock )
+        {
+            throw new ArrayIndexOutOfBoundsException( (int) blockCount );
+        }
+
+        this.file = file;
+        this.firstBlock = firstBlock;
+        this.blockCount = blockCount;
+        this.reverse = reverse;
+
+        long blocks = chunkBlocks > 0
+                      ? chunkBlocks
+                      : this.getDefaultChunkSize().intValue() /
+                        file.getBlockSize();
+
+        if ( blocks > Integer.MAX_VALUE / file.getBlockSize() )
+        {
+            blocks = Integer.MAX_VALUE / file.getBlockSize();
+        }
+        if ( blocks > blockCount )
+        {
+            blocks = blockCount;
+        }
+
+        this.chunkBlocks = blocks > 0L ? (int) blocks : 1;
+        this.chunkCount = ( blockCount + this.chunkBlocks - 1L ) /
+                          this.chunkBlocks;
+
+        if ( this.chunkCount > 0L )
+        {
+            this.buffers = new byte[ this.chunkCount > 1L ? 2 : 1 ][];
+            this.views = new ByteBuffer[ this.buffers.length ];
+
+            for ( int i = this.buffers.length - 1; i >= 0; i-- )
+            {
+                this.buffers[i] = this.getMemoryManager().allocateBytes(
+                    this.chunkBlocks * file.getBlockSize() );
+
+                this.views[i] =
+                    ByteBuffer.wrap( this.buffers[i] ).asReadOnlyBuffer();
+
+            }
+
+            this.current = this.buffers.length - 1;
+            this.readChunk();
+        }
+    }
+
+    /**
+     * Gets the {@code StructuredFile} scanned by the instance.
+     *
+     * @return the {@code StructuredFile} scanned by the instance.
+     */
+    public StructuredFile getStructuredFile()
+    {
+        return this.file;
+    }
+
+    /**
+     * Gets the index of the first block of the range scanned by the instance.
+     *
+     * @return the index of the first block of the range scanned.
+     */
+    public long getFirstBlock()
+    {
+        return this.firstBlock;
+    }
+
+    /**
+     * Gets the number of blocks of the range scanned by the instance.
+     *
+     * @return the number of blocks of the range scanned.
+     */
+    public long getBlockCount()
+    {
+        return this.blockCount;
+    }
+
+    /**
+     * Gets a flag indicating the blocks are scanned in descending order.
+     *
+     * @return {@code true} if the blocks are scanned in descending order;
+     * {@code false} if the blocks are scanned in ascending order.
+     */
+    public boolean isReverse()
+    {
+        return this.reverse;
+    }
+
+    /**
+     * Gets the number of blocks read with one call.
+     *
+     * @return the number of blocks of one chunk.
+     */
+    public int getChunkBlocks()
+    {
+        return this.chunkBlocks;
+    }
+
+    /**
+     * Tests the scan to have more blocks.
+     *
+     * @return {@code true} if method {@code next()} returns another block;
+     * {@code false} if all blocks of the range have been handed out.
+     */
+    public boolean hasNext()
+    {
+        return !this.closed && this.position < this.blockCount;
+    }
+
+    /**
+     * Gets the data of the next block of the scan.
+     * <p>The returned buffer is a read-only view of the data of the block
+     * with its position set to the first byte of the block and its limit set
+     * to the position plus {@code getBlockSize()} of the
+     * {@code StructuredFile}. The view is valid until the next call to this
+     * method.</p>
+     *
+     * @return a view of the data of the next block.
+     *
+     * @throws NoSuchElementException if all blocks of the range have been
+     * handed out.
+     * @throws IOException if reading fails, if waiting for a chunk is
+     * interrupted or if the instance is closed.
+     */
+    public ByteBuffer next() throws IOException
+    {
+        this.assertNotClosed();
+
+        if ( this.position >= this.blockCount )
+        {
+            throw new NoSuchElementException();
+        }
+
+        if ( this.chunkPosition == this.chunkBlockCount )
+        { // Current chunk handed out; switch to the chunk read ahead.
+            this.awaitChunk();
+
+            synchronized ( this.lock )
+            {
+                this.current = this.readBuffer;
+                this.chunkFirstBlock = this.readFirstBlock;
+                this.chunkBlockCount = this.readBlockCount;
+            }
+
+            this.chunkPosition = 0;
+            this.readChunk();
+        }
+
+        final int index = this.reverse
+                          ? this.chunkBlockCount - this.chunkPosition - 1
+                          : this.chunkPosition;
+
+        final int blockSize = this.file.getBlockSize();
+        final ByteBuffer view = this.views[this.current];
+
+        view.clear();
+        view.limit( ( index + 1 ) * blockSize );
+        view.position( index * blockSize );
+
+        this.block = this.chunkFirstBlock + index;
+        this.chunkPosition++;
+        this.position++;
+        return view;
+    }
+
+    /**
+     * Gets the index of the block handed out last.
+     *
+     * @return the index of the block returned by the last call to method
+     * {@code next()} or {@code -1} if no block has been handed out.
+     */
+    public long getBlock()
+    {
+        return this.block;
+    }
+
+    /**
+     * Closes the instance.
+     * <p>This method waits for any chunk beeing read to finish and releases
+     * the buffers of the instance. The {@code StructuredFile} is not
+     * closed.</p>
+     *
+     * @throws IOException if waiting is interrupted or if the instance already
+     * is closed.
+     */
+    public void close() throws IOException
+    {
+        this.assertNotClosed();
+
+        synchronized ( this.lock )
+        {
+            try
+            {
+                while ( this.readPending )
+                {
+                    this.lock.wait();
+                }
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException( e.getMessage() );
+            }
+
+            this.readFailure = null;
+        }
+
+        this.buffers = null;
+        this.views = null;
+        this.closed = true;
+    }
+
+    /**
+     * Starts reading the next chunk into the buffer not holding the current
+     * chunk using the {@code Executor} of the system.
+     */
+    private void readChunk()
+    {
+        if ( this.nextChunk < this.chunkCount )
+        {
+            final long chunkStart = this.nextChunk * this.chunkBlocks;
+            final long remaining = this.blockCount - chunkStart;
+            final int blocks = remaining > this.chunkBlocks
+                               ? this.chunkBlocks
+                               : (int) remaining;
+
+            synchronized ( this.lock )
+            {
+                this.readBuffer = this.buffers.length - 1 - this.current;
+                this.readFirstBlock = this.reverse
+                                      ? this.firstBlock + this.blockCount -
+                                        chunkStart - blocks
+                                      : this.firstBlock + chunkStart;
+
+                this.readBlockCount = blocks;
+                this.readPending = true;
+            }
+
+            this.nextChunk++;
+            this.getExecutor().executeAsynchronously( new Runnable()
+            {
+
+                public void run()
+                {
+                    readBlocks();
+                }
+
+            } );
+        }
+    }
+
+    /**
+     * Reads the chunk of the outstanding read.
+     * <p>This method is executed asynchronously.</p>
+     */
+    private void readBlocks()
+    {
+        Throwable failure = null;
+
+        try
+        {
+            final byte[] buffer;
+            final long first;
+            final int count;
+
+            synchronized ( this.lock )
+            {
+                buffer = this.buffers[this.readBuffer];
+                first = this.readFirstBlock;
+                count = this.readBlockCount;
+            }
+
+            this.file.readBlocks( first, count, buffer, 0 );
+        }
+        catch ( IOException e )
+        {
+            failure = e;
+        }
+        catch ( RuntimeException e )
+        {
+            failure = e;
+        }
+        finally
+        {
+            synchronized ( this.lock )
+            {
+                this.readFailure = failure;
+                this.readPending = false;
+                this.lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Waits for the outstanding read of a chunk to finish.
+     *
+     * @throws IOException if reading the chunk failed or waiting is
+     * interrupted.
+     */
+    private void awaitChunk() throws IOException
+    {
+        synchronized ( this.lock )
+        {
+            try
+            {
+                while ( this.readPending )
+                {
+                    this.lock.wait();
+                }
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException( e.getMessage() );
+            }
+
+            final Throwable failure = this.readFailure;
+            this.readFailure = null;
+
+            if ( failure instanceof IOException )
+            {
+                throw (IOException) failure;
+            }
+            if ( failure instanceof RuntimeException )
+            {
+                throw (RuntimeException) failure;
+            }
+        }
+    }
+
+    /**
+     * Checks that the instance is not closed.
+     *
+     * @throws IOException if the instance is closed.
+     */
+    private void assertNotClosed() throws IOException
+    {
+        if ( this.closed )
+        {
+            throw new IOException( this.getAlreadyClosedMessage(
+                this.getLocale() ) );
+
+        }
+    }
+
+    //-------------------------------------------------------------BlockCursor--
+    //--Messages----------------------------------------------------------------
+
+// <editor-fold defaultstate="collapsed" desc=" Generated Code ">//GEN-BEGIN:jdtausMessages
+    // This section is managed by jdtaus-container-mojo.
+
+    /**
+     * Gets the text of message <code>alreadyClosed</code>.
+     * <blockquote><pre>Instanz geschlossen - keine E/A-Operationen möglich.</pre></blockquote>
+     * <blockquote><pre>Instance closed - cannot perform I/O.</pre></blockquote>
+     *
+     * @param locale The locale of the message instance to return.
+     *
+     * @return Message stating that an instance is already closed.
+     */
+    private String getAlreadyClosedMessage( final Locale locale )
+    {
+        return ContainerFactory.getContainer().
+            getMessage( this, "alreadyClosed", locale, null );
+
+    }
+
+// </editor-fold>//GEN-END:jdtausMessages
+
+    //----------------------------------------------------------------Messages--
+}
@@ -0,0 +1,94 @@
+/*
+ *  jDTAUS Core Utilities
+ *  Copyright (C) 2005 Christian Schulte
+ *  <cs@schulte.it>
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+package org.jdtaus.core.io.util;
+
+/**
+ * Strategy for selecting cache blocks to evict.
+ * <p>Cache implementations manage a fixed number of frames, each of which
+ * may hold the data of one block. Implementations of this interface are
+ * informed about any block entering, being accessed in or leaving a frame and
+ * select the frame to evict whenever the cache needs a frame but none is
+ * free. Frames are identified by indices ranging from {@code 0} to
+ * {@code capacity - 1}.</p>
+ *
+ * <p><b>Note:</b><br>
+ * Implementations need not be thread-safe. An instance must not be shared by
+ * multiple caches.</p>
+ *
+ * @author <a href="mailto:cs@schulte.it">Christian Schulte</a>
+ * @version $JDTAUS$
+ *
+ * @see CoalescingFileOperations
+ */
+public interface BlockEvictionPolicy
+{
+    //--BlockEvictionPolicy-----------------------------------------------------
+
+    /**
+     * Initializes the policy for a given number of frames.
+     * <p>This method is called once by the cache before any other method of
+     * the policy is called. All frames are initially free.</p>
+     *
+     * @param capacity the number of frames of the cache.
+     *
+     * @throws IllegalArgumentException if {@code capacity} is negative or
+     * zero.
+     */
+    void initialize( int capacity );
+
+    /**
+     * Notifies the policy about a block having been loaded into a free frame.
+     *
+     * @param frame the index of the frame the block has been loaded into.
+     * @param block the block loaded into {@code frame}.
+     */
+    void blockCached( int frame, long block );
+
+    /**
+     * Notifies the policy about a cached block having been accessed.
+     *
+     * @param frame the index of the frame holding the accessed block.
+     */
+    void blockAccessed( int frame );
+
+    /**
+     * Notifies the policy about a block having been removed from a frame.
+     * <p>This method is called for blocks selected for eviction as well as for
+     * blocks removed from the cache for any other reason, for example due to
+     * truncating the file. The frame is free afterwards.</p>
+     *
+     * @param frame the index of the frame the block has been removed from.
+     */
+    void blockDiscarded( int frame );
+
+    /**
+     * Selects the frame holding the block to evict next.
+     * <p>This method is only called when no frame is free. It does not remove
+     * the block from the frame. The cache will call method
+     * {@code blockDiscarded} for the returned frame after having written back
+     * the block, if needed.</p>
+     *
+     * @return the index of the frame holding the block to evict.
+     */
+    int getVictim();
+
+    //-----------------------------------------------------BlockEvictionPolicy--
+}
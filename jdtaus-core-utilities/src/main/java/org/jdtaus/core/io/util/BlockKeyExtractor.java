@@ -0,0 +1,63 @@
+/*
+ *  jDTAUS Core Utilities
+ *  Copyright (C) 2005 Christian Schulte
+ *  <cs@schulte.it>
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+package org.jdtaus.core.io.util;
+
+/**
+ * Strategy for extracting sort keys from the data of blocks.
+ * <p>Keys are fixed length arrays of bytes compared lexicographically with
+ * each byte treated as an unsigned value. Implementations encode the fields
+ * to sort by accordingly, for example by encoding numbers big-endian with the
+ * sign bit inverted or by taking fields of digits left padded with zeros
+ * unchanged.</p>
+ *
+ * <p><b>Note:</b><br>
+ * Implementations need to be thread-safe. Keys are extracted by multiple
+ * threads concurrently.</p>
+ *
+ * @author <a href="mailto:cs@schulte.it">Christian Schulte</a>
+ * @version $JDTAUS$
+ *
+ * @see StructuredFileSorter
+ */
+public interface BlockKeyExtractor
+{
+    //--BlockKeyExtractor-------------------------------------------------------
+
+    /**
+     * Gets the length of the keys extracted by the instance.
+     *
+     * @return the number of bytes of one key.
+     */
+    int getKeyLength();
+
+    /**
+     * Extracts the key of a block.
+     *
+     * @param block buffer holding the data of the block.
+     * @param off the offset of the data of the block in {@code block}.
+     * @param key buffer to write the key to.
+     * @param keyOff the offset in {@code key} to write the
+     * {@code getKeyLength()} bytes of the key to.
+     */
+    void getKey( byte[] block, int off, byte[] key, int keyOff );
+
+    //-------------------------------------------------------BlockKeyExtractor--
+}
@@ -0,0 +1,104 @@
+/*
+ *  jDTAUS Core Utilities
+ *  Copyright (C) 2005 Christian Schulte
+ *  <cs@schulte.it>
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+package org.jdtaus.core.io.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import org.jdtaus.core.io.FileOperations;
+
+/**
+ * Extension to {@code FileOperations} adding support for reading and writing
+ * {@code ByteBuffer}s.
+ * <p>Data is transferred between the file and the remaining bytes of a
+ * buffer, that is, the bytes between the position and the limit of the
+ * buffer. The position of the buffer is advanced by the number of bytes
+ * transferred. Implementations transfer data directly from or to the buffer
+ * so that data of direct buffers does not need to be copied into a
+ * {@code byte[]} first. The methods taking a file position do not change the
+ * file pointer.</p>
+ *
+ * @author <a href="mailto:cs@schulte.it">Christian Schulte</a>
+ * @version $JDTAUS$
+ */
+public interface ByteBufferFileOperations extends FileOperations
+{
+    //--ByteBufferFileOperations------------------------------------------------
+
+    /**
+     * Reads a sequence of bytes from the file into a buffer starting at the
+     * file pointer. An attempt is made to read as many bytes as remain in the
+     * buffer, but a smaller number may be read.
+     *
+     * @param buf the buffer into which the data is read.
+     *
+     * @return the total number of bytes read into the buffer, or
+     * {@link FileOperations#EOF} if there is no more data because the end of
+     * the file has been reached.
+     *
+     * @throws NullPointerException if {@code buf} is {@code null}.
+     * @throws IOException if reading fails.
+     */
+    int read( ByteBuffer buf ) throws IOException;
+
+    /**
+     * Writes all remaining bytes of a buffer to the file starting at the file
+     * pointer.
+     *
+     * @param buf the buffer holding the data to write.
+     *
+     * @throws NullPointerException if {@code buf} is {@code null}.
+     * @throws IOException if writing fails.
+     */
+    void write( ByteBuffer buf ) throws IOException;
+
+    /**
+     * Reads a sequence of bytes from the file into a buffer starting at a
+     * given file position. An attempt is made to read as many bytes as remain
+     * in the buffer, but a smaller number may be read.
+     *
+     * @param position the file position to start reading at.
+     * @param buf the buffer into which the data is read.
+     *
+     * @return the total number of bytes read into the buffer, or
+     * {@link FileOperations#EOF} if {@code position} is greater than or equal
+     * to the length of the file.
+     *
+     * @throws NullPointerException if {@code buf} is {@code null}.
+     * @throws IllegalArgumentException if {@code position} is negative.
+     * @throws IOException if reading fails.
+     */
+    int read( long position, ByteBuffer buf ) throws IOException;
+
+    /**
+     * Writes all remaining bytes of a buffer to the file starting at a given
+     * file position. The file is extended as needed.
+     *
+     * @param position the file position to start writing at.
+     * @param buf the buffer holding the data to write.
+     *
+     * @throws NullPointerException if {@code buf} is {@code null}.
+     * @throws IllegalArgumentException if {@code position} is negative.
+     * @throws IOException if writing fails.
+     */
+    void write( long position, ByteBuffer buf ) throws IOException;
+
+    //------------------------------------------------ByteBufferFileOperations--
+}
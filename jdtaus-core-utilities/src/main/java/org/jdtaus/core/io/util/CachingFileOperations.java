@@ -0,0 +1,59 @@
+/*
+ *  jDTAUS Core Utilities
+ *  Copyright (C) 2005 Christian Schulte
+ *  <cs@schulte.it>
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+package org.jdtaus.core.io.util;
+
+import org.jdtaus.core.io.FileOperations;
+
+/**
+ * Extension to {@code FileOperations} adding support for querying cache
+ * statistics.
+ *
+ * @author <a href="mailto:cs@schulte.it">Christian Schulte</a>
+ * @version $JDTAUS$
+ */
+public interface CachingFileOperations extends FileOperations
+{
+    //--CachingFileOperations---------------------------------------------------
+
+    /**
+     * Gets the number of times data has been found in the cache.
+     *
+     * @return the number of cache hits.
+     */
+    long getCacheHits();
+
+    /**
+     * Gets the number of times data has not been found in the cache.
+     *
+     * @return the number of cache misses.
+     */
+    long getCacheMisses();
+
+    /**
+     * Gets the number of times cached data has been evicted to make room for
+     * other data.
+     *
+     * @return the number of evictions.
+     */
+    long getCacheEvictions();
+
+    //---------------------------------------------------CachingFileOperations--
+}
@@ -0,0 +1,108 @@
+/*
+ *  jDTAUS Core Utilities
+ *  Copyright (C) 2005 Christian Schulte
+ *  <cs@schulte.it>
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+package org.jdtaus.core.io.util;
+
+/**
+ * CLOCK {@code BlockEvictionPolicy}.
+ * <p>This implementation approximates least recently used eviction by
+ * maintaining a reference bit per frame. Accessing a block sets the bit of its
+ * frame. When a victim needs to be selected, a clock hand sweeps over the
+ * frames clearing any reference bits set until it finds a frame whose bit is
+ * clear. Accessing a block therefore only requires setting a flag.</p>
+ *
+ * @author <a href="mailto:cs@schulte.it">Christian Schulte</a>
+ * @version $JDTAUS$
+ */
+public final class ClockBlockEvictionPolicy implements BlockEvictionPolicy
+{
+    //--BlockEvictionPolicy-----------------------------------------------------
+
+    public void initialize( final int capacity )
+    {
+        if ( capacity <= 0 )
+        {
+            throw new IllegalArgumentException( Integer.toString( capacity ) );
+        }
+
+        this.cached = new boolean[ capacity ];
+        this.referenced = new boolean[ capacity ];
+        this.hand = 0;
+    }
+
+    public void blockCached( final int frame, final long block )
+    {
+        this.cached[frame] = true;
+        this.referenced[frame] = true;
+    }
+
+    public void blockAccessed( final int frame )
+    {
+        this.referenced[frame] = true;
+    }
+
+    public void blockDiscarded( final int frame )
+    {
+        this.cached[frame] = false;
+        this.referenced[frame] = false;
+    }
+
+    public int getVictim()
+    {
+        // At most two sweeps are needed to find a frame whose bit is clear.
+        for ( int i = this.cached.length * 2; i >= 0; i-- )
+        {
+            final int frame = this.hand;
+            this.hand = ( this.hand + 1 ) % this.cached.length;
+
+            if ( this.cached[frame] )
+            {
+                if ( !this.referenced[frame] )
+                {
+                    return frame;
+                }
+
+                this.referenced[frame] = false;
+            }
+        }
+
+        throw new IllegalStateException();
+    }
+
+    //-----------------------------------------------------BlockEvictionPolicy--
+    //--ClockBlockEvictionPolicy------------------------------------------------
+
+    /** Flags frames holding a block. */
+    private boolean[] cached;
+
+    /** Reference bits of the frames. */
+    private boolean[] referenced;
+
+    /** Position of the clock hand. */
+    private int hand;
+
+    /** Creates a new {@code ClockBlockEvictionPolicy} instance. */
+    public ClockBlockEvictionPolicy()
+    {
+        super();
+    }
+
+    //------------------------------------------------ClockBlockEvictionPolicy--
+}
@@ -20,15 +20,17 @@
  */
 package org.jdtaus.core.io.util;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
-import java.util.Iterator;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Locale;
-import java.util.Map;
-import java.util.TreeMap;
 import org.jdtaus.core.container.ContainerFactory;
 import org.jdtaus.core.io.FileOperations;
+import org.jdtaus.core.lang.spi.Executor;
 import org.jdtaus.core.lang.spi.MemoryManager;
 import org.jdtaus.core.logging.spi.Logger;
 
@@ -43,6 +45,60 @@ import org.jdtaus.core.logging.spi.Logger;
  * {@code OutOfMemoryError} may be thrown when constructing the cache but not
  * when working with the instance.</p>
  *
+ * <p>When all cache blocks are in use, a block is evicted to make room for
+ * another block. The block to evict is selected by a
+ * {@link BlockEvictionPolicy} which can be passed to the constructor. By
+ * default the policy is selected by configuration property
+ * {@code defaultEvictionPolicy} which may be one of {@code LRU} (least
+ * recently used), {@code CLOCK} or {@code 2Q} (scan resistant) and defaults
+ * to {@code LRU}. A dirty block is written back individually when evicted.
+ * The number of cache hits, cache misses and evictions is made available by
+ * methods {@code getCacheHits()}, {@code getCacheMisses()} and
+ * {@code getCacheEvictions()} for sizing the cache.</p>
+ *
+ * <p>Dirty blocks can be written asynchronously using the {@code Executor}
+ * of the system. Whenever the number of dirty blocks reaches a high-water
+ * mark, all dirty blocks are written out by a background task in runs of
+ * contiguous blocks directly from the cache memory. Writers modifying a block
+ * being written out or reusing its cache memory wait for the write-behind to
+ * finish. Only one such write-behind is outstanding at a time so that writers
+ * block when reaching the high-water mark again before the previous
+ * write-behind finished. Method {@code flush()} waits for any outstanding
+ * write-behind to finish. By default property {@code defaultHighWaterMark} is
+ * initialized to {@code 0} disabling write-behind. Exceptions thrown by a
+ * write-behind are rethrown by the next call to method {@code flush()} or any
+ * method reaching the high-water mark.</p>
+ *
+ * <p>Method {@code prefetch()} reads a range of the file of up to the size
+ * of the cache into a separate buffer using the {@code Executor} of the
+ * system. Blocks of that range not cached when read later are copied from
+ * that buffer instead of being read from the {@code FileOperations} backing
+ * the instance. Only one prefetch is outstanding at a time. Data written to
+ * the {@code FileOperations} backing the instance during a prefetch is also
+ * written to the prefetched data.</p>
+ *
+ * <p>Blocks of the file known to hold zeros only are not read from the
+ * {@code FileOperations} backing the instance. If that instance implements
+ * {@code SparseFileOperations}, extending the file makes the extension known
+ * to hold zeros until data is written to it. Otherwise the extension is
+ * filled with zeros by writing them to that instance. Method
+ * {@code zero()} zeros cached blocks in the cache. Runs of blocks not cached
+ * are passed to the {@code FileOperations} backing the instance without
+ * caching them if that instance implements {@code SparseFileOperations}.</p>
+ *
+ * <p>Method {@code flush()} writes all dirty blocks in block order directly
+ * from the cache memory. If the {@code FileOperations} backing the instance
+ * implement {@code VectoredFileOperations}, all dirty blocks are written with
+ * one vectored write. Otherwise one write is performed for each run of
+ * contiguous blocks occupying contiguous cache memory.</p>
+ *
+ * <p>{@code ByteBuffer}s backed by an accessible array are read and written
+ * using that array without copying. Other buffers are copied from and to the
+ * cache directly or, if the cache cannot hold the data and the
+ * {@code FileOperations} backing the instance implement
+ * {@code ByteBufferFileOperations}, passed to the backing instance as
+ * given.</p>
+ *
  * <p><b>Note:</b><br>
  * This implementation is not thread-safe and concurrent changes to the
  * underlying {@code FileOperations} implementation are not supported.</p>
@@ -50,7 +106,10 @@ import org.jdtaus.core.logging.spi.Logger;
  * @author <a href="mailto:cs@schulte.it">Christian Schulte</a>
  * @version $JDTAUS$
  */
-public final class CoalescingFileOperations implements FlushableFileOperations
+public final class CoalescingFileOperations
+    implements FlushableFileOperations, VectoredFileOperations,
+               ByteBufferFileOperations, CachingFileOperations,
+               PrefetchingFileOperations, SparseFileOperations
 {
     //--Dependencies------------------------------------------------------------
 
@@ -93,6 +152,18 @@ public final class CoalescingFileOperations implements FlushableFileOperations
 
     }
 
+    /**
+     * Gets the configured <code>Executor</code> implementation.
+     *
+     * @return The configured <code>Executor</code> implementation.
+     */
+    private Executor getExecutor()
+    {
+        return (Executor) ContainerFactory.getContainer().
+            getDependency( this, "Executor" );
+
+    }
+
 // </editor-fold>//GEN-END:jdtausDependencies
 
     //------------------------------------------------------------Dependencies--
@@ -125,86 +196,48 @@ public final class CoalescingFileOperations implements FlushableFileOperations
 
     }
 
-// </editor-fold>//GEN-END:jdtausProperties
-
-    //--------------------------------------------------------------Properties--
-    //--FileOperations----------------------------------------------------------
-
-    public long getLength() throws IOException
+    /**
+     * Gets the value of property <code>defaultEvictionPolicy</code>.
+     *
+     * @return Name of the default eviction policy (one of LRU, CLOCK or 2Q).
+     */
+    private java.lang.String getDefaultEvictionPolicy()
     {
-        this.assertNotClosed();
+        return (java.lang.String) ContainerFactory.getContainer().
+            getProperty( this, "defaultEvictionPolicy" );
 
-        return this.getFileOperations().getLength();
     }
 
-    public void setLength( final long newLength ) throws IOException
+    /**
+     * Gets the value of property <code>defaultHighWaterMark</code>.
+     *
+     * @return Default number of dirty cache blocks starting an asynchronous write-behind (0 disables write-behind).
+     */
+    private java.lang.Integer getDefaultHighWaterMark()
     {
-        this.assertNotClosed();
-
-        // Update the length of any cache nodes involved in the operation.
-        final long oldLength = this.getLength();
-        if ( newLength > oldLength )
-        {
-            final long delta = newLength - oldLength;
-
-            assert delta <= Integer.MAX_VALUE :
-                "Unexpected implementation limit reached.";
+        return (java.lang.Integer) ContainerFactory.getContainer().
+            getProperty( this, "defaultHighWaterMark" );
 
-            final Node[] nodes =
-                this.getCacheNodesForLength( oldLength, (int) delta );
+    }
 
-            for ( int i = 0; i < nodes.length; i++ )
-            {
-                final long startPos = nodes[i].block * this.getBlockSize();
-                final long blockDelta = newLength - startPos;
+// </editor-fold>//GEN-END:jdtausProperties
 
-                assert blockDelta <= Integer.MAX_VALUE :
-                    "Unexpected implementation limit reached.";
+    //--------------------------------------------------------------Properties--
+    //--FileOperations----------------------------------------------------------
 
-                nodes[i].length = blockDelta >= this.getBlockSize()
-                                  ? this.getBlockSize()
-                                  : (int) blockDelta;
+    public long getLength() throws IOException
+    {
+        this.assertNotClosed();
 
-            }
-        }
-        else if ( newLength < oldLength )
+        synchronized ( this.lock )
         {
-            final long delta = oldLength - newLength;
-
-            assert delta <= Integer.MAX_VALUE :
-                "Unexpected implementation limit reached.";
-
-            final Node[] nodes =
-                this.getCacheNodesForLength( newLength, (int) delta );
-
-            for ( int i = 0; i < nodes.length; i++ )
-            {
-                final long startPos = nodes[i].block * this.getBlockSize();
-                if ( startPos > newLength )
-                { // Discard the block.
-                    this.root.remove( new Long( nodes[i].block ) );
-                }
-                else
-                { // Update the blocks length.
-                    final long blockDelta = newLength - startPos;
-
-                    assert blockDelta <= Integer.MAX_VALUE :
-                        "Unexpected implementation limit reached.";
-
-                    nodes[i].length = blockDelta >= this.getBlockSize()
-                                      ? this.getBlockSize()
-                                      : (int) blockDelta;
-
-                }
-            }
+            return this.getFileOperations().getLength();
         }
+    }
 
-        this.getFileOperations().setLength( newLength );
-
-        if ( this.filePointer > newLength )
-        {
-            this.filePointer = newLength;
-        }
+    public void setLength( final long newLength ) throws IOException
+    {
+        this.setLength( newLength, newLength );
     }
 
     public long getFilePointer() throws IOException
@@ -243,74 +276,77 @@ public final class CoalescingFileOperations implements FlushableFileOperations
         this.assertNotClosed();
 
         int read = FileOperations.EOF;
+        final long length = this.getLength();
 
         if ( len == 0 )
         {
             read = 0;
         }
-        else if ( this.filePointer < this.getLength() )
+        else if ( this.filePointer < length )
         { // End of file not reached.
-            final Node[] nodes =
-                this.getCacheNodesForLength( this.filePointer, len );
+            if ( len > length - this.filePointer )
+            {
+                len = (int) ( length - this.filePointer );
+            }
 
-            // Ensure cache holds the data of the involved blocks.
-            this.fillCache( nodes );
+            read = len;
 
-            int copied = 0;
-            for ( int i = 0; i < nodes.length; i++ )
-            {
-                if ( nodes[i].length == FileOperations.EOF )
-                { // Skip any end of file nodes.
-                    continue;
-                }
+            if ( len > this.getCache().length )
+            { // Cache cannot hold the data; read directly.
+                this.writeBackRange( this.filePointer, len, false );
+                this.awaitWriteBehind( this.filePointer, len );
 
-                if ( nodes[i].cacheIndex != Node.NO_CACHEINDEX )
-                { // Node is associated with cache memory; cache is used.
+                synchronized ( this.lock )
+                {
+                    this.getFileOperations().setFilePointer( this.filePointer );
+
+                    int totalRead = 0;
+                    do
+                    {
+                        final int directRead = this.getFileOperations().read(
+                            buf, off + totalRead, len - totalRead );
+
+                        assert directRead != FileOperations.EOF :
+                            "Unexpected end of file.";
 
-                    // Use the current file pointer as the starting index.
-                    final long delta =
-                        nodes[i].cacheIndex +
-                        ( this.filePointer - nodes[i].block *
-                                             this.getBlockSize() );
+                        totalRead += directRead;
+                    }
+                    while ( totalRead < len );
+                }
+
+                this.filePointer += len;
 
-                    assert delta <= Integer.MAX_VALUE :
-                        "Unexpected implementation limit reached.";
+                this.getLogger().debug(
+                    this.getReadBypassesCacheMessage(
+                    this.getLocale(),
+                    new Integer( this.getBlockSize() ),
+                    new Integer( this.getCacheBlocks() ),
+                    new Integer( len ) ) );
 
-                    final int blockOffset = (int) delta;
-                    final int blockDelta = nodes[i].length -
-                                           ( blockOffset - nodes[i].cacheIndex );
+            }
+            else
+            {
+                while ( len > 0 )
+                {
+                    final long block = this.filePointer / this.getBlockSize();
+                    final int blockOffset =
+                        (int) ( this.filePointer - block * this.getBlockSize() );
 
+                    final Node node = this.getCacheNode( block, false );
+                    final int blockDelta = node.length - blockOffset;
                     final int copyLength = len > blockDelta
                                            ? blockDelta
                                            : len;
 
-                    System.arraycopy( this.getCache(), blockOffset, buf, off,
-                                      copyLength );
+                    System.arraycopy( this.getCache(),
+                                      node.cacheIndex + blockOffset,
+                                      buf, off, copyLength );
 
                     off += copyLength;
                     len -= copyLength;
-                    copied += copyLength;
                     this.filePointer += copyLength;
                 }
-                else
-                { // Node is not associated with cache memory; read directly.
-                    this.getFileOperations().setFilePointer( this.filePointer );
-                    copied += this.getFileOperations().read( buf, off, len );
-                    this.filePointer += len;
-
-                    this.getLogger().debug(
-                        this.getReadBypassesCacheMessage(
-                        this.getLocale(),
-                        new Integer( this.getBlockSize() ),
-                        new Integer( this.getCacheBlocks() ),
-                        new Integer( len ) ) );
-
-
-                    break;
-                }
             }
-
-            read = copied;
         }
 
         return read;
@@ -339,63 +375,68 @@ public final class CoalescingFileOperations implements FlushableFileOperations
 
         if ( this.filePointer + len > this.getLength() )
         { // Expand the file of the backing instance.
-            this.setLength( this.filePointer + len );
+            this.setLength( this.filePointer + len, this.filePointer );
         }
 
-        final Node[] nodes =
-            this.getCacheNodesForLength( this.filePointer, len );
+        if ( len > this.getCache().length )
+        { // Cache cannot hold the data; write out directly.
+            this.writeBackRange( this.filePointer, len, true );
+            this.awaitWriteBehind( this.filePointer, len );
 
-        // Ensure cache holds the data of the involved blocks.
-        this.fillCache( nodes );
+            this.updateZeroPosition( this.filePointer + len );
 
-        for ( int i = 0; i < nodes.length; i++ )
-        {
-            // Check for correct file length update.
-            assert nodes[i].length != FileOperations.EOF :
-                "Unexpected cache state.";
+            synchronized ( this.lock )
+            {
+                this.updatePrefetch( this.filePointer, buf, off, len );
+                this.getFileOperations().setFilePointer( this.filePointer );
+                this.getFileOperations().write( buf, off, len );
+            }
 
-            if ( nodes[i].cacheIndex != Node.NO_CACHEINDEX )
-            { // Node is associated with cache memory; cache is used.
+            this.filePointer += len;
 
-                // Use the current file pointer as the starting index.
-                final long delta = nodes[i].cacheIndex +
-                                   ( this.filePointer - nodes[i].block *
-                                                        this.getBlockSize() );
+            this.getLogger().debug(
+                this.getWriteBypassesCacheMessage(
+                this.getLocale(),
+                new Integer( this.getBlockSize() ),
+                new Integer( this.getCacheBlocks() ),
+                new Integer( len ) ) );
 
-                assert delta <= Integer.MAX_VALUE :
-                    "Unexpected implementation limit reached.";
+        }
+        else
+        {
+            final long length = this.getLength();
 
-                final int blockOffset = (int) delta;
-                final int blockDelta = nodes[i].length -
-                                       ( blockOffset - nodes[i].cacheIndex );
+            while ( len > 0 )
+            {
+                final long block = this.filePointer / this.getBlockSize();
+                final long blockStart = block * this.getBlockSize();
+                final int blockOffset = (int) ( this.filePointer - blockStart );
+
+                // Blocks completely overwritten need not be read.
+                final boolean overwrite = blockOffset == 0 &&
+                                          ( len >= this.getBlockSize() ||
+                                            this.filePointer + len >= length );
 
+                final Node node = this.getCacheNode( block, overwrite );
+                final int blockDelta = node.length - blockOffset;
                 final int copyLength = len > blockDelta
                                        ? blockDelta
                                        : len;
 
-                System.arraycopy( buf, off, this.getCache(), blockOffset,
-                                  copyLength );
+                this.awaitWriteBehind( node );
+                System.arraycopy( buf, off, this.getCache(),
+                                  node.cacheIndex + blockOffset, copyLength );
 
                 off += copyLength;
                 len -= copyLength;
                 this.filePointer += copyLength;
-                nodes[i].dirty = true;
+                this.markDirty( node );
             }
-            else
-            { // Node is not associated with cache memory; write out directly.
-                this.getFileOperations().setFilePointer( this.filePointer );
-                this.getFileOperations().write( buf, off, len );
-                this.filePointer += len;
-
-                this.getLogger().debug(
-                    this.getWriteBypassesCacheMessage(
-                    this.getLocale(),
-                    new Integer( this.getBlockSize() ),
-                    new Integer( this.getCacheBlocks() ),
-                    new Integer( len ) ) );
 
-
-                break;
+            if ( this.getHighWaterMark() > 0 &&
+                 this.dirtyCount >= this.getHighWaterMark() )
+            {
+                this.writeBehind();
             }
         }
     }
@@ -404,22 +445,38 @@ public final class CoalescingFileOperations implements FlushableFileOperations
     {
         this.assertNotClosed();
 
-        this.getFileOperations().read( out );
-        this.filePointer = this.getFileOperations().getFilePointer();
+        this.flush();
+
+        synchronized ( this.lock )
+        {
+            this.getFileOperations().read( out );
+            this.filePointer = this.getFileOperations().getFilePointer();
+        }
     }
 
     public void write( final InputStream in ) throws IOException
     {
         this.assertNotClosed();
 
-        this.getFileOperations().write( in );
-        this.filePointer = this.getFileOperations().getFilePointer();
+        this.flush();
+        this.discardAll();
+
+        synchronized ( this.lock )
+        {
+            this.prefetchLength = 0;
+            this.prefetchRead = 0;
+            this.getFileOperations().setFilePointer( this.filePointer );
+            this.getFileOperations().write( in );
+            this.filePointer = this.getFileOperations().getFilePointer();
+        }
+
+        this.updateZeroPosition( this.filePointer );
     }
 
     /**
      * {@inheritDoc}
-     * Flushes the cache and closes the {@code FileOperations} implementation
-     * backing the instance.
+     * Flushes the cache, waits for any outstanding prefetch to finish and
+     * closes the {@code FileOperations} implementation backing the instance.
      *
      * @throws IOException if flushing or closing the {@code FileOperations}
      * implementation backing the instance fails, or if the instance already
@@ -430,7 +487,13 @@ public final class CoalescingFileOperations implements FlushableFileOperations
         this.assertNotClosed();
 
         this.flush();
-        this.getFileOperations().close();
+        this.awaitPrefetch();
+
+        synchronized ( this.lock )
+        {
+            this.getFileOperations().close();
+        }
+
         this.closed = true;
     }
 
@@ -440,538 +503,2209 @@ public final class CoalescingFileOperations implements FlushableFileOperations
     /**
      * {@inheritDoc}
      * This method calls the {@code flush()} method of an underlying
-     * {@code FlushableFileOperations} implementation, if any.
+     * {@code FlushableFileOperations} implementation, if any. Blocks written
+     * out remain cached. Any outstanding write-behind is waited for to
+     * finish.
      *
-     * @throws IOException if writing any pending changes fails or if the
-     * instance is closed.
+     * @throws IOException if writing any pending changes fails, if an
+     * outstanding write-behind failed or if the instance is closed.
      */
     public void flush() throws IOException
     {
         this.assertNotClosed();
+        this.awaitWriteBehind();
 
-        this.defragmentCache();
-
-        long startPos = FileOperations.EOF;
-        int startIndex = FileOperations.EOF;
-        int length = FileOperations.EOF;
-        Node previous = null;
-        boolean dirty = false;
-
-        for ( final Iterator it = this.root.entrySet().iterator();
-              it.hasNext(); )
+        if ( this.getFileOperations() instanceof VectoredFileOperations )
+        {
+            this.writeDirtyNodesVectored();
+        }
+        else
         {
-            final Map.Entry entry = (Map.Entry) it.next();
-            final long block = ( (Long) entry.getKey() ).longValue();
-            final Node current = (Node) entry.getValue();
+            this.writeDirtyRuns();
+        }
 
-            // Skip any end of file nodes and nodes not associated with memory.
-            if ( current.length == FileOperations.EOF ||
-                 current.cacheIndex == Node.NO_CACHEINDEX )
+        if ( this.getFileOperations() instanceof FlushableFileOperations )
+        { // Cache of the backing instance also needs to get flushed.
+            synchronized ( this.lock )
             {
-                continue;
+                ( (FlushableFileOperations) this.getFileOperations() ).flush();
             }
+        }
+    }
 
-            assert current.block == block : "Unexpected cache state.";
+    //-------------------------------------------------FlushableFileOperations--
+    //--VectoredFileOperations--------------------------------------------------
 
-            if ( previous == null )
-            { // Start the first chunk.
-                previous = current;
-                startPos = current.block * this.getBlockSize();
-                startIndex = current.cacheIndex;
-                length = current.length;
-                dirty = current.dirty;
-            }
-            else if ( current.block == previous.block + 1L )
-            { // Expand the current chunk.
+    /**
+     * {@inheritDoc}
+     * This method reads the ranges one after the other using the cache.
+     */
+    public void read( final long[] positions, final byte[][] bufs,
+                      final int[] offsets, final int[] lengths,
+                      final int count ) throws IOException
+    {
+        this.assertValidRanges( positions, bufs, offsets, lengths, count );
+        this.assertNotClosed();
 
-                assert current.cacheIndex == previous.cacheIndex +
-                                             this.getBlockSize() :
-                    "Unexpected cache state.";
+        final long pointer = this.filePointer;
 
-                previous = current;
-                length += current.length;
-                if ( !dirty )
-                {
-                    dirty = current.dirty;
-                }
-            }
-            else
-            { // Write out the current chunk and start a new one.
-                if ( dirty )
+        try
+        {
+            for ( int i = 0; i < count; i++ )
+            {
+                int totalRead = 0;
+                this.filePointer = positions[i];
+
+                while ( totalRead < lengths[i] )
                 {
-                    this.getFileOperations().setFilePointer( startPos );
-                    this.getFileOperations().write(
-                        this.getCache(), startIndex, length );
+                    final int read = this.read(
+                        bufs[i], offsets[i] + totalRead,
+                        lengths[i] - totalRead );
 
-                }
+                    if ( read == FileOperations.EOF )
+                    {
+                        throw new EOFException(
+                            Long.toString( positions[i] + lengths[i] ) );
 
-                previous = current;
-                startPos = current.block * this.getBlockSize();
-                startIndex = current.cacheIndex;
-                length = current.length;
-                dirty = current.dirty;
+                    }
+
+                    totalRead += read;
+                }
             }
         }
+        finally
+        {
+            this.filePointer = pointer;
+        }
+    }
 
-        if ( dirty )
-        { // Write the remaining chunk.
-            this.getFileOperations().setFilePointer( startPos );
-            this.getFileOperations().write(
-                this.getCache(), startIndex, length );
+    /**
+     * {@inheritDoc}
+     * This method writes the ranges one after the other to the cache.
+     */
+    public void write( final long[] positions, final byte[][] bufs,
+                       final int[] offsets, final int[] lengths,
+                       final int count ) throws IOException
+    {
+        this.assertValidRanges( positions, bufs, offsets, lengths, count );
+        this.assertNotClosed();
 
-        }
+        final long pointer = this.filePointer;
 
-        // Reset cache state.
-        for ( final Iterator it = this.root.entrySet().iterator();
-              it.hasNext(); )
+        try
         {
-            final Map.Entry entry = (Map.Entry) it.next();
-            final Node current = (Node) entry.getValue();
-
-            current.cacheIndex = Node.NO_CACHEINDEX;
-            current.dirty = false;
+            for ( int i = 0; i < count; i++ )
+            {
+                this.filePointer = positions[i];
+                this.write( bufs[i], offsets[i], lengths[i] );
+            }
         }
-
-        this.nextCacheIndex = 0;
-
-        if ( this.getFileOperations() instanceof FlushableFileOperations )
-        { // Cache of the backing instance also needs to get flushed.
-            ( (FlushableFileOperations) this.getFileOperations() ).flush();
+        finally
+        {
+            this.filePointer = pointer;
         }
     }
 
-    //-------------------------------------------------FlushableFileOperations--
-    //--CoalescingFileOperations------------------------------------------------
+    //--------------------------------------------------VectoredFileOperations--
+    //--ByteBufferFileOperations------------------------------------------------
 
-    /** Node describing a cache block. */
-    private static final class Node
+    public int read( final ByteBuffer buf ) throws IOException
     {
-
-        private static final int NO_CACHEINDEX = Integer.MIN_VALUE;
-
-        private Node()
+        if ( buf == null )
         {
-            super();
+            throw new NullPointerException( "buf" );
         }
 
-        private long block;
-
-        private int cacheIndex = NO_CACHEINDEX;
+        this.assertNotClosed();
 
-        private int length;
+        if ( buf.hasArray() )
+        { // Read into the array of the buffer.
+            final int read = this.read( buf.array(),
+                                        buf.arrayOffset() + buf.position(),
+                                        buf.remaining() );
 
-        private boolean dirty;
+            if ( read > 0 )
+            {
+                buf.position( buf.position() + read );
+            }
 
-    }
+            return read;
+        }
 
-    /** The {@code FileOperations} backing the instance. */
-    private final FileOperations fileOperations;
+        int read = FileOperations.EOF;
+        int len = buf.remaining();
+        final long length = this.getLength();
 
-    /** Cached blocks. */
-    private byte[] cache;
+        if ( len == 0 )
+        {
+            read = 0;
+        }
+        else if ( this.filePointer < length )
+        { // End of file not reached.
+            if ( len > length - this.filePointer )
+            {
+                len = (int) ( length - this.filePointer );
+            }
 
-    /** Second cache memory used during defragmentation. */
-    private byte[] defragCache;
+            read = len;
 
-    /** Index of the next free cached block. */
-    private int nextCacheIndex;
+            if ( len > this.getCache().length &&
+                 this.getFileOperations() instanceof ByteBufferFileOperations )
+            { // Cache cannot hold the data; read directly.
+                this.writeBackRange( this.filePointer, len, false );
+                this.awaitWriteBehind( this.filePointer, len );
 
-    /** Maps blocks to corresponding {@code Node}s. */
-    private final Map root = new TreeMap();
+                synchronized ( this.lock )
+                {
+                    final ByteBufferFileOperations ops =
+                        (ByteBufferFileOperations) this.getFileOperations();
 
-    /** File pointer. */
-    private long filePointer;
+                    int totalRead = 0;
+                    do
+                    {
+                        final int directRead = ops.read(
+                            this.filePointer + totalRead, buf );
 
-    /** Caches the value returned by method {@code getFilePointerBlock}. */
-    private long cachedFilePointerBlock = NO_FILEPOINTERBLOCK;
+                        assert directRead != FileOperations.EOF :
+                            "Unexpected end of file.";
 
-    private long cachedFilePointerBlockStart = FileOperations.EOF;
+                        totalRead += directRead;
+                    }
+                    while ( totalRead < len );
+                }
 
-    private static final long NO_FILEPOINTERBLOCK = Long.MIN_VALUE;
+                this.filePointer += len;
 
-    /** Flags the instance as beeing closed. */
-    private boolean closed;
+                this.getLogger().debug(
+                    this.getReadBypassesCacheMessage(
+                    this.getLocale(),
+                    new Integer( this.getBlockSize() ),
+                    new Integer( this.getCacheBlocks() ),
+                    new Integer( len ) ) );
 
-    /** The number of bytes occupied by one cache block. */
-    private Integer blockSize;
+            }
+            else
+            {
+                while ( len > 0 )
+                {
+                    final long block = this.filePointer / this.getBlockSize();
+                    final int blockOffset =
+                        (int) ( this.filePointer - block * this.getBlockSize() );
 
-    /** The number of cache blocks. */
-    private Integer cacheBlocks;
+                    final Node node = this.getCacheNode( block, false );
+                    final int blockDelta = node.length - blockOffset;
+                    final int copyLength = len > blockDelta
+                                           ? blockDelta
+                                           : len;
 
-    /**
-     * Creates a new {@code CoalescingFileOperations} instance taking the
-     * {@code FileOperations} backing the instance.
-     *
-     * @param fileOperations the {@code FileOperations} backing the instance.
-     *
-     * @throws NullPointerException if {@code fileOperations} is {@code null}.
-     * @throws IOException if reading fails.
-     */
-    public CoalescingFileOperations( final FileOperations fileOperations )
-        throws IOException
-    {
-        super();
+                    buf.put( this.getCache(), node.cacheIndex + blockOffset,
+                             copyLength );
 
-        if ( fileOperations == null )
-        {
-            throw new NullPointerException( "fileOperations" );
+                    len -= copyLength;
+                    this.filePointer += copyLength;
+                }
+            }
         }
 
-        this.fileOperations = fileOperations;
-        this.filePointer = fileOperations.getFilePointer();
+        return read;
     }
 
-    /**
-     * Creates a new {@code CoalescingFileOperations} instance taking the
+    public void write( final ByteBuffer buf ) throws IOException
+    {
+        if ( buf == null )
+        {
+            throw new NullPointerException( "buf" );
+        }
+
+        this.assertNotClosed();
+
+        int len = buf.remaining();
+
+        if ( buf.hasArray() )
+        { // Write from the array of the buffer.
+            this.write( buf.array(), buf.arrayOffset() + buf.position(), len );
+            buf.position( buf.limit() );
+            return;
+        }
+
+        if ( this.filePointer + len > this.getLength() )
+        { // Expand the file of the backing instance.
+            this.setLength( this.filePointer + len, this.filePointer );
+        }
+
+        if ( len > this.getCache().length &&
+             this.getFileOperations() instanceof ByteBufferFileOperations )
+        { // Cache cannot hold the data; write out directly.
+            this.writeBackRange( this.filePointer, len, true );
+            this.awaitWriteBehind( this.filePointer, len );
+
+            this.updateZeroPosition( this.filePointer + len );
+
+            synchronized ( this.lock )
+            {
+                this.updatePrefetch( this.filePointer, buf );
+                ( (ByteBufferFileOperations) this.getFileOperations() ).
+                    write( this.filePointer, buf );
+
+            }
+
+            this.filePointer += len;
+
+            this.getLogger().debug(
+                this.getWriteBypassesCacheMessage(
+                this.getLocale(),
+                new Integer( this.getBlockSize() ),
+                new Integer( this.getCacheBlocks() ),
+                new Integer( len ) ) );
+
+        }
+        else
+        {
+            final long length = this.getLength();
+
+            while ( len > 0 )
+            {
+                final long block = this.filePointer / this.getBlockSize();
+                final long blockStart = block * this.getBlockSize();
+                final int blockOffset = (int) ( this.filePointer - blockStart );
+
+                // Blocks completely overwritten need not be read.
+                final boolean overwrite = blockOffset == 0 &&
+                                          ( len >= this.getBlockSize() ||
+                                            this.filePointer + len >= length );
+
+                final Node node = this.getCacheNode( block, overwrite );
+                final int blockDelta = node.length - blockOffset;
+                final int copyLength = len > blockDelta
+                                       ? blockDelta
+                                       : len;
+
+                this.awaitWriteBehind( node );
+                buf.get( this.getCache(), node.cacheIndex + blockOffset,
+                         copyLength );
+
+                len -= copyLength;
+                this.filePointer += copyLength;
+                this.markDirty( node );
+            }
+
+            if ( this.getHighWaterMark() > 0 &&
+                 this.dirtyCount >= this.getHighWaterMark() )
+            {
+                this.writeBehind();
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * This method reads the data using the cache.
+     */
+    public int read( final long position, final ByteBuffer buf )
+        throws IOException
+    {
+        if ( buf == null )
+        {
+            throw new NullPointerException( "buf" );
+        }
+        if ( position < 0L )
+        {
+            throw new IllegalArgumentException( Long.toString( position ) );
+        }
+
+        final long pointer = this.filePointer;
+
+        try
+        {
+            this.filePointer = position;
+            return this.read( buf );
+        }
+        finally
+        {
+            this.filePointer = pointer;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * This method writes the data to the cache.
+     */
+    public void write( final long position, final ByteBuffer buf )
+        throws IOException
+    {
+        if ( buf == null )
+        {
+            throw new NullPointerException( "buf" );
+        }
+        if ( position < 0L )
+        {
+            throw new IllegalArgumentException( Long.toString( position ) );
+        }
+
+        final long pointer = this.filePointer;
+
+        try
+        {
+            this.filePointer = position;
+            this.write( buf );
+        }
+        finally
+        {
+            this.filePointer = pointer;
+        }
+    }
+
+    //------------------------------------------------ByteBufferFileOperations--
+    //--PrefetchingFileOperations-----------------------------------------------
+
+    /**
+     * {@inheritDoc}
+     * This method waits for any outstanding prefetch to finish and starts
+     * reading up to {@code getBlockSize() * getCacheBlocks()} bytes of the
+     * range in the background. Ranges of blocks all cached are not
+     * prefetched.
+     *
+     * @throws IOException if waiting for an outstanding prefetch is
+     * interrupted or if the instance is closed.
+     */
+    public void prefetch( final long position, final long length )
+        throws IOException
+    {
+        if ( position < 0L )
+        {
+            throw new IllegalArgumentException( Long.toString( position ) );
+        }
+        if ( length < 0L )
+        {
+            throw new IllegalArgumentException( Long.toString( length ) );
+        }
+
+        this.assertNotClosed();
+
+        final long fileLength = this.getLength();
+        long toPrefetch = position < fileLength
+                          ? Math.min( length, fileLength - position )
+                          : 0L;
+
+        if ( toPrefetch > this.getCache().length )
+        {
+            toPrefetch = this.getCache().length;
+        }
+
+        boolean cached = true;
+        final long lastBlock = ( position + toPrefetch - 1L ) /
+                               this.getBlockSize();
+
+        for ( long block = position / this.getBlockSize();
+              cached && block <= lastBlock; block++ )
+        {
+            cached = this.index.get( block ) != null;
+        }
+
+        if ( toPrefetch == 0L || cached )
+        {
+            return;
+        }
+
+        this.awaitPrefetch();
+
+        synchronized ( this.lock )
+        {
+            if ( this.prefetchBuffer == null )
+            {
+                this.prefetchBuffer = this.getMemoryManager().allocateBytes(
+                    this.getCache().length );
+
+            }
+
+            this.prefetchPosition = position;
+            this.prefetchLength = (int) toPrefetch;
+            this.prefetchRead = 0;
+            this.prefetchPending = true;
+        }
+
+        this.getExecutor().executeAsynchronously( new Runnable()
+        {
+
+            public void run()
+            {
+                prefetchRange();
+            }
+
+        } );
+    }
+
+    //-----------------------------------------------PrefetchingFileOperations--
+    //--SparseFileOperations----------------------------------------------------
+
+    /**
+     * {@inheritDoc}
+     * Blocks partly inside the range and cached blocks are zeroed in the
+     * cache. Runs of blocks completely inside the range and not cached are
+     * zeroed by the {@code FileOperations} backing the instance if it
+     * implements {@code SparseFileOperations}.
+     */
+    public void zero( final long position, final long length )
+        throws IOException
+    {
+        if ( position < 0L )
+        {
+            throw new IllegalArgumentException( Long.toString( position ) );
+        }
+        if ( length < 0L )
+        {
+            throw new IllegalArgumentException( Long.toString( length ) );
+        }
+
+        this.assertNotClosed();
+        this.getCache();
+
+        final long oldLength = this.getLength();
+        final long end = position + length;
+
+        if ( end > oldLength )
+        {
+            final long filePointer = this.filePointer;
+            this.setLength( end );
+            this.filePointer = filePointer;
+        }
+
+        final long newLength = this.getLength();
+        final boolean sparse =
+            this.getFileOperations() instanceof SparseFileOperations;
+
+        // The extension of the file holds zeros only.
+        final long zeroEnd = end > oldLength ? oldLength : end;
+
+        long pos = position;
+
+        while ( pos < zeroEnd )
+        {
+            final long block = pos / this.getBlockSize();
+
+            if ( sparse && this.isZeroedCompletely( block, pos, end,
+                                                     newLength ) )
+            { // Zero a run of blocks not cached in the backing instance.
+                long runEnd = pos;
+
+                do
+                {
+                    runEnd = runEnd + this.getBlockSize() < end
+                             ? runEnd + this.getBlockSize()
+                             : end;
+
+                }
+                while ( runEnd < zeroEnd &&
+                        this.isZeroedCompletely( runEnd / this.getBlockSize(),
+                                                 runEnd, end, newLength ) );
+
+                this.awaitWriteBehind( pos, runEnd - pos );
+
+                synchronized ( this.lock )
+                {
+                    this.zeroPrefetch( pos, runEnd - pos );
+                    ( (SparseFileOperations) this.getFileOperations() ).zero(
+                        pos, runEnd - pos );
+
+                }
+
+                pos = runEnd;
+            }
+            else
+            {
+                final long blockStart = block * this.getBlockSize();
+                final int blockOffset = (int) ( pos - blockStart );
+                final long rangeEnd = blockStart + this.getBlockSize() < end
+                                      ? blockStart + this.getBlockSize()
+                                      : end;
+
+                final boolean overwrite =
+                    blockOffset == 0 && ( rangeEnd == newLength ||
+                                          rangeEnd - blockStart ==
+                                          this.getBlockSize() );
+
+                final Node node = this.getCacheNode( block, overwrite );
+
+                this.awaitWriteBehind( node );
+                Arrays.fill( this.getCache(), node.cacheIndex + blockOffset,
+                             node.cacheIndex + (int) ( rangeEnd - blockStart ),
+                             (byte) 0 );
+
+                this.markDirty( node );
+                pos = rangeEnd;
+            }
+        }
+
+        if ( this.getHighWaterMark() > 0 &&
+             this.dirtyCount >= this.getHighWaterMark() )
+        {
+            this.writeBehind();
+        }
+    }
+
+    //----------------------------------------------------SparseFileOperations--
+    //--CoalescingFileOperations------------------------------------------------
+
+    /** Node describing a cache block. */
+    private static final class Node
+    {
+
+        private static final long NO_BLOCK = Long.MIN_VALUE;
+
+        private Node( final int frame, final int cacheIndex )
+        {
+            super();
+            this.frame = frame;
+            this.cacheIndex = cacheIndex;
+        }
+
+        private long block = NO_BLOCK;
+
+        private final int frame;
+
+        private final int cacheIndex;
+
+        private int length;
+
+        private boolean dirty;
+
+        private boolean writeBehind;
+
+    }
+
+    /**
+     * Open-addressed hash table mapping blocks to {@code Node}s.
+     * <p>Keys are primitive {@code long} values so that lookups do not
+     * allocate any objects. The table is sized for a fixed number of entries
+     * and uses linear probing with backward shift deletion.</p>
+     */
+    private static final class BlockIndex
+    {
+
+        /** Blocks of the table. */
+        private final long[] blocks;
+
+        /** Nodes of the table, {@code null} for empty slots. */
+        private final Node[] nodes;
+
+        /** Mask for computing slot indices. */
+        private final int mask;
+
+        private BlockIndex( final long[] blocks )
+        {
+            super();
+            this.blocks = blocks;
+            this.nodes = new Node[ blocks.length ];
+            this.mask = blocks.length - 1;
+        }
+
+        private static int getCapacity( final int entries )
+        {
+            int capacity = 4;
+            while ( capacity < entries * 2 )
+            {
+                capacity <<= 1;
+            }
+
+            return capacity;
+        }
+
+        private int slot( final long block )
+        {
+            final long h = block * 0x9E3779B97F4A7C15L;
+            return (int) ( h ^ ( h >>> 32 ) ) & this.mask;
+        }
+
+        private Node get( final long block )
+        {
+            for ( int i = this.slot( block ); this.nodes[i] != null;
+                  i = ( i + 1 ) & this.mask )
+            {
+                if ( this.blocks[i] == block )
+                {
+                    return this.nodes[i];
+                }
+            }
+
+            return null;
+        }
+
+        private void put( final Node node )
+        {
+            int i = this.slot( node.block );
+            while ( this.nodes[i] != null && this.blocks[i] != node.block )
+            {
+                i = ( i + 1 ) & this.mask;
+            }
+
+            this.blocks[i] = node.block;
+            this.nodes[i] = node;
+        }
+
+        private void remove( final long block )
+        {
+            int i = this.slot( block );
+            while ( this.nodes[i] != null && this.blocks[i] != block )
+            {
+                i = ( i + 1 ) & this.mask;
+            }
+
+            if ( this.nodes[i] != null )
+            {
+                this.nodes[i] = null;
+
+                // Shift back any following entries of the cluster.
+                for ( int j = ( i + 1 ) & this.mask; this.nodes[j] != null;
+                      j = ( j + 1 ) & this.mask )
+                {
+                    final int k = this.slot( this.blocks[j] );
+                    if ( i <= j ? ( i < k && k <= j ) : ( i < k || k <= j ) )
+                    { // Entry is reachable from its slot.
+                        continue;
+                    }
+
+                    this.blocks[i] = this.blocks[j];
+                    this.nodes[i] = this.nodes[j];
+                    this.nodes[j] = null;
+                    i = j;
+                }
+            }
+        }
+
+    }
+
+    /** The {@code FileOperations} backing the instance. */
+    private final FileOperations fileOperations;
+
+    /** Cached blocks. */
+    private byte[] cache;
+
+    /** Nodes of all cache blocks. */
+    private Node[] frames;
+
+    /** Nodes of cache blocks not associated with any block. */
+    private Node[] freeFrames;
+
+    /** Number of elements in {@code freeFrames}. */
+    private int freeFrameCount;
+
+    /** Maps blocks to corresponding {@code Node}s. */
+    private BlockIndex index;
+
+    /** Dirty nodes sorted by block. */
+    private Node[] dirtyNodes;
+
+    /** Number of elements in {@code dirtyNodes}. */
+    private int dirtyCount;
+
+    /** File positions of the ranges of a vectored write of dirty blocks. */
+    private long[] dirtyPositions;
+
+    /** Buffers of the ranges of a vectored write of dirty blocks. */
+    private byte[][] dirtyBuffers;
+
+    /** Offsets of the ranges of a vectored write of dirty blocks. */
+    private int[] dirtyOffsets;
+
+    /** Lengths of the ranges of a vectored write of dirty blocks. */
+    private int[] dirtyLengths;
+
+    /** File pointer. */
+    private long filePointer;
+
+    /**
+     * Position from which the {@code FileOperations} backing the instance is
+     * known to hold zeros only.
+     */
+    private long zeroPosition = Long.MAX_VALUE;
+
+    /** Flags the instance as beeing closed. */
+    private boolean closed;
+
+    /** The number of bytes occupied by one cache block. */
+    private Integer blockSize;
+
+    /** The number of cache blocks. */
+    private Integer cacheBlocks;
+
+    /** Policy selecting blocks to evict. */
+    private BlockEvictionPolicy evictionPolicy;
+
+    /** Number of lookups of a cached block. */
+    private long cacheHits;
+
+    /** Number of lookups of a block not cached. */
+    private long cacheMisses;
+
+    /** Number of blocks evicted. */
+    private long cacheEvictions;
+
+    /** The number of dirty blocks starting a write-behind. */
+    private Integer highWaterMark;
+
+    /** Lock guarding the {@code FileOperations} backing the instance. */
+    private final Object lock = new Object();
+
+    /** Flags a write-behind as outstanding; guarded by {@code lock}. */
+    private boolean writeBehindPending;
+
+    /** Exception thrown by the last write-behind; guarded by {@code lock}. */
+    private Throwable writeBehindFailure;
+
+    /** Buffer holding prefetched data; guarded by {@code lock}. */
+    private byte[] prefetchBuffer;
+
+    /**
+     * Position in the file the prefetched data starts; guarded by
+     * {@code lock}.
+     */
+    private long prefetchPosition;
+
+    /** Number of bytes to prefetch; guarded by {@code lock}. */
+    private int prefetchLength;
+
+    /** Number of bytes prefetched so far; guarded by {@code lock}. */
+    private int prefetchRead;
+
+    /** Flags a prefetch as outstanding; guarded by {@code lock}. */
+    private boolean prefetchPending;
+
+    /** File positions of the runs of the outstanding write-behind. */
+    private long[] writeBehindPositions;
+
+    /** Cache indices of the runs of the outstanding write-behind. */
+    private int[] writeBehindIndices;
+
+    /** Lengths of the runs of the outstanding write-behind. */
+    private int[] writeBehindLengths;
+
+    /** Number of runs of the outstanding write-behind. */
+    private int writeBehindRuns;
+
+    /** Nodes written by the outstanding write-behind. */
+    private Node[] writeBehindNodes;
+
+    /** Number of elements in {@code writeBehindNodes}. */
+    private int writeBehindNodeCount;
+
+    /**
+     * Creates a new {@code CoalescingFileOperations} instance taking the
+     * {@code FileOperations} backing the instance.
+     *
+     * @param fileOperations the {@code FileOperations} backing the instance.
+     *
+     * @throws NullPointerException if {@code fileOperations} is {@code null}.
+     * @throws IOException if reading fails.
+     */
+    public CoalescingFileOperations( final FileOperations fileOperations )
+        throws IOException
+    {
+        super();
+
+        if ( fileOperations == null )
+        {
+            throw new NullPointerException( "fileOperations" );
+        }
+
+        this.fileOperations = fileOperations;
+        this.filePointer = fileOperations.getFilePointer();
+    }
+
+    /**
+     * Creates a new {@code CoalescingFileOperations} instance taking the
      * {@code FileOperations} backing the instance and the number of bytes
      * occupied by one cache block.
      *
-     * @param fileOperations the {@code FileOperations} backing the instance.
-     * @param blockSize the number of bytes occupied by one cache block.
+     * @param fileOperations the {@code FileOperations} backing the instance.
+     * @param blockSize the number of bytes occupied by one cache block.
+     *
+     * @throws NullPointerException if {@code fileOperations} is {@code null}.
+     * @throws IOException if reading fails.
+     */
+    public CoalescingFileOperations( final FileOperations fileOperations,
+                                     final int blockSize ) throws IOException
+    {
+        this( fileOperations );
+        if ( blockSize > 0 )
+        {
+            this.blockSize = new Integer( blockSize );
+        }
+    }
+
+    /**
+     * Creates a new {@code CoalescingFileOperations} instance taking the
+     * {@code FileOperations} backing the instance, the number of bytes
+     * occupied by one cache block and the number of cache blocks.
+     *
+     * @param fileOperations the {@code FileOperations} backing the instance.
+     * @param blockSize the number of bytes occupied by one cache block.
+     * @param cacheBlocks number of cache blocks.
+     *
+     * @throws NullPointerException if {@code fileOperations} is {@code null}.
+     * @throws IOException if reading fails.
+     */
+    public CoalescingFileOperations( final FileOperations fileOperations,
+                                     final int blockSize,
+                                     final int cacheBlocks )
+        throws IOException
+    {
+        this( fileOperations, blockSize );
+        if ( cacheBlocks > 0 )
+        {
+            this.cacheBlocks = new Integer( cacheBlocks );
+        }
+    }
+
+    /**
+     * Creates a new {@code CoalescingFileOperations} instance taking the
+     * {@code FileOperations} backing the instance, the number of bytes
+     * occupied by one cache block, the number of cache blocks and the policy
+     * selecting blocks to evict.
+     *
+     * @param fileOperations the {@code FileOperations} backing the instance.
+     * @param blockSize the number of bytes occupied by one cache block.
+     * @param cacheBlocks number of cache blocks.
+     * @param evictionPolicy the policy selecting blocks to evict or
+     * {@code null} to use the policy configured by property
+     * {@code defaultEvictionPolicy}.
+     *
+     * @throws NullPointerException if {@code fileOperations} is {@code null}.
+     * @throws IOException if reading fails.
+     */
+    public CoalescingFileOperations( final FileOperations fileOperations,
+                                     final int blockSize,
+                                     final int cacheBlocks,
+                                     final BlockEvictionPolicy evictionPolicy )
+        throws IOException
+    {
+        this( fileOperations, blockSize, cacheBlocks );
+        this.evictionPolicy = evictionPolicy;
+    }
+
+    /**
+     * Creates a new {@code CoalescingFileOperations} instance taking the
+     * {@code FileOperations} backing the instance, the number of bytes
+     * occupied by one cache block, the number of cache blocks, the policy
+     * selecting blocks to evict and the number of dirty blocks starting an
+     * asynchronous write-behind.
+     *
+     * @param fileOperations the {@code FileOperations} backing the instance.
+     * @param blockSize the number of bytes occupied by one cache block.
+     * @param cacheBlocks number of cache blocks.
+     * @param evictionPolicy the policy selecting blocks to evict or
+     * {@code null} to use the policy configured by property
+     * {@code defaultEvictionPolicy}.
+     * @param highWaterMark the number of dirty blocks starting an asynchronous
+     * write-behind or {@code 0} to disable write-behind.
+     *
+     * @throws NullPointerException if {@code fileOperations} is {@code null}.
+     * @throws IOException if reading fails.
+     */
+    public CoalescingFileOperations( final FileOperations fileOperations,
+                                     final int blockSize,
+                                     final int cacheBlocks,
+                                     final BlockEvictionPolicy evictionPolicy,
+                                     final int highWaterMark )
+        throws IOException
+    {
+        this( fileOperations, blockSize, cacheBlocks, evictionPolicy );
+        if ( highWaterMark >= 0 )
+        {
+            this.highWaterMark = new Integer( highWaterMark );
+        }
+    }
+
+    /**
+     * Gets the {@code FileOperations} implementation operations are performed
+     * with.
+     *
+     * @return the {@code FileOperations} implementation operations are
+     * performed with.
+     */
+    public FileOperations getFileOperations()
+    {
+        return this.fileOperations;
+    }
+
+    /**
+     * Gets the number of bytes occupied by one cache block.
+     *
+     * @return the number of bytes occupied by one cache block.
+     */
+    public int getBlockSize()
+    {
+        if ( this.blockSize == null )
+        {
+            this.blockSize = this.getDefaultBlockSize();
+        }
+
+        return this.blockSize.intValue();
+    }
+
+    /**
+     * Gets the number of blocks in the cache.
+     *
+     * @return the number of blocks in the cache.
+     */
+    public int getCacheBlocks()
+    {
+        if ( this.cacheBlocks == null )
+        {
+            this.cacheBlocks = this.getDefaultCacheBlocks();
+        }
+
+        return this.cacheBlocks.intValue();
+    }
+
+    /**
+     * Gets the number of dirty blocks starting an asynchronous write-behind.
+     *
+     * @return the number of dirty blocks starting an asynchronous
+     * write-behind or {@code 0} if write-behind is disabled.
+     */
+    public int getHighWaterMark()
+    {
+        if ( this.highWaterMark == null )
+        {
+            this.highWaterMark = this.getDefaultHighWaterMark();
+        }
+
+        return this.highWaterMark.intValue();
+    }
+
+    /**
+     * Gets the policy selecting blocks to evict.
+     *
+     * @return the policy selecting blocks to evict.
+     *
+     * @throws IllegalArgumentException if property
+     * {@code defaultEvictionPolicy} does not denote a supported policy.
+     */
+    public BlockEvictionPolicy getEvictionPolicy()
+    {
+        if ( this.evictionPolicy == null )
+        {
+            final String name = this.getDefaultEvictionPolicy();
+
+            if ( "LRU".equalsIgnoreCase( name ) )
+            {
+                this.evictionPolicy = new LruBlockEvictionPolicy();
+            }
+            else if ( "CLOCK".equalsIgnoreCase( name ) )
+            {
+                this.evictionPolicy = new ClockBlockEvictionPolicy();
+            }
+            else if ( "2Q".equalsIgnoreCase( name ) )
+            {
+                this.evictionPolicy = new TwoQueueBlockEvictionPolicy();
+            }
+            else
+            {
+                throw new IllegalArgumentException( name );
+            }
+        }
+
+        return this.evictionPolicy;
+    }
+
+    /**
+     * Gets the number of times a block has been found in the cache.
+     *
+     * @return the number of cache hits.
+     */
+    public long getCacheHits()
+    {
+        return this.cacheHits;
+    }
+
+    /**
+     * Gets the number of times a block has not been found in the cache.
+     *
+     * @return the number of cache misses.
+     */
+    public long getCacheMisses()
+    {
+        return this.cacheMisses;
+    }
+
+    /**
+     * Gets the number of blocks evicted from the cache to make room for
+     * another block.
+     *
+     * @return the number of evictions.
+     */
+    public long getCacheEvictions()
+    {
+        return this.cacheEvictions;
+    }
+
+    /**
+     * Gets the cache buffer.
+     * <p>This method also initializes the data structures used for managing
+     * the cache blocks.</p>
+     *
+     * @return the cache buffer.
+     */
+    private byte[] getCache()
+    {
+        if ( this.cache == null )
+        {
+            this.cache = this.getMemoryManager().allocateBytes(
+                this.getBlockSize() * this.getCacheBlocks() );
+
+            this.frames = new Node[ this.getCacheBlocks() ];
+            this.freeFrames = new Node[ this.getCacheBlocks() ];
+            this.dirtyNodes = new Node[ this.getCacheBlocks() ];
+            this.index = new BlockIndex( this.getMemoryManager().allocateLongs(
+                BlockIndex.getCapacity( this.getCacheBlocks() ) ) );
+
+            this.getEvictionPolicy().initialize( this.getCacheBlocks() );
+
+            for ( int i = this.frames.length - 1; i >= 0; i-- )
+            {
+                this.frames[i] = new Node( i, i * this.getBlockSize() );
+                this.freeFrames[this.freeFrameCount++] = this.frames[i];
+            }
+        }
+
+        return this.cache;
+    }
+
+    /**
+     * Gets the cache node for a given block.
+     * <p>This method ensures that the returned node is associated with cache
+     * memory holding the data of the block, possibly evicting another block
+     * before reading.</p>
+     *
+     * @param block the block to return the corresponding cache node for.
+     * @param overwrite {@code true} if the data of the block will be
+     * overwritten completely so that it need not be read; {@code false} if the
+     * data of the block needs to be read.
+     *
+     * @return the cache node for {@code block}.
      *
-     * @throws NullPointerException if {@code fileOperations} is {@code null}.
      * @throws IOException if reading fails.
      */
-    public CoalescingFileOperations( final FileOperations fileOperations,
-                                     final int blockSize ) throws IOException
+    private Node getCacheNode( final long block, final boolean overwrite )
+        throws IOException
+    {
+        this.getCache();
+
+        Node node = this.index.get( block );
+
+        if ( node != null )
+        {
+            this.cacheHits++;
+            this.getEvictionPolicy().blockAccessed( node.frame );
+        }
+        else
+        {
+            this.cacheMisses++;
+
+            if ( this.freeFrameCount == 0 )
+            { // Cache cannot hold the block so needs evicting another block.
+                final Node victim =
+                    this.frames[this.getEvictionPolicy().getVictim()];
+
+                assert victim.block != Node.NO_BLOCK :
+                    "Unexpected implementation limit reached.";
+
+                this.writeBack( victim );
+                this.discardNode( victim );
+                this.cacheEvictions++;
+            }
+
+            node = this.freeFrames[--this.freeFrameCount];
+            this.freeFrames[this.freeFrameCount] = null;
+            this.awaitWriteBehind( node );
+            node.block = block;
+            this.index.put( node );
+            this.getEvictionPolicy().blockCached( node.frame, block );
+
+            // Update the length field of the node for the block.
+            final long pos = block * this.getBlockSize();
+            final long delta = this.getLength() - pos;
+
+            assert delta > 0L : "Unexpected end of file.";
+
+            node.length = delta >= this.getBlockSize()
+                          ? this.getBlockSize()
+                          : (int) delta;
+
+            if ( !overwrite && pos >= this.zeroPosition )
+            { // Block holds zeros only.
+                Arrays.fill( this.getCache(), node.cacheIndex,
+                             node.cacheIndex + node.length, (byte) 0 );
+
+            }
+            else if ( !overwrite )
+            { // Read the node's block into cache.
+                this.awaitWriteBehind( pos, node.length );
+
+                synchronized ( this.lock )
+                {
+                    if ( !this.readPrefetched( pos, node ) )
+                    {
+                        int read = FileOperations.EOF;
+                        int totalRead = 0;
+                        this.getFileOperations().setFilePointer( pos );
+
+                        do
+                        {
+                            read = this.getFileOperations().read(
+                                this.getCache(), node.cacheIndex + totalRead,
+                                node.length - totalRead );
+
+                            assert read != FileOperations.EOF :
+                                "Unexpected end of file.";
+
+                            totalRead += read;
+                        }
+                        while ( totalRead < node.length );
+                    }
+                }
+            }
+        }
+
+        return node;
+    }
+
+    /**
+     * Marks a node dirty adding it to the list of dirty nodes sorted by block.
+     *
+     * @param node the node to mark dirty.
+     */
+    private void markDirty( final Node node )
+    {
+        if ( !node.dirty )
+        {
+            int low = 0;
+            int high = this.dirtyCount - 1;
+
+            while ( low <= high )
+            {
+                final int mid = ( low + high ) >>> 1;
+                if ( this.dirtyNodes[mid].block < node.block )
+                {
+                    low = mid + 1;
+                }
+                else
+                {
+                    high = mid - 1;
+                }
+            }
+
+            System.arraycopy( this.dirtyNodes, low, this.dirtyNodes, low + 1,
+                              this.dirtyCount - low );
+
+            this.dirtyNodes[low] = node;
+            this.dirtyCount++;
+            node.dirty = true;
+        }
+    }
+
+    /**
+     * Marks a node clean removing it from the list of dirty nodes.
+     *
+     * @param node the node to mark clean.
+     */
+    private void markClean( final Node node )
+    {
+        if ( node.dirty )
+        {
+            int i = this.dirtyCount - 1;
+            while ( this.dirtyNodes[i] != node )
+            {
+                i--;
+            }
+
+            System.arraycopy( this.dirtyNodes, i + 1, this.dirtyNodes, i,
+                              this.dirtyCount - i - 1 );
+
+            this.dirtyNodes[--this.dirtyCount] = null;
+            node.dirty = false;
+        }
+    }
+
+    /**
+     * Discards the block of a node without writing any changes and returns the
+     * node to the list of free nodes.
+     *
+     * @param node the node to discard.
+     */
+    private void discardNode( final Node node )
+    {
+        this.markClean( node );
+        this.getEvictionPolicy().blockDiscarded( node.frame );
+        this.index.remove( node.block );
+        node.block = Node.NO_BLOCK;
+        node.length = 0;
+        this.freeFrames[this.freeFrameCount++] = node;
+    }
+
+    /**
+     * Writes back the block of a dirty node individually.
+     * <p>Any outstanding write-behind of the node is waited for first so that
+     * a block not written by a failed write-behind is written back.</p>
+     *
+     * @param node the node to write back.
+     *
+     * @throws IOException if writing fails.
+     */
+    private void writeBack( final Node node ) throws IOException
+    {
+        this.awaitWriteBehind( node );
+
+        if ( node.dirty )
+        {
+            final long pos = node.block * this.getBlockSize();
+            this.awaitWriteBehind( pos, node.length );
+            this.updateZeroPosition( pos + node.length );
+
+            synchronized ( this.lock )
+            {
+                this.updatePrefetch( pos, this.getCache(), node.cacheIndex,
+                                     node.length );
+
+                this.getFileOperations().setFilePointer( pos );
+                this.getFileOperations().write(
+                    this.getCache(), node.cacheIndex, node.length );
+
+            }
+
+            this.markClean( node );
+        }
+    }
+
+    /**
+     * Writes back any dirty blocks overlapping a range of the file about to be
+     * accessed without using the cache.
+     *
+     * @param pos the position of the range.
+     * @param len the length of the range.
+     * @param discard {@code true} to also discard the overlapping blocks
+     * because the range is about to be written; {@code false} to keep the
+     * blocks cached.
+     *
+     * @throws IOException if writing fails.
+     */
+    private void writeBackRange( final long pos, final int len,
+                                 final boolean discard ) throws IOException
+    {
+        if ( this.frames != null )
+        {
+            final long firstBlock = pos / this.getBlockSize();
+            final long lastBlock = ( pos + len - 1L ) / this.getBlockSize();
+
+            for ( int i = this.frames.length - 1; i >= 0; i-- )
+            {
+                final Node node = this.frames[i];
+
+                if ( node.block != Node.NO_BLOCK && node.block >= firstBlock &&
+                     node.block <= lastBlock )
+                {
+                    this.writeBack( node );
+
+                    if ( discard )
+                    {
+                        this.discardNode( node );
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes all dirty blocks in runs of contiguous blocks directly from the
+     * cache memory and marks the blocks clean.
+     * <p>A run of contiguous blocks is written with one write as long as the
+     * blocks occupy contiguous cache memory. Otherwise the run is written in
+     * block order with one write per contiguous range of cache memory.</p>
+     *
+     * @throws IOException if writing fails.
+     */
+    private void writeDirtyRuns() throws IOException
+    {
+        int i = 0;
+        while ( i < this.dirtyCount )
+        {
+            final int j = this.getRunEnd( i );
+            final Node first = this.dirtyNodes[i];
+            int length = 0;
+
+            for ( int k = i; k < j; k++ )
+            {
+                length += this.dirtyNodes[k].length;
+            }
+
+            this.updateZeroPosition( first.block * this.getBlockSize() +
+                                     length );
+
+            synchronized ( this.lock )
+            {
+                this.updatePrefetch( first.block * this.getBlockSize(),
+                                     this.getCache(), first.cacheIndex,
+                                     length );
+
+                this.getFileOperations().setFilePointer(
+                    first.block * this.getBlockSize() );
+
+                this.getFileOperations().write(
+                    this.getCache(), first.cacheIndex, length );
+
+            }
+
+            for ( int k = i; k < j; k++ )
+            {
+                this.dirtyNodes[k].dirty = false;
+                this.dirtyNodes[k] = null;
+            }
+
+            i = j;
+        }
+
+        this.dirtyCount = 0;
+    }
+
+    /**
+     * Gets the end of a run of dirty blocks which can be written with one
+     * write directly from the cache memory.
+     *
+     * @param start the index into {@code dirtyNodes} of the first block of
+     * the run.
+     *
+     * @return the index into {@code dirtyNodes} following the last block of
+     * the run.
+     */
+    private int getRunEnd( final int start )
+    {
+        int end = start + 1;
+
+        while ( end < this.dirtyCount &&
+                this.dirtyNodes[end].block ==
+                this.dirtyNodes[end - 1].block + 1L &&
+                this.dirtyNodes[end].cacheIndex ==
+                this.dirtyNodes[end - 1].cacheIndex +
+                this.dirtyNodes[end - 1].length )
+        {
+            end++;
+        }
+
+        return end;
+    }
+
+    /**
+     * Writes all dirty blocks with one vectored write directly from the cache
+     * memory and marks the blocks clean.
+     *
+     * @throws IOException if writing fails.
+     */
+    private void writeDirtyNodesVectored() throws IOException
+    {
+        if ( this.dirtyPositions == null )
+        {
+            this.dirtyPositions = new long[ this.getCacheBlocks() ];
+            this.dirtyBuffers = new byte[ this.getCacheBlocks() ][];
+            this.dirtyOffsets = new int[ this.getCacheBlocks() ];
+            this.dirtyLengths = new int[ this.getCacheBlocks() ];
+        }
+
+        for ( int i = this.dirtyCount - 1; i >= 0; i-- )
+        {
+            final Node node = this.dirtyNodes[i];
+            this.dirtyPositions[i] = node.block * this.getBlockSize();
+            this.dirtyBuffers[i] = this.getCache();
+            this.dirtyOffsets[i] = node.cacheIndex;
+            this.dirtyLengths[i] = node.length;
+            this.updateZeroPosition( this.dirtyPositions[i] + node.length );
+        }
+
+        synchronized ( this.lock )
+        {
+            for ( int i = this.dirtyCount - 1; i >= 0; i-- )
+            {
+                this.updatePrefetch( this.dirtyPositions[i], this.getCache(),
+                                     this.dirtyOffsets[i],
+                                     this.dirtyLengths[i] );
+
+            }
+
+            ( (VectoredFileOperations) this.getFileOperations() ).write(
+                this.dirtyPositions, this.dirtyBuffers, this.dirtyOffsets,
+                this.dirtyLengths, this.dirtyCount );
+
+        }
+
+        for ( int i = this.dirtyCount - 1; i >= 0; i-- )
+        {
+            this.dirtyNodes[i].dirty = false;
+            this.dirtyNodes[i] = null;
+        }
+
+        this.dirtyCount = 0;
+    }
+
+    /**
+     * Starts an asynchronous write-behind of all dirty blocks.
+     * <p>This method waits for any outstanding write-behind to finish, marks
+     * the dirty blocks clean and executes a task writing the runs of
+     * contiguous dirty blocks directly from the cache memory using the
+     * {@code Executor} of the system. The blocks are flagged as being written
+     * so that their cache memory is not changed until the task finished.</p>
+     *
+     * @throws IOException if an outstanding write-behind failed.
+     */
+    private void writeBehind() throws IOException
+    {
+        this.awaitWriteBehind();
+
+        if ( this.writeBehindPositions == null )
+        {
+            this.writeBehindPositions = new long[ this.getCacheBlocks() ];
+            this.writeBehindIndices = new int[ this.getCacheBlocks() ];
+            this.writeBehindLengths = new int[ this.getCacheBlocks() ];
+            this.writeBehindNodes = new Node[ this.getCacheBlocks() ];
+        }
+
+        this.writeBehindRuns = 0;
+
+        int i = 0;
+        while ( i < this.dirtyCount )
+        {
+            final int j = this.getRunEnd( i );
+            final Node first = this.dirtyNodes[i];
+
+            this.writeBehindPositions[this.writeBehindRuns] =
+                first.block * this.getBlockSize();
+
+            this.writeBehindIndices[this.writeBehindRuns] = first.cacheIndex;
+            this.writeBehindLengths[this.writeBehindRuns] = 0;
+
+            for ( int k = i; k < j; k++ )
+            {
+                final Node node = this.dirtyNodes[k];
+
+                this.writeBehindLengths[this.writeBehindRuns] += node.length;
+                this.writeBehindNodes[this.writeBehindNodeCount++] = node;
+                node.writeBehind = true;
+                node.dirty = false;
+                this.dirtyNodes[k] = null;
+            }
+
+            this.updateZeroPosition(
+                this.writeBehindPositions[this.writeBehindRuns] +
+                this.writeBehindLengths[this.writeBehindRuns] );
+
+            this.writeBehindRuns++;
+            i = j;
+        }
+
+        this.dirtyCount = 0;
+
+        synchronized ( this.lock )
+        {
+            this.writeBehindPending = true;
+        }
+
+        this.getExecutor().executeAsynchronously( new Runnable()
+        {
+
+            public void run()
+            {
+                writeRuns();
+            }
+
+        } );
+    }
+
+    /**
+     * Writes the runs of the outstanding write-behind.
+     * <p>This method is executed asynchronously and acquires the lock
+     * guarding the {@code FileOperations} backing the instance for each run
+     * separately.</p>
+     */
+    private void writeRuns()
     {
-        this( fileOperations );
-        if ( blockSize > 0 )
+        Throwable failure = null;
+
+        try
         {
-            this.blockSize = new Integer( blockSize );
+            for ( int i = 0; i < this.writeBehindRuns; i++ )
+            {
+                synchronized ( this.lock )
+                {
+                    this.updatePrefetch( this.writeBehindPositions[i],
+                                         this.cache,
+                                         this.writeBehindIndices[i],
+                                         this.writeBehindLengths[i] );
+
+                    this.getFileOperations().setFilePointer(
+                        this.writeBehindPositions[i] );
+
+                    this.getFileOperations().write(
+                        this.cache, this.writeBehindIndices[i],
+                        this.writeBehindLengths[i] );
+
+                }
+            }
+        }
+        catch ( IOException e )
+        {
+            failure = e;
+        }
+        catch ( RuntimeException e )
+        {
+            failure = e;
+        }
+        finally
+        {
+            synchronized ( this.lock )
+            {
+                this.writeBehindFailure = failure;
+                this.writeBehindPending = false;
+                this.lock.notifyAll();
+            }
         }
     }
 
     /**
-     * Creates a new {@code CoalescingFileOperations} instance taking the
-     * {@code FileOperations} backing the instance, the number of bytes
-     * occupied by one cache block and the number of cache blocks.
-     *
-     * @param fileOperations the {@code FileOperations} backing the instance.
-     * @param blockSize the number of bytes occupied by one cache block.
-     * @param cacheBlocks number of cache blocks.
+     * Waits for any outstanding write-behind to finish.
      *
-     * @throws NullPointerException if {@code fileOperations} is {@code null}.
-     * @throws IOException if reading fails.
+     * @throws IOException if the write-behind failed or waiting is
+     * interrupted.
      */
-    public CoalescingFileOperations( final FileOperations fileOperations,
-                                     final int blockSize,
-                                     final int cacheBlocks )
-        throws IOException
+    private void awaitWriteBehind() throws IOException
     {
-        this( fileOperations, blockSize );
-        if ( cacheBlocks > 0 )
+        this.awaitWriteBehind( 0L, Long.MAX_VALUE );
+        this.releaseWriteBehindNodes();
+
+        synchronized ( this.lock )
         {
-            this.cacheBlocks = new Integer( cacheBlocks );
+            final Throwable failure = this.writeBehindFailure;
+            this.writeBehindFailure = null;
+
+            if ( failure instanceof IOException )
+            {
+                throw (IOException) failure;
+            }
+            if ( failure instanceof RuntimeException )
+            {
+                throw (RuntimeException) failure;
+            }
         }
     }
 
     /**
-     * Gets the {@code FileOperations} implementation operations are performed
-     * with.
+     * Waits for an outstanding write-behind to finish if it writes to a given
+     * range of the file.
      *
-     * @return the {@code FileOperations} implementation operations are
-     * performed with.
+     * @param pos the position of the range.
+     * @param len the length of the range.
+     *
+     * @throws IOException if waiting is interrupted.
      */
-    public FileOperations getFileOperations()
+    private void awaitWriteBehind( final long pos, final long len )
+        throws IOException
     {
-        return this.fileOperations;
+        synchronized ( this.lock )
+        {
+            try
+            {
+                while ( this.writeBehindPending &&
+                        this.isWriteBehindOverlapping( pos, len ) )
+                {
+                    this.lock.wait();
+                }
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException( e.getMessage() );
+            }
+        }
     }
 
     /**
-     * Gets the number of bytes occupied by one cache block.
+     * Waits for an outstanding write-behind to finish if it writes the cache
+     * memory of a given node.
      *
-     * @return the number of bytes occupied by one cache block.
+     * @param node the node about to be changed.
+     *
+     * @throws IOException if waiting is interrupted.
      */
-    public int getBlockSize()
+    private void awaitWriteBehind( final Node node ) throws IOException
     {
-        if ( this.blockSize == null )
+        if ( node.writeBehind )
         {
-            this.blockSize = this.getDefaultBlockSize();
+            this.awaitWriteBehind( 0L, Long.MAX_VALUE );
+            this.releaseWriteBehindNodes();
         }
-
-        return this.blockSize.intValue();
     }
 
     /**
-     * Gets the number of blocks in the cache.
-     *
-     * @return the number of blocks in the cache.
+     * Clears the flags of the nodes written by the last write-behind.
+     * <p>This method must be called after the write-behind finished. If the
+     * write-behind failed, the nodes still holding their blocks are marked
+     * dirty again so that the blocks are written by the next flush.</p>
      */
-    public int getCacheBlocks()
+    private void releaseWriteBehindNodes()
     {
-        if ( this.cacheBlocks == null )
+        final boolean failed;
+
+        synchronized ( this.lock )
         {
-            this.cacheBlocks = this.getDefaultCacheBlocks();
+            failed = this.writeBehindFailure != null;
         }
 
-        return this.cacheBlocks.intValue();
+        for ( int i = this.writeBehindNodeCount - 1; i >= 0; i-- )
+        {
+            final Node node = this.writeBehindNodes[i];
+
+            node.writeBehind = false;
+            this.writeBehindNodes[i] = null;
+
+            if ( failed && node.block != Node.NO_BLOCK )
+            {
+                this.markDirty( node );
+            }
+        }
+
+        this.writeBehindNodeCount = 0;
     }
 
     /**
-     * Gets the cache buffer.
+     * Tests a given range of the file to overlap any run of the outstanding
+     * write-behind.
      *
-     * @return the cache buffer.
+     * @param pos the position of the range.
+     * @param len the length of the range.
+     *
+     * @return {@code true} if the range overlaps a run of the outstanding
+     * write-behind; {@code false} if not.
      */
-    private byte[] getCache()
+    private boolean isWriteBehindOverlapping( final long pos, final long len )
     {
-        if ( this.cache == null )
+        for ( int i = this.writeBehindRuns - 1; i >= 0; i-- )
         {
-            this.cache = this.getMemoryManager().allocateBytes(
-                this.getBlockSize() * this.getCacheBlocks() );
-
+            if ( pos < this.writeBehindPositions[i] +
+                       this.writeBehindLengths[i] &&
+                 this.writeBehindPositions[i] - pos < len )
+            {
+                return true;
+            }
         }
 
-        return this.cache;
+        return false;
     }
 
     /**
-     * Gets the buffer used during defragmentation of the cache.
+     * Copies the data of a block from the prefetched data into the cache.
+     * <p>This method must be called holding {@code lock}. If a prefetch of a
+     * range containing the block is outstanding, this method waits for the
+     * block to be prefetched.</p>
      *
-     * @return the buffer used during defragmentation of the cache.
+     * @param pos the position in the file of the block.
+     * @param node the node to copy the data of the block to.
+     *
+     * @return {@code true} if the data of the block has been copied;
+     * {@code false} if the block needs to be read.
+     *
+     * @throws IOException if waiting is interrupted.
      */
-    private byte[] getDefragCache()
+    private boolean readPrefetched( final long pos, final Node node )
+        throws IOException
     {
-        if ( this.defragCache == null )
+        try
         {
-            this.defragCache = this.getMemoryManager().allocateBytes(
-                this.getBlockSize() * this.getCacheBlocks() );
+            while ( this.prefetchPending && pos >= this.prefetchPosition &&
+                    pos + node.length <= this.prefetchPosition +
+                                         this.prefetchLength &&
+                    pos + node.length > this.prefetchPosition +
+                                        this.prefetchRead )
+            {
+                this.lock.wait();
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException( e.getMessage() );
+        }
+
+        boolean prefetched = false;
+
+        if ( pos >= this.prefetchPosition &&
+             pos + node.length <= this.prefetchPosition + this.prefetchRead )
+        {
+            System.arraycopy( this.prefetchBuffer,
+                              (int) ( pos - this.prefetchPosition ),
+                              this.getCache(), node.cacheIndex, node.length );
 
+            prefetched = true;
         }
 
-        return this.defragCache;
+        return prefetched;
     }
 
     /**
-     * Gets the block pointed to by a given file pointer value.
-     *
-     * @param filePointer the file pointer value for which to return the
-     * corresponding block.
-     *
-     * @return the block pointed to by {@code filePointer}.
+     * Reads the range of the outstanding prefetch.
+     * <p>This method is executed asynchronously and acquires the lock
+     * guarding the {@code FileOperations} backing the instance for each
+     * block of the range separately. Since prefetching is a hint, a failure
+     * just ends the prefetch leaving the reading of the remaining blocks to
+     * the next read of the range.</p>
      */
-    private long getFilePointerBlock( final long filePointer )
+    private void prefetchRange()
     {
-        if ( this.cachedFilePointerBlock == NO_FILEPOINTERBLOCK )
+        try
         {
-            this.cachedFilePointerBlock =
-                ( filePointer / this.getBlockSize() ) -
-                ( ( filePointer % this.getBlockSize() ) / this.getBlockSize() );
-
-            this.cachedFilePointerBlockStart =
-                this.cachedFilePointerBlock * this.getBlockSize();
+            boolean done = false;
 
+            while ( !done )
+            {
+                synchronized ( this.lock )
+                {
+                    final int remaining =
+                        this.prefetchLength - this.prefetchRead;
+
+                    if ( remaining > 0 )
+                    {
+                        this.getFileOperations().setFilePointer(
+                            this.prefetchPosition + this.prefetchRead );
+
+                        final int read = this.getFileOperations().read(
+                            this.prefetchBuffer, this.prefetchRead,
+                            remaining > this.getBlockSize()
+                            ? this.getBlockSize()
+                            : remaining );
+
+                        if ( read == FileOperations.EOF )
+                        {
+                            this.prefetchLength = this.prefetchRead;
+                        }
+                        else
+                        {
+                            this.prefetchRead += read;
+                        }
+
+                        this.lock.notifyAll();
+                    }
+                    else
+                    {
+                        done = true;
+                    }
+                }
+            }
         }
-        else
+        catch ( IOException e )
+        {
+            this.endPrefetch();
+        }
+        catch ( RuntimeException e )
+        {
+            this.endPrefetch();
+        }
+        finally
         {
-            if ( !( filePointer >= this.cachedFilePointerBlockStart &&
-                    filePointer <= this.cachedFilePointerBlockStart +
-                                   this.getBlockSize() ) )
+            synchronized ( this.lock )
             {
-                this.cachedFilePointerBlock =
-                    ( filePointer / this.getBlockSize() ) -
-                    ( ( filePointer % this.getBlockSize() ) /
-                      this.getBlockSize() );
-
-                this.cachedFilePointerBlockStart =
-                    this.cachedFilePointerBlock * this.getBlockSize();
-
+                this.prefetchPending = false;
+                this.lock.notifyAll();
             }
         }
+    }
 
-        return this.cachedFilePointerBlock;
+    /** Ends the outstanding prefetch keeping the data prefetched so far. */
+    private void endPrefetch()
+    {
+        synchronized ( this.lock )
+        {
+            this.prefetchLength = this.prefetchRead;
+        }
     }
 
     /**
-     * Gets the cache nodes for all blocks involved in a read or write operation
-     * of a given length for a given file pointer value.
+     * Waits for any outstanding prefetch to finish.
      *
-     * @param filePointer the file pointer value to use for computing the
-     * number of involved blocks for a read or write operation of
-     * {@code length}.
-     * @param length the length of the operation to perform.
+     * @throws IOException if waiting is interrupted.
+     */
+    private void awaitPrefetch() throws IOException
+    {
+        synchronized ( this.lock )
+        {
+            try
+            {
+                while ( this.prefetchPending )
+                {
+                    this.lock.wait();
+                }
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException( e.getMessage() );
+            }
+        }
+    }
+
+    /**
+     * Updates any prefetched data of a range of the file about to be written
+     * to the {@code FileOperations} backing the instance.
+     * <p>This method must be called holding {@code lock}.</p>
      *
-     * @return an array of cache nodes for all blocks involved in the
-     * operation in the order corresponding to the operation's needs.
+     * @param pos the position of the range.
+     * @param buf the buffer holding the data to write.
+     * @param off the offset into {@code buf} of the data to write.
+     * @param len the number of bytes to write.
      */
-    private Node[] getCacheNodesForLength( final long filePointer,
-                                           final int length )
+    private void updatePrefetch( final long pos, final byte[] buf,
+                                 final int off, final int len )
     {
-        final long startingBlock = this.getFilePointerBlock( filePointer );
-        final long endingBlock =
-            this.getFilePointerBlock( filePointer + length );
+        if ( pos < this.prefetchPosition + this.prefetchRead &&
+             pos + len > this.prefetchPosition )
+        { // Prefetched data needs updating.
+            final long start = pos > this.prefetchPosition
+                               ? pos
+                               : this.prefetchPosition;
+
+            final long end = pos + len < this.prefetchPosition +
+                                         this.prefetchRead
+                             ? pos + len
+                             : this.prefetchPosition + this.prefetchRead;
+
+            System.arraycopy( buf, off + (int) ( start - pos ),
+                              this.prefetchBuffer,
+                              (int) ( start - this.prefetchPosition ),
+                              (int) ( end - start ) );
 
-        assert endingBlock - startingBlock <= Integer.MAX_VALUE :
-            "Unexpected implementation limit reached.";
+        }
+    }
 
-        final Node[] nodes =
-            new Node[ (int) ( endingBlock - startingBlock + 1L ) ];
+    /**
+     * Updates any prefetched data with the remaining bytes of a buffer about
+     * to be written to the {@code FileOperations} backing the instance.
+     * <p>This method must be called holding {@code lock}.</p>
+     *
+     * @param pos the position in the file the data is written to.
+     * @param buf the buffer holding the data to write.
+     */
+    private void updatePrefetch( final long pos, final ByteBuffer buf )
+    {
+        final int len = buf.remaining();
+
+        if ( pos < this.prefetchPosition + this.prefetchRead &&
+             pos + len > this.prefetchPosition )
+        { // Prefetched data needs updating.
+            final long start = pos > this.prefetchPosition
+                               ? pos
+                               : this.prefetchPosition;
+
+            final long end = pos + len < this.prefetchPosition +
+                                         this.prefetchRead
+                             ? pos + len
+                             : this.prefetchPosition + this.prefetchRead;
+
+            final ByteBuffer src = buf.duplicate();
+            src.position( buf.position() + (int) ( start - pos ) );
+            src.get( this.prefetchBuffer,
+                     (int) ( start - this.prefetchPosition ),
+                     (int) ( end - start ) );
 
-        if ( startingBlock == endingBlock )
-        {
-            nodes[0] = this.getCacheNode( startingBlock );
         }
-        else
-        {
-            int i;
-            long block;
+    }
 
-            for ( block = startingBlock, i = 0; block <= endingBlock;
-                  block++, i++ )
-            {
-                nodes[i] = this.getCacheNode( block );
-            }
-        }
+    /**
+     * Zeros any prefetched data of a range about to be zeroed in the
+     * {@code FileOperations} backing the instance.
+     * <p>This method must be called holding {@code lock}.</p>
+     *
+     * @param pos the position in the file of the range.
+     * @param len the length of the range.
+     */
+    private void zeroPrefetch( final long pos, final long len )
+    {
+        if ( pos < this.prefetchPosition + this.prefetchRead &&
+             pos + len > this.prefetchPosition )
+        { // Prefetched data needs updating.
+            final long start = pos > this.prefetchPosition
+                               ? pos
+                               : this.prefetchPosition;
+
+            final long end = pos + len < this.prefetchPosition +
+                                         this.prefetchRead
+                             ? pos + len
+                             : this.prefetchPosition + this.prefetchRead;
+
+            Arrays.fill( this.prefetchBuffer,
+                         (int) ( start - this.prefetchPosition ),
+                         (int) ( end - this.prefetchPosition ), (byte) 0 );
 
-        return nodes;
+        }
     }
 
     /**
-     * Fills the cache for a given set of cache nodes.
-     * <p>This method ensures that each given node gets associated with
-     * corresponding cache memory possibly flushing the cache before
-     * reading.</p>
+     * Sets the length of the file zeroing the extension up to a position.
      *
-     * @param nodes the nodes to fill the cache for.
+     * @param newLength the new length of the file.
+     * @param zeroEnd the position up to which an extension of the file not
+     * known to hold zeros is zeroed. Data following that position is
+     * written after the length has been set.
      *
-     * @throws NullPointerException if {@code nodes} is {@code null}.
-     * @throws IOException if reading fails.
+     * @throws IOException if setting the length fails.
      */
-    private void fillCache( final Node[] nodes ) throws IOException
+    private void setLength( final long newLength, final long zeroEnd )
+        throws IOException
     {
-        if ( nodes == null )
-        {
-            throw new NullPointerException( "nodes" );
-        }
+        this.assertNotClosed();
 
-        // Calculate the amount of bytes needed to be available in the cache
-        // and flush the cache if nodes would not fit.
-        long neededBytes = 0L;
-        for ( int i = nodes.length - 1; i >= 0; i-- )
-        {
-            if ( nodes[i].cacheIndex == Node.NO_CACHEINDEX )
-            { // Node's block needs to be read.
-                neededBytes += this.getBlockSize();
-            }
-        }
+        // Runs written beyond the new length would extend the file again.
+        this.awaitWriteBehind( newLength, Long.MAX_VALUE - newLength );
+
+        // Update the length of any cache nodes involved in the operation.
+        final long oldLength = this.getLength();
 
-        if ( this.nextCacheIndex + neededBytes > this.getCache().length )
-        { // Cache cannot hold the needed blocks so needs flushing.
-            this.flush();
+        if ( newLength > oldLength && oldLength < this.zeroPosition &&
+             this.getFileOperations() instanceof SparseFileOperations )
+        { // The extension of the file holds zeros only.
+            this.zeroPosition = oldLength;
         }
 
-        // Associate each node with cache memory for nodes not already
-        // associated with cache memory and fill these nodes' cache memory.
-        for ( int i = nodes.length - 1; i >= 0; i-- )
+        if ( newLength != oldLength && this.frames != null )
         {
-            if ( nodes[i].cacheIndex == Node.NO_CACHEINDEX &&
-                 this.nextCacheIndex < this.getCache().length )
-            { // Node is not associated with any cache memory and can be read.
+            for ( int i = this.frames.length - 1; i >= 0; i-- )
+            {
+                final Node node = this.frames[i];
 
-                // Update the length field of the node for the block checking
-                // for a possible end of file condition.
-                final long pos = nodes[i].block * this.getBlockSize();
-                if ( pos > this.getLength() )
-                { // Node is behind the end of the file.
-                    nodes[i].length = FileOperations.EOF;
+                if ( node.block == Node.NO_BLOCK )
+                {
                     continue;
                 }
-                else if ( pos + this.getBlockSize() > this.getLength() )
-                {
-                    final long delta = this.getLength() - pos;
 
-                    assert delta <= Integer.MAX_VALUE :
-                        "Unexpected implementation limit reached.";
-
-                    nodes[i].length = (int) delta;
+                final long startPos = node.block * this.getBlockSize();
+                if ( startPos >= newLength )
+                { // Discard the block.
+                    this.discardNode( node );
                 }
                 else
-                {
-                    nodes[i].length = this.getBlockSize();
-                }
+                { // Update the blocks length.
+                    final long blockDelta = newLength - startPos;
+                    final int length = blockDelta >= this.getBlockSize()
+                                       ? this.getBlockSize()
+                                       : (int) blockDelta;
 
-                // Associated the node with cache memory.
-                nodes[i].cacheIndex = this.nextCacheIndex;
-                this.nextCacheIndex += this.getBlockSize();
+                    if ( length > node.length )
+                    { // Extended portion of the file is zero.
+                        Arrays.fill( this.getCache(),
+                                     node.cacheIndex + node.length,
+                                     node.cacheIndex + length, (byte) 0 );
 
-                // Read the node's block into cache.
-                int read = FileOperations.EOF;
-                int totalRead = 0;
-                int toRead = nodes[i].length;
-                this.getFileOperations().setFilePointer( pos );
+                    }
 
-                do
-                {
-                    read = this.getFileOperations().read(
-                        this.getCache(), nodes[i].cacheIndex + totalRead,
-                        toRead );
+                    node.length = length;
+                }
+            }
+        }
+
+        synchronized ( this.lock )
+        {
+            this.getFileOperations().setLength( newLength );
 
-                    assert read != FileOperations.EOF :
-                        "Unexpected end of file.";
+            if ( zeroEnd > oldLength && newLength > oldLength &&
+                 !( this.getFileOperations() instanceof SparseFileOperations ) )
+            { // The contents of the extension are undefined.
+                this.writeZeros( oldLength, ( zeroEnd < newLength
+                                              ? zeroEnd
+                                              : newLength ) - oldLength );
 
-                    totalRead += read;
-                    toRead -= read;
+            }
+
+            if ( this.prefetchPosition + this.prefetchLength > newLength )
+            { // Data beyond the new length must not be prefetched.
+                this.prefetchLength = newLength > this.prefetchPosition
+                                      ? (int) ( newLength -
+                                                this.prefetchPosition )
+                                      : 0;
 
+                if ( this.prefetchRead > this.prefetchLength )
+                {
+                    this.prefetchRead = this.prefetchLength;
                 }
-                while ( totalRead < nodes[i].length );
             }
         }
+
+        if ( this.filePointer > newLength )
+        {
+            this.filePointer = newLength;
+        }
     }
 
-    /** Defragments the cache. */
-    private void defragmentCache()
+    /**
+     * Writes zeros to a range of the {@code FileOperations} backing the
+     * instance.
+     * <p>This method must be called holding {@code lock}.</p>
+     *
+     * @param position the position of the range to zero.
+     * @param length the number of bytes to zero.
+     *
+     * @throws IOException if writing fails.
+     */
+    private void writeZeros( final long position, long length )
+        throws IOException
     {
-        int defragIndex = 0;
+        final byte[] zeros = SharedBufferPool.getDefault().borrowBuffer(
+            length < this.getBlockSize() ? (int) length : this.getBlockSize() );
 
-        // Step through the cached blocks and defragment the cache.
-        for ( final Iterator it = this.root.entrySet().iterator();
-              it.hasNext(); )
+        try
         {
-            final Map.Entry entry = (Map.Entry) it.next();
-            final long block = ( (Long) entry.getKey() ).longValue();
-            final Node current = (Node) entry.getValue();
+            Arrays.fill( zeros, (byte) 0 );
+            this.getFileOperations().setFilePointer( position );
 
-            // Skip any end of file nodes and nodes not associated with memory.
-            if ( current.length == FileOperations.EOF ||
-                 current.cacheIndex == Node.NO_CACHEINDEX )
+            while ( length > 0L )
             {
-                continue;
+                final int len = length < zeros.length
+                                ? (int) length
+                                : zeros.length;
+
+                this.getFileOperations().write( zeros, 0, len );
+                length -= len;
             }
+        }
+        finally
+        {
+            SharedBufferPool.getDefault().returnBuffer( zeros );
+        }
+    }
+
+    /**
+     * Tests a block not to be cached and to be zeroed completely by a range.
+     *
+     * @param block the block to test.
+     * @param pos the position of the range inside the block.
+     * @param end the end of the range.
+     * @param fileLength the length of the file.
+     *
+     * @return {@code true} if {@code block} is not cached and the range
+     * covers all data of the block; {@code false} if not.
+     */
+    private boolean isZeroedCompletely( final long block, final long pos,
+                                        final long end, final long fileLength )
+    {
+        final long blockStart = block * this.getBlockSize();
+        final long blockEnd = blockStart + this.getBlockSize() < fileLength
+                              ? blockStart + this.getBlockSize()
+                              : fileLength;
 
-            assert current.block == block : "Unexpected cache state.";
+        return pos == blockStart && end >= blockEnd &&
+               this.index.get( block ) == null;
 
-            System.arraycopy( this.getCache(), current.cacheIndex,
-                              this.getDefragCache(), defragIndex,
-                              this.getBlockSize() );
+    }
 
-            current.cacheIndex = defragIndex;
-            defragIndex += this.getBlockSize();
+    /**
+     * Updates the position from which the {@code FileOperations} backing the
+     * instance is known to hold zeros only for data about to be written to
+     * the backing instance.
+     *
+     * @param end the end of the range about to be written.
+     */
+    private void updateZeroPosition( final long end )
+    {
+        if ( end > this.zeroPosition )
+        {
+            this.zeroPosition = end;
         }
+    }
 
-        System.arraycopy( this.getDefragCache(), 0, this.getCache(), 0,
-                          this.getCache().length );
-
+    /** Discards all cached blocks without writing any changes. */
+    private void discardAll()
+    {
+        if ( this.frames != null )
+        {
+            for ( int i = this.frames.length - 1; i >= 0; i-- )
+            {
+                if ( this.frames[i].block != Node.NO_BLOCK )
+                {
+                    this.discardNode( this.frames[i] );
+                }
+            }
+        }
     }
 
     /**
-     * Gets the cache node for a given block.
+     * Checks the ranges of a vectored operation.
      *
-     * @param block the block to return the corresponding cache node for.
+     * @param positions the file positions of the ranges.
+     * @param bufs the buffers of the ranges.
+     * @param offsets the offsets into the buffers of the ranges.
+     * @param lengths the lengths of the ranges.
+     * @param count the number of ranges.
      *
-     * @return the cache node for {@code block}.
+     * @throws NullPointerException if {@code positions}, {@code bufs},
+     * {@code offsets}, {@code lengths} or any of the first {@code count}
+     * elements of {@code bufs} is {@code null}.
+     * @throws IndexOutOfBoundsException if {@code count} is negative or
+     * greater than the length of any of the arrays, or if a range does not
+     * fit into its buffer.
+     * @throws IllegalArgumentException if a position is negative.
      */
-    private Node getCacheNode( final long block )
+    private void assertValidRanges( final long[] positions,
+                                    final byte[][] bufs,
+                                    final int[] offsets,
+                                    final int[] lengths,
+                                    final int count )
     {
-        final Long key = new Long( block );
-        Node node = (Node) this.root.get( key );
-        if ( node == null )
+        if ( positions == null )
         {
-            node = new Node();
-            node.block = block;
-            this.root.put( key, node );
+            throw new NullPointerException( "positions" );
+        }
+        if ( bufs == null )
+        {
+            throw new NullPointerException( "bufs" );
+        }
+        if ( offsets == null )
+        {
+            throw new NullPointerException( "offsets" );
+        }
+        if ( lengths == null )
+        {
+            throw new NullPointerException( "lengths" );
+        }
+        if ( count < 0 || count > positions.length || count > bufs.length ||
+             count > offsets.length || count > lengths.length )
+        {
+            throw new IndexOutOfBoundsException( Integer.toString( count ) );
         }
 
-        return node;
+        for ( int i = count - 1; i >= 0; i-- )
+        {
+            if ( bufs[i] == null )
+            {
+                throw new NullPointerException( "bufs[" + i + "]" );
+            }
+            if ( offsets[i] < 0 )
+            {
+                throw new IndexOutOfBoundsException(
+                    Integer.toString( offsets[i] ) );
+
+            }
+            if ( lengths[i] < 0 )
+            {
+                throw new IndexOutOfBoundsException(
+                    Integer.toString( lengths[i] ) );
+
+            }
+            if ( offsets[i] + lengths[i] > bufs[i].length )
+            {
+                throw new IndexOutOfBoundsException(
+                    Integer.toString( offsets[i] + lengths[i] ) );
+
+            }
+            if ( positions[i] < 0L )
+            {
+                throw new IllegalArgumentException(
+                    Long.toString( positions[i] ) );
+
+            }
+        }
     }
 
     /**
@@ -0,0 +1,916 @@
+/*
+ *  jDTAUS Core Utilities
+ *  Copyright (C) 2005 Christian Schulte
+ *  <cs@schulte.it>
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+package org.jdtaus.core.io.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import org.jdtaus.core.container.ContainerFactory;
+import org.jdtaus.core.io.FileOperations;
+import org.jdtaus.core.lang.spi.MemoryManager;
+
+/**
+ * Block compressing {@code FileOperations} implementation.
+ * <p>This implementation stores the data of a file in blocks of property
+ * {@code blockSize} bytes (defaults to {@code 65536} - 64 kB) compressed
+ * using a {@link java.util.zip.Deflater} of property
+ * {@code compressionLevel} (defaults to {@code 1} - best speed) in the
+ * {@code FileOperations} backing the instance. Blocks not getting smaller
+ * when compressed are stored uncompressed. Blocks never written to are not
+ * stored at all. An index holding the position of each block in the backing
+ * file is kept in memory so that any position of the file can be read and
+ * written without decompressing any other block. The block last accessed is
+ * held decompressed in memory and compressed again when another block is
+ * accessed.</p>
+ *
+ * <p>The backing file starts with a header holding the block size, the
+ * length of the file and the position of the index. The index follows the
+ * compressed blocks and is written by method {@code flush()}. A block
+ * growing beyond the space it was stored in is moved to the end of the
+ * backing file. The space it occupied before is not reused. The backing file
+ * is consistent only after method {@code flush()} or {@code close()}
+ * returned.</p>
+ *
+ * <p><b>Note:</b><br>
+ * This implementation is not thread-safe and concurrent changes to the
+ * underlying {@code FileOperations} implementation are not supported.</p>
+ *
+ * @author <a href="mailto:cs@schulte.it">Christian Schulte</a>
+ * @version $JDTAUS$
+ */
+public final class CompressedFileOperations implements FlushableFileOperations
+{
+    //--Dependencies------------------------------------------------------------
+
+// <editor-fold defaultstate="collapsed" desc=" Generated Code ">//GEN-BEGIN:jdtausDependencies
+    // This section is managed by jdtaus-container-mojo.
+
+    /**
+     * Gets the configured <code>MemoryManager</code> implementation.
+     *
+     * @return The configured <code>MemoryManager</code> implementation.
+     */
+    private MemoryManager getMemoryManager()
+    {
+        return (MemoryManager) ContainerFactory.getContainer().
+            getDependency( this, "MemoryManager" );
+
+    }
+
+    /**
+     * Gets the configured <code>Locale</code> implementation.
+     *
+     * @return The configured <code>Locale</code> implementation.
+     */
+    private Locale getLocale()
+    {
+        return (Locale) ContainerFactory.getContainer().
+            getDependency( this, "Locale" );
+
+    }
+
+// </editor-fold>//GEN-END:jdtausDependencies
+
+    //------------------------------------------------------------Dependencies--
+    //--Properties--------------------------------------------------------------
+
+// <editor-fold defaultstate="collapsed" desc=" Generated Code ">//GEN-BEGIN:jdtausProperties
+    // This section is managed by jdtaus-container-mojo.
+
+    /**
+     * Gets the value of property <code>defaultBlockSize</code>.
+     *
+     * @return Default number of bytes of one uncompressed block.
+     */
+    private java.lang.Integer getDefaultBlockSize()
+    {
+        return (java.lang.Integer) ContainerFactory.getContainer().
+            getProperty( this, "defaultBlockSize" );
+
+    }
+
+    /**
+     * Gets the value of property <code>defaultCompressionLevel</code>.
+     *
+     * @return Default compression level from 0 (no compression) to 9 (best compression).
+     */
+    private java.lang.Integer getDefaultCompressionLevel()
+    {
+        return (java.lang.Integer) ContainerFactory.getContainer().
+            getProperty( this, "defaultCompressionLevel" );
+
+    }
+
+// </editor-fold>//GEN-END:jdtausProperties
+
+    //--------------------------------------------------------------Properties--
+    //--FileOperations----------------------------------------------------------
+
+    public long getLength() throws IOException
+    {
+        this.assertNotClosed();
+
+        return this.length;
+    }
+
+    public void setLength( final long newLength ) throws IOException
+    {
+        if ( newLength < 0L )
+        {
+            throw new IllegalArgumentException( Long.toString( newLength ) );
+        }
+
+        this.assertNotClosed();
+
+        final long count = ( newLength + this.blockSize - 1L ) / this.blockSize;
+
+        if ( count > Integer.MAX_VALUE / INDEX_ENTRY_SIZE )
+        {
+            throw new IllegalArgumentException( Long.toString( newLength ) );
+        }
+
+        if ( newLength < this.length )
+        {
+            if ( this.currentBlock >= count )
+            { // Block got truncated.
+                this.currentBlock = NO_BLOCK;
+                this.dirty = false;
+            }
+
+            final int tail = (int) ( newLength % this.blockSize );
+
+            if ( tail > 0 )
+            { // Data beyond the new length must read as zero when growing.
+                this.loadBlock( (int) count - 1, false );
+                Arrays.fill( this.block, tail, this.blockSize, (byte) 0 );
+                this.dirty = true;
+            }
+        }
+
+        this.ensureIndexCapacity( (int) count );
+
+        for ( int i = this.blockCount; i < count; i++ )
+        { // Blocks not stored read as zero.
+            this.positions[i] = 0L;
+            this.capacities[i] = 0;
+            this.lengths[i] = 0;
+        }
+
+        this.blockCount = (int) count;
+        this.length = newLength;
+        this.indexDirty = true;
+
+        if ( this.filePointer > newLength )
+        {
+            this.filePointer = newLength;
+        }
+    }
+
+    public long getFilePointer() throws IOException
+    {
+        this.assertNotClosed();
+
+        return this.filePointer;
+    }
+
+    public void setFilePointer( final long pos ) throws IOException
+    {
+        if ( pos < 0L )
+        {
+            throw new IllegalArgumentException( Long.toString( pos ) );
+        }
+
+        this.assertNotClosed();
+
+        this.filePointer = pos;
+    }
+
+    public int read( final byte[] buf, int off, int len ) throws IOException
+    {
+        if ( buf == null )
+        {
+            throw new NullPointerException( "buf" );
+        }
+        if ( off < 0 )
+        {
+            throw new IndexOutOfBoundsException( Integer.toString( off ) );
+        }
+        if ( len < 0 )
+        {
+            throw new IndexOutOfBoundsException( Integer.toString( len ) );
+        }
+        if ( off + len > buf.length )
+        {
+            throw new IndexOutOfBoundsException( Integer.toString( off + len ) );
+        }
+
+        this.assertNotClosed();
+
+        int read = FileOperations.EOF;
+
+        if ( len == 0 )
+        {
+            read = 0;
+        }
+        else if ( this.filePointer < this.length )
+        {
+            if ( len > this.length - this.filePointer )
+            {
+                len = (int) ( this.length - this.filePointer );
+            }
+
+            read = len;
+
+            while ( len > 0 )
+            {
+                final int index = (int) ( this.filePointer / this.blockSize );
+                final int blockOffset =
+                    (int) ( this.filePointer - (long) index * this.blockSize );
+
+                final int chunk = len > this.blockSize - blockOffset
+                                  ? this.blockSize - blockOffset
+                                  : len;
+
+                this.loadBlock( index, false );
+                System.arraycopy( this.block, blockOffset, buf, off, chunk );
+
+                off += chunk;
+                len -= chunk;
+                this.filePointer += chunk;
+            }
+        }
+
+        return read;
+    }
+
+    public void write( final byte[] buf, int off, int len ) throws IOException
+    {
+        if ( buf == null )
+        {
+            throw new NullPointerException( "buf" );
+        }
+        if ( off < 0 )
+        {
+            throw new IndexOutOfBoundsException( Integer.toString( off ) );
+        }
+        if ( len < 0 )
+        {
+            throw new IndexOutOfBoundsException( Integer.toString( len ) );
+        }
+        if ( off + len > buf.length )
+        {
+            throw new IndexOutOfBoundsException( Integer.toString( off + len ) );
+        }
+
+        this.assertNotClosed();
+
+        if ( this.filePointer + len > this.length )
+        {
+            this.setLength( this.filePointer + len );
+        }
+
+        while ( len > 0 )
+        {
+            final int index = (int) ( this.filePointer / this.blockSize );
+            final int blockOffset =
+                (int) ( this.filePointer - (long) index * this.blockSize );
+
+            final int chunk = len > this.blockSize - blockOffset
+                              ? this.blockSize - blockOffset
+                              : len;
+
+            // Blocks completely overwritten need not be decompressed.
+            this.loadBlock( index, chunk == this.blockSize );
+            System.arraycopy( buf, off, this.block, blockOffset, chunk );
+            this.dirty = true;
+
+            off += chunk;
+            len -= chunk;
+            this.filePointer += chunk;
+        }
+    }
+
+    public void read( final OutputStream out ) throws IOException
+    {
+        if ( out == null )
+        {
+            throw new NullPointerException( "out" );
+        }
+
+        this.assertNotClosed();
+
+        this.filePointer = 0L;
+
+        for ( int i = 0; i < this.blockCount; i++ )
+        {
+            final int chunk = this.length - this.filePointer > this.blockSize
+                              ? this.blockSize
+                              : (int) ( this.length - this.filePointer );
+
+            this.loadBlock( i, false );
+            out.write( this.block, 0, chunk );
+            this.filePointer += chunk;
+        }
+    }
+
+    public void write( final InputStream in ) throws IOException
+    {
+        if ( in == null )
+        {
+            throw new NullPointerException( "in" );
+        }
+
+        this.assertNotClosed();
+
+        int read;
+        final byte[] buf = this.getMemoryManager().
+            allocateBytes( this.blockSize );
+
+        while ( ( read = in.read( buf, 0, buf.length ) ) != FileOperations.EOF )
+        {
+            this.write( buf, 0, read );
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * Flushes the instance and closes the {@code FileOperations}
+     * implementation backing the instance.
+     *
+     * @throws IOException if flushing or closing the {@code FileOperations}
+     * implementation backing the instance fails, or if the instance already
+     * is closed.
+     */
+    public void close() throws IOException
+    {
+        this.assertNotClosed();
+
+        this.flush();
+        this.deflater.end();
+        this.inflater.end();
+        this.getFileOperations().close();
+        this.closed = true;
+    }
+
+    //----------------------------------------------------------FileOperations--
+    //--FlushableFileOperations-------------------------------------------------
+
+    /**
+     * {@inheritDoc}
+     * This method compresses the block held in memory, if it got changed,
+     * writes the index and the header to the {@code FileOperations} backing
+     * the instance and calls its {@code flush()} method if it implements
+     * {@code FlushableFileOperations}.
+     *
+     * @throws IOException if writing fails or if the instance is closed.
+     */
+    public void flush() throws IOException
+    {
+        this.assertNotClosed();
+
+        this.writeBlock();
+
+        if ( this.indexDirty )
+        {
+            final ByteBuffer index = ByteBuffer.wrap(
+                this.getMemoryManager().allocateBytes(
+                this.blockCount * INDEX_ENTRY_SIZE ) );
+
+            for ( int i = 0; i < this.blockCount; i++ )
+            {
+                index.putLong( this.positions[i] );
+                index.putInt( this.capacities[i] );
+                index.putInt( this.lengths[i] );
+            }
+
+            this.writeBacking( this.dataEnd, index.array(), 0,
+                               index.capacity() );
+
+            final ByteBuffer header = ByteBuffer.allocate( HEADER_SIZE );
+            header.putInt( MAGIC );
+            header.putInt( this.blockSize );
+            header.putLong( this.length );
+            header.putLong( this.dataEnd );
+            header.putInt( this.blockCount );
+
+            this.writeBacking( 0L, header.array(), 0, HEADER_SIZE );
+            this.getFileOperations().setLength(
+                this.dataEnd + index.capacity() );
+
+            this.indexDirty = false;
+        }
+
+        if ( this.getFileOperations() instanceof FlushableFileOperations )
+        {
+            ( (FlushableFileOperations) this.getFileOperations() ).flush();
+        }
+    }
+
+    //-------------------------------------------------FlushableFileOperations--
+    //--CompressedFileOperations------------------------------------------------
+
+    /** Identifies files written by this class. */
+    private static final int MAGIC = 0x4A44435A;
+
+    /** Number of bytes of the header of the backing file. */
+    private static final int HEADER_SIZE = 32;
+
+    /** Number of bytes of one entry of the index. */
+    private static final int INDEX_ENTRY_SIZE = 16;
+
+    /** Value of {@code currentBlock} if no block is held in memory. */
+    private static final int NO_BLOCK = -1;
+
+    /** {@code FileOperations} backing the instance. */
+    private final FileOperations fileOperations;
+
+    /** Number of bytes of one uncompressed block. */
+    private int blockSize;
+
+    /** Compressor of the instance. */
+    private final Deflater deflater;
+
+    /** Decompressor of the instance. */
+    private final Inflater inflater;
+
+    /** Positions of the blocks in the backing file. */
+    private long[] positions;
+
+    /** Number of bytes reserved for the blocks in the backing file. */
+    private int[] capacities;
+
+    /**
+     * Number of bytes of the blocks in the backing file. A negative value
+     * denotes an uncompressed block, {@code 0} denotes a block not stored.
+     */
+    private int[] lengths;
+
+    /** Number of blocks of the file. */
+    private int blockCount;
+
+    /** Position in the backing file new blocks are written to. */
+    private long dataEnd = HEADER_SIZE;
+
+    /** Flags the index as having changed. */
+    private boolean indexDirty;
+
+    /** Uncompressed data of the block held in memory. */
+    private byte[] block;
+
+    /** Buffer for compressed data. */
+    private byte[] compressed;
+
+    /** Index of the block held in memory or {@code NO_BLOCK}. */
+    private int currentBlock = NO_BLOCK;
+
+    /** Flags the block held in memory as having changed. */
+    private boolean dirty;
+
+    /** Length of the file. */
+    private long length;
+
+    /** File pointer. */
+    private long filePointer;
+
+    /** Flags the instance as beeing closed. */
+    private boolean closed;
+
+    /**
+     * Creates a new {@code CompressedFileOperations} instance taking the
+     * {@code FileOperations} backing the instance.
+     *
+     * @param fileOperations the {@code FileOperations} backing the instance.
+     *
+     * @throws NullPointerException if {@code fileOperations} is {@code null}.
+     * @throws IOException if reading the header or the index of the backing
+     * file fails or if the backing file is not empty and was not written by
+     * this class.
+     */
+    public CompressedFileOperations( final FileOperations fileOperations )
+        throws IOException
+    {
+        this( fileOperations, 0, -1 );
+    }
+
+    /**
+     * Creates a new {@code CompressedFileOperations} instance taking the
+     * {@code FileOperations} backing the instance, the number of bytes of one
+     * block and the compression level to use.
+     * <p>The block size of a file is defined when the file is created. If the
+     * backing file is not empty, the block size of that file is used.</p>
+     *
+     * @param fileOperations the {@code FileOperations} backing the instance.
+     * @param blockSize the number of bytes of one uncompressed block.
+     * @param compressionLevel the compression level from {@code 0} (no
+     * compression) to {@code 9} (best compression).
+     *
+     * @throws NullPointerException if {@code fileOperations} is {@code null}.
+     * @throws IOException if reading the header or the index of the backing
+     * file fails or if the backing file is not empty and was not written by
+     * this class.
+     */
+    public CompressedFileOperations( final FileOperations fileOperations,
+                                     final int blockSize,
+                                     final int compressionLevel )
+        throws IOException
+    {
+        super();
+
+        if ( fileOperations == null )
+        {
+            throw new NullPointerException( "fileOperations" );
+        }
+
+        this.fileOperations = fileOperations;
+        this.blockSize = blockSize > 0
+                         ? blockSize
+                         : this.getDefaultBlockSize().intValue();
+
+        this.deflater = new Deflater(
+            compressionLevel >= 0 && compressionLevel <= 9
+            ? compressionLevel
+            : this.getDefaultCompressionLevel().intValue() );
+
+        this.inflater = new Inflater();
+
+        if ( fileOperations.getLength() > 0L )
+        {
+            this.readIndex();
+        }
+        else
+        {
+            this.positions = new long[ 0 ];
+            this.capacities = new int[ 0 ];
+            this.lengths = new int[ 0 ];
+            this.indexDirty = true;
+        }
+
+        this.block = this.getMemoryManager().allocateBytes( this.blockSize );
+        this.compressed = this.getMemoryManager().
+            allocateBytes( this.blockSize );
+
+    }
+
+    /**
+     * Gets the {@code FileOperations} implementation operations are performed
+     * with.
+     *
+     * @return the {@code FileOperations} implementation operations are
+     * performed with.
+     */
+    public FileOperations getFileOperations()
+    {
+        return this.fileOperations;
+    }
+
+    /**
+     * Gets the number of bytes of one uncompressed block.
+     *
+     * @return the number of bytes of one uncompressed block.
+     */
+    public int getBlockSize()
+    {
+        return this.blockSize;
+    }
+
+    /**
+     * Reads the header and the index of the backing file.
+     *
+     * @throws IOException if reading fails or if the backing file was not
+     * written by this class.
+     */
+    private void readIndex() throws IOException
+    {
+        final byte[] buf = new byte[ HEADER_SIZE ];
+        this.readBacking( 0L, buf, 0, HEADER_SIZE );
+
+        final ByteBuffer header = ByteBuffer.wrap( buf );
+        final int magic = header.getInt();
+        final int size = header.getInt();
+        final long len = header.getLong();
+        final long indexPosition = header.getLong();
+        final int count = header.getInt();
+
+        if ( magic != MAGIC || size <= 0 || len < 0L ||
+             indexPosition < HEADER_SIZE || count < 0 ||
+             count != ( len + size - 1L ) / size ||
+             count > Integer.MAX_VALUE / INDEX_ENTRY_SIZE )
+        {
+            throw new IOException( this.getIllegalFileFormatMessage(
+                this.getLocale() ) );
+
+        }
+
+        final ByteBuffer index = ByteBuffer.wrap(
+            this.getMemoryManager().allocateBytes( count * INDEX_ENTRY_SIZE ) );
+
+        this.readBacking( indexPosition, index.array(), 0, index.capacity() );
+
+        this.blockSize = size;
+        this.length = len;
+        this.dataEnd = indexPosition;
+        this.blockCount = count;
+        this.positions = new long[ count ];
+        this.capacities = new int[ count ];
+        this.lengths = new int[ count ];
+
+        for ( int i = 0; i < count; i++ )
+        {
+            this.positions[i] = index.getLong();
+            this.capacities[i] = index.getInt();
+            this.lengths[i] = index.getInt();
+        }
+    }
+
+    /**
+     * Increases the capacity of the index, if necessary, to ensure that it
+     * can hold at least the number of blocks specified by the minimum
+     * capacity argument.
+     *
+     * @param minimumCapacity the minimum number of blocks to ensure.
+     */
+    private void ensureIndexCapacity( final int minimumCapacity )
+    {
+        if ( this.positions.length < minimumCapacity )
+        {
+            final int newCapacity =
+                this.positions.length * 2 >= minimumCapacity
+                ? this.positions.length * 2
+                : minimumCapacity;
+
+            final long[] newPositions = new long[ newCapacity ];
+            final int[] newCapacities = new int[ newCapacity ];
+            final int[] newLengths = new int[ newCapacity ];
+
+            System.arraycopy( this.positions, 0, newPositions, 0,
+                              this.blockCount );
+
+            System.arraycopy( this.capacities, 0, newCapacities, 0,
+                              this.blockCount );
+
+            System.arraycopy( this.lengths, 0, newLengths, 0,
+                              this.blockCount );
+
+            this.positions = newPositions;
+            this.capacities = newCapacities;
+            this.lengths = newLengths;
+        }
+    }
+
+    /**
+     * Makes a block the block held in memory. The block held in memory
+     * before is compressed and written to the backing file if it got
+     * changed.
+     *
+     * @param index the index of the block to hold in memory.
+     * @param overwrite {@code true} if the block will be overwritten
+     * completely so that it need not be decompressed.
+     *
+     * @throws IOException if reading or writing fails.
+     */
+    private void loadBlock( final int index, final boolean overwrite )
+        throws IOException
+    {
+        if ( this.currentBlock != index )
+        {
+            this.writeBlock();
+
+            final int len = this.lengths[index];
+
+            if ( overwrite || len == 0 )
+            {
+                Arrays.fill( this.block, (byte) 0 );
+            }
+            else if ( len < 0 )
+            { // Block stored uncompressed.
+                this.readBacking( this.positions[index], this.block, 0, -len );
+            }
+            else
+            {
+                this.readBacking( this.positions[index], this.compressed, 0,
+                                  len );
+
+                try
+                {
+                    this.inflater.reset();
+                    this.inflater.setInput( this.compressed, 0, len );
+
+                    int inflated = 0;
+                    while ( inflated < this.blockSize &&
+                            !this.inflater.finished() )
+                    {
+                        final int n = this.inflater.inflate(
+                            this.block, inflated, this.blockSize - inflated );
+
+                        if ( n == 0 && ( this.inflater.needsInput() ||
+                                         this.inflater.needsDictionary() ) )
+                        {
+                            break;
+                        }
+
+                        inflated += n;
+                    }
+
+                    if ( inflated != this.blockSize )
+                    {
+                        throw new IOException( this.getIllegalFileFormatMessage(
+                            this.getLocale() ) );
+
+                    }
+                }
+                catch ( DataFormatException e )
+                {
+                    final IOException ioe = new IOException(
+                        this.getIllegalFileFormatMessage( this.getLocale() ) );
+
+                    ioe.initCause( e );
+                    throw ioe;
+                }
+            }
+
+            this.currentBlock = index;
+        }
+    }
+
+    /**
+     * Compresses the block held in memory and writes it to the backing file
+     * if it got changed.
+     *
+     * @throws IOException if writing fails.
+     */
+    private void writeBlock() throws IOException
+    {
+        if ( this.dirty )
+        {
+            final int index = this.currentBlock;
+
+            this.deflater.reset();
+            this.deflater.setInput( this.block, 0, this.blockSize );
+            this.deflater.finish();
+
+            int len = 0;
+            while ( !this.deflater.finished() && len < this.blockSize )
+            {
+                len += this.deflater.deflate( this.compressed, len,
+                                              this.blockSize - len );
+
+            }
+
+            final byte[] data;
+
+            if ( this.deflater.finished() && len < this.blockSize )
+            {
+                data = this.compressed;
+            }
+            else
+            { // Compressed data is not smaller than the block.
+                data = this.block;
+                len = this.blockSize;
+            }
+
+            if ( len > this.capacities[index] )
+            { // Block does not fit into its space.
+                this.positions[index] = this.dataEnd;
+                this.capacities[index] = len;
+                this.dataEnd += len;
+            }
+
+            this.writeBacking( this.positions[index], data, 0, len );
+            this.lengths[index] = data == this.block ? -len : len;
+            this.indexDirty = true;
+            this.dirty = false;
+        }
+    }
+
+    /**
+     * Reads bytes from the backing file.
+     *
+     * @param pos the position of the backing file to read from.
+     * @param buf the buffer to read into.
+     * @param off the offset into {@code buf} to start reading at.
+     * @param len the number of bytes to read.
+     *
+     * @throws IOException if reading fails or if the backing file does not
+     * hold {@code len} bytes at {@code pos}.
+     */
+    private void readBacking( final long pos, final byte[] buf, final int off,
+                              final int len ) throws IOException
+    {
+        this.getFileOperations().setFilePointer( pos );
+
+        int totalRead = 0;
+        while ( totalRead < len )
+        {
+            final int read = this.getFileOperations().read(
+                buf, off + totalRead, len - totalRead );
+
+            if ( read == FileOperations.EOF )
+            {
+                throw new IOException( this.getIllegalFileFormatMessage(
+                    this.getLocale() ) );
+
+            }
+
+            totalRead += read;
+        }
+    }
+
+    /**
+     * Writes bytes to the backing file.
+     *
+     * @param pos the position of the backing file to write to.
+     * @param buf the buffer holding the bytes to write.
+     * @param off the offset into {@code buf} to start writing at.
+     * @param len the number of bytes to write.
+     *
+     * @throws IOException if writing fails.
+     */
+    private void writeBacking( final long pos, final byte[] buf,
+                               final int off, final int len )
+        throws IOException
+    {
+        this.getFileOperations().setFilePointer( pos );
+        this.getFileOperations().write( buf, off, len );
+    }
+
+    /**
+     * Checks that the instance is not closed.
+     *
+     * @throws IOException if the instance is closed.
+     */
+    private void assertNotClosed() throws IOException
+    {
+        if ( this.closed )
+        {
+            throw new IOException( this.getAlreadyClosedMessage(
+                this.getLocale() ) );
+
+        }
+    }
+
+    //------------------------------------------------CompressedFileOperations--
+    //--Messages----------------------------------------------------------------
+
+// <editor-fold defaultstate="collapsed" desc=" Generated Code ">//GEN-BEGIN:jdtausMessages
+    // This section is managed by jdtaus-container-mojo.
+
+    /**
+     * Gets the text of message <code>alreadyClosed</code>.
+     * <blockquote><pre>Instanz geschlossen - keine E/A-Operationen möglich.</pre></blockquote>
+     * <blockquote><pre>Instance closed - cannot perform I/O.</pre></blockquote>
+     *
+     * @param locale The locale of the message instance to return.
+     *
+     * @return Message stating that an instance is already closed.
+     */
+    private String getAlreadyClosedMessage( final Locale locale )
+    {
+        return ContainerFactory.getContainer().
+            getMessage( this, "alreadyClosed", locale, null );
+
+    }
+
+    /**
+     * Gets the text of message <code>illegalFileFormat</code>.
+     * <blockquote><pre>Ungültiges Dateiformat.</pre></blockquote>
+     * <blockquote><pre>Illegal file format.</pre></blockquote>
+     *
+     * @param locale The locale of the message instance to return.
+     *
+     * @return Message stating that a file does not have the expected format.
+     */
+    private String getIllegalFileFormatMessage( final Locale locale )
+    {
+        return ContainerFactory.getContainer().
+            getMessage( this, "illegalFileFormat", locale, null );
+
+    }
+
+// </editor-fold>//GEN-END:jdtausMessages
+
+    //----------------------------------------------------------------Messages--
+}
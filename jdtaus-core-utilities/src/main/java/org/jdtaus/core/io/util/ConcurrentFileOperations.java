@@ -0,0 +1,1008 @@
+/*
+ *  jDTAUS Core Utilities
+ *  Copyright (C) 2005 Christian Schulte
+ *  <cs@schulte.it>
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+package org.jdtaus.core.io.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Locale;
+import org.jdtaus.core.container.ContainerFactory;
+import org.jdtaus.core.io.FileOperations;
+import org.jdtaus.core.lang.spi.MemoryManager;
+
+/**
+ * Thread-safe {@code FileOperations} wrapper.
+ * <p>This implementation maintains a file pointer per thread so that
+ * multiple threads can use the same instance concurrently. Every read and
+ * write is performed at an explicit position of the file while holding a
+ * lock for the range of the file it touches. The file is divided into
+ * stripes of property {@code stripeSize} bytes (defaults to {@code 65536} -
+ * 64 kB) mapped onto property {@code stripeCount} locks (defaults to
+ * {@code 64}). Reads hold the locks of the stripes they touch shared so that
+ * any number of threads can read the file in parallel. Writes hold the locks
+ * of the stripes they touch exclusively so that writers only block readers
+ * and writers of the same stripes. Operations changing the length of the
+ * file hold all locks exclusively.</p>
+ *
+ * <p>If the {@code FileOperations} backing the instance are a
+ * {@code FileChannelFileOperations} or {@code RandomAccessFileOperations}
+ * instance, reads and writes not changing the length of the file are
+ * performed using the positional methods of the {@code FileChannel} of the
+ * file in parallel. Otherwise operations are performed on the backing
+ * instance one after the other while still holding the range locks.</p>
+ *
+ * <p>A {@code StructuredFileOperations} instance backed by an instance of
+ * this class can be used to read and write blocks from multiple threads
+ * concurrently as long as no blocks are inserted or deleted.</p>
+ *
+ * <p><b>Note:</b><br>
+ * Concurrent changes to the underlying {@code FileOperations} implementation
+ * are not supported.</p>
+ *
+ * @author <a href="mailto:cs@schulte.it">Christian Schulte</a>
+ * @version $JDTAUS$
+ */
+public final class ConcurrentFileOperations implements ByteBufferFileOperations
+{
+    //--Dependencies------------------------------------------------------------
+
+// <editor-fold defaultstate="collapsed" desc=" Generated Code ">//GEN-BEGIN:jdtausDependencies
+    // This section is managed by jdtaus-container-mojo.
+
+    /**
+     * Gets the configured <code>MemoryManager</code> implementation.
+     *
+     * @return The configured <code>MemoryManager</code> implementation.
+     */
+    private MemoryManager getMemoryManager()
+    {
+        return (MemoryManager) ContainerFactory.getContainer().
+            getDependency( this, "MemoryManager" );
+
+    }
+
+    /**
+     * Gets the configured <code>Locale</code> implementation.
+     *
+     * @return The configured <code>Locale</code> implementation.
+     */
+    private Locale getLocale()
+    {
+        return (Locale) ContainerFactory.getContainer().
+            getDependency( this, "Locale" );
+
+    }
+
+// </editor-fold>//GEN-END:jdtausDependencies
+
+    //------------------------------------------------------------Dependencies--
+    //--Properties--------------------------------------------------------------
+
+// <editor-fold defaultstate="collapsed" desc=" Generated Code ">//GEN-BEGIN:jdtausProperties
+    // This section is managed by jdtaus-container-mojo.
+
+    /**
+     * Gets the value of property <code>defaultStripeSize</code>.
+     *
+     * @return Default number of bytes of one stripe of the file.
+     */
+    private java.lang.Integer getDefaultStripeSize()
+    {
+        return (java.lang.Integer) ContainerFactory.getContainer().
+            getProperty( this, "defaultStripeSize" );
+
+    }
+
+    /**
+     * Gets the value of property <code>defaultStripeCount</code>.
+     *
+     * @return Default number of locks stripes are mapped onto.
+     */
+    private java.lang.Integer getDefaultStripeCount()
+    {
+        return (java.lang.Integer) ContainerFactory.getContainer().
+            getProperty( this, "defaultStripeCount" );
+
+    }
+
+// </editor-fold>//GEN-END:jdtausProperties
+
+    //--------------------------------------------------------------Properties--
+    //--FileOperations----------------------------------------------------------
+
+    public long getLength() throws IOException
+    {
+        synchronized ( this.lock )
+        {
+            this.assertNotClosed();
+
+            if ( this.length == NO_LENGTH )
+            {
+                this.length = this.getFileOperations().getLength();
+            }
+
+            return this.length;
+        }
+    }
+
+    public void setLength( final long newLength ) throws IOException
+    {
+        if ( newLength < 0L )
+        {
+            throw new IllegalArgumentException( Long.toString( newLength ) );
+        }
+
+        this.assertNotClosed();
+        this.lockAll();
+
+        try
+        {
+            synchronized ( this.lock )
+            {
+                this.getFileOperations().setLength( newLength );
+                this.length = newLength;
+            }
+        }
+        finally
+        {
+            this.unlockAll();
+        }
+
+        final long[] pointer = this.getPointer();
+
+        if ( pointer[0] > newLength )
+        {
+            pointer[0] = newLength;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * The file pointer is maintained separately for each thread.
+     */
+    public long getFilePointer() throws IOException
+    {
+        this.assertNotClosed();
+
+        return this.getPointer()[0];
+    }
+
+    /**
+     * {@inheritDoc}
+     * The file pointer is maintained separately for each thread.
+     */
+    public void setFilePointer( final long pos ) throws IOException
+    {
+        if ( pos < 0L )
+        {
+            throw new IllegalArgumentException( Long.toString( pos ) );
+        }
+
+        this.assertNotClosed();
+
+        this.getPointer()[0] = pos;
+    }
+
+    public int read( final byte[] buf, final int off, final int len )
+        throws IOException
+    {
+        if ( buf == null )
+        {
+            throw new NullPointerException( "buf" );
+        }
+        if ( off < 0 )
+        {
+            throw new IndexOutOfBoundsException( Integer.toString( off ) );
+        }
+        if ( len < 0 )
+        {
+            throw new IndexOutOfBoundsException( Integer.toString( len ) );
+        }
+        if ( off + len > buf.length )
+        {
+            throw new IndexOutOfBoundsException( Integer.toString( off + len ) );
+        }
+
+        return this.read( ByteBuffer.wrap( buf, off, len ) );
+    }
+
+    public void write( final byte[] buf, final int off, final int len )
+        throws IOException
+    {
+        if ( buf == null )
+        {
+            throw new NullPointerException( "buf" );
+        }
+        if ( off < 0 )
+        {
+            throw new IndexOutOfBoundsException( Integer.toString( off ) );
+        }
+        if ( len < 0 )
+        {
+            throw new IndexOutOfBoundsException( Integer.toString( len ) );
+        }
+        if ( off + len > buf.length )
+        {
+            throw new IndexOutOfBoundsException( Integer.toString( off + len ) );
+        }
+
+        this.write( ByteBuffer.wrap( buf, off, len ) );
+    }
+
+    public void read( final OutputStream out ) throws IOException
+    {
+        if ( out == null )
+        {
+            throw new NullPointerException( "out" );
+        }
+
+        this.assertNotClosed();
+        this.lockAll();
+
+        try
+        {
+            synchronized ( this.lock )
+            {
+                this.getFileOperations().read( out );
+                this.getPointer()[0] =
+                    this.getFileOperations().getFilePointer();
+
+            }
+        }
+        finally
+        {
+            this.unlockAll();
+        }
+    }
+
+    public void write( final InputStream in ) throws IOException
+    {
+        if ( in == null )
+        {
+            throw new NullPointerException( "in" );
+        }
+
+        this.assertNotClosed();
+        this.lockAll();
+
+        try
+        {
+            synchronized ( this.lock )
+            {
+                final long[] pointer = this.getPointer();
+
+                this.getFileOperations().setFilePointer( pointer[0] );
+                this.getFileOperations().write( in );
+                pointer[0] = this.getFileOperations().getFilePointer();
+                this.length = NO_LENGTH;
+            }
+        }
+        finally
+        {
+            this.unlockAll();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * Waits for all reads and writes to finish and closes the
+     * {@code FileOperations} implementation backing the instance.
+     *
+     * @throws IOException if closing the {@code FileOperations}
+     * implementation backing the instance fails, or if the instance already
+     * is closed.
+     */
+    public void close() throws IOException
+    {
+        this.assertNotClosed();
+        this.lockAll();
+
+        try
+        {
+            synchronized ( this.lock )
+            {
+                this.assertNotClosed();
+                this.getFileOperations().close();
+                this.closed = true;
+            }
+        }
+        finally
+        {
+            this.unlockAll();
+        }
+    }
+
+    //----------------------------------------------------------FileOperations--
+    //--ByteBufferFileOperations------------------------------------------------
+
+    public int read( final ByteBuffer buf ) throws IOException
+    {
+        final long[] pointer = this.getPointer();
+        final int read = this.read( pointer[0], buf );
+
+        if ( read > 0 )
+        {
+            pointer[0] += read;
+        }
+
+        return read;
+    }
+
+    public void write( final ByteBuffer buf ) throws IOException
+    {
+        if ( buf == null )
+        {
+            throw new NullPointerException( "buf" );
+        }
+
+        final long[] pointer = this.getPointer();
+        final int len = buf.remaining();
+
+        this.write( pointer[0], buf );
+        pointer[0] += len;
+    }
+
+    public int read( final long position, final ByteBuffer buf )
+        throws IOException
+    {
+        if ( buf == null )
+        {
+            throw new NullPointerException( "buf" );
+        }
+        if ( position < 0L )
+        {
+            throw new IllegalArgumentException( Long.toString( position ) );
+        }
+
+        this.assertNotClosed();
+
+        final int len = buf.remaining();
+
+        if ( len == 0 )
+        {
+            return 0;
+        }
+
+        this.lockRange( position, len, false );
+
+        try
+        {
+            final FileChannel channel = this.getFileChannel();
+
+            if ( channel != null )
+            {
+                return channel.read( buf, position );
+            }
+
+            synchronized ( this.lock )
+            {
+                return this.readBacking( position, buf );
+            }
+        }
+        finally
+        {
+            this.unlockRange( position, len, false );
+        }
+    }
+
+    public void write( final long position, final ByteBuffer buf )
+        throws IOException
+    {
+        if ( buf == null )
+        {
+            throw new NullPointerException( "buf" );
+        }
+        if ( position < 0L )
+        {
+            throw new IllegalArgumentException( Long.toString( position ) );
+        }
+
+        this.assertNotClosed();
+
+        final int len = buf.remaining();
+
+        if ( len == 0 )
+        {
+            return;
+        }
+
+        if ( position + len <= this.getLength() )
+        {
+            this.lockRange( position, len, true );
+
+            try
+            {
+                final FileChannel channel = this.getFileChannel();
+
+                // The length may have changed before the range got locked.
+                if ( position + len <= this.getLength() )
+                {
+                    if ( channel != null )
+                    {
+                        long pos = position;
+
+                        while ( buf.hasRemaining() )
+                        {
+                            pos += channel.write( buf, pos );
+                        }
+                    }
+                    else
+                    {
+                        synchronized ( this.lock )
+                        {
+                            this.writeBacking( position, buf );
+                        }
+                    }
+
+                    return;
+                }
+            }
+            finally
+            {
+                this.unlockRange( position, len, true );
+            }
+        }
+
+        // Write extends the file.
+        this.lockAll();
+
+        try
+        {
+            synchronized ( this.lock )
+            {
+                this.writeBacking( position, buf );
+                this.length = NO_LENGTH;
+            }
+        }
+        finally
+        {
+            this.unlockAll();
+        }
+    }
+
+    //------------------------------------------------ByteBufferFileOperations--
+    //--ConcurrentFileOperations------------------------------------------------
+
+    /** Lock for a stripe of the file. */
+    private static final class StripeLock
+    {
+
+        /** Number of threads holding the lock shared. */
+        private int readers;
+
+        /** Flags the lock as being held exclusively. */
+        private boolean writer;
+
+        /** Number of threads waiting to hold the lock exclusively. */
+        private int waitingWriters;
+
+        /**
+         * Acquires the lock.
+         *
+         * @param exclusive {@code true} to acquire the lock exclusively;
+         * {@code false} to acquire the lock shared.
+         *
+         * @throws InterruptedIOException if the current thread is interrupted
+         * while waiting for the lock.
+         */
+        private synchronized void lock( final boolean exclusive )
+            throws InterruptedIOException
+        {
+            try
+            {
+                if ( exclusive )
+                {
+                    this.waitingWriters++;
+
+                    try
+                    {
+                        while ( this.writer || this.readers > 0 )
+                        {
+                            this.wait();
+                        }
+                    }
+                    finally
+                    {
+                        this.waitingWriters--;
+                    }
+
+                    this.writer = true;
+                }
+                else
+                { // Waiting writers take precedence over new readers.
+                    while ( this.writer || this.waitingWriters > 0 )
+                    {
+                        this.wait();
+                    }
+
+                    this.readers++;
+                }
+            }
+            catch ( InterruptedException e )
+            {
+                this.notifyAll();
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException( e.getMessage() );
+            }
+        }
+
+        /**
+         * Releases the lock.
+         *
+         * @param exclusive {@code true} if the lock is held exclusively;
+         * {@code false} if the lock is held shared.
+         */
+        private synchronized void unlock( final boolean exclusive )
+        {
+            if ( exclusive )
+            {
+                this.writer = false;
+            }
+            else
+            {
+                this.readers--;
+            }
+
+            this.notifyAll();
+        }
+
+    }
+
+    /** {@code FileOperations} backing the instance. */
+    private final FileOperations fileOperations;
+
+    /** {@code FileChannel} of the file backing the instance or {@code null}. */
+    private final FileChannel fileChannel;
+
+    /** Locks of the stripes of the file. */
+    private final StripeLock[] stripeLocks;
+
+    /** Indices of all locks in ascending order. */
+    private final int[] allIndices;
+
+    /** Number of bytes of one stripe. */
+    private final int stripeSize;
+
+    /** Lock guarding the backing instance and the length of the file. */
+    private final Object lock = new Object();
+
+    /** File pointers of the threads using the instance. */
+    private final ThreadLocal filePointers = new ThreadLocal();
+
+    /** File pointer of the backing instance when the instance got created. */
+    private final long initialFilePointer;
+
+    /** Length of the file. */
+    private long length = NO_LENGTH;
+
+    private static final long NO_LENGTH = Long.MIN_VALUE;
+
+    /** Flags the instance as beeing closed. */
+    private boolean closed;
+
+    /**
+     * Creates a new {@code ConcurrentFileOperations} instance taking the
+     * {@code FileOperations} backing the instance.
+     *
+     * @param fileOperations the {@code FileOperations} backing the instance.
+     *
+     * @throws NullPointerException if {@code fileOperations} is {@code null}.
+     * @throws IOException if getting the file pointer of
+     * {@code fileOperations} fails.
+     */
+    public ConcurrentFileOperations( final FileOperations fileOperations )
+        throws IOException
+    {
+        this( fileOperations, 0, 0 );
+    }
+
+    /**
+     * Creates a new {@code ConcurrentFileOperations} instance taking the
+     * {@code FileOperations} backing the instance, the number of bytes of one
+     * stripe of the file and the number of locks stripes are mapped onto.
+     *
+     * @param fileOperations the {@code FileOperations} backing the instance.
+     * @param stripeSize the number of bytes of one stripe of the file.
+     * @param stripeCount the number of locks stripes are mapped onto.
+     *
+     * @throws NullPointerException if {@code fileOperations} is {@code null}.
+     * @throws IOException if getting the file pointer of
+     * {@code fileOperations} fails.
+     */
+    public ConcurrentFileOperations( final FileOperations fileOperations,
+                                     final int stripeSize,
+                                     final int stripeCount )
+        throws IOException
+    {
+        super();
+
+        if ( fileOperations == null )
+        {
+            throw new NullPointerException( "fileOperations" );
+        }
+
+        this.fileOperations = fileOperations;
+        this.initialFilePointer = fileOperations.getFilePointer();
+        this.stripeSize = stripeSize > 0
+                          ? stripeSize
+                          : this.getDefaultStripeSize().intValue();
+
+        this.stripeLocks = new StripeLock[ stripeCount > 0
+                                           ? stripeCount
+                                           : this.getDefaultStripeCount().
+                                           intValue() ];
+
+        this.allIndices = new int[ this.stripeLocks.length ];
+
+        for ( int i = this.stripeLocks.length - 1; i >= 0; i-- )
+        {
+            this.stripeLocks[i] = new StripeLock();
+            this.allIndices[i] = i;
+        }
+
+        if ( fileOperations instanceof FileChannelFileOperations )
+        {
+            this.fileChannel = ( (FileChannelFileOperations) fileOperations ).
+                getFileChannel();
+
+        }
+        else if ( fileOperations instanceof RandomAccessFileOperations &&
+                  ( (RandomAccessFileOperations) fileOperations ).
+                  getRandomAccessFile() != null )
+        {
+            this.fileChannel = ( (RandomAccessFileOperations) fileOperations ).
+                getRandomAccessFile().getChannel();
+
+        }
+        else
+        {
+            this.fileChannel = null;
+        }
+    }
+
+    /**
+     * Gets the {@code FileOperations} implementation operations are performed
+     * with.
+     *
+     * @return the {@code FileOperations} implementation operations are
+     * performed with.
+     */
+    public FileOperations getFileOperations()
+    {
+        return this.fileOperations;
+    }
+
+    /**
+     * Gets the number of bytes of one stripe of the file.
+     *
+     * @return the number of bytes of one stripe of the file.
+     */
+    public int getStripeSize()
+    {
+        return this.stripeSize;
+    }
+
+    /**
+     * Gets the number of locks stripes are mapped onto.
+     *
+     * @return the number of locks stripes are mapped onto.
+     */
+    public int getStripeCount()
+    {
+        return this.stripeLocks.length;
+    }
+
+    /**
+     * Gets the channel reads and writes are performed with in parallel.
+     *
+     * @return the {@code FileChannel} of the file backing the instance or
+     * {@code null} if operations need to be performed on the backing instance
+     * one after the other.
+     */
+    private FileChannel getFileChannel()
+    {
+        return this.fileChannel;
+    }
+
+    /**
+     * Gets the file pointer of the current thread.
+     *
+     * @return an array holding the file pointer of the current thread at
+     * index {@code 0}.
+     */
+    private long[] getPointer()
+    {
+        long[] pointer = (long[]) this.filePointers.get();
+
+        if ( pointer == null )
+        {
+            pointer = new long[] { this.initialFilePointer };
+            this.filePointers.set( pointer );
+        }
+
+        return pointer;
+    }
+
+    /**
+     * Gets the indices of the locks of the stripes of a range of the file.
+     *
+     * @param pos the position of the range.
+     * @param len the length of the range.
+     *
+     * @return the indices of the locks of the stripes of the range in
+     * ascending order.
+     */
+    private int[] getStripeIndices( final long pos, final int len )
+    {
+        final long firstStripe = pos / this.stripeSize;
+        final long stripes = ( pos + len - 1L ) / this.stripeSize -
+                             firstStripe + 1L;
+
+        final int[] indices = new int[ stripes < this.stripeLocks.length
+                                       ? (int) stripes
+                                       : this.stripeLocks.length ];
+
+        for ( int i = 0; i < indices.length; i++ )
+        {
+            indices[i] =
+                (int) ( ( firstStripe + i ) % this.stripeLocks.length );
+
+        }
+
+        // Stripes may wrap around the end of the lock array.
+        Arrays.sort( indices );
+        return indices;
+    }
+
+    /**
+     * Acquires the locks of the stripes of a range of the file. Locks are
+     * acquired in ascending order so that threads locking overlapping ranges
+     * cannot deadlock.
+     *
+     * @param pos the position of the range.
+     * @param len the length of the range.
+     * @param exclusive {@code true} to acquire the locks exclusively;
+     * {@code false} to acquire the locks shared.
+     *
+     * @throws InterruptedIOException if the current thread is interrupted
+     * while waiting for a lock.
+     */
+    private void lockRange( final long pos, final int len,
+                            final boolean exclusive )
+        throws InterruptedIOException
+    {
+        this.lock( this.getStripeIndices( pos, len ), exclusive );
+    }
+
+    /**
+     * Releases the locks of the stripes of a range of the file.
+     *
+     * @param pos the position of the range.
+     * @param len the length of the range.
+     * @param exclusive {@code true} if the locks are held exclusively;
+     * {@code false} if the locks are held shared.
+     */
+    private void unlockRange( final long pos, final int len,
+                              final boolean exclusive )
+    {
+        this.unlock( this.getStripeIndices( pos, len ), exclusive );
+    }
+
+    /**
+     * Acquires all locks exclusively.
+     *
+     * @throws InterruptedIOException if the current thread is interrupted
+     * while waiting for a lock.
+     */
+    private void lockAll() throws InterruptedIOException
+    {
+        this.lock( this.allIndices, true );
+    }
+
+    /** Releases all locks held exclusively. */
+    private void unlockAll()
+    {
+        this.unlock( this.allIndices, true );
+    }
+
+    /**
+     * Acquires locks in the given order.
+     *
+     * @param indices the indices of the locks to acquire.
+     * @param exclusive {@code true} to acquire the locks exclusively;
+     * {@code false} to acquire the locks shared.
+     *
+     * @throws InterruptedIOException if the current thread is interrupted
+     * while waiting for a lock.
+     */
+    private void lock( final int[] indices, final boolean exclusive )
+        throws InterruptedIOException
+    {
+        int locked = 0;
+
+        try
+        {
+            for ( ; locked < indices.length; locked++ )
+            {
+                this.stripeLocks[indices[locked]].lock( exclusive );
+            }
+        }
+        finally
+        {
+            if ( locked < indices.length )
+            { // Release the locks acquired before failing.
+                for ( int i = locked - 1; i >= 0; i-- )
+                {
+                    this.stripeLocks[indices[i]].unlock( exclusive );
+                }
+            }
+        }
+    }
+
+    /**
+     * Releases locks.
+     *
+     * @param indices the indices of the locks to release.
+     * @param exclusive {@code true} if the locks are held exclusively;
+     * {@code false} if the locks are held shared.
+     */
+    private void unlock( final int[] indices, final boolean exclusive )
+    {
+        for ( int i = indices.length - 1; i >= 0; i-- )
+        {
+            this.stripeLocks[indices[i]].unlock( exclusive );
+        }
+    }
+
+    /**
+     * Reads from the backing instance. The caller must hold {@code lock}.
+     *
+     * @param position the file position to start reading at.
+     * @param buf the buffer into which the data is read.
+     *
+     * @return the total number of bytes read into the buffer, or
+     * {@code EOF} if {@code position} is greater than or equal to the length
+     * of the file.
+     *
+     * @throws IOException if reading fails.
+     */
+    private int readBacking( final long position, final ByteBuffer buf )
+        throws IOException
+    {
+        final FileOperations ops = this.getFileOperations();
+        final int read;
+
+        if ( ops instanceof ByteBufferFileOperations )
+        {
+            read = ( (ByteBufferFileOperations) ops ).read( position, buf );
+        }
+        else if ( buf.hasArray() )
+        {
+            ops.setFilePointer( position );
+            read = ops.read( buf.array(), buf.arrayOffset() + buf.position(),
+                             buf.remaining() );
+
+            if ( read > 0 )
+            {
+                buf.position( buf.position() + read );
+            }
+        }
+        else
+        {
+            final byte[] data =
+                this.getMemoryManager().allocateBytes( buf.remaining() );
+
+            ops.setFilePointer( position );
+            read = ops.read( data, 0, data.length );
+
+            if ( read > 0 )
+            {
+                buf.put( data, 0, read );
+            }
+        }
+
+        return read;
+    }
+
+    /**
+     * Writes to the backing instance. The caller must hold {@code lock}.
+     *
+     * @param position the file position to start writing at.
+     * @param buf the buffer holding the data to write.
+     *
+     * @throws IOException if writing fails.
+     */
+    private void writeBacking( final long position, final ByteBuffer buf )
+        throws IOException
+    {
+        final FileOperations ops = this.getFileOperations();
+
+        if ( ops instanceof ByteBufferFileOperations )
+        {
+            ( (ByteBufferFileOperations) ops ).write( position, buf );
+        }
+        else if ( buf.hasArray() )
+        {
+            ops.setFilePointer( position );
+            ops.write( buf.array(), buf.arrayOffset() + buf.position(),
+                       buf.remaining() );
+
+            buf.position( buf.limit() );
+        }
+        else
+        {
+            final byte[] data =
+                this.getMemoryManager().allocateBytes( buf.remaining() );
+
+            buf.get( data );
+            ops.setFilePointer( position );
+            ops.write( data, 0, data.length );
+        }
+    }
+
+    /**
+     * Checks that the instance is not closed.
+     *
+     * @throws IOException if the instance is closed.
+     */
+    private void assertNotClosed() throws IOException
+    {
+        synchronized ( this.lock )
+        {
+            if ( this.closed )
+            {
+                throw new IOException( this.getAlreadyClosedMessage(
+                    this.getLocale() ) );
+
+            }
+        }
+    }
+
+    //------------------------------------------------ConcurrentFileOperations--
+    //--Messages----------------------------------------------------------------
+
+// <editor-fold defaultstate="collapsed" desc=" Generated Code ">//GEN-BEGIN:jdtausMessages
+    // This section is managed by jdtaus-container-mojo.
+
+    /**
+     * Gets the text of message <code>alreadyClosed</code>.
+     * <blockquote><pre>Instanz geschlossen - keine E/A-Operationen möglich.</pre></blockquote>
+     * <blockquote><pre>Instance closed - cannot perform I/O.</pre></blockquote>
+     *
+     * @param locale The locale of the message instance to return.
+     *
+     * @return Message stating that an instance is already closed.
+     */
+    private String getAlreadyClosedMessage( final Locale locale )
+    {
+        return ContainerFactory.getContainer().
+            getMessage( this, "alreadyClosed", locale, null );
+
+    }
+
+// </editor-fold>//GEN-END:jdtausMessages
+
+    //----------------------------------------------------------------Messages--
+}
@@ -0,0 +1,354 @@
+/*
+ *  jDTAUS Core Utilities
+ *  Copyright (C) 2005 Christian Schulte
+ *  <cs@schulte.it>
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+package org.jdtaus.core.io.util;
+
+/**
+ * Table of extents mapping runs of logical blocks to runs of physical blocks.
+ * <p>Extents are kept in logical order. The first extent starts at logical
+ * block {@code 0} and every other extent starts at the logical block following
+ * the last block of its predecessor.</p>
+ *
+ * @author <a href="mailto:cs@schulte.it">Christian Schulte</a>
+ * @version $JDTAUS$
+ *
+ * @see IndirectStructuredFileOperations
+ * @see StructuredFileOperations
+ */
+final class ExtentTable
+{
+    //--ExtentTable-------------------------------------------------------------
+
+    /** Index of the first logical block of each extent. */
+    private long[] blocks = new long[ 16 ];
+
+    /** Index of the first physical block of each extent. */
+    private long[] positions = new long[ 16 ];
+
+    /** Number of blocks of each extent. */
+    private long[] lengths = new long[ 16 ];
+
+    /** Number of extents. */
+    private int count;
+
+    /** Number of logical blocks. */
+    private long blockCount;
+
+    /**
+     * Creates a new {@code ExtentTable} instance mapping a number of logical
+     * blocks to the same physical blocks.
+     *
+     * @param blockCount the number of logical blocks to map.
+     */
+    ExtentTable( final long blockCount )
+    {
+        super();
+        this.reset( blockCount );
+    }
+
+    /**
+     * Gets the number of extents.
+     *
+     * @return the number of extents.
+     */
+    int getCount()
+    {
+        return this.count;
+    }
+
+    /**
+     * Gets the number of logical blocks.
+     *
+     * @return the number of logical blocks.
+     */
+    long getBlockCount()
+    {
+        return this.blockCount;
+    }
+
+    /**
+     * Gets the first logical block of an extent.
+     *
+     * @param extent the index of the extent.
+     *
+     * @return the first logical block of {@code extent}.
+     */
+    long getBlock( final int extent )
+    {
+        return this.blocks[extent];
+    }
+
+    /**
+     * Gets the first physical block of an extent.
+     *
+     * @param extent the index of the extent.
+     *
+     * @return the first physical block of {@code extent}.
+     */
+    long getPosition( final int extent )
+    {
+        return this.positions[extent];
+    }
+
+    /**
+     * Gets the number of blocks of an extent.
+     *
+     * @param extent the index of the extent.
+     *
+     * @return the number of blocks of {@code extent}.
+     */
+    long getLength( final int extent )
+    {
+        return this.lengths[extent];
+    }
+
+    /**
+     * Gets the physical block a logical block is mapped to.
+     *
+     * @param block the logical block to map.
+     *
+     * @return the physical block {@code block} is mapped to.
+     */
+    long getPhysicalBlock( final long block )
+    {
+        final int extent = this.getExtent( block );
+        return this.positions[extent] + block - this.blocks[extent];
+    }
+
+    /**
+     * Gets the number of logical blocks starting at a logical block mapped to
+     * consecutive physical blocks.
+     *
+     * @param block the first logical block.
+     *
+     * @return the number of logical blocks starting at {@code block} mapped to
+     * consecutive physical blocks.
+     */
+    long getConsecutiveBlocks( final long block )
+    {
+        final int extent = this.getExtent( block );
+        return this.blocks[extent] + this.lengths[extent] - block;
+    }
+
+    /**
+     * Maps a number of logical blocks to the same physical blocks.
+     *
+     * @param blockCount the number of logical blocks to map.
+     */
+    void reset( final long blockCount )
+    {
+        this.count = 0;
+        this.blockCount = 0L;
+
+        if ( blockCount > 0L )
+        {
+            this.insertExtent( 0, 0L, 0L, blockCount );
+        }
+
+        this.blockCount = blockCount;
+    }
+
+    /**
+     * Maps new logical blocks to physical blocks.
+     *
+     * @param index the index of the first logical block to insert.
+     * @param position the first physical block to map the new logical blocks
+     * to.
+     * @param count the number of logical blocks to insert.
+     */
+    void insert( final long index, final long position, final long count )
+    {
+        final int extent = this.splitExtent( index );
+
+        for ( int i = this.count - 1; i >= extent; i-- )
+        {
+            this.blocks[i] += count;
+        }
+
+        this.insertExtent( extent, index, position, count );
+        this.blockCount += count;
+        this.mergeExtents( extent );
+    }
+
+    /**
+     * Removes logical blocks.
+     *
+     * @param index the index of the first logical block to remove.
+     * @param count the number of logical blocks to remove.
+     */
+    void delete( final long index, final long count )
+    {
+        final int first = this.splitExtent( index );
+        final int last = this.splitExtent( index + count );
+
+        this.removeExtents( first, last - first );
+
+        for ( int i = this.count - 1; i >= first; i-- )
+        {
+            this.blocks[i] -= count;
+        }
+
+        this.blockCount -= count;
+        this.mergeExtents( first );
+    }
+
+    /**
+     * Gets the extent holding a logical block.
+     *
+     * @param block the logical block to get the extent of.
+     *
+     * @return the index of the extent holding {@code block}.
+     */
+    private int getExtent( final long block )
+    {
+        int low = 0;
+        int high = this.count - 1;
+
+        while ( low < high )
+        {
+            final int mid = ( low + high + 1 ) >>> 1;
+
+            if ( this.blocks[mid] <= block )
+            {
+                low = mid;
+            }
+            else
+            {
+                high = mid - 1;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * Splits the extent holding a logical block so that an extent starts at
+     * that block.
+     *
+     * @param block the logical block an extent needs to start at.
+     *
+     * @return the index of the extent starting at {@code block} or the number
+     * of extents if {@code block} is equal to the number of logical blocks.
+     */
+    private int splitExtent( final long block )
+    {
+        if ( block == this.blockCount )
+        {
+            return this.count;
+        }
+
+        final int extent = this.getExtent( block );
+        final long head = block - this.blocks[extent];
+
+        if ( head == 0L )
+        {
+            return extent;
+        }
+
+        this.insertExtent( extent + 1, block, this.positions[extent] + head,
+                           this.lengths[extent] - head );
+
+        this.lengths[extent] = head;
+        return extent + 1;
+    }
+
+    /**
+     * Merges an extent with its predecessor if both map consecutive physical
+     * blocks.
+     *
+     * @param extent the index of the extent to merge with its predecessor.
+     */
+    private void mergeExtents( final int extent )
+    {
+        if ( extent > 0 && extent < this.count &&
+             this.positions[extent - 1] + this.lengths[extent - 1] ==
+             this.positions[extent] )
+        {
+            this.lengths[extent - 1] += this.lengths[extent];
+            this.removeExtents( extent, 1 );
+        }
+    }
+
+    /**
+     * Inserts an extent.
+     *
+     * @param extent the index to insert the extent at.
+     * @param block the first logical block of the extent.
+     * @param position the first physical block of the extent.
+     * @param length the number of blocks of the extent.
+     */
+    private void insertExtent( final int extent, final long block,
+                               final long position, final long length )
+    {
+        if ( this.count == this.blocks.length )
+        {
+            final int capacity = this.blocks.length * 2;
+            final long[] newBlocks = new long[ capacity ];
+            final long[] newPositions = new long[ capacity ];
+            final long[] newLengths = new long[ capacity ];
+
+            System.arraycopy( this.blocks, 0, newBlocks, 0, this.count );
+            System.arraycopy( this.positions, 0, newPositions, 0, this.count );
+            System.arraycopy( this.lengths, 0, newLengths, 0, this.count );
+
+            this.blocks = newBlocks;
+            this.positions = newPositions;
+            this.lengths = newLengths;
+        }
+
+        final int moved = this.count - extent;
+        System.arraycopy( this.blocks, extent, this.blocks, extent + 1,
+                          moved );
+
+        System.arraycopy( this.positions, extent, this.positions, extent + 1,
+                          moved );
+
+        System.arraycopy( this.lengths, extent, this.lengths, extent + 1,
+                          moved );
+
+        this.blocks[extent] = block;
+        this.positions[extent] = position;
+        this.lengths[extent] = length;
+        this.count++;
+    }
+
+    /**
+     * Removes extents.
+     *
+     * @param extent the index of the first extent to remove.
+     * @param count the number of extents to remove.
+     */
+    private void removeExtents( final int extent, final int count )
+    {
+        final int moved = this.count - extent - count;
+        System.arraycopy( this.blocks, extent + count, this.blocks, extent,
+                          moved );
+
+        System.arraycopy( this.positions, extent + count, this.positions,
+                          extent, moved );
+
+        System.arraycopy( this.lengths, extent + count, this.lengths, extent,
+                          moved );
+
+        this.count -= count;
+    }
+
+    //-------------------------------------------------------------ExtentTable--
+}
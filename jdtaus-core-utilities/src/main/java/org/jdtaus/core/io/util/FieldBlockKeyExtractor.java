@@ -0,0 +1,96 @@
+/*
+ *  jDTAUS Core Utilities
+ *  Copyright (C) 2005 Christian Schulte
+ *  <cs@schulte.it>
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+package org.jdtaus.core.io.util;
+
+/**
+ * {@code BlockKeyExtractor} taking a field of the data of a block as the key.
+ * <p>This implementation extracts the bytes of a field at a fixed offset in
+ * each block unchanged. It is suited for fields of digits left padded with
+ * zeros or for fields of text to sort by the numeric value of the bytes.</p>
+ *
+ * @author <a href="mailto:cs@schulte.it">Christian Schulte</a>
+ * @version $JDTAUS$
+ */
+public final class FieldBlockKeyExtractor implements BlockKeyExtractor
+{
+    //--BlockKeyExtractor-------------------------------------------------------
+
+    public int getKeyLength()
+    {
+        return this.length;
+    }
+
+    public void getKey( final byte[] block, final int off, final byte[] key,
+                        final int keyOff )
+    {
+        System.arraycopy( block, off + this.offset, key, keyOff,
+                          this.length );
+
+    }
+
+    //-------------------------------------------------------BlockKeyExtractor--
+    //--FieldBlockKeyExtractor--------------------------------------------------
+
+    /** Offset of the field in a block. */
+    private final int offset;
+
+    /** Length of the field. */
+    private final int length;
+
+    /**
+     * Creates a new {@code FieldBlockKeyExtractor} instance taking the
+     * offset and length of the field to extract.
+     *
+     * @param offset the offset of the field in a block.
+     * @param length the number of bytes of the field.
+     *
+     * @throws IllegalArgumentException if {@code offset} is negative or
+     * {@code length} is negative or zero.
+     */
+    public FieldBlockKeyExtractor( final int offset, final int length )
+    {
+        super();
+
+        if ( offset < 0 )
+        {
+            throw new IllegalArgumentException( Integer.toString( offset ) );
+        }
+        if ( length <= 0 )
+        {
+            throw new IllegalArgumentException( Integer.toString( length ) );
+        }
+
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * Gets the offset of the field extracted.
+     *
+     * @return the offset of the field in a block.
+     */
+    public int getOffset()
+    {
+        return this.offset;
+    }
+
+    //--------------------------------------------------FieldBlockKeyExtractor--
+}
@@ -0,0 +1,802 @@
+/*
+ *  jDTAUS Core Utilities
+ *  Copyright (C) 2005 Christian Schulte
+ *  <cs@schulte.it>
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+package org.jdtaus.core.io.util;
+
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Locale;
+import org.jdtaus.core.container.ContainerFactory;
+import org.jdtaus.core.io.FileOperations;
+
+/**
+ * Adapts the {@link java.nio.channels.FileChannel} of a
+ * {@link java.io.RandomAccessFile} to {@code FileOperations}.
+ * <p>This implementation maintains the file pointer itself and performs all
+ * reads and writes using the positional methods of the channel so that no
+ * seek operation needs to be performed before each operation. The
+ * {@code read(OutputStream)} and {@code write(InputStream)} methods transfer
+ * data using the {@code transferTo} and {@code transferFrom} methods of the
+ * channel in chunks of at most {@code transferSize} bytes (defaults to
+ * {@code 8388608} - 8 MB). Data is transferred directly between the channels
+ * of file streams so that the transfer can be performed by the operating
+ * system. Vectored operations transfer ranges adjacent in
+ * the file using the scattering and gathering methods of the channel.
+ * {@code ByteBuffer}s are passed to the channel as given. Zeroing a range
+ * extending the file does not write the extension so that sparse files stay
+ * sparse. The class is a drop-in replacement for
+ * {@code RandomAccessFileOperations}.</p>
+ *
+ * <p><b>Note:</b><br>
+ * This implementation is not thread-safe and concurrent changes to the
+ * underlying {@code RandomAccessFile} are not supported.</p>
+ *
+ * @author <a href="mailto:cs@schulte.it">Christian Schulte</a>
+ * @version $JDTAUS$
+ *
+ * @see RandomAccessFileOperations
+ */
+public final class FileChannelFileOperations
+    implements VectoredFileOperations, ByteBufferFileOperations,
+               SparseFileOperations
+{
+    //--Dependencies------------------------------------------------------------
+
+// <editor-fold defaultstate="collapsed" desc=" Generated Code ">//GEN-BEGIN:jdtausDependencies
+    // This section is managed by jdtaus-container-mojo.
+
+    /**
+     * Gets the configured <code>Locale</code> implementation.
+     *
+     * @return The configured <code>Locale</code> implementation.
+     */
+    private Locale getLocale()
+    {
+        return (Locale) ContainerFactory.getContainer().
+            getDependency( this, "Locale" );
+
+    }
+
+// </editor-fold>//GEN-END:jdtausDependencies
+
+    //------------------------------------------------------------Dependencies--
+    //--Properties--------------------------------------------------------------
+
+// <editor-fold defaultstate="collapsed" desc=" Generated Code ">//GEN-BEGIN:jdtausProperties
+    // This section is managed by jdtaus-container-mojo.
+
+    /**
+     * Gets the value of property <code>transferSize</code>.
+     *
+     * @return Maximum number of bytes to transfer with one channel transfer operation.
+     */
+    private int getTransferSize()
+    {
+        return ( (java.lang.Integer) ContainerFactory.getContainer().
+            getProperty( this, "transferSize" ) ).intValue();
+
+    }
+
+// </editor-fold>//GEN-END:jdtausProperties
+
+    //--------------------------------------------------------------Properties--
+    //--FileOperations----------------------------------------------------------
+
+    /** Cache for the value of property {@code length}. */
+    private transient long cachedLength = NO_CACHEDLENGTH;
+
+    private static final long NO_CACHEDLENGTH = Long.MIN_VALUE;
+
+    public long getLength() throws IOException
+    {
+        this.assertNotClosed();
+
+        return this.cachedLength != NO_CACHEDLENGTH
+               ? this.cachedLength
+               : ( this.cachedLength = this.getFileChannel().size() );
+
+    }
+
+    public void setLength( final long newLength ) throws IOException
+    {
+        if ( newLength < 0L )
+        {
+            throw new IllegalArgumentException( Long.toString( newLength ) );
+        }
+
+        this.assertNotClosed();
+
+        this.getRandomAccessFile().setLength( newLength );
+        this.cachedLength = newLength;
+
+        if ( this.filePointer > newLength )
+        {
+            this.filePointer = newLength;
+        }
+    }
+
+    public long getFilePointer() throws IOException
+    {
+        this.assertNotClosed();
+
+        return this.filePointer;
+    }
+
+    public void setFilePointer( final long pos ) throws IOException
+    {
+        if ( pos < 0L )
+        {
+            throw new IllegalArgumentException( Long.toString( pos ) );
+        }
+
+        this.assertNotClosed();
+
+        this.filePointer = pos;
+    }
+
+    public int read( final byte[] buf, final int off, final int len )
+        throws IOException
+    {
+        if ( buf == null )
+        {
+            throw new NullPointerException( "buf" );
+        }
+        if ( off < 0 )
+        {
+            throw new IndexOutOfBoundsException( Integer.toString( off ) );
+        }
+        if ( len < 0 )
+        {
+            throw new IndexOutOfBoundsException( Integer.toString( len ) );
+        }
+        if ( off + len > buf.length )
+        {
+            throw new IndexOutOfBoundsException( Integer.toString( off + len ) );
+        }
+
+        this.assertNotClosed();
+
+        final int read = this.getFileChannel().read(
+            ByteBuffer.wrap( buf, off, len ), this.filePointer );
+
+        if ( read > 0 )
+        {
+            this.filePointer += read;
+        }
+
+        return read;
+    }
+
+    public void write( final byte[] buf, final int off, final int len )
+        throws IOException
+    {
+        if ( buf == null )
+        {
+            throw new NullPointerException( "buf" );
+        }
+        if ( off < 0 )
+        {
+            throw new IndexOutOfBoundsException( Integer.toString( off ) );
+        }
+        if ( len < 0 )
+        {
+            throw new IndexOutOfBoundsException( Integer.toString( len ) );
+        }
+        if ( off + len > buf.length )
+        {
+            throw new IndexOutOfBoundsException( Integer.toString( off + len ) );
+        }
+
+        this.assertNotClosed();
+
+        final FileChannel channel = this.getFileChannel();
+        final ByteBuffer src = ByteBuffer.wrap( buf, off, len );
+
+        while ( src.hasRemaining() )
+        {
+            this.filePointer += channel.write( src, this.filePointer );
+        }
+
+        if ( this.cachedLength != NO_CACHEDLENGTH &&
+             this.filePointer > this.cachedLength )
+        {
+            this.cachedLength = this.filePointer;
+        }
+    }
+
+    public void read( final OutputStream out ) throws IOException
+    {
+        if ( out == null )
+        {
+            throw new NullPointerException( "out" );
+        }
+
+        this.assertNotClosed();
+
+        final FileChannel channel = this.getFileChannel();
+        final WritableByteChannel target = out instanceof FileOutputStream
+                                           ? ( (FileOutputStream) out ).
+                                           getChannel()
+                                           : Channels.newChannel( out );
+
+        final long length = this.getLength();
+        long pos = 0L;
+
+        while ( pos < length )
+        {
+            final long transferred = channel.transferTo(
+                pos, this.getTransferCount( length - pos ), target );
+
+            if ( transferred <= 0L )
+            { // File has been truncated concurrently.
+                throw new EOFException( Long.toString( pos ) );
+            }
+
+            pos += transferred;
+        }
+
+        this.filePointer = pos;
+    }
+
+    public void write( final InputStream in ) throws IOException
+    {
+        if ( in == null )
+        {
+            throw new NullPointerException( "in" );
+        }
+
+        this.assertNotClosed();
+
+        final FileChannel channel = this.getFileChannel();
+        final ReadableByteChannel src = in instanceof FileInputStream
+                                        ? ( (FileInputStream) in ).
+                                        getChannel()
+                                        : Channels.newChannel( in );
+
+        long transferred;
+
+        if ( this.filePointer > this.getLength() )
+        { // Channel transfers do not extend the file to the file pointer.
+            this.setLength( this.filePointer );
+        }
+
+        do
+        {
+            transferred = channel.transferFrom(
+                src, this.filePointer, this.getTransferCount( Long.MAX_VALUE ) );
+
+            this.filePointer += transferred;
+        }
+        while ( transferred > 0L );
+
+        if ( this.cachedLength != NO_CACHEDLENGTH &&
+             this.filePointer > this.cachedLength )
+        {
+            this.cachedLength = this.filePointer;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * Closes the {@code RandomAccessFile} backing the instance.
+     *
+     * @throws IOException if closing the {@code RandomAccessFile} backing the
+     * instance fails.
+     */
+    public void close() throws IOException
+    {
+        this.assertNotClosed();
+
+        this.getRandomAccessFile().close();
+        this.closed = true;
+    }
+
+    //----------------------------------------------------------FileOperations--
+    //--VectoredFileOperations--------------------------------------------------
+
+    public void read( final long[] positions, final byte[][] bufs,
+                      final int[] offsets, final int[] lengths,
+                      final int count ) throws IOException
+    {
+        this.assertValidRanges( positions, bufs, offsets, lengths, count );
+        this.assertNotClosed();
+
+        final FileChannel channel = this.getFileChannel();
+        final ByteBuffer[] buffers =
+            this.wrap( bufs, offsets, lengths, count );
+
+        final long length = this.getLength();
+
+        for ( int i = 0, j; i < count; i = j )
+        {
+            // Collect the ranges adjacent in the file.
+            long end = positions[i] + lengths[i];
+            for ( j = i + 1; j < count && positions[j] == end; j++ )
+            {
+                end += lengths[j];
+            }
+
+            if ( end > length )
+            {
+                throw new EOFException( Long.toString( end ) );
+            }
+
+            long pos = positions[i];
+
+            if ( j - i == 1 )
+            {
+                while ( pos < end )
+                {
+                    final int read = channel.read( buffers[i], pos );
+
+                    assert read != FileOperations.EOF :
+                        "Unexpected end of file.";
+
+                    pos += read;
+                }
+            }
+            else
+            { // Scatter the ranges.
+                channel.position( pos );
+
+                while ( pos < end )
+                {
+                    final long read = channel.read( buffers, i, j - i );
+
+                    assert read != FileOperations.EOF :
+                        "Unexpected end of file.";
+
+                    pos += read;
+                }
+            }
+        }
+    }
+
+    public void write( final long[] positions, final byte[][] bufs,
+                       final int[] offsets, final int[] lengths,
+                       final int count ) throws IOException
+    {
+        this.assertValidRanges( positions, bufs, offsets, lengths, count );
+        this.assertNotClosed();
+
+        final FileChannel channel = this.getFileChannel();
+        final ByteBuffer[] buffers =
+            this.wrap( bufs, offsets, lengths, count );
+
+        long length = this.getLength();
+
+        for ( int i = 0, j; i < count; i = j )
+        {
+            // Collect the ranges adjacent in the file.
+            long end = positions[i] + lengths[i];
+            for ( j = i + 1; j < count && positions[j] == end; j++ )
+            {
+                end += lengths[j];
+            }
+
+            long pos = positions[i];
+
+            if ( j - i == 1 )
+            {
+                while ( pos < end )
+                {
+                    pos += channel.write( buffers[i], pos );
+                }
+            }
+            else
+            { // Gather the ranges.
+                channel.position( pos );
+
+                while ( pos < end )
+                {
+                    pos += channel.write( buffers, i, j - i );
+                }
+            }
+
+            if ( end > length )
+            {
+                length = end;
+            }
+        }
+
+        this.cachedLength = length;
+    }
+
+    //--------------------------------------------------VectoredFileOperations--
+    //--ByteBufferFileOperations------------------------------------------------
+
+    public int read( final ByteBuffer buf ) throws IOException
+    {
+        final int read = this.read( this.filePointer, buf );
+
+        if ( read > 0 )
+        {
+            this.filePointer += read;
+        }
+
+        return read;
+    }
+
+    public void write( final ByteBuffer buf ) throws IOException
+    {
+        if ( buf == null )
+        {
+            throw new NullPointerException( "buf" );
+        }
+
+        final int len = buf.remaining();
+        this.write( this.filePointer, buf );
+        this.filePointer += len;
+    }
+
+    public int read( final long position, final ByteBuffer buf )
+        throws IOException
+    {
+        if ( buf == null )
+        {
+            throw new NullPointerException( "buf" );
+        }
+        if ( position < 0L )
+        {
+            throw new IllegalArgumentException( Long.toString( position ) );
+        }
+
+        this.assertNotClosed();
+
+        return this.getFileChannel().read( buf, position );
+    }
+
+    public void write( final long position, final ByteBuffer buf )
+        throws IOException
+    {
+        if ( buf == null )
+        {
+            throw new NullPointerException( "buf" );
+        }
+        if ( position < 0L )
+        {
+            throw new IllegalArgumentException( Long.toString( position ) );
+        }
+
+        this.assertNotClosed();
+
+        final FileChannel channel = this.getFileChannel();
+        long pos = position;
+
+        while ( buf.hasRemaining() )
+        {
+            pos += channel.write( buf, pos );
+        }
+
+        if ( this.cachedLength != NO_CACHEDLENGTH && pos > this.cachedLength )
+        {
+            this.cachedLength = pos;
+        }
+    }
+
+    //------------------------------------------------ByteBufferFileOperations--
+    //--SparseFileOperations----------------------------------------------------
+
+    /**
+     * {@inheritDoc}
+     * The part of the range inside the file is written from a buffer of zeros.
+     * The part of the range beyond the end of the file is not written but the
+     * file is extended using {@code RandomAccessFile.setLength()} so that the
+     * file system may leave that part unallocated.
+     */
+    public void zero( final long position, final long length )
+        throws IOException
+    {
+        if ( position < 0L )
+        {
+            throw new IllegalArgumentException( Long.toString( position ) );
+        }
+        if ( length < 0L )
+        {
+            throw new IllegalArgumentException( Long.toString( length ) );
+        }
+
+        this.assertNotClosed();
+
+        final long fileLength = this.getLength();
+        final long end = position + length;
+
+        if ( end > fileLength )
+        {
+            final long filePointer = this.filePointer;
+            this.setLength( end );
+            this.filePointer = filePointer;
+        }
+
+        if ( position < fileLength )
+        {
+            final FileChannel channel = this.getFileChannel();
+            final ByteBuffer zeros = this.getZeroBuffer();
+            final long zeroEnd = end < fileLength ? end : fileLength;
+            long pos = position;
+
+            while ( pos < zeroEnd )
+            {
+                zeros.clear();
+
+                if ( zeroEnd - pos < zeros.capacity() )
+                {
+                    zeros.limit( (int) ( zeroEnd - pos ) );
+                }
+
+                while ( zeros.hasRemaining() )
+                {
+                    pos += channel.write( zeros, pos );
+                }
+            }
+        }
+    }
+
+    //----------------------------------------------------SparseFileOperations--
+    //--FileChannelFileOperations-----------------------------------------------
+
+    /** Number of bytes of the buffer of zeros. */
+    private static final int ZERO_BUFFER_SIZE = 65536;
+
+    /** Buffer of zeros, never written to. */
+    private ByteBuffer zeroBuffer;
+
+    /** Flags the instance as beeing closed. */
+    private boolean closed;
+
+    /** File pointer. */
+    private long filePointer;
+
+    /** {@code RandomAccessFile} requirement. */
+    private final RandomAccessFile randomAccessFile;
+
+    /** {@code FileChannel} of {@code randomAccessFile}. */
+    private final FileChannel fileChannel;
+
+    /**
+     * Creates a new {@code FileChannelFileOperations} instance adapting the
+     * channel of {@code file}.
+     *
+     * @param file an {@code RandomAccessFile} instance whose channel to use as
+     * a {@code FileOperations} implementation.
+     *
+     * @throws NullPointerException if {@code file} is {@code null}.
+     * @throws IOException if getting the file pointer of {@code file} fails.
+     */
+    public FileChannelFileOperations( final RandomAccessFile file )
+        throws IOException
+    {
+        super();
+
+        if ( file == null )
+        {
+            throw new NullPointerException( "file" );
+        }
+
+        this.randomAccessFile = file;
+        this.fileChannel = file.getChannel();
+        this.filePointer = file.getFilePointer();
+    }
+
+    /**
+     * Gets the random access file operations are performed with.
+     *
+     * @return the {@code RandomAccessFile} instance operations are performed
+     * with.
+     */
+    public RandomAccessFile getRandomAccessFile()
+    {
+        return this.randomAccessFile;
+    }
+
+    /**
+     * Gets the channel operations are performed with.
+     *
+     * @return the {@code FileChannel} of the {@code RandomAccessFile}
+     * operations are performed with.
+     */
+    public FileChannel getFileChannel()
+    {
+        return this.fileChannel;
+    }
+
+    /**
+     * Gets a buffer of zeros for zeroing ranges of the file.
+     *
+     * @return a buffer of zeros.
+     */
+    private ByteBuffer getZeroBuffer()
+    {
+        if ( this.zeroBuffer == null )
+        {
+            this.zeroBuffer = ByteBuffer.allocateDirect( ZERO_BUFFER_SIZE );
+        }
+
+        return this.zeroBuffer;
+    }
+
+    /**
+     * Checks that the instance is not closed.
+     *
+     * @throws IOException if the instance is closed.
+     */
+    private void assertNotClosed() throws IOException
+    {
+        if ( this.closed )
+        {
+            throw new IOException( this.getAlreadyClosedMessage(
+                this.getLocale() ) );
+
+        }
+    }
+
+    /**
+     * Checks the ranges of a vectored operation.
+     *
+     * @param positions the file positions of the ranges.
+     * @param bufs the buffers of the ranges.
+     * @param offsets the offsets into the buffers of the ranges.
+     * @param lengths the lengths of the ranges.
+     * @param count the number of ranges.
+     *
+     * @throws NullPointerException if {@code positions}, {@code bufs},
+     * {@code offsets}, {@code lengths} or any of the first {@code count}
+     * elements of {@code bufs} is {@code null}.
+     * @throws IndexOutOfBoundsException if {@code count} is negative or
+     * greater than the length of any of the arrays, or if a range does not
+     * fit into its buffer.
+     * @throws IllegalArgumentException if a position is negative.
+     */
+    private void assertValidRanges( final long[] positions,
+                                    final byte[][] bufs,
+                                    final int[] offsets,
+                                    final int[] lengths,
+                                    final int count )
+    {
+        if ( positions == null )
+        {
+            throw new NullPointerException( "positions" );
+        }
+        if ( bufs == null )
+        {
+            throw new NullPointerException( "bufs" );
+        }
+        if ( offsets == null )
+        {
+            throw new NullPointerException( "offsets" );
+        }
+        if ( lengths == null )
+        {
+            throw new NullPointerException( "lengths" );
+        }
+        if ( count < 0 || count > positions.length || count > bufs.length ||
+             count > offsets.length || count > lengths.length )
+        {
+            throw new IndexOutOfBoundsException( Integer.toString( count ) );
+        }
+
+        for ( int i = count - 1; i >= 0; i-- )
+        {
+            if ( bufs[i] == null )
+            {
+                throw new NullPointerException( "bufs[" + i + "]" );
+            }
+            if ( offsets[i] < 0 )
+            {
+                throw new IndexOutOfBoundsException(
+                    Integer.toString( offsets[i] ) );
+
+            }
+            if ( lengths[i] < 0 )
+            {
+                throw new IndexOutOfBoundsException(
+                    Integer.toString( lengths[i] ) );
+
+            }
+            if ( offsets[i] + lengths[i] > bufs[i].length )
+            {
+                throw new IndexOutOfBoundsException(
+                    Integer.toString( offsets[i] + lengths[i] ) );
+
+            }
+            if ( positions[i] < 0L )
+            {
+                throw new IllegalArgumentException(
+                    Long.toString( positions[i] ) );
+
+            }
+        }
+    }
+
+    /**
+     * Wraps the buffers of the ranges of a vectored operation.
+     *
+     * @param bufs the buffers of the ranges.
+     * @param offsets the offsets into the buffers of the ranges.
+     * @param lengths the lengths of the ranges.
+     * @param count the number of ranges.
+     *
+     * @return {@code ByteBuffer}s wrapping the ranges of {@code bufs}.
+     */
+    private ByteBuffer[] wrap( final byte[][] bufs, final int[] offsets,
+                               final int[] lengths, final int count )
+    {
+        final ByteBuffer[] buffers = new ByteBuffer[ count ];
+
+        for ( int i = count - 1; i >= 0; i-- )
+        {
+            buffers[i] = ByteBuffer.wrap( bufs[i], offsets[i], lengths[i] );
+        }
+
+        return buffers;
+    }
+
+    /**
+     * Gets the number of bytes to request from a single channel transfer.
+     *
+     * @param remaining the number of bytes remaining to be transferred.
+     *
+     * @return the number of bytes to request from the next channel transfer.
+     */
+    private long getTransferCount( final long remaining )
+    {
+        final int transferSize = this.getTransferSize() > 0
+                                 ? this.getTransferSize()
+                                 : Integer.MAX_VALUE;
+
+        return remaining > transferSize ? transferSize : remaining;
+    }
+
+    //-----------------------------------------------FileChannelFileOperations--
+    //--Messages----------------------------------------------------------------
+
+// <editor-fold defaultstate="collapsed" desc=" Generated Code ">//GEN-BEGIN:jdtausMessages
+    // This section is managed by jdtaus-container-mojo.
+
+    /**
+     * Gets the text of message <code>alreadyClosed</code>.
+     * <blockquote><pre>Instanz geschlossen - keine E/A-Operationen möglich.</pre></blockquote>
+     * <blockquote><pre>Instance closed - cannot perform I/O.</pre></blockquote>
+     *
+     * @param locale The locale of the message instance to return.
+     *
+     * @return Message stating that an instance is already closed.
+     */
+    private String getAlreadyClosedMessage( final Locale locale )
+    {
+        return ContainerFactory.getContainer().
+            getMessage( this, "alreadyClosed", locale, null );
+
+    }
+
+// </editor-fold>//GEN-END:jdtausMessages
+
+    //----------------------------------------------------------------Messages--
+}
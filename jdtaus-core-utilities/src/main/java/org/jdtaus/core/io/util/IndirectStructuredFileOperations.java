@@ -0,0 +1,752 @@
+/*
+ *  jDTAUS Core Utilities
+ *  Copyright (C) 2005 Christian Schulte
+ *  <cs@schulte.it>
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+package org.jdtaus.core.io.util;
+
+import java.io.IOException;
+import java.util.Locale;
+import javax.swing.event.EventListenerList;
+import org.jdtaus.core.container.ContainerFactory;
+import org.jdtaus.core.io.FileOperations;
+import org.jdtaus.core.io.StructuredFile;
+import org.jdtaus.core.io.StructuredFileListener;
+
+/**
+ * {@code StructuredFile} implementation based on {@code FileOperations}
+ * mapping logical blocks to physical blocks.
+ * <p>In contrast to {@code StructuredFileOperations} this implementation does
+ * not move any data when inserting or deleting blocks. Instead it maintains a
+ * table of extents mapping ranges of logical blocks to ranges of physical
+ * blocks of the {@code FileOperations} backing the instance. Inserted blocks
+ * are appended to the end of the file and deleted blocks are only removed from
+ * that table so that the cost of the {@code insertBlocks()} and
+ * {@code deleteBlocks()} methods does not depend on the number of blocks
+ * following the blocks inserted or deleted.</p>
+ * <p>The physical blocks are put back into logical order and any blocks no
+ * longer referenced are removed from the file by the {@link #compact()}
+ * method. That method is called automatically by the {@link #close()} method.
+ * The table is maintained in memory only. Until the instance got compacted,
+ * the content of the {@code FileOperations} backing the instance does not
+ * reflect the content of the instance.</p>
+ *
+ * <p><b>Note:</b><br>
+ * This implementation is not thread-safe and concurrent changes to the
+ * underlying {@code FileOperations} implementation are not supported.</p>
+ *
+ * @author <a href="mailto:cs@schulte.it">Christian Schulte</a>
+ * @version $JDTAUS$
+ *
+ * @see StructuredFileOperations
+ */
+public final class IndirectStructuredFileOperations implements StructuredFile
+{
+    //--Fields------------------------------------------------------------------
+
+    /** Number of physical blocks. */
+    private long physicalBlockCount;
+
+    /** Extents mapping logical blocks to physical blocks. */
+    private final ExtentTable extents;
+
+    /** List for {@code StructuredFileListener}s. */
+    private final EventListenerList fileListeners = new EventListenerList();
+
+    //------------------------------------------------------------------Fields--
+    //--Dependencies------------------------------------------------------------
+
+// <editor-fold defaultstate="collapsed" desc=" Generated Code ">//GEN-BEGIN:jdtausDependencies
+    // This section is managed by jdtaus-container-mojo.
+
+    /**
+     * Gets the configured <code>Locale</code> implementation.
+     *
+     * @return The configured <code>Locale</code> implementation.
+     */
+    private Locale getLocale()
+    {
+        return (Locale) ContainerFactory.getContainer().
+            getDependency( this, "Locale" );
+
+    }
+
+// </editor-fold>//GEN-END:jdtausDependencies
+
+    //------------------------------------------------------------Dependencies--
+    //--Properties--------------------------------------------------------------
+
+// <editor-fold defaultstate="collapsed" desc=" Generated Code ">//GEN-BEGIN:jdtausProperties
+    // This section is managed by jdtaus-container-mojo.
+
+    /**
+     * Gets the value of property <code>defaultBufferSize</code>.
+     *
+     * @return Size of the pre-alocated default buffer in byte.
+     */
+    private int getDefaultBufferSize()
+    {
+        return ( (java.lang.Integer) ContainerFactory.getContainer().
+            getProperty( this, "defaultBufferSize" ) ).intValue();
+
+    }
+
+// </editor-fold>//GEN-END:jdtausProperties
+
+    //--------------------------------------------------------------Properties--
+    //--StructuredFile----------------------------------------------------------
+
+    public int getBlockSize()
+    {
+        return this.blockSize;
+    }
+
+    public long getBlockCount() throws IOException
+    {
+        this.assertNotClosed();
+        return this.extents.getBlockCount();
+    }
+
+    public void deleteBlocks( final long index,
+                              final long count ) throws IOException
+    {
+        final long blockCount = this.getBlockCount();
+
+        // Preconditions.
+        if ( index < 0L || index > blockCount - count )
+        {
+            throw new ArrayIndexOutOfBoundsException( (int) index );
+        }
+        if ( count <= 0 || count > blockCount - index )
+        {
+            throw new ArrayIndexOutOfBoundsException( (int) count );
+        }
+
+        this.assertNotClosed();
+
+        this.extents.delete( index, count );
+
+        if ( this.extents.getBlockCount() == 0L )
+        { // Nothing left to keep.
+            this.getFileOperations().setLength( 0L );
+            this.physicalBlockCount = 0L;
+        }
+
+        this.fireBlocksDeleted( index, count );
+    }
+
+    public void insertBlocks( final long index,
+                              final long count ) throws IOException
+    {
+        final long blockCount = this.getBlockCount();
+
+        // Preconditions.
+        if ( index < 0L || index > blockCount )
+        {
+            throw new ArrayIndexOutOfBoundsException( (int) index );
+        }
+        if ( count <= 0L || count > Long.MAX_VALUE - blockCount )
+        {
+            throw new ArrayIndexOutOfBoundsException( (int) count );
+        }
+
+        this.assertNotClosed();
+
+        // Append the new blocks to the end of the file.
+        final long position = this.physicalBlockCount;
+        this.getFileOperations().setLength(
+            ( position + count ) * this.getBlockSize() );
+
+        this.physicalBlockCount += count;
+
+        this.extents.insert( index, position, count );
+
+        this.fireBlocksInserted( index, count );
+    }
+
+    public void readBlock( final long block, final int off,
+                           final byte[] buf ) throws IOException
+    {
+        this.readBlock( block, off, buf, 0, buf.length );
+    }
+
+    public void readBlock( final long block, final int off, final byte[] buf,
+                           final int index, final int length )
+        throws IOException
+    {
+        this.assertValidArguments( block, off, buf, index, length );
+        this.assertNotClosed();
+
+        this.read( this.extents.getPhysicalBlock( block ) *
+                   this.getBlockSize() + off, buf, index, length );
+
+    }
+
+    public void writeBlock( final long block, final int off,
+                            final byte[] buf ) throws IOException
+    {
+        this.writeBlock( block, off, buf, 0, buf.length );
+    }
+
+    public void writeBlock( final long block, final int off,
+                            final byte[] buf,
+                            final int index, final int length )
+        throws IOException
+    {
+        this.assertValidArguments( block, off, buf, index, length );
+        this.assertNotClosed();
+
+        this.getFileOperations().setFilePointer(
+            this.extents.getPhysicalBlock( block ) * this.getBlockSize() +
+            off );
+
+        this.getFileOperations().write( buf, index, length );
+    }
+
+    public void readBlocks( final long firstBlock, final int count,
+                            final byte[] buf, final int off )
+        throws IOException
+    {
+        this.assertValidArguments( firstBlock, count, buf, off );
+        this.assertNotClosed();
+
+        long block = firstBlock;
+        long remaining = count;
+        int index = off;
+
+        // One read per run of consecutive physical blocks.
+        while ( remaining > 0L )
+        {
+            final long blocks = Math.min(
+                remaining, this.extents.getConsecutiveBlocks( block ) );
+
+            final int len = (int) ( blocks * this.getBlockSize() );
+
+            this.read( this.extents.getPhysicalBlock( block ) *
+                       this.getBlockSize(), buf, index, len );
+
+            block += blocks;
+            remaining -= blocks;
+            index += len;
+        }
+    }
+
+    public void writeBlocks( final long firstBlock, final int count,
+                             final byte[] buf, final int off )
+        throws IOException
+    {
+        this.assertValidArguments( firstBlock, count, buf, off );
+        this.assertNotClosed();
+
+        long block = firstBlock;
+        long remaining = count;
+        int index = off;
+
+        // One write per run of consecutive physical blocks.
+        while ( remaining > 0L )
+        {
+            final long blocks = Math.min(
+                remaining, this.extents.getConsecutiveBlocks( block ) );
+
+            final int len = (int) ( blocks * this.getBlockSize() );
+
+            this.getFileOperations().setFilePointer(
+                this.extents.getPhysicalBlock( block ) *
+                this.getBlockSize() );
+
+            this.getFileOperations().write( buf, index, len );
+
+            block += blocks;
+            remaining -= blocks;
+            index += len;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * Compacts and flushes the instance and closes the {@code FileOperations}
+     * implementation backing the instance.
+     *
+     * @throws IOException if closing the {@code FileOperations} implementation
+     * backing the instance fails, or if the instance already is closed.
+     */
+    public void close() throws IOException
+    {
+        this.assertNotClosed();
+
+        this.compact();
+        this.flush();
+        this.getFileOperations().close();
+        this.closed = true;
+    }
+
+    public void addStructuredFileListener(
+        final StructuredFileListener listener )
+    {
+        this.fileListeners.add( StructuredFileListener.class, listener );
+    }
+
+    public void removeStructuredFileListener(
+        final StructuredFileListener listener )
+    {
+        this.fileListeners.remove( StructuredFileListener.class, listener );
+    }
+
+    public StructuredFileListener[] getStructuredFileListeners()
+    {
+        return (StructuredFileListener[]) this.fileListeners.getListeners(
+            StructuredFileListener.class );
+
+    }
+
+    //----------------------------------------------------------StructuredFile--
+    //--IndirectStructuredFileOperations----------------------------------------
+
+    /** Number of bytes per block. */
+    private int blockSize;
+
+    /** {@code FileOperations} backing the instance. */
+    private FileOperations fileOperations;
+
+    /** Flags the instance as beeing closed. */
+    private boolean closed;
+
+    /**
+     * Creates a new {@code IndirectStructuredFileOperations} instance taking
+     * the size of one block in byte and the {@code FileOperations} operations
+     * are to be performed with.
+     *
+     * @param blockSize Number of bytes per block.
+     * @param fileOperations {@code FileOperations} implementation to operate
+     * on.
+     *
+     * @throws NullPointerException if {@code fileOperations} is {@code null}.
+     * @throws IllegalArgumentException if {@code blockSize} is incompatible
+     * with the length of {@code fileOperations}.
+     * @throws IOException if getting the length from the {@code fileOperations}
+     * fails.
+     */
+    public IndirectStructuredFileOperations(
+        final int blockSize, final FileOperations fileOperations )
+        throws IOException
+    {
+        super();
+
+        if ( fileOperations == null )
+        {
+            throw new NullPointerException( "fileOperations" );
+        }
+        if ( blockSize <= 0 )
+        {
+            throw new IllegalArgumentException( Integer.toString( blockSize ) );
+        }
+
+        this.blockSize = blockSize;
+        this.fileOperations = fileOperations;
+
+        final long length = fileOperations.getLength();
+        if ( length % blockSize != 0L )
+        {
+            throw new IllegalArgumentException(
+                Long.toString( length % blockSize ) );
+
+        }
+
+        this.physicalBlockCount = length / blockSize;
+        this.extents = new ExtentTable( this.physicalBlockCount );
+    }
+
+    /**
+     * Gets the {@code FileOperations} implementation operations are performed
+     * with.
+     *
+     * @return the {@code FileOperations} implementation operations are
+     * performed with.
+     */
+    public FileOperations getFileOperations()
+    {
+        return this.fileOperations;
+    }
+
+    /**
+     * Gets the number of extents the logical blocks of the instance are
+     * mapped by.
+     *
+     * @return the number of extents the logical blocks of the instance are
+     * mapped by.
+     */
+    public int getExtentCount()
+    {
+        return this.extents.getCount();
+    }
+
+    /**
+     * Calls the {@code flush()} method of an underlying
+     * {@code FlushableFileOperations} instance, if any.
+     * <p>This method does not compact the instance.</p>
+     *
+     * @throws IOException if reading or writing fails.
+     */
+    public void flush() throws IOException
+    {
+        this.assertNotClosed();
+
+        if ( this.getFileOperations() instanceof FlushableFileOperations )
+        {
+            ( (FlushableFileOperations) this.getFileOperations() ).flush();
+        }
+    }
+
+    /**
+     * Hints that a number of blocks will be read soon.
+     * <p>If the {@code FileOperations} backing the instance implement
+     * {@code PrefetchingFileOperations}, the blocks starting at {@code block}
+     * stored in consecutive physical blocks are prefetched in the background
+     * so that reading them later does not need to wait for I/O. Otherwise
+     * this method does nothing.</p>
+     *
+     * @param block the index of the first block to prefetch.
+     * @param count the number of blocks to prefetch.
+     *
+     * @throws IndexOutOfBoundsException if {@code block} is negative,
+     * or {@code count} is negative, or {@code block + count} is greater
+     * than {@code getBlockCount()}.
+     * @throws IOException if prefetching cannot be started.
+     */
+    public void prefetch( final long block, final long count )
+        throws IOException
+    {
+        final long blockCount = this.getBlockCount();
+
+        if ( block < 0L || block > blockCount )
+        {
+            throw new ArrayIndexOutOfBoundsException( (int) block );
+        }
+        if ( count < 0L || count > blockCount - block )
+        {
+            throw new ArrayIndexOutOfBoundsException( (int) count );
+        }
+
+        this.assertNotClosed();
+
+        if ( count > 0L &&
+             this.getFileOperations() instanceof PrefetchingFileOperations )
+        {
+            final long blocks = Math.min(
+                count, this.extents.getConsecutiveBlocks( block ) );
+
+            ( (PrefetchingFileOperations) this.getFileOperations() ).prefetch(
+                this.extents.getPhysicalBlock( block ) * this.getBlockSize(),
+                blocks * this.getBlockSize() );
+
+        }
+    }
+
+    /**
+     * Puts all physical blocks into logical order and removes any physical
+     * blocks no longer referenced.
+     * <p>Leading blocks already in logical order are not moved. Any other
+     * blocks are first copied in logical order behind the physical blocks and
+     * then copied to their final position before the file gets truncated.</p>
+     *
+     * @throws IOException if reading or writing fails.
+     */
+    public void compact() throws IOException
+    {
+        this.assertNotClosed();
+
+        final long blockCount = this.extents.getBlockCount();
+        long compacted = 0L;
+        int extent = 0;
+
+        while ( extent < this.extents.getCount() &&
+                this.extents.getPosition( extent ) ==
+                this.extents.getBlock( extent ) )
+        {
+            compacted += this.extents.getLength( extent++ );
+        }
+
+        if ( extent < this.extents.getCount() )
+        {
+            final long stage = this.physicalBlockCount;
+
+            for ( int i = extent; i < this.extents.getCount(); i++ )
+            {
+                this.copyBlocks( this.extents.getPosition( i ),
+                                 stage + this.extents.getBlock( i ) - compacted,
+                                 this.extents.getLength( i ) );
+
+            }
+
+            this.copyBlocks( stage, compacted, blockCount - compacted );
+        }
+
+        if ( this.getFileOperations().getLength() !=
+             blockCount * this.getBlockSize() )
+        {
+            this.getFileOperations().setLength(
+                blockCount * this.getBlockSize() );
+
+        }
+
+        this.physicalBlockCount = blockCount;
+        this.extents.reset( blockCount );
+    }
+
+    /**
+     * Copies physical blocks to a position not overlapping or preceding the
+     * blocks to copy.
+     *
+     * @param from the first physical block to copy.
+     * @param to the physical block to copy {@code from} to.
+     * @param count the number of blocks to copy.
+     *
+     * @throws IOException if reading or writing fails.
+     */
+    private void copyBlocks( final long from, final long to, final long count )
+        throws IOException
+    {
+        final byte[] buf = SharedBufferPool.getDefault().borrowBuffer(
+            this.getDefaultBufferSize() );
+
+        long readPos = from * this.getBlockSize();
+        long writePos = to * this.getBlockSize();
+        long toCopy = count * this.getBlockSize();
+
+        try
+        {
+            while ( toCopy > 0L )
+            {
+                final int len = toCopy <= buf.length
+                                ? (int) toCopy
+                                : buf.length;
+
+                this.read( readPos, buf, 0, len );
+                this.getFileOperations().setFilePointer( writePos );
+                this.getFileOperations().write( buf, 0, len );
+
+                readPos += len;
+                writePos += len;
+                toCopy -= len;
+            }
+        }
+        finally
+        {
+            SharedBufferPool.getDefault().returnBuffer( buf );
+        }
+    }
+
+    /**
+     * Reads a number of bytes from the {@code FileOperations} backing the
+     * instance.
+     *
+     * @param position the position to start reading at.
+     * @param buf the buffer to read into.
+     * @param off the offset into {@code buf} to start reading into.
+     * @param len the number of bytes to read.
+     *
+     * @throws IOException if reading fails.
+     */
+    private void read( final long position, final byte[] buf, final int off,
+                       final int len ) throws IOException
+    {
+        int totalRead = 0;
+
+        this.getFileOperations().setFilePointer( position );
+
+        while ( totalRead < len )
+        {
+            final int read = this.getFileOperations().
+                read( buf, off + totalRead, len - totalRead );
+
+            assert read != FileOperations.EOF :
+                "Unexpected end of file.";
+
+            totalRead += read;
+        }
+    }
+
+    /**
+     * Checks arguments provided to the {@code readBlocks} and
+     * {@code writeBlocks} methods.
+     *
+     * @throws NullPointerException if {@code buf} is {@code null}.
+     * @throws IndexOutOfBoundsException if {@code firstBlock} is negative,
+     * or {@code count} is negative, or {@code firstBlock + count} is greater
+     * than {@code getBlockCount()}, or {@code off} is negative, or
+     * {@code count * getBlockSize()} is greater than the length of
+     * {@code buf} minus {@code off}.
+     */
+    private void assertValidArguments( final long firstBlock, final int count,
+                                       final byte[] buf, final int off ) throws
+        NullPointerException, IndexOutOfBoundsException, IOException
+    {
+        final long blockCount = this.getBlockCount();
+
+        if ( buf == null )
+        {
+            throw new NullPointerException( "buf" );
+        }
+        if ( firstBlock < 0L || firstBlock > blockCount )
+        {
+            throw new ArrayIndexOutOfBoundsException( (int) firstBlock );
+        }
+        if ( count < 0 || count > blockCount - firstBlock )
+        {
+            throw new ArrayIndexOutOfBoundsException( count );
+        }
+        if ( off < 0 || (long) count * this.getBlockSize() > buf.length - off )
+        {
+            throw new ArrayIndexOutOfBoundsException( off );
+        }
+    }
+
+    /**
+     * Checks arguments provided to the {@code readBlock} and {@code writeBlock}
+     * methods.
+     *
+     * @throws NullPointerException if {@code buf} is {@code null}.
+     * @throws IndexOutOfBoundsException if {@code block} is negative,
+     * greater than or equal to {@code getBlockCount()}, or {@code off} is
+     * negative, greater than or equal to {@code getBlockSize()}, or
+     * {@code index} is negative, greater than or equal to the length of
+     * {@code buf}, or {@code length} is negative or greater than the
+     * length of {@code buf} minus {@code index} or greater than
+     * {@code getBlockSize() minus {@code off}.
+     */
+    private void assertValidArguments( final long block, final int off,
+                                       final byte[] buf, final int index,
+                                       final int length ) throws
+        NullPointerException, IndexOutOfBoundsException, IOException
+    {
+        final long blockCount = this.getBlockCount();
+
+        if ( buf == null )
+        {
+            throw new NullPointerException( "buf" );
+        }
+        if ( block < 0 || block >= blockCount )
+        {
+            throw new ArrayIndexOutOfBoundsException( (int) block );
+        }
+        if ( off < 0 || off >= this.getBlockSize() )
+        {
+            throw new ArrayIndexOutOfBoundsException( off );
+        }
+        if ( index < 0 || index >= buf.length )
+        {
+            throw new ArrayIndexOutOfBoundsException( index );
+        }
+        if ( length < 0L || length > buf.length - index ||
+             length > this.getBlockSize() - off )
+        {
+            throw new ArrayIndexOutOfBoundsException( length );
+        }
+    }
+
+    /**
+     * Checks that the instance is not closed.
+     *
+     * @throws IOException if the instance is closed.
+     */
+    private void assertNotClosed() throws IOException
+    {
+        if ( this.closed )
+        {
+            throw new IOException( this.getAlreadyClosedMessage(
+                this.getLocale() ) );
+
+        }
+    }
+
+    /**
+     * Notifies all registered {@code StructuredFileListener}s about inserted
+     * blocks.
+     *
+     * @param index the index new blocks were inserted.
+     * @param insertedBlocks the number of blocks which were inserted at
+     * {@code index}.
+     *
+     * @throws IOException if reading or writing fails.
+     */
+    private void fireBlocksInserted(
+        final long index, final long insertedBlocks ) throws IOException
+    {
+        final Object[] listeners = this.fileListeners.getListenerList();
+        for ( int i = listeners.length - 2; i >= 0; i -= 2 )
+        {
+            if ( listeners[i] == StructuredFileListener.class )
+            {
+                ( (StructuredFileListener) listeners[i + 1] ).blocksInserted(
+                    index, insertedBlocks );
+
+            }
+        }
+    }
+
+    /**
+     * Notifies all registered {@code StructuredFileListener}s about deleted
+     * blocks.
+     *
+     * @param index the index blocks were deleted at.
+     * @param deletedBlocks the number of blocks which were deleted starting at
+     * {@code index}.
+     *
+     * @throws IOException if reading or writing fails.
+     */
+    private void fireBlocksDeleted(
+        final long index, final long deletedBlocks ) throws IOException
+    {
+        final Object[] listeners = this.fileListeners.getListenerList();
+        for ( int i = listeners.length - 2; i >= 0; i -= 2 )
+        {
+            if ( listeners[i] == StructuredFileListener.class )
+            {
+                ( (StructuredFileListener) listeners[i + 1] ).blocksDeleted(
+                    index, deletedBlocks );
+
+            }
+        }
+    }
+
+    //----------------------------------------IndirectStructuredFileOperations--
+    //--Messages----------------------------------------------------------------
+
+// <editor-fold defaultstate="collapsed" desc=" Generated Code ">//GEN-BEGIN:jdtausMessages
+    // This section is managed by jdtaus-container-mojo.
+
+    /**
+     * Gets the text of message <code>alreadyClosed</code>.
+     * <blockquote><pre>Instanz geschlossen - keine E/A-Operationen möglich.</pre></blockquote>
+     * <blockquote><pre>Instance closed - cannot perform I/O.</pre></blockquote>
+     *
+     * @param locale The locale of the message instance to return.
+     *
+     * @return Message stating that an instance is already closed.
+     */
+    private String getAlreadyClosedMessage( final Locale locale )
+    {
+        return ContainerFactory.getContainer().
+            getMessage( this, "alreadyClosed", locale, null );
+
+    }
+
+// </editor-fold>//GEN-END:jdtausMessages
+
+    //----------------------------------------------------------------Messages--
+}
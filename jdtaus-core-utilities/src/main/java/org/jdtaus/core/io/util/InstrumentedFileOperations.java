@@ -0,0 +1,862 @@
+/*
+ *  jDTAUS Core Utilities
+ *  Copyright (C) 2005 Christian Schulte
+ *  <cs@schulte.it>
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+package org.jdtaus.core.io.util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import org.jdtaus.core.io.FileOperations;
+
+/**
+ * {@code FileOperations} decorator collecting I/O statistics.
+ * <p>This implementation passes all operations to the {@code FileOperations}
+ * backing the instance recording the number of read and write operations,
+ * the number of bytes transferred, the number and distance of seeks, the
+ * time spent reading and writing and histograms of the latencies of read and
+ * write operations. If the {@code FileOperations} backing the instance
+ * implement {@code CachingFileOperations}, the cache statistics of that
+ * instance are reported in addition.</p>
+ *
+ * <p>The statistics can be queried using the methods of the
+ * {@link InstrumentedFileOperationsMBean} interface. Since that interface
+ * follows the naming conventions of a standard MBean, instances can be
+ * registered with an MBean server to publish the statistics for monitoring
+ * without any further adaption.</p>
+ *
+ * <p>The {@code FlushableFileOperations}, {@code VectoredFileOperations},
+ * {@code ByteBufferFileOperations} and {@code PrefetchingFileOperations}
+ * interfaces are implemented by passing the call to the
+ * {@code FileOperations} backing the instance if it implements the interface
+ * and by emulating the operation using the methods of the
+ * {@code FileOperations} interface or ignoring the prefetch hint
+ * otherwise.</p>
+ *
+ * <p><b>Note:</b><br>
+ * This implementation is not thread-safe and concurrent changes to the
+ * underlying {@code FileOperations} implementation are not supported. The
+ * statistics may be queried concurrently, however.</p>
+ *
+ * @author <a href="mailto:cs@schulte.it">Christian Schulte</a>
+ * @version $JDTAUS$
+ */
+public final class InstrumentedFileOperations
+    implements FlushableFileOperations, VectoredFileOperations,
+               ByteBufferFileOperations, PrefetchingFileOperations,
+               InstrumentedFileOperationsMBean
+{
+    //--FileOperations----------------------------------------------------------
+
+    public long getLength() throws IOException
+    {
+        return this.fileOperations.getLength();
+    }
+
+    public void setLength( final long newLength ) throws IOException
+    {
+        this.fileOperations.setLength( newLength );
+        this.filePointer = this.fileOperations.getFilePointer();
+    }
+
+    public long getFilePointer() throws IOException
+    {
+        return this.fileOperations.getFilePointer();
+    }
+
+    public void setFilePointer( final long pos ) throws IOException
+    {
+        this.fileOperations.setFilePointer( pos );
+        this.filePointer = pos;
+    }
+
+    public int read( final byte[] buf, final int off, final int len )
+        throws IOException
+    {
+        final long start = System.currentTimeMillis();
+        final int read = this.fileOperations.read( buf, off, len );
+
+        this.readFinished( start, this.filePointer, read );
+
+        if ( read != FileOperations.EOF )
+        {
+            this.filePointer += read;
+        }
+
+        return read;
+    }
+
+    public void write( final byte[] buf, final int off, final int len )
+        throws IOException
+    {
+        final long start = System.currentTimeMillis();
+        this.fileOperations.write( buf, off, len );
+        this.writeFinished( start, this.filePointer, len );
+        this.filePointer += len;
+    }
+
+    public void read( final OutputStream out ) throws IOException
+    {
+        final long length = this.fileOperations.getLength();
+        final long start = System.currentTimeMillis();
+
+        this.fileOperations.read( out );
+        this.readFinished( start, 0L, length );
+        this.filePointer = this.fileOperations.getFilePointer();
+    }
+
+    public void write( final InputStream in ) throws IOException
+    {
+        final long pointer = this.filePointer;
+        final long start = System.currentTimeMillis();
+
+        this.fileOperations.write( in );
+        this.filePointer = this.fileOperations.getFilePointer();
+        this.writeFinished( start, pointer, this.filePointer - pointer );
+    }
+
+    public void close() throws IOException
+    {
+        this.fileOperations.close();
+    }
+
+    //----------------------------------------------------------FileOperations--
+    //--FlushableFileOperations-------------------------------------------------
+
+    /**
+     * {@inheritDoc}
+     * This method flushes the {@code FileOperations} backing the instance if
+     * it implements {@code FlushableFileOperations} and does nothing
+     * otherwise.
+     */
+    public void flush() throws IOException
+    {
+        if ( this.fileOperations instanceof FlushableFileOperations )
+        {
+            final long start = System.currentTimeMillis();
+            ( (FlushableFileOperations) this.fileOperations ).flush();
+            this.writeFinished( start, this.filePointer, 0L );
+        }
+    }
+
+    //-------------------------------------------------FlushableFileOperations--
+    //--VectoredFileOperations--------------------------------------------------
+
+    public void read( final long[] positions, final byte[][] bufs,
+                      final int[] offsets, final int[] lengths,
+                      final int count ) throws IOException
+    {
+        final long start = System.currentTimeMillis();
+
+        if ( this.fileOperations instanceof VectoredFileOperations )
+        {
+            ( (VectoredFileOperations) this.fileOperations ).read(
+                positions, bufs, offsets, lengths, count );
+
+        }
+        else
+        {
+            final long pointer = this.fileOperations.getFilePointer();
+
+            try
+            {
+                for ( int i = 0; i < count; i++ )
+                {
+                    this.fileOperations.setFilePointer( positions[i] );
+
+                    int off = offsets[i];
+                    int len = lengths[i];
+
+                    while ( len > 0 )
+                    {
+                        final int read =
+                            this.fileOperations.read( bufs[i], off, len );
+
+                        if ( read == FileOperations.EOF )
+                        {
+                            throw new EOFException();
+                        }
+
+                        off += read;
+                        len -= read;
+                    }
+                }
+            }
+            finally
+            {
+                this.fileOperations.setFilePointer( pointer );
+            }
+        }
+
+        this.vectoredFinished( start, positions, lengths, count, true );
+    }
+
+    public void write( final long[] positions, final byte[][] bufs,
+                       final int[] offsets, final int[] lengths,
+                       final int count ) throws IOException
+    {
+        final long start = System.currentTimeMillis();
+
+        if ( this.fileOperations instanceof VectoredFileOperations )
+        {
+            ( (VectoredFileOperations) this.fileOperations ).write(
+                positions, bufs, offsets, lengths, count );
+
+        }
+        else
+        {
+            final long pointer = this.fileOperations.getFilePointer();
+
+            try
+            {
+                for ( int i = 0; i < count; i++ )
+                {
+                    this.fileOperations.setFilePointer( positions[i] );
+                    this.fileOperations.write( bufs[i], offsets[i],
+                                               lengths[i] );
+
+                }
+            }
+            finally
+            {
+                this.fileOperations.setFilePointer( pointer );
+            }
+        }
+
+        this.vectoredFinished( start, positions, lengths, count, false );
+    }
+
+    //--------------------------------------------------VectoredFileOperations--
+    //--ByteBufferFileOperations------------------------------------------------
+
+    public int read( final ByteBuffer buf ) throws IOException
+    {
+        final long pointer = this.filePointer;
+        final long start = System.currentTimeMillis();
+        final int read = this.readBuffer( buf );
+
+        this.readFinished( start, pointer, read );
+
+        if ( read != FileOperations.EOF )
+        {
+            this.filePointer += read;
+        }
+
+        return read;
+    }
+
+    public void write( final ByteBuffer buf ) throws IOException
+    {
+        final long pointer = this.filePointer;
+        final long start = System.currentTimeMillis();
+        final int len = this.writeBuffer( buf );
+
+        this.writeFinished( start, pointer, len );
+        this.filePointer += len;
+    }
+
+    public int read( final long position, final ByteBuffer buf )
+        throws IOException
+    {
+        if ( buf == null )
+        {
+            throw new NullPointerException( "buf" );
+        }
+        if ( position < 0L )
+        {
+            throw new IllegalArgumentException( Long.toString( position ) );
+        }
+
+        final long start = System.currentTimeMillis();
+        final int read;
+
+        if ( this.fileOperations instanceof ByteBufferFileOperations )
+        {
+            read = ( (ByteBufferFileOperations) this.fileOperations ).read(
+                position, buf );
+
+        }
+        else
+        {
+            final long pointer = this.fileOperations.getFilePointer();
+
+            try
+            {
+                this.fileOperations.setFilePointer( position );
+                read = this.readBuffer( buf );
+            }
+            finally
+            {
+                this.fileOperations.setFilePointer( pointer );
+            }
+        }
+
+        this.readFinished( start, position, read );
+        return read;
+    }
+
+    public void write( final long position, final ByteBuffer buf )
+        throws IOException
+    {
+        if ( buf == null )
+        {
+            throw new NullPointerException( "buf" );
+        }
+        if ( position < 0L )
+        {
+            throw new IllegalArgumentException( Long.toString( position ) );
+        }
+
+        final long start = System.currentTimeMillis();
+        final int len;
+
+        if ( this.fileOperations instanceof ByteBufferFileOperations )
+        {
+            len = buf.remaining();
+            ( (ByteBufferFileOperations) this.fileOperations ).write(
+                position, buf );
+
+        }
+        else
+        {
+            final long pointer = this.fileOperations.getFilePointer();
+
+            try
+            {
+                this.fileOperations.setFilePointer( position );
+                len = this.writeBuffer( buf );
+            }
+            finally
+            {
+                this.fileOperations.setFilePointer( pointer );
+            }
+        }
+
+        this.writeFinished( start, position, len );
+    }
+
+    //------------------------------------------------ByteBufferFileOperations--
+    //--PrefetchingFileOperations-----------------------------------------------
+
+    /**
+     * {@inheritDoc}
+     * This method passes the hint to the {@code FileOperations} backing the
+     * instance if it implements {@code PrefetchingFileOperations} and does
+     * nothing otherwise.
+     */
+    public void prefetch( final long position, final long length )
+        throws IOException
+    {
+        if ( position < 0L )
+        {
+            throw new IllegalArgumentException( Long.toString( position ) );
+        }
+        if ( length < 0L )
+        {
+            throw new IllegalArgumentException( Long.toString( length ) );
+        }
+
+        if ( this.fileOperations instanceof PrefetchingFileOperations )
+        {
+            ( (PrefetchingFileOperations) this.fileOperations ).prefetch(
+                position, length );
+
+        }
+    }
+
+    //-----------------------------------------------PrefetchingFileOperations--
+    //--InstrumentedFileOperationsMBean-----------------------------------------
+
+    public long getReadCount()
+    {
+        synchronized ( this.lock )
+        {
+            return this.readCount;
+        }
+    }
+
+    public long getWriteCount()
+    {
+        synchronized ( this.lock )
+        {
+            return this.writeCount;
+        }
+    }
+
+    public long getBytesRead()
+    {
+        synchronized ( this.lock )
+        {
+            return this.bytesRead;
+        }
+    }
+
+    public long getBytesWritten()
+    {
+        synchronized ( this.lock )
+        {
+            return this.bytesWritten;
+        }
+    }
+
+    public long getSeekCount()
+    {
+        synchronized ( this.lock )
+        {
+            return this.seekCount;
+        }
+    }
+
+    public long getSeekDistance()
+    {
+        synchronized ( this.lock )
+        {
+            return this.seekDistance;
+        }
+    }
+
+    public long getReadTime()
+    {
+        synchronized ( this.lock )
+        {
+            return this.readTime;
+        }
+    }
+
+    public long getWriteTime()
+    {
+        synchronized ( this.lock )
+        {
+            return this.writeTime;
+        }
+    }
+
+    public long[] getReadLatencies()
+    {
+        synchronized ( this.lock )
+        {
+            final long[] latencies = new long[ this.readLatencies.length ];
+            System.arraycopy( this.readLatencies, 0, latencies, 0,
+                              latencies.length );
+
+            return latencies;
+        }
+    }
+
+    public long[] getWriteLatencies()
+    {
+        synchronized ( this.lock )
+        {
+            final long[] latencies = new long[ this.writeLatencies.length ];
+            System.arraycopy( this.writeLatencies, 0, latencies, 0,
+                              latencies.length );
+
+            return latencies;
+        }
+    }
+
+    public long getCacheHits()
+    {
+        synchronized ( this.lock )
+        {
+            return this.fileOperations instanceof CachingFileOperations
+                   ? ( (CachingFileOperations) this.fileOperations ).
+                   getCacheHits() - this.cacheHitsOffset
+                   : 0L;
+
+        }
+    }
+
+    public long getCacheMisses()
+    {
+        synchronized ( this.lock )
+        {
+            return this.fileOperations instanceof CachingFileOperations
+                   ? ( (CachingFileOperations) this.fileOperations ).
+                   getCacheMisses() - this.cacheMissesOffset
+                   : 0L;
+
+        }
+    }
+
+    public long getCacheEvictions()
+    {
+        synchronized ( this.lock )
+        {
+            return this.fileOperations instanceof CachingFileOperations
+                   ? ( (CachingFileOperations) this.fileOperations ).
+                   getCacheEvictions() - this.cacheEvictionsOffset
+                   : 0L;
+
+        }
+    }
+
+    public double getCacheHitRatio()
+    {
+        synchronized ( this.lock )
+        {
+            final long hits = this.getCacheHits();
+            final long lookups = hits + this.getCacheMisses();
+            return lookups > 0L ? (double) hits / (double) lookups : 0.0D;
+        }
+    }
+
+    public void resetStatistics()
+    {
+        synchronized ( this.lock )
+        {
+            this.readCount = 0L;
+            this.writeCount = 0L;
+            this.bytesRead = 0L;
+            this.bytesWritten = 0L;
+            this.seekCount = 0L;
+            this.seekDistance = 0L;
+            this.readTime = 0L;
+            this.writeTime = 0L;
+
+            for ( int i = this.readLatencies.length - 1; i >= 0; i-- )
+            {
+                this.readLatencies[i] = 0L;
+                this.writeLatencies[i] = 0L;
+            }
+
+            if ( this.fileOperations instanceof CachingFileOperations )
+            {
+                final CachingFileOperations caching =
+                    (CachingFileOperations) this.fileOperations;
+
+                this.cacheHitsOffset = caching.getCacheHits();
+                this.cacheMissesOffset = caching.getCacheMisses();
+                this.cacheEvictionsOffset = caching.getCacheEvictions();
+            }
+        }
+    }
+
+    //-----------------------------------------InstrumentedFileOperationsMBean--
+    //--InstrumentedFileOperations----------------------------------------------
+
+    /** The number of elements of a latency histogram. */
+    private static final int LATENCY_BUCKETS = 16;
+
+    /** The {@code FileOperations} backing the instance. */
+    private final FileOperations fileOperations;
+
+    /** File pointer value. */
+    private long filePointer;
+
+    /** Position in the file the last operation ended. */
+    private long lastPosition;
+
+    /** Lock guarding the statistics. */
+    private final Object lock = new Object();
+
+    /** Number of read operations. */
+    private long readCount;
+
+    /** Number of write operations. */
+    private long writeCount;
+
+    /** Number of bytes read. */
+    private long bytesRead;
+
+    /** Number of bytes written. */
+    private long bytesWritten;
+
+    /** Number of seeks. */
+    private long seekCount;
+
+    /** Total seek distance in byte. */
+    private long seekDistance;
+
+    /** Milliseconds spent reading. */
+    private long readTime;
+
+    /** Milliseconds spent writing. */
+    private long writeTime;
+
+    /** Histogram of read latencies. */
+    private final long[] readLatencies = new long[ LATENCY_BUCKETS ];
+
+    /** Histogram of write latencies. */
+    private final long[] writeLatencies = new long[ LATENCY_BUCKETS ];
+
+    /** Cache hits reported before the statistics got reset. */
+    private long cacheHitsOffset;
+
+    /** Cache misses reported before the statistics got reset. */
+    private long cacheMissesOffset;
+
+    /** Cache evictions reported before the statistics got reset. */
+    private long cacheEvictionsOffset;
+
+    /**
+     * Creates a new {@code InstrumentedFileOperations} instance taking the
+     * {@code FileOperations} backing the instance.
+     *
+     * @param fileOperations the {@code FileOperations} backing the instance.
+     *
+     * @throws NullPointerException if {@code fileOperations} is {@code null}.
+     * @throws IOException if getting the file pointer of
+     * {@code fileOperations} fails.
+     */
+    public InstrumentedFileOperations( final FileOperations fileOperations )
+        throws IOException
+    {
+        super();
+
+        if ( fileOperations == null )
+        {
+            throw new NullPointerException( "fileOperations" );
+        }
+
+        this.fileOperations = fileOperations;
+        this.filePointer = fileOperations.getFilePointer();
+        this.lastPosition = this.filePointer;
+        this.resetStatistics();
+    }
+
+    /**
+     * Gets the {@code FileOperations} implementation operations are performed
+     * with.
+     *
+     * @return the {@code FileOperations} implementation operations are
+     * performed with.
+     */
+    public FileOperations getFileOperations()
+    {
+        return this.fileOperations;
+    }
+
+    /**
+     * Reads into the remaining bytes of a buffer at the current file pointer
+     * value of the {@code FileOperations} backing the instance.
+     *
+     * @param buf the buffer to read into.
+     *
+     * @return the number of bytes read or {@code FileOperations.EOF}.
+     *
+     * @throws IOException if reading fails.
+     */
+    private int readBuffer( final ByteBuffer buf ) throws IOException
+    {
+        if ( this.fileOperations instanceof ByteBufferFileOperations )
+        {
+            return ( (ByteBufferFileOperations) this.fileOperations ).read(
+                buf );
+
+        }
+
+        if ( buf == null )
+        {
+            throw new NullPointerException( "buf" );
+        }
+
+        final byte[] data = new byte[ buf.remaining() ];
+        final int read = this.fileOperations.read( data, 0, data.length );
+
+        if ( read > 0 )
+        {
+            buf.put( data, 0, read );
+        }
+
+        return read;
+    }
+
+    /**
+     * Writes the remaining bytes of a buffer at the current file pointer
+     * value of the {@code FileOperations} backing the instance.
+     *
+     * @param buf the buffer to write.
+     *
+     * @return the number of bytes written.
+     *
+     * @throws IOException if writing fails.
+     */
+    private int writeBuffer( final ByteBuffer buf ) throws IOException
+    {
+        if ( buf == null )
+        {
+            throw new NullPointerException( "buf" );
+        }
+
+        final int len = buf.remaining();
+
+        if ( this.fileOperations instanceof ByteBufferFileOperations )
+        {
+            ( (ByteBufferFileOperations) this.fileOperations ).write( buf );
+        }
+        else
+        {
+            final byte[] data = new byte[ len ];
+            buf.get( data );
+            this.fileOperations.write( data, 0, len );
+        }
+
+        return len;
+    }
+
+    /**
+     * Records a finished read operation.
+     *
+     * @param start the time in milliseconds the operation started.
+     * @param position the position in the file the operation started.
+     * @param len the number of bytes read or {@code FileOperations.EOF}.
+     */
+    private void readFinished( final long start, final long position,
+                               final long len )
+    {
+        final long time = System.currentTimeMillis() - start;
+
+        synchronized ( this.lock )
+        {
+            this.readCount++;
+            this.readTime += time;
+            this.readLatencies[getLatencyBucket( time )]++;
+
+            if ( len > 0L )
+            {
+                this.bytesRead += len;
+                this.recordPosition( position, position + len );
+            }
+        }
+    }
+
+    /**
+     * Records a finished write operation.
+     *
+     * @param start the time in milliseconds the operation started.
+     * @param position the position in the file the operation started.
+     * @param len the number of bytes written.
+     */
+    private void writeFinished( final long start, final long position,
+                                final long len )
+    {
+        final long time = System.currentTimeMillis() - start;
+
+        synchronized ( this.lock )
+        {
+            this.writeCount++;
+            this.writeTime += time;
+            this.writeLatencies[getLatencyBucket( time )]++;
+
+            if ( len > 0L )
+            {
+                this.bytesWritten += len;
+                this.recordPosition( position, position + len );
+            }
+        }
+    }
+
+    /**
+     * Records a finished vectored read or write operation.
+     *
+     * @param start the time in milliseconds the operation started.
+     * @param positions the file positions of the ranges.
+     * @param lengths the number of bytes of each range.
+     * @param count the number of ranges.
+     * @param read {@code true} if the ranges have been read; {@code false} if
+     * the ranges have been written.
+     */
+    private void vectoredFinished( final long start, final long[] positions,
+                                   final int[] lengths, final int count,
+                                   final boolean read )
+    {
+        final long time = System.currentTimeMillis() - start;
+
+        synchronized ( this.lock )
+        {
+            final long[] latencies;
+
+            if ( read )
+            {
+                this.readCount++;
+                this.readTime += time;
+                latencies = this.readLatencies;
+            }
+            else
+            {
+                this.writeCount++;
+                this.writeTime += time;
+                latencies = this.writeLatencies;
+            }
+
+            latencies[getLatencyBucket( time )]++;
+
+            for ( int i = 0; i < count; i++ )
+            {
+                if ( read )
+                {
+                    this.bytesRead += lengths[i];
+                }
+                else
+                {
+                    this.bytesWritten += lengths[i];
+                }
+
+                this.recordPosition( positions[i], positions[i] + lengths[i] );
+            }
+        }
+    }
+
+    /**
+     * Records the range of the file accessed by an operation counting a seek
+     * if the range does not start where the previous range ended.
+     *
+     * @param position the position in the file the range starts.
+     * @param end the position in the file the range ends.
+     */
+    private void recordPosition( final long position, final long end )
+    {
+        if ( position != this.lastPosition )
+        {
+            this.seekCount++;
+            this.seekDistance += position > this.lastPosition
+                                 ? position - this.lastPosition
+                                 : this.lastPosition - position;
+
+        }
+
+        this.lastPosition = end;
+    }
+
+    /**
+     * Gets the index of the element of a latency histogram counting a given
+     * latency.
+     *
+     * @param time the latency in milliseconds.
+     *
+     * @return the index of the element counting {@code time}.
+     */
+    private static int getLatencyBucket( long time )
+    {
+        int bucket = 0;
+
+        while ( time > 0L && bucket < LATENCY_BUCKETS - 1 )
+        {
+            time >>>= 1;
+            bucket++;
+        }
+
+        return bucket;
+    }
+
+    //----------------------------------------------InstrumentedFileOperations--
+}
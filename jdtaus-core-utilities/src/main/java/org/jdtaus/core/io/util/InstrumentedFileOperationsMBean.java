@@ -0,0 +1,157 @@
+/*
+ *  jDTAUS Core Utilities
+ *  Copyright (C) 2005 Christian Schulte
+ *  <cs@schulte.it>
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+package org.jdtaus.core.io.util;
+
+/**
+ * Management interface of {@code InstrumentedFileOperations}.
+ * <p>This interface follows the naming conventions of a standard MBean so
+ * that {@code InstrumentedFileOperations} instances can be registered with
+ * an MBean server as is. All statistics are collected since creating an
+ * instance or since the last call to method {@code resetStatistics()}.</p>
+ *
+ * @author <a href="mailto:cs@schulte.it">Christian Schulte</a>
+ * @version $JDTAUS$
+ *
+ * @see InstrumentedFileOperations
+ */
+public interface InstrumentedFileOperationsMBean
+{
+    //--InstrumentedFileOperationsMBean-----------------------------------------
+
+    /**
+     * Gets the number of read operations performed.
+     *
+     * @return the number of read operations performed.
+     */
+    long getReadCount();
+
+    /**
+     * Gets the number of write operations performed.
+     *
+     * @return the number of write operations performed.
+     */
+    long getWriteCount();
+
+    /**
+     * Gets the number of bytes read.
+     *
+     * @return the number of bytes read.
+     */
+    long getBytesRead();
+
+    /**
+     * Gets the number of bytes written.
+     *
+     * @return the number of bytes written.
+     */
+    long getBytesWritten();
+
+    /**
+     * Gets the number of operations not starting where the previous
+     * operation ended.
+     *
+     * @return the number of seeks.
+     */
+    long getSeekCount();
+
+    /**
+     * Gets the sum of the distances in byte between the position an operation
+     * started and the position the previous operation ended.
+     *
+     * @return the total seek distance in byte.
+     */
+    long getSeekDistance();
+
+    /**
+     * Gets the number of milliseconds spent reading.
+     *
+     * @return the number of milliseconds spent reading.
+     */
+    long getReadTime();
+
+    /**
+     * Gets the number of milliseconds spent writing.
+     *
+     * @return the number of milliseconds spent writing.
+     */
+    long getWriteTime();
+
+    /**
+     * Gets a histogram of the latencies of read operations.
+     * <p>The element at index {@code 0} holds the number of operations
+     * finished in less than a millisecond. The element at index {@code i > 0}
+     * holds the number of operations taking at least {@code 2^(i-1)} and less
+     * than {@code 2^i} milliseconds. The last element holds the number of
+     * operations taking longer than covered by the preceding elements.</p>
+     *
+     * @return a histogram of the latencies of read operations.
+     */
+    long[] getReadLatencies();
+
+    /**
+     * Gets a histogram of the latencies of write operations.
+     * <p>The elements of the histogram are defined as for method
+     * {@link #getReadLatencies()}.</p>
+     *
+     * @return a histogram of the latencies of write operations.
+     */
+    long[] getWriteLatencies();
+
+    /**
+     * Gets the number of cache hits reported by the instrumented
+     * {@code FileOperations}.
+     *
+     * @return the number of cache hits or {@code 0} if the instrumented
+     * {@code FileOperations} do not implement {@code CachingFileOperations}.
+     */
+    long getCacheHits();
+
+    /**
+     * Gets the number of cache misses reported by the instrumented
+     * {@code FileOperations}.
+     *
+     * @return the number of cache misses or {@code 0} if the instrumented
+     * {@code FileOperations} do not implement {@code CachingFileOperations}.
+     */
+    long getCacheMisses();
+
+    /**
+     * Gets the number of cache evictions reported by the instrumented
+     * {@code FileOperations}.
+     *
+     * @return the number of cache evictions or {@code 0} if the instrumented
+     * {@code FileOperations} do not implement {@code CachingFileOperations}.
+     */
+    long getCacheEvictions();
+
+    /**
+     * Gets the ratio of cache hits to cache lookups.
+     *
+     * @return the ratio of cache hits to cache lookups or {@code 0.0} if no
+     * lookups have been reported.
+     */
+    double getCacheHitRatio();
+
+    /** Resets all statistics collected so far. */
+    void resetStatistics();
+
+    //-----------------------------------------InstrumentedFileOperationsMBean--
+}
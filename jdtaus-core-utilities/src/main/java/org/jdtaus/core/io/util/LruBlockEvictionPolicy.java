@@ -0,0 +1,158 @@
+/*
+ *  jDTAUS Core Utilities
+ *  Copyright (C) 2005 Christian Schulte
+ *  <cs@schulte.it>
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+package org.jdtaus.core.io.util;
+
+/**
+ * Least recently used {@code BlockEvictionPolicy}.
+ * <p>This implementation evicts the block which has not been accessed for the
+ * longest time. Frames are kept in a doubly linked list ordered by recency of
+ * access backed by arrays of {@code int}s so that no objects are allocated
+ * when blocks are cached or accessed.</p>
+ *
+ * @author <a href="mailto:cs@schulte.it">Christian Schulte</a>
+ * @version $JDTAUS$
+ */
+public final class LruBlockEvictionPolicy implements BlockEvictionPolicy
+{
+    //--BlockEvictionPolicy-----------------------------------------------------
+
+    public void initialize( final int capacity )
+    {
+        if ( capacity <= 0 )
+        {
+            throw new IllegalArgumentException( Integer.toString( capacity ) );
+        }
+
+        this.previous = new int[ capacity ];
+        this.next = new int[ capacity ];
+        this.head = NO_FRAME;
+        this.tail = NO_FRAME;
+    }
+
+    public void blockCached( final int frame, final long block )
+    {
+        this.linkFirst( frame );
+    }
+
+    public void blockAccessed( final int frame )
+    {
+        if ( frame != this.head )
+        {
+            this.unlink( frame );
+            this.linkFirst( frame );
+        }
+    }
+
+    public void blockDiscarded( final int frame )
+    {
+        this.unlink( frame );
+    }
+
+    public int getVictim()
+    {
+        if ( this.tail == NO_FRAME )
+        {
+            throw new IllegalStateException();
+        }
+
+        return this.tail;
+    }
+
+    //-----------------------------------------------------BlockEvictionPolicy--
+    //--LruBlockEvictionPolicy--------------------------------------------------
+
+    /** Index denoting the absence of a frame. */
+    private static final int NO_FRAME = -1;
+
+    /** Previous (more recently used) frame of each frame. */
+    private int[] previous;
+
+    /** Next (less recently used) frame of each frame. */
+    private int[] next;
+
+    /** Most recently used frame. */
+    private int head = NO_FRAME;
+
+    /** Least recently used frame. */
+    private int tail = NO_FRAME;
+
+    /** Creates a new {@code LruBlockEvictionPolicy} instance. */
+    public LruBlockEvictionPolicy()
+    {
+        super();
+    }
+
+    /**
+     * Adds a frame to the head of the list.
+     *
+     * @param frame the frame to add.
+     */
+    private void linkFirst( final int frame )
+    {
+        this.previous[frame] = NO_FRAME;
+        this.next[frame] = this.head;
+
+        if ( this.head != NO_FRAME )
+        {
+            this.previous[this.head] = frame;
+        }
+        else
+        {
+            this.tail = frame;
+        }
+
+        this.head = frame;
+    }
+
+    /**
+     * Removes a frame from the list.
+     *
+     * @param frame the frame to remove.
+     */
+    private void unlink( final int frame )
+    {
+        final int p = this.previous[frame];
+        final int n = this.next[frame];
+
+        if ( p != NO_FRAME )
+        {
+            this.next[p] = n;
+        }
+        else
+        {
+            this.head = n;
+        }
+
+        if ( n != NO_FRAME )
+        {
+            this.previous[n] = p;
+        }
+        else
+        {
+            this.tail = p;
+        }
+
+        this.previous[frame] = NO_FRAME;
+        this.next[frame] = NO_FRAME;
+    }
+
+    //--------------------------------------------------LruBlockEvictionPolicy--
+}
@@ -0,0 +1,820 @@
+/*
+ *  jDTAUS Core Utilities
+ *  Copyright (C) 2005 Christian Schulte
+ *  <cs@schulte.it>
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+package org.jdtaus.core.io.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.WritableByteChannel;
+import java.util.Locale;
+import org.jdtaus.core.container.ContainerFactory;
+import org.jdtaus.core.io.FileOperations;
+import org.jdtaus.core.lang.spi.MemoryManager;
+
+/**
+ * Memory mapped {@code FileOperations} implementation.
+ * <p>This implementation serves reads and writes from windows of a
+ * {@link java.io.RandomAccessFile} mapped into memory using
+ * {@link java.nio.channels.FileChannel#map(FileChannel.MapMode,long,long)}.
+ * Windows are aligned to property {@code windowSize} (defaults to
+ * {@code 67108864} - 64 MB) and remapped whenever an operation crosses a
+ * window boundary or the file needs to grow. Since window positions are not
+ * limited to {@code int}, files larger than 2 GB are supported by mapping
+ * multiple windows one after the other. Files opened read-only are mapped
+ * read-only. {@code ByteBuffer}s are copied from and to the mapped windows
+ * directly.</p>
+ * <p>Files are grown in steps of {@code windowSize} bytes so that appending
+ * data does not remap a window on every write. The {@code RandomAccessFile}
+ * may therefore be longer than the file until the instance is closed, which
+ * trims it to the length of the file.</p>
+ * <p>Changes are written to the file by the operating system. Windows are
+ * forced to the storage device when they are dropped, and the
+ * {@link #flush()} method forces any changes of the current window, so that
+ * flushing forces all changes to the storage device.</p>
+ *
+ * <p><b>Note:</b><br>
+ * This implementation is not thread-safe and concurrent changes to the
+ * underlying {@code RandomAccessFile} are not supported.</p>
+ *
+ * @author <a href="mailto:cs@schulte.it">Christian Schulte</a>
+ * @version $JDTAUS$
+ *
+ * @see RandomAccessFileOperations
+ */
+public final class MappedFileOperations
+    implements FlushableFileOperations, ByteBufferFileOperations
+{
+    //--Dependencies------------------------------------------------------------
+
+// <editor-fold defaultstate="collapsed" desc=" Generated Code ">//GEN-BEGIN:jdtausDependencies
+    // This section is managed by jdtaus-container-mojo.
+
+    /**
+     * Gets the configured <code>MemoryManager</code> implementation.
+     *
+     * @return The configured <code>MemoryManager</code> implementation.
+     */
+    private MemoryManager getMemoryManager()
+    {
+        return (MemoryManager) ContainerFactory.getContainer().
+            getDependency( this, "MemoryManager" );
+
+    }
+
+    /**
+     * Gets the configured <code>Locale</code> implementation.
+     *
+     * @return The configured <code>Locale</code> implementation.
+     */
+    private Locale getLocale()
+    {
+        return (Locale) ContainerFactory.getContainer().
+            getDependency( this, "Locale" );
+
+    }
+
+// </editor-fold>//GEN-END:jdtausDependencies
+
+    //------------------------------------------------------------Dependencies--
+    //--Properties--------------------------------------------------------------
+
+// <editor-fold defaultstate="collapsed" desc=" Generated Code ">//GEN-BEGIN:jdtausProperties
+    // This section is managed by jdtaus-container-mojo.
+
+    /**
+     * Gets the value of property <code>defaultWindowSize</code>.
+     *
+     * @return Default number of bytes to map into memory at once.
+     */
+    private java.lang.Integer getDefaultWindowSize()
+    {
+        return (java.lang.Integer) ContainerFactory.getContainer().
+            getProperty( this, "defaultWindowSize" );
+
+    }
+
+    /**
+     * Gets the value of property <code>streamBufferSize</code>.
+     *
+     * @return Size of the buffer for buffering streams.
+     */
+    private int getStreamBufferSize()
+    {
+        return ( (java.lang.Integer) ContainerFactory.getContainer().
+            getProperty( this, "streamBufferSize" ) ).intValue();
+
+    }
+
+// </editor-fold>//GEN-END:jdtausProperties
+
+    //--------------------------------------------------------------Properties--
+    //--FileOperations----------------------------------------------------------
+
+    public long getLength() throws IOException
+    {
+        this.assertNotClosed();
+
+        if ( this.length == NO_LENGTH )
+        {
+            this.length = this.getFileChannel().size();
+            this.capacity = this.length;
+        }
+
+        return this.length;
+    }
+
+    public void setLength( final long newLength ) throws IOException
+    {
+        if ( newLength < 0L )
+        {
+            throw new IllegalArgumentException( Long.toString( newLength ) );
+        }
+
+        this.assertNotClosed();
+
+        final long oldLength = this.getLength();
+
+        if ( newLength != oldLength )
+        {
+            this.resize( newLength );
+        }
+
+        if ( newLength < oldLength && this.filePointer > newLength )
+        {
+            this.filePointer = newLength;
+        }
+    }
+
+    public long getFilePointer() throws IOException
+    {
+        this.assertNotClosed();
+
+        return this.filePointer;
+    }
+
+    public void setFilePointer( final long pos ) throws IOException
+    {
+        if ( pos < 0L )
+        {
+            throw new IllegalArgumentException( Long.toString( pos ) );
+        }
+
+        this.assertNotClosed();
+
+        this.filePointer = pos;
+    }
+
+    public int read( final byte[] buf, int off, int len ) throws IOException
+    {
+        if ( buf == null )
+        {
+            throw new NullPointerException( "buf" );
+        }
+        if ( off < 0 )
+        {
+            throw new IndexOutOfBoundsException( Integer.toString( off ) );
+        }
+        if ( len < 0 )
+        {
+            throw new IndexOutOfBoundsException( Integer.toString( len ) );
+        }
+        if ( off + len > buf.length )
+        {
+            throw new IndexOutOfBoundsException( Integer.toString( off + len ) );
+        }
+
+        this.assertNotClosed();
+
+        int read = FileOperations.EOF;
+
+        if ( len == 0 )
+        {
+            read = 0;
+        }
+        else if ( this.filePointer < this.getLength() )
+        {
+            final long remaining = this.getLength() - this.filePointer;
+            if ( len > remaining )
+            {
+                len = (int) remaining;
+            }
+
+            read = len;
+
+            while ( len > 0 )
+            {
+                final ByteBuffer window = this.getWindow( this.filePointer );
+                final int chunk = len > window.remaining()
+                                  ? window.remaining()
+                                  : len;
+
+                window.get( buf, off, chunk );
+
+                off += chunk;
+                len -= chunk;
+                this.filePointer += chunk;
+            }
+        }
+
+        return read;
+    }
+
+    public void write( final byte[] buf, int off, int len ) throws IOException
+    {
+        if ( buf == null )
+        {
+            throw new NullPointerException( "buf" );
+        }
+        if ( off < 0 )
+        {
+            throw new IndexOutOfBoundsException( Integer.toString( off ) );
+        }
+        if ( len < 0 )
+        {
+            throw new IndexOutOfBoundsException( Integer.toString( len ) );
+        }
+        if ( off + len > buf.length )
+        {
+            throw new IndexOutOfBoundsException( Integer.toString( off + len ) );
+        }
+
+        this.assertNotClosed();
+
+        if ( this.filePointer + len > this.getLength() )
+        { // Expand the file so that the data can be mapped.
+            this.setLength( this.filePointer + len );
+        }
+
+        while ( len > 0 )
+        {
+            final ByteBuffer window = this.getWindow( this.filePointer );
+            final int chunk = len > window.remaining()
+                              ? window.remaining()
+                              : len;
+
+            window.put( buf, off, chunk );
+
+            off += chunk;
+            len -= chunk;
+            this.filePointer += chunk;
+        }
+    }
+
+    public void read( final OutputStream out ) throws IOException
+    {
+        if ( out == null )
+        {
+            throw new NullPointerException( "out" );
+        }
+
+        this.assertNotClosed();
+
+        final WritableByteChannel target = Channels.newChannel( out );
+        final long length = this.getLength();
+
+        this.filePointer = 0L;
+
+        while ( this.filePointer < length )
+        {
+            final ByteBuffer window = this.getWindow( this.filePointer );
+
+            if ( window.remaining() > length - this.filePointer )
+            { // Window extends beyond the end of the file.
+                window.limit( window.position() +
+                              (int) ( length - this.filePointer ) );
+
+            }
+
+            final int chunk = window.remaining();
+
+            while ( window.hasRemaining() )
+            {
+                target.write( window );
+            }
+
+            this.filePointer += chunk;
+        }
+    }
+
+    public void write( final InputStream in ) throws IOException
+    {
+        if ( in == null )
+        {
+            throw new NullPointerException( "in" );
+        }
+
+        this.assertNotClosed();
+
+        int read;
+        final byte[] buf = this.getStreamBuffer();
+
+        while ( ( read = in.read( buf, 0, buf.length ) ) != FileOperations.EOF )
+        {
+            this.write( buf, 0, read );
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * Forces any changes to the storage device, trims the
+     * {@code RandomAccessFile} backing the instance to the length of the file
+     * and closes it.
+     *
+     * @throws IOException if trimming or closing the {@code RandomAccessFile}
+     * backing the instance fails, or if the instance already is closed.
+     */
+    public void close() throws IOException
+    {
+        this.assertNotClosed();
+
+        this.dropWindow();
+
+        if ( this.length != NO_LENGTH && this.capacity != this.length )
+        {
+            this.getRandomAccessFile().setLength( this.length );
+        }
+
+        this.getRandomAccessFile().close();
+        this.closed = true;
+    }
+
+    //----------------------------------------------------------FileOperations--
+    //--FlushableFileOperations-------------------------------------------------
+
+    /**
+     * {@inheritDoc}
+     * This method forces any changes made to the currently mapped window to
+     * the storage device. Windows mapped before have been forced when they
+     * were dropped.
+     *
+     * @throws IOException if the instance is closed.
+     */
+    public void flush() throws IOException
+    {
+        this.assertNotClosed();
+
+        if ( this.window != null && !this.window.isReadOnly() )
+        {
+            this.window.force();
+        }
+    }
+
+    //-------------------------------------------------FlushableFileOperations--
+    //--ByteBufferFileOperations------------------------------------------------
+
+    public int read( final ByteBuffer buf ) throws IOException
+    {
+        final int read = this.read( this.filePointer, buf );
+
+        if ( read > 0 )
+        {
+            this.filePointer += read;
+        }
+
+        return read;
+    }
+
+    public void write( final ByteBuffer buf ) throws IOException
+    {
+        if ( buf == null )
+        {
+            throw new NullPointerException( "buf" );
+        }
+
+        final int len = buf.remaining();
+        this.write( this.filePointer, buf );
+        this.filePointer += len;
+    }
+
+    public int read( long position, final ByteBuffer buf ) throws IOException
+    {
+        if ( buf == null )
+        {
+            throw new NullPointerException( "buf" );
+        }
+        if ( position < 0L )
+        {
+            throw new IllegalArgumentException( Long.toString( position ) );
+        }
+
+        this.assertNotClosed();
+
+        int read = FileOperations.EOF;
+        int len = buf.remaining();
+
+        if ( len == 0 )
+        {
+            read = 0;
+        }
+        else if ( position < this.getLength() )
+        {
+            final long remaining = this.getLength() - position;
+            if ( len > remaining )
+            {
+                len = (int) remaining;
+            }
+
+            read = len;
+
+            while ( len > 0 )
+            {
+                final ByteBuffer window = this.getWindow( position );
+                final int chunk = len > window.remaining()
+                                  ? window.remaining()
+                                  : len;
+
+                window.limit( window.position() + chunk );
+                buf.put( window );
+
+                len -= chunk;
+                position += chunk;
+            }
+        }
+
+        return read;
+    }
+
+    public void write( long position, final ByteBuffer buf )
+        throws IOException
+    {
+        if ( buf == null )
+        {
+            throw new NullPointerException( "buf" );
+        }
+        if ( position < 0L )
+        {
+            throw new IllegalArgumentException( Long.toString( position ) );
+        }
+
+        this.assertNotClosed();
+
+        final int limit = buf.limit();
+
+        if ( position + buf.remaining() > this.getLength() )
+        { // Expand the file so that the data can be mapped.
+            this.resize( position + buf.remaining() );
+        }
+
+        try
+        {
+            while ( buf.hasRemaining() )
+            {
+                final ByteBuffer window = this.getWindow( position );
+                final int chunk = buf.remaining() > window.remaining()
+                                  ? window.remaining()
+                                  : buf.remaining();
+
+                buf.limit( buf.position() + chunk );
+                window.put( buf );
+                buf.limit( limit );
+
+                position += chunk;
+            }
+        }
+        finally
+        {
+            buf.limit( limit );
+        }
+    }
+
+    //------------------------------------------------ByteBufferFileOperations--
+    //--MappedFileOperations----------------------------------------------------
+
+    /** {@code RandomAccessFile} requirement. */
+    private final RandomAccessFile randomAccessFile;
+
+    /** {@code FileChannel} of {@code randomAccessFile}. */
+    private final FileChannel fileChannel;
+
+    /** Mode windows are mapped with. */
+    private FileChannel.MapMode mapMode;
+
+    /** Currently mapped window. */
+    private MappedByteBuffer window;
+
+    /** Position in the file {@code window} starts. */
+    private long windowPosition = NO_WINDOWPOSITION;
+
+    private static final long NO_WINDOWPOSITION = Long.MIN_VALUE;
+
+    /** Number of bytes mapped into memory at once. */
+    private Integer windowSize;
+
+    /** Length of the file. */
+    private long length = NO_LENGTH;
+
+    /**
+     * Length of the {@code RandomAccessFile} backing the instance; at least
+     * {@code length}.
+     */
+    private long capacity = NO_LENGTH;
+
+    private static final long NO_LENGTH = Long.MIN_VALUE;
+
+    /** File pointer. */
+    private long filePointer;
+
+    /** Stream buffer. */
+    private byte[] streamBuffer;
+
+    /** Flags the instance as beeing closed. */
+    private boolean closed;
+
+    /**
+     * Creates a new {@code MappedFileOperations} instance mapping
+     * {@code file}.
+     *
+     * @param file the {@code RandomAccessFile} to map into memory.
+     *
+     * @throws NullPointerException if {@code file} is {@code null}.
+     * @throws IOException if getting the file pointer of {@code file} fails.
+     */
+    public MappedFileOperations( final RandomAccessFile file )
+        throws IOException
+    {
+        super();
+
+        if ( file == null )
+        {
+            throw new NullPointerException( "file" );
+        }
+
+        this.randomAccessFile = file;
+        this.fileChannel = file.getChannel();
+        this.filePointer = file.getFilePointer();
+    }
+
+    /**
+     * Creates a new {@code MappedFileOperations} instance mapping
+     * {@code file} taking the number of bytes to map into memory at once.
+     *
+     * @param file the {@code RandomAccessFile} to map into memory.
+     * @param windowSize the number of bytes to map into memory at once.
+     *
+     * @throws NullPointerException if {@code file} is {@code null}.
+     * @throws IOException if getting the file pointer of {@code file} fails.
+     */
+    public MappedFileOperations( final RandomAccessFile file,
+                                 final int windowSize ) throws IOException
+    {
+        this( file );
+
+        if ( windowSize > 0 )
+        {
+            this.windowSize = new Integer( windowSize );
+        }
+    }
+
+    /**
+     * Gets the random access file operations are performed with.
+     *
+     * @return the {@code RandomAccessFile} instance operations are performed
+     * with.
+     */
+    public RandomAccessFile getRandomAccessFile()
+    {
+        return this.randomAccessFile;
+    }
+
+    /**
+     * Gets the channel windows are mapped from.
+     *
+     * @return the {@code FileChannel} of the {@code RandomAccessFile}
+     * operations are performed with.
+     */
+    public FileChannel getFileChannel()
+    {
+        return this.fileChannel;
+    }
+
+    /**
+     * Gets the number of bytes mapped into memory at once.
+     *
+     * @return the number of bytes mapped into memory at once.
+     */
+    public int getWindowSize()
+    {
+        if ( this.windowSize == null )
+        {
+            this.windowSize = this.getDefaultWindowSize();
+        }
+
+        return this.windowSize.intValue();
+    }
+
+    /**
+     * Gets the window holding a given position of the file.
+     * <p>The returned buffer is positioned at {@code pos} and limited to the
+     * end of the window.</p>
+     *
+     * @param pos the position in the file to get the window for.
+     *
+     * @return a buffer of the window holding {@code pos}.
+     *
+     * @throws IOException if mapping the window fails.
+     */
+    private ByteBuffer getWindow( final long pos ) throws IOException
+    {
+        if ( this.window == null || pos < this.windowPosition ||
+             pos >= this.windowPosition + this.window.capacity() )
+        {
+            final long start = pos - pos % this.getWindowSize();
+            final long size = this.getCapacity() - start > this.getWindowSize()
+                              ? this.getWindowSize()
+                              : this.getCapacity() - start;
+
+            assert size > 0L : "Unexpected end of file.";
+
+            this.dropWindow();
+            this.window = this.map( start, size );
+            this.windowPosition = start;
+        }
+
+        this.window.limit( this.window.capacity() );
+        this.window.position( (int) ( pos - this.windowPosition ) );
+        return this.window;
+    }
+
+    /**
+     * Maps a region of the file into memory.
+     *
+     * @param pos the position in the file the region starts.
+     * @param size the size of the region.
+     *
+     * @return the mapped region.
+     *
+     * @throws IOException if mapping the region fails.
+     */
+    private MappedByteBuffer map( final long pos, final long size )
+        throws IOException
+    {
+        if ( this.mapMode == null )
+        {
+            try
+            {
+                final MappedByteBuffer mapped = this.getFileChannel().map(
+                    FileChannel.MapMode.READ_WRITE, pos, size );
+
+                this.mapMode = FileChannel.MapMode.READ_WRITE;
+                return mapped;
+            }
+            catch ( final NonWritableChannelException e )
+            {
+                this.mapMode = FileChannel.MapMode.READ_ONLY;
+            }
+        }
+
+        return this.getFileChannel().map( this.mapMode, pos, size );
+    }
+
+    /**
+     * Gets the length of the {@code RandomAccessFile} backing the instance.
+     *
+     * @return the number of bytes available for mapping windows.
+     *
+     * @throws IOException if getting the length fails.
+     */
+    private long getCapacity() throws IOException
+    {
+        this.getLength();
+        return this.capacity;
+    }
+
+    /**
+     * Changes the length of the file without touching the file pointer.
+     * <p>The {@code RandomAccessFile} backing the instance is grown to the
+     * next multiple of {@code windowSize} if it is too short to hold the file
+     * and truncated if the file is truncated. Any bytes between the end of
+     * the file and the end of the {@code RandomAccessFile} thus are zero.</p>
+     *
+     * @param newLength the new length of the file.
+     *
+     * @throws IOException if changing the length of the file fails.
+     */
+    private void resize( final long newLength ) throws IOException
+    {
+        final long oldLength = this.getLength();
+
+        if ( newLength > this.capacity )
+        {
+            final long remainder = newLength % this.getWindowSize();
+            final long newCapacity = remainder == 0L
+                                     ? newLength
+                                     : newLength - remainder +
+                                       this.getWindowSize();
+
+            // The current window may end at the old end of the file.
+            this.dropWindow();
+            this.getRandomAccessFile().setLength( newCapacity );
+            this.capacity = newCapacity;
+        }
+        else if ( newLength < oldLength )
+        {
+            // The current window may refer to truncated data.
+            this.dropWindow();
+            this.getRandomAccessFile().setLength( newLength );
+            this.capacity = newLength;
+        }
+
+        this.length = newLength;
+    }
+
+    /**
+     * Forces any changes of the currently mapped window to the storage device
+     * and discards the window.
+     */
+    private void dropWindow()
+    {
+        if ( this.window != null && !this.window.isReadOnly() )
+        {
+            this.window.force();
+        }
+
+        this.window = null;
+        this.windowPosition = NO_WINDOWPOSITION;
+    }
+
+    /**
+     * Checks that the instance is not closed.
+     *
+     * @throws IOException if the instance is closed.
+     */
+    private void assertNotClosed() throws IOException
+    {
+        if ( this.closed )
+        {
+            throw new IOException( this.getAlreadyClosedMessage(
+                this.getLocale() ) );
+
+        }
+    }
+
+    /**
+     * Gets a buffer for buffering streams.
+     *
+     * @return a buffer for buffering streams.
+     */
+    private byte[] getStreamBuffer()
+    {
+        if ( this.streamBuffer == null )
+        {
+            this.streamBuffer = this.getMemoryManager().
+                allocateBytes( this.getStreamBufferSize() < 0
+                               ? 0
+                               : this.getStreamBufferSize() );
+
+        }
+
+        return this.streamBuffer;
+    }
+
+    //----------------------------------------------------MappedFileOperations--
+    //--Messages----------------------------------------------------------------
+
+// <editor-fold defaultstate="collapsed" desc=" Generated Code ">//GEN-BEGIN:jdtausMessages
+    // This section is managed by jdtaus-container-mojo.
+
+    /**
+     * Gets the text of message <code>alreadyClosed</code>.
+     * <blockquote><pre>Instanz geschlossen - keine E/A-Operationen möglich.</pre></blockquote>
+     * <blockquote><pre>Instance closed - cannot perform I/O.</pre></blockquote>
+     *
+     * @param locale The locale of the message instance to return.
+     *
+     * @return Message stating that an instance is already closed.
+     */
+    private String getAlreadyClosedMessage( final Locale locale )
+    {
+        return ContainerFactory.getContainer().
+            getMessage( this, "alreadyClosed", locale, null );
+
+    }
+
+// </editor-fold>//GEN-END:jdtausMessages
+
+    //----------------------------------------------------------------Messages--
+}
@@ -24,6 +24,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Locale;
 import org.jdtaus.core.container.ContainerFactory;
@@ -41,8 +42,15 @@ import org.jdtaus.core.logging.spi.Logger;
  * @version $JDTAUS$
  */
 public final class MemoryFileOperations
-    implements FileOperations, Serializable, Cloneable
+    implements ByteBufferFileOperations, SparseFileOperations, Serializable,
+               Cloneable
 {
+    //--Constants---------------------------------------------------------------
+
+    /** Serial version UID for backwards compatibility with 1.0.x classes. */
+    private static final long serialVersionUID = -5140951306583055712L;
+
+    //---------------------------------------------------------------Constants--
     //--Fields------------------------------------------------------------------
 
     /**
@@ -63,12 +71,6 @@ public final class MemoryFileOperations
      */
     private int length;
 
-    /**
-     * Default temporary buffer.
-     * @serial
-     */
-    private byte[] defaultBuffer;
-
     //------------------------------------------------------------------Fields--
     //--Properties--------------------------------------------------------------
 
@@ -155,6 +157,12 @@ public final class MemoryFileOperations
         }
 
         this.ensureCapacity( (int) newLength );
+
+        if ( newLength > this.length )
+        { // Clear any data of a previous length.
+            Arrays.fill( this.data, this.length, (int) newLength, (byte) 0 );
+        }
+
         this.length = (int) newLength;
         if ( this.filePointer > this.length )
         {
@@ -292,9 +300,17 @@ public final class MemoryFileOperations
         int read;
         final byte[] buf = this.getStreamBuffer();
 
-        while ( ( read = in.read( buf, 0, buf.length ) ) != FileOperations.EOF )
+        try
         {
-            this.write( buf, 0, read );
+            while ( ( read = in.read( buf, 0, buf.length ) ) !=
+                    FileOperations.EOF )
+            {
+                this.write( buf, 0, read );
+            }
+        }
+        finally
+        {
+            SharedBufferPool.getDefault().returnBuffer( buf );
         }
     }
 
@@ -311,6 +327,134 @@ public final class MemoryFileOperations
     }
 
     //----------------------------------------------------------FileOperations--
+    //--ByteBufferFileOperations------------------------------------------------
+
+    public int read( final ByteBuffer buf )
+    {
+        final int read = this.read( this.filePointer, buf );
+
+        if ( read > 0 )
+        {
+            this.filePointer += read;
+        }
+
+        return read;
+    }
+
+    public void write( final ByteBuffer buf )
+    {
+        if ( buf == null )
+        {
+            throw new NullPointerException( "buf" );
+        }
+
+        final int len = buf.remaining();
+        this.write( this.filePointer, buf );
+        this.filePointer += len;
+    }
+
+    public int read( final long position, final ByteBuffer buf )
+    {
+        // Preconditions.
+        if ( buf == null )
+        {
+            throw new NullPointerException( "buf" );
+        }
+        if ( position < 0L )
+        {
+            throw new IllegalArgumentException( Long.toString( position ) );
+        }
+
+        final int len = buf.remaining();
+        if ( position + len > Integer.MAX_VALUE )
+        {
+            throw new ArrayIndexOutOfBoundsException( Integer.MAX_VALUE );
+        }
+
+        final int ret;
+
+        if ( len == 0 )
+        {
+            ret = 0;
+        }
+        else if ( position >= this.length )
+        {
+            // EOF
+            ret = FileOperations.EOF;
+        }
+        else
+        {
+            ret = position + len > this.length
+                  ? (int) ( this.length - position )
+                  : len;
+
+            buf.put( this.data, (int) position, ret );
+        }
+
+        return ret;
+    }
+
+    public void write( final long position, final ByteBuffer buf )
+    {
+        // Preconditions.
+        if ( buf == null )
+        {
+            throw new NullPointerException( "buf" );
+        }
+        if ( position < 0L )
+        {
+            throw new IllegalArgumentException( Long.toString( position ) );
+        }
+
+        final int len = buf.remaining();
+        final long newLen = position + len;
+        if ( newLen > Integer.MAX_VALUE )
+        {
+            throw new ArrayIndexOutOfBoundsException( Integer.MAX_VALUE );
+        }
+
+        if ( newLen > this.length )
+        {
+            final long filePointer = this.filePointer;
+            this.setLength( newLen );
+            this.filePointer = filePointer;
+        }
+
+        buf.get( this.data, (int) position, len );
+    }
+
+    //------------------------------------------------ByteBufferFileOperations--
+    //--SparseFileOperations----------------------------------------------------
+
+    public void zero( final long position, final long length )
+    {
+        // Preconditions.
+        if ( position < 0L )
+        {
+            throw new IllegalArgumentException( Long.toString( position ) );
+        }
+        if ( length < 0L )
+        {
+            throw new IllegalArgumentException( Long.toString( length ) );
+        }
+
+        final long newLen = position + length;
+        if ( newLen > Integer.MAX_VALUE )
+        {
+            throw new ArrayIndexOutOfBoundsException( Integer.MAX_VALUE );
+        }
+
+        if ( newLen > this.length )
+        {
+            final long filePointer = this.filePointer;
+            this.setLength( newLen );
+            this.filePointer = filePointer;
+        }
+
+        Arrays.fill( this.data, (int) position, (int) newLen, (byte) 0 );
+    }
+
+    //----------------------------------------------------SparseFileOperations--
     //--MemoryFileOperations----------------------------------------------------
 
     /** Creates a new {@code MemoryFileOperations} instance of no length. */
@@ -422,22 +566,17 @@ public final class MemoryFileOperations
     }
 
     /**
-     * Gets a buffer for buffering streams.
+     * Borrows a buffer for buffering streams from the default
+     * {@code SharedBufferPool}.
      *
-     * @return a buffer for buffering streams.
+     * @return a buffer for buffering streams to return to the default
+     * {@code SharedBufferPool}.
      */
     private byte[] getStreamBuffer()
     {
-        if ( this.defaultBuffer == null )
-        {
-            this.defaultBuffer = this.getMemoryManager().
-                allocateBytes( this.getStreamBufferSize() < 0
-                               ? 0
-                               : this.getStreamBufferSize() );
-
-        }
+        return SharedBufferPool.getDefault().borrowBuffer(
+            this.getStreamBufferSize() < 0 ? 0 : this.getStreamBufferSize() );
 
-        return this.defaultBuffer;
     }
 
     //----------------------------------------------------MemoryFileOperations--
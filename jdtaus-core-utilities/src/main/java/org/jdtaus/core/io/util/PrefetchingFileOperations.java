@@ -0,0 +1,57 @@
+/*
+ *  jDTAUS Core Utilities
+ *  Copyright (C) 2005 Christian Schulte
+ *  <cs@schulte.it>
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+package org.jdtaus.core.io.util;
+
+import java.io.IOException;
+import org.jdtaus.core.io.FileOperations;
+
+/**
+ * Extension to {@code FileOperations} adding support for prefetching ranges
+ * of a file.
+ * <p>Prefetching is a hint. Implementations may start reading a range in the
+ * background so that a later read of the range is served from memory without
+ * waiting for I/O, or may ignore the hint. The file pointer is not changed by
+ * any of the methods of this interface.</p>
+ *
+ * @author <a href="mailto:cs@schulte.it">Christian Schulte</a>
+ * @version $JDTAUS$
+ */
+public interface PrefetchingFileOperations extends FileOperations
+{
+    //--PrefetchingFileOperations-----------------------------------------------
+
+    /**
+     * Hints that a range of the file will be read soon.
+     * <p>A range extending beyond the end of the file is prefetched up to the
+     * end of the file. Implementations may prefetch only part of a range if
+     * the range is larger than the memory available for prefetching.</p>
+     *
+     * @param position the file position of the range to prefetch.
+     * @param length the number of bytes to prefetch.
+     *
+     * @throws IllegalArgumentException if {@code position} or {@code length}
+     * is negative.
+     * @throws IOException if prefetching cannot be started.
+     */
+    void prefetch( long position, long length ) throws IOException;
+
+    //-----------------------------------------------PrefetchingFileOperations--
+}
@@ -20,40 +20,38 @@
  */
 package org.jdtaus.core.io.util;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Locale;
 import org.jdtaus.core.container.ContainerFactory;
 import org.jdtaus.core.io.FileOperations;
-import org.jdtaus.core.lang.spi.MemoryManager;
 
 /**
  * Adapts a {@link java.io.RandomAccessFile} to {@code FileOperations}.
+ * <p>Vectored operations are performed using the {@code FileChannel} of the
+ * {@code RandomAccessFile} transferring ranges adjacent in the file using the
+ * scattering and gathering methods of the channel. {@code ByteBuffer}s are
+ * read and written using the same channel whose position is the file pointer
+ * of the {@code RandomAccessFile}. Zeroing a range extending the file does
+ * not write the extension so that sparse files stay sparse.</p>
  *
  * @author <a href="mailto:cs@schulte.it">Christian Schulte</a>
  * @version $JDTAUS$
  */
-public final class RandomAccessFileOperations implements FileOperations
+public final class RandomAccessFileOperations
+    implements VectoredFileOperations, ByteBufferFileOperations,
+               SparseFileOperations
 {
     //--Dependencies------------------------------------------------------------
 
 // <editor-fold defaultstate="collapsed" desc=" Generated Code ">//GEN-BEGIN:jdtausDependencies
     // This section is managed by jdtaus-container-mojo.
 
-    /**
-     * Gets the configured <code>MemoryManager</code> implementation.
-     *
-     * @return The configured <code>MemoryManager</code> implementation.
-     */
-    private MemoryManager getMemoryManager()
-    {
-        return (MemoryManager) ContainerFactory.getContainer().
-            getDependency( this, "MemoryManager" );
-
-    }
-
     /**
      * Gets the configured <code>Locale</code> implementation.
      *
@@ -172,19 +170,27 @@ public final class RandomAccessFileOperations implements FileOperations
         long toRead = this.getLength();
         final byte[] buf = this.getStreamBuffer();
 
-        if ( toRead > 0L )
+        try
         {
-            this.setFilePointer( 0L );
-            do
+            if ( toRead > 0L )
             {
-                read = this.read( buf, 0, buf.length );
-
-                assert read != FileOperations.EOF : "Unexpected end of file.";
-
-                toRead -= read;
-                out.write( buf, 0, read );
+                this.setFilePointer( 0L );
+                do
+                {
+                    read = this.read( buf, 0, buf.length );
+
+                    assert read != FileOperations.EOF :
+                        "Unexpected end of file.";
+
+                    toRead -= read;
+                    out.write( buf, 0, read );
+                }
+                while ( toRead > 0L );
             }
-            while ( toRead > 0L );
+        }
+        finally
+        {
+            SharedBufferPool.getDefault().returnBuffer( buf );
         }
     }
 
@@ -200,9 +206,17 @@ public final class RandomAccessFileOperations implements FileOperations
         int read;
         final byte[] buf = this.getStreamBuffer();
 
-        while ( ( read = in.read( buf, 0, buf.length ) ) != FileOperations.EOF )
+        try
         {
-            this.write( buf, 0, read );
+            while ( ( read = in.read( buf, 0, buf.length ) ) !=
+                    FileOperations.EOF )
+            {
+                this.write( buf, 0, read );
+            }
+        }
+        finally
+        {
+            SharedBufferPool.getDefault().returnBuffer( buf );
         }
     }
 
@@ -222,10 +236,283 @@ public final class RandomAccessFileOperations implements FileOperations
     }
 
     //----------------------------------------------------------FileOperations--
+    //--VectoredFileOperations--------------------------------------------------
+
+    public void read( final long[] positions, final byte[][] bufs,
+                      final int[] offsets, final int[] lengths,
+                      final int count ) throws IOException
+    {
+        this.assertValidRanges( positions, bufs, offsets, lengths, count );
+        this.assertNotClosed();
+
+        final RandomAccessFile file = this.getRandomAccessFile();
+        final FileChannel channel = file.getChannel();
+        final ByteBuffer[] buffers =
+            this.wrap( bufs, offsets, lengths, count );
+
+        final long pointer = file.getFilePointer();
+        final long length = this.getLength();
+
+        try
+        {
+            for ( int i = 0, j; i < count; i = j )
+            {
+                // Collect the ranges adjacent in the file.
+                long end = positions[i] + lengths[i];
+                for ( j = i + 1; j < count && positions[j] == end; j++ )
+                {
+                    end += lengths[j];
+                }
+
+                if ( end > length )
+                {
+                    throw new EOFException( Long.toString( end ) );
+                }
+
+                long pos = positions[i];
+
+                if ( j - i == 1 )
+                {
+                    while ( pos < end )
+                    {
+                        final int read = channel.read( buffers[i], pos );
+
+                        assert read != FileOperations.EOF :
+                            "Unexpected end of file.";
+
+                        pos += read;
+                    }
+                }
+                else
+                { // Scatter the ranges.
+                    channel.position( pos );
+
+                    while ( pos < end )
+                    {
+                        final long read = channel.read( buffers, i, j - i );
+
+                        assert read != FileOperations.EOF :
+                            "Unexpected end of file.";
+
+                        pos += read;
+                    }
+                }
+            }
+        }
+        finally
+        {
+            file.seek( pointer );
+        }
+    }
+
+    public void write( final long[] positions, final byte[][] bufs,
+                       final int[] offsets, final int[] lengths,
+                       final int count ) throws IOException
+    {
+        this.assertValidRanges( positions, bufs, offsets, lengths, count );
+        this.assertNotClosed();
+
+        final RandomAccessFile file = this.getRandomAccessFile();
+        final FileChannel channel = file.getChannel();
+        final ByteBuffer[] buffers =
+            this.wrap( bufs, offsets, lengths, count );
+
+        final long pointer = file.getFilePointer();
+
+        try
+        {
+            for ( int i = 0, j; i < count; i = j )
+            {
+                // Collect the ranges adjacent in the file.
+                long end = positions[i] + lengths[i];
+                for ( j = i + 1; j < count && positions[j] == end; j++ )
+                {
+                    end += lengths[j];
+                }
+
+                long pos = positions[i];
+
+                if ( j - i == 1 )
+                {
+                    while ( pos < end )
+                    {
+                        pos += channel.write( buffers[i], pos );
+                    }
+                }
+                else
+                { // Gather the ranges.
+                    channel.position( pos );
+
+                    while ( pos < end )
+                    {
+                        pos += channel.write( buffers, i, j - i );
+                    }
+                }
+
+                if ( this.cachedLength != NO_CACHEDLENGTH &&
+                     end > this.cachedLength )
+                {
+                    this.cachedLength = end;
+                }
+            }
+        }
+        finally
+        {
+            file.seek( pointer );
+        }
+    }
+
+    //--------------------------------------------------VectoredFileOperations--
+    //--ByteBufferFileOperations------------------------------------------------
+
+    public int read( final ByteBuffer buf ) throws IOException
+    {
+        if ( buf == null )
+        {
+            throw new NullPointerException( "buf" );
+        }
+
+        this.assertNotClosed();
+
+        return this.getRandomAccessFile().getChannel().read( buf );
+    }
+
+    public void write( final ByteBuffer buf ) throws IOException
+    {
+        if ( buf == null )
+        {
+            throw new NullPointerException( "buf" );
+        }
+
+        this.assertNotClosed();
+
+        final FileChannel channel = this.getRandomAccessFile().getChannel();
+
+        while ( buf.hasRemaining() )
+        {
+            channel.write( buf );
+        }
+
+        final long pointer = channel.position();
+
+        if ( this.cachedLength != NO_CACHEDLENGTH &&
+             pointer > this.cachedLength )
+        {
+            this.cachedLength = pointer;
+        }
+    }
+
+    public int read( final long position, final ByteBuffer buf )
+        throws IOException
+    {
+        if ( buf == null )
+        {
+            throw new NullPointerException( "buf" );
+        }
+        if ( position < 0L )
+        {
+            throw new IllegalArgumentException( Long.toString( position ) );
+        }
+
+        this.assertNotClosed();
+
+        return this.getRandomAccessFile().getChannel().read( buf, position );
+    }
+
+    public void write( final long position, final ByteBuffer buf )
+        throws IOException
+    {
+        if ( buf == null )
+        {
+            throw new NullPointerException( "buf" );
+        }
+        if ( position < 0L )
+        {
+            throw new IllegalArgumentException( Long.toString( position ) );
+        }
+
+        this.assertNotClosed();
+
+        final FileChannel channel = this.getRandomAccessFile().getChannel();
+        long pos = position;
+
+        while ( buf.hasRemaining() )
+        {
+            pos += channel.write( buf, pos );
+        }
+
+        if ( this.cachedLength != NO_CACHEDLENGTH && pos > this.cachedLength )
+        {
+            this.cachedLength = pos;
+        }
+    }
+
+    //------------------------------------------------ByteBufferFileOperations--
+    //--SparseFileOperations----------------------------------------------------
+
+    /**
+     * {@inheritDoc}
+     * The part of the range inside the file is written from a buffer of zeros.
+     * The part of the range beyond the end of the file is not written but the
+     * file is extended using {@code RandomAccessFile.setLength()} so that the
+     * file system may leave that part unallocated.
+     */
+    public void zero( final long position, final long length )
+        throws IOException
+    {
+        if ( position < 0L )
+        {
+            throw new IllegalArgumentException( Long.toString( position ) );
+        }
+        if ( length < 0L )
+        {
+            throw new IllegalArgumentException( Long.toString( length ) );
+        }
+
+        this.assertNotClosed();
+
+        final long fileLength = this.getLength();
+        final long end = position + length;
+
+        if ( end > fileLength )
+        {
+            final long filePointer = this.getFilePointer();
+            this.setLength( end );
+            this.setFilePointer( filePointer );
+        }
+
+        if ( position < fileLength )
+        {
+            final FileChannel channel = this.getRandomAccessFile().getChannel();
+            final ByteBuffer zeros = this.getZeroBuffer();
+            final long zeroEnd = end < fileLength ? end : fileLength;
+            long pos = position;
+
+            while ( pos < zeroEnd )
+            {
+                zeros.clear();
+
+                if ( zeroEnd - pos < zeros.capacity() )
+                {
+                    zeros.limit( (int) ( zeroEnd - pos ) );
+                }
+
+                while ( zeros.hasRemaining() )
+                {
+                    pos += channel.write( zeros, pos );
+                }
+            }
+        }
+    }
+
+    //----------------------------------------------------SparseFileOperations--
     //--RandomAccessFileOperations----------------------------------------------
 
-    /** Stream buffer. */
-    private byte[] streamBuffer;
+    /** Number of bytes of the buffer of zeros. */
+    private static final int ZERO_BUFFER_SIZE = 65536;
+
+    /** Buffer of zeros, never written to. */
+    private ByteBuffer zeroBuffer;
 
     /** Flags the instance as beeing closed. */
     private boolean closed;
@@ -265,6 +552,21 @@ public final class RandomAccessFileOperations implements FileOperations
         return this.randomAccessFile;
     }
 
+    /**
+     * Gets a buffer of zeros for zeroing ranges of the file.
+     *
+     * @return a buffer of zeros.
+     */
+    private ByteBuffer getZeroBuffer()
+    {
+        if ( this.zeroBuffer == null )
+        {
+            this.zeroBuffer = ByteBuffer.allocateDirect( ZERO_BUFFER_SIZE );
+        }
+
+        return this.zeroBuffer;
+    }
+
     /**
      * Checks that the instance is not closed.
      *
@@ -281,22 +583,118 @@ public final class RandomAccessFileOperations implements FileOperations
     }
 
     /**
-     * Gets a buffer for buffering streams.
+     * Checks the ranges of a vectored operation.
      *
-     * @return a buffer for buffering streams.
+     * @param positions the file positions of the ranges.
+     * @param bufs the buffers of the ranges.
+     * @param offsets the offsets into the buffers of the ranges.
+     * @param lengths the lengths of the ranges.
+     * @param count the number of ranges.
+     *
+     * @throws NullPointerException if {@code positions}, {@code bufs},
+     * {@code offsets}, {@code lengths} or any of the first {@code count}
+     * elements of {@code bufs} is {@code null}.
+     * @throws IndexOutOfBoundsException if {@code count} is negative or
+     * greater than the length of any of the arrays, or if a range does not
+     * fit into its buffer.
+     * @throws IllegalArgumentException if a position is negative.
      */
-    private byte[] getStreamBuffer()
+    private void assertValidRanges( final long[] positions,
+                                    final byte[][] bufs,
+                                    final int[] offsets,
+                                    final int[] lengths,
+                                    final int count )
     {
-        if ( this.streamBuffer == null )
+        if ( positions == null )
+        {
+            throw new NullPointerException( "positions" );
+        }
+        if ( bufs == null )
+        {
+            throw new NullPointerException( "bufs" );
+        }
+        if ( offsets == null )
+        {
+            throw new NullPointerException( "offsets" );
+        }
+        if ( lengths == null )
+        {
+            throw new NullPointerException( "lengths" );
+        }
+        if ( count < 0 || count > positions.length || count > bufs.length ||
+             count > offsets.length || count > lengths.length )
+        {
+            throw new IndexOutOfBoundsException( Integer.toString( count ) );
+        }
+
+        for ( int i = count - 1; i >= 0; i-- )
         {
-            this.streamBuffer = this.getMemoryManager().
-                allocateBytes( this.getStreamBufferSize() < 0
-                               ? 0
-                               : this.getStreamBufferSize() );
+            if ( bufs[i] == null )
+            {
+                throw new NullPointerException( "bufs[" + i + "]" );
+            }
+            if ( offsets[i] < 0 )
+            {
+                throw new IndexOutOfBoundsException(
+                    Integer.toString( offsets[i] ) );
+
+            }
+            if ( lengths[i] < 0 )
+            {
+                throw new IndexOutOfBoundsException(
+                    Integer.toString( lengths[i] ) );
+
+            }
+            if ( offsets[i] + lengths[i] > bufs[i].length )
+            {
+                throw new IndexOutOfBoundsException(
+                    Integer.toString( offsets[i] + lengths[i] ) );
 
+            }
+            if ( positions[i] < 0L )
+            {
+                throw new IllegalArgumentException(
+                    Long.toString( positions[i] ) );
+
+            }
+        }
+    }
+
+    /**
+     * Wraps the buffers of the ranges of a vectored operation.
+     *
+     * @param bufs the buffers of the ranges.
+     * @param offsets the offsets into the buffers of the ranges.
+     * @param lengths the lengths of the ranges.
+     * @param count the number of ranges.
+     *
+     * @return {@code ByteBuffer}s wrapping the ranges of {@code bufs}.
+     */
+    private ByteBuffer[] wrap( final byte[][] bufs, final int[] offsets,
+                               final int[] lengths, final int count )
+    {
+        final ByteBuffer[] buffers = new ByteBuffer[ count ];
+
+        for ( int i = count - 1; i >= 0; i-- )
+        {
+            buffers[i] = ByteBuffer.wrap( bufs[i], offsets[i], lengths[i] );
         }
 
-        return this.streamBuffer;
+        return buffers;
+    }
+
+    /**
+     * Borrows a buffer for buffering streams from the default
+     * {@code SharedBufferPool}.
+     *
+     * @return a buffer for buffering streams to return to the default
+     * {@code SharedBufferPool}.
+     */
+    private byte[] getStreamBuffer()
+    {
+        return SharedBufferPool.getDefault().borrowBuffer(
+            this.getStreamBufferSize() < 0 ? 0 : this.getStreamBufferSize() );
+
     }
 
     //----------------------------------------------RandomAccessFileOperations--
@@ -20,12 +20,16 @@
  */
 package org.jdtaus.core.io.util;
 
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.Locale;
 import org.jdtaus.core.container.ContainerFactory;
 import org.jdtaus.core.io.FileOperations;
+import org.jdtaus.core.lang.spi.Executor;
 import org.jdtaus.core.lang.spi.MemoryManager;
 
 /**
@@ -38,6 +42,32 @@ import org.jdtaus.core.lang.spi.MemoryManager;
  * during instantiation so that an {@code OutOfMemoryError} may be thrown
  * when constructing the cache but not when working with the instance.</p>
  *
+ * <p>The number of bytes read ahead adapts to the access pattern. Reading
+ * starts with a window of a sixteenth of the cache size. Whenever the cache
+ * needs to be filled, the position of the read is compared to the previous
+ * read. A read starting where the previous read ended is considered to be
+ * part of a forward scan. A read ending where the previous read started is
+ * considered to be part of a backward scan, in which case the region before
+ * the requested position is read. The window doubles up to the size of the
+ * cache as long as reads continue a scan in the same direction and halves
+ * down to the initial size on random access. The number of reads served
+ * from the cache, reads filling the cache and replacements of cached data
+ * is made available by methods {@code getCacheHits()},
+ * {@code getCacheMisses()} and {@code getCacheEvictions()}.</p>
+ *
+ * <p>Method {@code prefetch()} reads a range of the file of up to the size
+ * of the cache into a second buffer of the size of the cache using the
+ * {@code Executor} of the system. A later read not served from the cache but
+ * starting inside the prefetched range takes over that buffer as the cache
+ * instead of reading from the {@code FileOperations} backing the instance.
+ * Only one prefetch is outstanding at a time. Data written during a prefetch
+ * is also written to the prefetched data.</p>
+ *
+ * <p>{@code ByteBuffer}s backed by an accessible array are read and written
+ * using that array without copying. Other buffers are copied from the cache
+ * directly and written to the {@code FileOperations} backing the instance as
+ * given if it implements {@code ByteBufferFileOperations}.</p>
+ *
  * <p><b>Note:</b><br>
  * This implementation is not thread-safe and concurrent changes to the
  * underlying {@code FileOperations} implementation are not supported.</p>
@@ -45,7 +75,10 @@ import org.jdtaus.core.lang.spi.MemoryManager;
  * @author <a href="mailto:cs@schulte.it">Christian Schulte</a>
  * @version $JDTAUS$
  */
-public final class ReadAheadFileOperations implements FlushableFileOperations
+public final class ReadAheadFileOperations
+    implements FlushableFileOperations, VectoredFileOperations,
+               ByteBufferFileOperations, CachingFileOperations,
+               PrefetchingFileOperations
 {
     //--Dependencies------------------------------------------------------------
 
@@ -76,6 +109,18 @@ public final class ReadAheadFileOperations implements FlushableFileOperations
 
     }
 
+    /**
+     * Gets the configured <code>Executor</code> implementation.
+     *
+     * @return The configured <code>Executor</code> implementation.
+     */
+    private Executor getExecutor()
+    {
+        return (Executor) ContainerFactory.getContainer().
+            getDependency( this, "Executor" );
+
+    }
+
 // </editor-fold>//GEN-END:jdtausDependencies
 
     //------------------------------------------------------------Dependencies--
@@ -105,7 +150,10 @@ public final class ReadAheadFileOperations implements FlushableFileOperations
     {
         this.assertNotClosed();
 
-        return this.fileOperations.getLength();
+        synchronized ( this.lock )
+        {
+            return this.fileOperations.getLength();
+        }
     }
 
     public void setLength( final long newLength ) throws IOException
@@ -113,7 +161,25 @@ public final class ReadAheadFileOperations implements FlushableFileOperations
         this.assertNotClosed();
 
         final long oldLength = this.getLength();
-        this.fileOperations.setLength( newLength );
+
+        synchronized ( this.lock )
+        {
+            this.fileOperations.setLength( newLength );
+
+            if ( this.prefetchPosition + this.prefetchLength > newLength )
+            { // Data beyond the new length must not be prefetched.
+                this.prefetchLength = newLength > this.prefetchPosition
+                                      ? (int) ( newLength -
+                                                this.prefetchPosition )
+                                      : 0;
+
+                if ( this.prefetchRead > this.prefetchLength )
+                {
+                    this.prefetchRead = this.prefetchLength;
+                }
+            }
+        }
+
         if ( this.filePointer > newLength )
         {
             this.filePointer = newLength;
@@ -176,9 +242,16 @@ public final class ReadAheadFileOperations implements FlushableFileOperations
                  !( this.filePointer >= this.cachePosition &&
                     this.filePointer < this.cachePosition + this.cacheLength ) )
             { // Cache not initialized or file pointer outside the cached area.
-                this.fillCache();
+                this.cacheMisses++;
+                this.fillCache( len, fileLength );
+            }
+            else
+            {
+                this.cacheHits++;
             }
 
+            this.lastReadPosition = this.filePointer;
+
             final long cacheStart = this.filePointer - this.cachePosition;
 
             assert cacheStart <= Integer.MAX_VALUE :
@@ -196,6 +269,7 @@ public final class ReadAheadFileOperations implements FlushableFileOperations
             off += cachedLength;
             read = cachedLength;
             this.filePointer += cachedLength;
+            this.lastReadEnd = this.filePointer;
         }
 
         return read;
@@ -223,27 +297,15 @@ public final class ReadAheadFileOperations implements FlushableFileOperations
 
         this.assertNotClosed();
 
-        if ( this.cachePosition != NO_CACHEPOSITION &&
-             this.filePointer >= this.cachePosition &&
-             this.filePointer < this.cachePosition + this.cacheLength )
-        { // Cache needs updating.
-            final long cacheStart = this.filePointer - this.cachePosition;
-
-            assert cacheStart <= Integer.MAX_VALUE :
-                "Unexpected implementation limit reached.";
-
-            final int cachedLength = len > this.cacheLength -
-                                           (int) cacheStart
-                                     ? this.cacheLength - (int) cacheStart
-                                     : len;
-
-            System.arraycopy( buf, off, this.getCache(), (int) cacheStart,
-                              cachedLength );
+        this.updateCache( this.filePointer, buf, off, len );
 
+        synchronized ( this.lock )
+        {
+            this.updatePrefetch( this.filePointer, buf, off, len );
+            this.fileOperations.setFilePointer( this.filePointer );
+            this.fileOperations.write( buf, off, len );
         }
 
-        this.fileOperations.setFilePointer( this.filePointer );
-        this.fileOperations.write( buf, off, len );
         this.filePointer += len;
     }
 
@@ -251,22 +313,34 @@ public final class ReadAheadFileOperations implements FlushableFileOperations
     {
         this.assertNotClosed();
 
-        this.fileOperations.read( out );
-        this.filePointer = this.fileOperations.getFilePointer();
+        synchronized ( this.lock )
+        {
+            this.fileOperations.read( out );
+            this.filePointer = this.fileOperations.getFilePointer();
+        }
     }
 
     public void write( final InputStream in ) throws IOException
     {
         this.assertNotClosed();
 
-        this.fileOperations.write( in );
-        this.filePointer = this.fileOperations.getFilePointer();
+        // The amount of data written is unknown so the cache is discarded.
+        this.cachePosition = NO_CACHEPOSITION;
+
+        synchronized ( this.lock )
+        {
+            this.prefetchLength = 0;
+            this.prefetchRead = 0;
+            this.fileOperations.setFilePointer( this.filePointer );
+            this.fileOperations.write( in );
+            this.filePointer = this.fileOperations.getFilePointer();
+        }
     }
 
     /**
      * {@inheritDoc}
-     * Flushes the cache and closes the {@code FileOperations} implementation
-     * backing the instance.
+     * Flushes the cache, waits for any outstanding prefetch to finish and
+     * closes the {@code FileOperations} implementation backing the instance.
      *
      * @throws IOException if closing the {@code FileOperations} implementation
      * backing the instance fails or if the instance already is closed.
@@ -276,7 +350,13 @@ public final class ReadAheadFileOperations implements FlushableFileOperations
         this.assertNotClosed();
 
         this.flush();
-        this.getFileOperations().close();
+        this.awaitPrefetch();
+
+        synchronized ( this.lock )
+        {
+            this.getFileOperations().close();
+        }
+
         this.closed = true;
     }
 
@@ -294,11 +374,344 @@ public final class ReadAheadFileOperations implements FlushableFileOperations
 
         if ( this.fileOperations instanceof FlushableFileOperations )
         {
-            ( (FlushableFileOperations) this.fileOperations ).flush();
+            synchronized ( this.lock )
+            {
+                ( (FlushableFileOperations) this.fileOperations ).flush();
+            }
         }
     }
 
     //-------------------------------------------------FlushableFileOperations--
+    //--VectoredFileOperations--------------------------------------------------
+
+    /**
+     * {@inheritDoc}
+     * This method reads the ranges one after the other using the cache.
+     */
+    public void read( final long[] positions, final byte[][] bufs,
+                      final int[] offsets, final int[] lengths,
+                      final int count ) throws IOException
+    {
+        this.assertValidRanges( positions, bufs, offsets, lengths, count );
+        this.assertNotClosed();
+
+        final long pointer = this.filePointer;
+
+        try
+        {
+            for ( int i = 0; i < count; i++ )
+            {
+                int totalRead = 0;
+                this.filePointer = positions[i];
+
+                while ( totalRead < lengths[i] )
+                {
+                    final int read = this.read(
+                        bufs[i], offsets[i] + totalRead,
+                        lengths[i] - totalRead );
+
+                    if ( read == FileOperations.EOF )
+                    {
+                        throw new EOFException(
+                            Long.toString( positions[i] + lengths[i] ) );
+
+                    }
+
+                    totalRead += read;
+                }
+            }
+        }
+        finally
+        {
+            this.filePointer = pointer;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * This method updates the cache and writes all ranges with one call if
+     * the {@code FileOperations} backing the instance implement
+     * {@code VectoredFileOperations}.
+     */
+    public void write( final long[] positions, final byte[][] bufs,
+                       final int[] offsets, final int[] lengths,
+                       final int count ) throws IOException
+    {
+        this.assertValidRanges( positions, bufs, offsets, lengths, count );
+        this.assertNotClosed();
+
+        for ( int i = 0; i < count; i++ )
+        {
+            this.updateCache( positions[i], bufs[i], offsets[i], lengths[i] );
+        }
+
+        synchronized ( this.lock )
+        {
+            for ( int i = 0; i < count; i++ )
+            {
+                this.updatePrefetch( positions[i], bufs[i], offsets[i],
+                                     lengths[i] );
+
+            }
+
+            if ( this.fileOperations instanceof VectoredFileOperations )
+            {
+                ( (VectoredFileOperations) this.fileOperations ).write(
+                    positions, bufs, offsets, lengths, count );
+
+            }
+            else
+            {
+                for ( int i = 0; i < count; i++ )
+                {
+                    this.fileOperations.setFilePointer( positions[i] );
+                    this.fileOperations.write( bufs[i], offsets[i],
+                                               lengths[i] );
+
+                }
+            }
+        }
+    }
+
+    //--------------------------------------------------VectoredFileOperations--
+    //--ByteBufferFileOperations------------------------------------------------
+
+    public int read( final ByteBuffer buf ) throws IOException
+    {
+        if ( buf == null )
+        {
+            throw new NullPointerException( "buf" );
+        }
+
+        this.assertNotClosed();
+
+        if ( buf.hasArray() )
+        { // Read into the array of the buffer.
+            final int read = this.read( buf.array(),
+                                        buf.arrayOffset() + buf.position(),
+                                        buf.remaining() );
+
+            if ( read > 0 )
+            {
+                buf.position( buf.position() + read );
+            }
+
+            return read;
+        }
+
+        int read = FileOperations.EOF;
+        final int len = buf.remaining();
+        final long fileLength = this.getLength();
+
+        if ( len == 0 )
+        {
+            read = 0;
+        }
+        else if ( this.filePointer < fileLength )
+        {
+            if ( this.cachePosition == NO_CACHEPOSITION ||
+                 !( this.filePointer >= this.cachePosition &&
+                    this.filePointer < this.cachePosition + this.cacheLength ) )
+            { // Cache not initialized or file pointer outside the cached area.
+                this.cacheMisses++;
+                this.fillCache( len, fileLength );
+            }
+            else
+            {
+                this.cacheHits++;
+            }
+
+            this.lastReadPosition = this.filePointer;
+
+            final long cacheStart = this.filePointer - this.cachePosition;
+
+            assert cacheStart <= Integer.MAX_VALUE :
+                "Unexpected implementation limit reached.";
+
+            final int cachedLength = len > this.cacheLength -
+                                           (int) cacheStart
+                                     ? this.cacheLength - (int) cacheStart
+                                     : len;
+
+            buf.put( this.getCache(), (int) cacheStart, cachedLength );
+
+            read = cachedLength;
+            this.filePointer += cachedLength;
+            this.lastReadEnd = this.filePointer;
+        }
+
+        return read;
+    }
+
+    public void write( final ByteBuffer buf ) throws IOException
+    {
+        if ( buf == null )
+        {
+            throw new NullPointerException( "buf" );
+        }
+
+        this.assertNotClosed();
+
+        final int len = buf.remaining();
+
+        if ( buf.hasArray() )
+        { // Write from the array of the buffer.
+            this.write( buf.array(), buf.arrayOffset() + buf.position(), len );
+            buf.position( buf.limit() );
+            return;
+        }
+
+        this.updateCache( this.filePointer, buf );
+
+        synchronized ( this.lock )
+        {
+            if ( this.fileOperations instanceof ByteBufferFileOperations )
+            {
+                this.updatePrefetch( this.filePointer, buf );
+                ( (ByteBufferFileOperations) this.fileOperations ).write(
+                    this.filePointer, buf );
+
+            }
+            else
+            {
+                final byte[] data = new byte[ len ];
+                buf.get( data );
+                this.updatePrefetch( this.filePointer, data, 0, len );
+                this.fileOperations.setFilePointer( this.filePointer );
+                this.fileOperations.write( data, 0, len );
+            }
+        }
+
+        this.filePointer += len;
+    }
+
+    /**
+     * {@inheritDoc}
+     * This method reads the data using the cache.
+     */
+    public int read( final long position, final ByteBuffer buf )
+        throws IOException
+    {
+        if ( buf == null )
+        {
+            throw new NullPointerException( "buf" );
+        }
+        if ( position < 0L )
+        {
+            throw new IllegalArgumentException( Long.toString( position ) );
+        }
+
+        final long pointer = this.filePointer;
+
+        try
+        {
+            this.filePointer = position;
+            return this.read( buf );
+        }
+        finally
+        {
+            this.filePointer = pointer;
+        }
+    }
+
+    public void write( final long position, final ByteBuffer buf )
+        throws IOException
+    {
+        if ( buf == null )
+        {
+            throw new NullPointerException( "buf" );
+        }
+        if ( position < 0L )
+        {
+            throw new IllegalArgumentException( Long.toString( position ) );
+        }
+
+        final long pointer = this.filePointer;
+
+        try
+        {
+            this.filePointer = position;
+            this.write( buf );
+        }
+        finally
+        {
+            this.filePointer = pointer;
+        }
+    }
+
+    //------------------------------------------------ByteBufferFileOperations--
+    //--PrefetchingFileOperations-----------------------------------------------
+
+    /**
+     * {@inheritDoc}
+     * This method waits for any outstanding prefetch to finish and starts
+     * reading up to {@code getCacheSize()} bytes of the range in the
+     * background. Ranges already cached are not prefetched.
+     *
+     * @throws IOException if waiting for an outstanding prefetch is
+     * interrupted or if the instance is closed.
+     */
+    public void prefetch( final long position, final long length )
+        throws IOException
+    {
+        if ( position < 0L )
+        {
+            throw new IllegalArgumentException( Long.toString( position ) );
+        }
+        if ( length < 0L )
+        {
+            throw new IllegalArgumentException( Long.toString( length ) );
+        }
+
+        this.assertNotClosed();
+
+        final long fileLength = this.getLength();
+        long toPrefetch = position < fileLength
+                          ? Math.min( length, fileLength - position )
+                          : 0L;
+
+        if ( toPrefetch > this.getCacheSize() )
+        {
+            toPrefetch = this.getCacheSize();
+        }
+
+        if ( toPrefetch == 0L || ( this.cachePosition != NO_CACHEPOSITION &&
+                                   position >= this.cachePosition &&
+                                   position + toPrefetch <=
+                                   this.cachePosition + this.cacheLength ) )
+        {
+            return;
+        }
+
+        this.awaitPrefetch();
+
+        synchronized ( this.lock )
+        {
+            if ( this.prefetchBuffer == null )
+            {
+                this.prefetchBuffer = this.getMemoryManager().allocateBytes(
+                    this.getCacheSize() );
+
+            }
+
+            this.prefetchPosition = position;
+            this.prefetchLength = (int) toPrefetch;
+            this.prefetchRead = 0;
+            this.prefetchPending = true;
+        }
+
+        this.getExecutor().executeAsynchronously( new Runnable()
+        {
+
+            public void run()
+            {
+                prefetchRange();
+            }
+
+        } );
+    }
+
+    //-----------------------------------------------PrefetchingFileOperations--
     //--ReadAheadFileOperations-------------------------------------------------
 
     /** The {@code FileOperations} backing the instance. */
@@ -324,6 +737,54 @@ public final class ReadAheadFileOperations implements FlushableFileOperations
     /** Cache size in byte. */
     private Integer cacheSize;
 
+    /** Number of bytes currently read ahead. */
+    private int windowSize;
+
+    /** Direction of the scan in progress. */
+    private int scanDirection = RANDOM_ACCESS;
+
+    private static final int RANDOM_ACCESS = 0;
+
+    private static final int FORWARD_SCAN = 1;
+
+    private static final int BACKWARD_SCAN = -1;
+
+    /** Position in the file the last read started. */
+    private long lastReadPosition = NO_CACHEPOSITION;
+
+    /** Position in the file the last read ended. */
+    private long lastReadEnd = NO_CACHEPOSITION;
+
+    /** Lock guarding the {@code FileOperations} backing the instance. */
+    private final Object lock = new Object();
+
+    /** Buffer holding prefetched data; guarded by {@code lock}. */
+    private byte[] prefetchBuffer;
+
+    /**
+     * Position in the file the prefetched data starts; guarded by
+     * {@code lock}.
+     */
+    private long prefetchPosition;
+
+    /** Number of bytes to prefetch; guarded by {@code lock}. */
+    private int prefetchLength;
+
+    /** Number of bytes prefetched so far; guarded by {@code lock}. */
+    private int prefetchRead;
+
+    /** Flags a prefetch as outstanding; guarded by {@code lock}. */
+    private boolean prefetchPending;
+
+    /** Number of reads served from the cache. */
+    private long cacheHits;
+
+    /** Number of reads filling the cache. */
+    private long cacheMisses;
+
+    /** Number of times cached data has been replaced. */
+    private long cacheEvictions;
+
     /**
      * Creates a new {@code ReadAheadFileOperations} instance taking the
      * {@code FileOperations} backing the instance.
@@ -395,6 +856,37 @@ public final class ReadAheadFileOperations implements FlushableFileOperations
         return this.cacheSize.intValue();
     }
 
+    /**
+     * Gets the number of reads served from the cache.
+     *
+     * @return the number of cache hits.
+     */
+    public long getCacheHits()
+    {
+        return this.cacheHits;
+    }
+
+    /**
+     * Gets the number of reads requiring the cache to be filled.
+     *
+     * @return the number of cache misses.
+     */
+    public long getCacheMisses()
+    {
+        return this.cacheMisses;
+    }
+
+    /**
+     * Gets the number of times cached data has been replaced by filling the
+     * cache.
+     *
+     * @return the number of evictions.
+     */
+    public long getCacheEvictions()
+    {
+        return this.cacheEvictions;
+    }
+
     /**
      * Gets the cache buffer.
      *
@@ -412,6 +904,84 @@ public final class ReadAheadFileOperations implements FlushableFileOperations
         return this.cache;
     }
 
+    /**
+     * Checks the ranges of a vectored operation.
+     *
+     * @param positions the file positions of the ranges.
+     * @param bufs the buffers of the ranges.
+     * @param offsets the offsets into the buffers of the ranges.
+     * @param lengths the lengths of the ranges.
+     * @param count the number of ranges.
+     *
+     * @throws NullPointerException if {@code positions}, {@code bufs},
+     * {@code offsets}, {@code lengths} or any of the first {@code count}
+     * elements of {@code bufs} is {@code null}.
+     * @throws IndexOutOfBoundsException if {@code count} is negative or
+     * greater than the length of any of the arrays, or if a range does not
+     * fit into its buffer.
+     * @throws IllegalArgumentException if a position is negative.
+     */
+    private void assertValidRanges( final long[] positions,
+                                    final byte[][] bufs,
+                                    final int[] offsets,
+                                    final int[] lengths,
+                                    final int count )
+    {
+        if ( positions == null )
+        {
+            throw new NullPointerException( "positions" );
+        }
+        if ( bufs == null )
+        {
+            throw new NullPointerException( "bufs" );
+        }
+        if ( offsets == null )
+        {
+            throw new NullPointerException( "offsets" );
+        }
+        if ( lengths == null )
+        {
+            throw new NullPointerException( "lengths" );
+        }
+        if ( count < 0 || count > positions.length || count > bufs.length ||
+             count > offsets.length || count > lengths.length )
+        {
+            throw new IndexOutOfBoundsException( Integer.toString( count ) );
+        }
+
+        for ( int i = count - 1; i >= 0; i-- )
+        {
+            if ( bufs[i] == null )
+            {
+                throw new NullPointerException( "bufs[" + i + "]" );
+            }
+            if ( offsets[i] < 0 )
+            {
+                throw new IndexOutOfBoundsException(
+                    Integer.toString( offsets[i] ) );
+
+            }
+            if ( lengths[i] < 0 )
+            {
+                throw new IndexOutOfBoundsException(
+                    Integer.toString( lengths[i] ) );
+
+            }
+            if ( offsets[i] + lengths[i] > bufs[i].length )
+            {
+                throw new IndexOutOfBoundsException(
+                    Integer.toString( offsets[i] + lengths[i] ) );
+
+            }
+            if ( positions[i] < 0L )
+            {
+                throw new IllegalArgumentException(
+                    Long.toString( positions[i] ) );
+
+            }
+        }
+    }
+
     /**
      * Checks that the instance is not closed.
      *
@@ -428,39 +998,412 @@ public final class ReadAheadFileOperations implements FlushableFileOperations
     }
 
     /**
-     * Fills the cache starting at the current file pointer value.
+     * Updates any cached data of a range of the file about to be written.
+     *
+     * @param pos the file position of the range.
+     * @param buf the data to be written.
+     * @param off the offset into {@code buf} of the data to be written.
+     * @param len the number of bytes to be written.
+     */
+    private void updateCache( final long pos, final byte[] buf, final int off,
+                              final int len )
+    {
+        if ( this.cachePosition != NO_CACHEPOSITION &&
+             pos < this.cachePosition + this.cacheLength &&
+             pos + len > this.cachePosition )
+        { // Cache needs updating.
+            final long start = pos > this.cachePosition
+                               ? pos
+                               : this.cachePosition;
+
+            final long end = pos + len < this.cachePosition + this.cacheLength
+                             ? pos + len
+                             : this.cachePosition + this.cacheLength;
+
+            assert end - this.cachePosition <= Integer.MAX_VALUE :
+                "Unexpected implementation limit reached.";
+
+            System.arraycopy( buf, off + (int) ( start - pos ),
+                              this.getCache(),
+                              (int) ( start - this.cachePosition ),
+                              (int) ( end - start ) );
+
+        }
+    }
+
+    /**
+     * Updates the cache with the remaining bytes of a buffer about to be
+     * written. The position of the buffer is not changed.
+     *
+     * @param pos the file position the data is written to.
+     * @param buf the buffer holding the data to write.
+     */
+    private void updateCache( final long pos, final ByteBuffer buf )
+    {
+        final int len = buf.remaining();
+
+        if ( this.cachePosition != NO_CACHEPOSITION &&
+             pos < this.cachePosition + this.cacheLength &&
+             pos + len > this.cachePosition )
+        { // Cache needs updating.
+            final long start = pos > this.cachePosition
+                               ? pos
+                               : this.cachePosition;
+
+            final long end = pos + len < this.cachePosition + this.cacheLength
+                             ? pos + len
+                             : this.cachePosition + this.cacheLength;
+
+            assert end - this.cachePosition <= Integer.MAX_VALUE :
+                "Unexpected implementation limit reached.";
+
+            final ByteBuffer src = buf.duplicate();
+            src.position( buf.position() + (int) ( start - pos ) );
+            src.get( this.getCache(), (int) ( start - this.cachePosition ),
+                     (int) ( end - start ) );
+
+        }
+    }
+
+    /**
+     * Gets the number of bytes read ahead initially and on random access.
+     *
+     * @return the minimum number of bytes read ahead.
+     */
+    private int getMinimumWindowSize()
+    {
+        final int minimum = this.getCacheSize() / 16;
+        return minimum > 0 ? minimum : 1;
+    }
+
+    /**
+     * Updates the window size and the scan direction for a read at the
+     * current file pointer value not served from the cache.
+     *
+     * @param len the number of bytes requested to be read.
+     */
+    private void updateWindow( final int len )
+    {
+        int direction = RANDOM_ACCESS;
+
+        if ( this.lastReadEnd != NO_CACHEPOSITION )
+        {
+            if ( this.filePointer == this.lastReadEnd )
+            {
+                direction = FORWARD_SCAN;
+            }
+            else if ( this.filePointer < this.lastReadPosition &&
+                      this.filePointer + len >= this.lastReadPosition )
+            {
+                direction = BACKWARD_SCAN;
+            }
+        }
+
+        if ( this.windowSize == 0 )
+        {
+            this.windowSize = this.getMinimumWindowSize();
+        }
+        else if ( direction != RANDOM_ACCESS &&
+                  direction == this.scanDirection )
+        { // Scan continues; grow the window.
+            this.windowSize = this.windowSize > this.getCacheSize() / 2
+                              ? this.getCacheSize()
+                              : this.windowSize * 2;
+
+        }
+        else if ( direction == RANDOM_ACCESS )
+        { // Random access; shrink the window.
+            this.windowSize = this.windowSize / 2 < this.getMinimumWindowSize()
+                              ? this.getMinimumWindowSize()
+                              : this.windowSize / 2;
+
+        }
+
+        this.scanDirection = direction;
+    }
+
+    /**
+     * Fills the cache with a window around the current file pointer value.
+     * <p>The window starts at the current file pointer value unless a
+     * backward scan is in progress, in which case the window ends at the end
+     * of the requested range.</p>
+     *
+     * @param len the number of bytes requested to be read.
+     * @param fileLength the length of the file.
      *
      * @throws IOException if reading fails.
      */
-    private void fillCache() throws IOException
+    private void fillCache( final int len, final long fileLength )
+        throws IOException
     {
-        final long delta = this.getLength() - this.filePointer;
-        final int toRead = delta > this.getCache().length
-                           ? this.getCache().length
-                           : (int) delta;
+        this.updateWindow( len );
 
-        this.cachePosition = this.filePointer;
+        long position = this.filePointer;
 
-        int totalRead = 0;
-        int readLength = toRead;
+        if ( this.scanDirection == BACKWARD_SCAN )
+        {
+            position += ( len < this.windowSize ? len : this.windowSize ) -
+                        this.windowSize;
+
+            if ( position < 0L )
+            {
+                position = 0L;
+            }
+        }
 
-        do
+        final long delta = fileLength - position;
+        final int toRead = delta > this.windowSize
+                           ? this.windowSize
+                           : (int) delta;
+
+        if ( this.cachePosition != NO_CACHEPOSITION )
         {
-            this.fileOperations.setFilePointer( this.filePointer );
-            final int read = this.fileOperations.read(
-                this.getCache(), totalRead, readLength );
+            this.cacheEvictions++;
+        }
+
+        synchronized ( this.lock )
+        {
+            if ( this.takePrefetched() )
+            {
+                return;
+            }
+
+            this.cachePosition = position;
+
+            int totalRead = 0;
+            int readLength = toRead;
 
-            assert read != FileOperations.EOF : "Unexpected end of file.";
+            do
+            {
+                this.fileOperations.setFilePointer( position + totalRead );
+                final int read = this.fileOperations.read(
+                    this.getCache(), totalRead, readLength );
 
-            totalRead += read;
-            readLength -= read;
+                assert read != FileOperations.EOF : "Unexpected end of file.";
 
+                totalRead += read;
+                readLength -= read;
+
+            }
+            while ( totalRead < toRead );
         }
-        while ( totalRead < toRead );
 
         this.cacheLength = toRead;
     }
 
+    /**
+     * Takes over the prefetched data as the cache if it holds the data at the
+     * current file pointer value.
+     * <p>This method must be called holding {@code lock}. If a prefetch of a
+     * range containing the current file pointer value is outstanding, this
+     * method waits for the prefetch to finish.</p>
+     *
+     * @return {@code true} if the prefetched data has been taken over as the
+     * cache; {@code false} if the cache needs to be filled by reading.
+     *
+     * @throws IOException if waiting is interrupted.
+     */
+    private boolean takePrefetched() throws IOException
+    {
+        try
+        {
+            while ( this.prefetchPending &&
+                    this.filePointer >= this.prefetchPosition &&
+                    this.filePointer < this.prefetchPosition +
+                                       this.prefetchLength )
+            {
+                this.lock.wait();
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException( e.getMessage() );
+        }
+
+        boolean taken = false;
+
+        if ( !this.prefetchPending &&
+             this.filePointer >= this.prefetchPosition &&
+             this.filePointer < this.prefetchPosition + this.prefetchRead )
+        {
+            final byte[] buffer = this.getCache();
+            this.cache = this.prefetchBuffer;
+            this.prefetchBuffer = buffer;
+            this.cachePosition = this.prefetchPosition;
+            this.cacheLength = this.prefetchRead;
+            this.prefetchLength = 0;
+            this.prefetchRead = 0;
+            taken = true;
+        }
+
+        return taken;
+    }
+
+    /**
+     * Reads the range of the outstanding prefetch.
+     * <p>This method is executed asynchronously and acquires the lock
+     * guarding the {@code FileOperations} backing the instance for each
+     * chunk of the range separately. Since prefetching is a hint, a failure
+     * just ends the prefetch leaving the reading of the remaining data to the
+     * next read of the range.</p>
+     */
+    private void prefetchRange()
+    {
+        try
+        {
+            boolean done = false;
+
+            while ( !done )
+            {
+                synchronized ( this.lock )
+                {
+                    final int remaining =
+                        this.prefetchLength - this.prefetchRead;
+
+                    if ( remaining > 0 )
+                    {
+                        this.fileOperations.setFilePointer(
+                            this.prefetchPosition + this.prefetchRead );
+
+                        final int read = this.fileOperations.read(
+                            this.prefetchBuffer, this.prefetchRead,
+                            remaining > this.getMinimumWindowSize()
+                            ? this.getMinimumWindowSize()
+                            : remaining );
+
+                        if ( read == FileOperations.EOF )
+                        {
+                            this.prefetchLength = this.prefetchRead;
+                        }
+                        else
+                        {
+                            this.prefetchRead += read;
+                        }
+                    }
+                    else
+                    {
+                        done = true;
+                    }
+                }
+            }
+        }
+        catch ( IOException e )
+        {
+            this.endPrefetch();
+        }
+        catch ( RuntimeException e )
+        {
+            this.endPrefetch();
+        }
+        finally
+        {
+            synchronized ( this.lock )
+            {
+                this.prefetchPending = false;
+                this.lock.notifyAll();
+            }
+        }
+    }
+
+    /** Ends the outstanding prefetch keeping the data prefetched so far. */
+    private void endPrefetch()
+    {
+        synchronized ( this.lock )
+        {
+            this.prefetchLength = this.prefetchRead;
+        }
+    }
+
+    /**
+     * Waits for any outstanding prefetch to finish.
+     *
+     * @throws IOException if waiting is interrupted.
+     */
+    private void awaitPrefetch() throws IOException
+    {
+        synchronized ( this.lock )
+        {
+            try
+            {
+                while ( this.prefetchPending )
+                {
+                    this.lock.wait();
+                }
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException( e.getMessage() );
+            }
+        }
+    }
+
+    /**
+     * Updates any prefetched data of a range of the file about to be written.
+     * <p>This method must be called holding {@code lock}.</p>
+     *
+     * @param pos the position of the range.
+     * @param buf the buffer holding the data to write.
+     * @param off the offset into {@code buf} of the data to write.
+     * @param len the number of bytes to write.
+     */
+    private void updatePrefetch( final long pos, final byte[] buf,
+                                 final int off, final int len )
+    {
+        if ( pos < this.prefetchPosition + this.prefetchRead &&
+             pos + len > this.prefetchPosition )
+        { // Prefetched data needs updating.
+            final long start = pos > this.prefetchPosition
+                               ? pos
+                               : this.prefetchPosition;
+
+            final long end = pos + len < this.prefetchPosition +
+                                         this.prefetchRead
+                             ? pos + len
+                             : this.prefetchPosition + this.prefetchRead;
+
+            System.arraycopy( buf, off + (int) ( start - pos ),
+                              this.prefetchBuffer,
+                              (int) ( start - this.prefetchPosition ),
+                              (int) ( end - start ) );
+
+        }
+    }
+
+    /**
+     * Updates any prefetched data with the remaining bytes of a buffer about
+     * to be written.
+     * <p>This method must be called holding {@code lock}.</p>
+     *
+     * @param pos the position in the file the data is written to.
+     * @param buf the buffer holding the data to write.
+     */
+    private void updatePrefetch( final long pos, final ByteBuffer buf )
+    {
+        final int len = buf.remaining();
+
+        if ( pos < this.prefetchPosition + this.prefetchRead &&
+             pos + len > this.prefetchPosition )
+        { // Prefetched data needs updating.
+            final long start = pos > this.prefetchPosition
+                               ? pos
+                               : this.prefetchPosition;
+
+            final long end = pos + len < this.prefetchPosition +
+                                         this.prefetchRead
+                             ? pos + len
+                             : this.prefetchPosition + this.prefetchRead;
+
+            final ByteBuffer src = buf.duplicate();
+            src.position( buf.position() + (int) ( start - pos ) );
+            src.get( this.prefetchBuffer,
+                     (int) ( start - this.prefetchPosition ),
+                     (int) ( end - start ) );
+
+        }
+    }
+
     //-------------------------------------------------ReadAheadFileOperations--
     //--Messages----------------------------------------------------------------
 
@@ -0,0 +1,732 @@
+/*
+ *  jDTAUS Core Utilities
+ *  Copyright (C) 2005 Christian Schulte
+ *  <cs@schulte.it>
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+package org.jdtaus.core.io.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.Locale;
+import org.jdtaus.core.container.ContainerFactory;
+import org.jdtaus.core.io.FileOperations;
+import org.jdtaus.core.lang.spi.MemoryManager;
+
+/**
+ * Implementation of elementary I/O operations in segmented memory.
+ * <p>This implementation performs I/O in memory like
+ * {@code MemoryFileOperations} but keeps the data in segments of property
+ * {@code segmentSize} bytes (defaults to {@code 1048576} - 1 MB). The file
+ * grows by adding segments so that no data needs to be copied when the
+ * length of the file increases and the value of property {@code length} is
+ * not limited to {@code Integer.MAX_VALUE}. Segments are allocated on the
+ * heap or, if property {@code direct} is {@code true}, as direct
+ * {@code ByteBuffer}s outside of the heap (defaults to {@code false}).
+ * Segments no longer needed after the length of the file decreased are
+ * released.</p>
+ *
+ * <p><b>Note:</b><br>
+ * This implementation is not thread-safe. In contrast to
+ * {@code MemoryFileOperations} all segments are released when the instance
+ * gets closed so that the instance cannot be used after calling method
+ * {@code close()}.</p>
+ *
+ * @author <a href="mailto:cs@schulte.it">Christian Schulte</a>
+ * @version $JDTAUS$
+ *
+ * @see MemoryFileOperations
+ */
+public final class SegmentedMemoryFileOperations
+    implements ByteBufferFileOperations
+{
+    //--Dependencies------------------------------------------------------------
+
+// <editor-fold defaultstate="collapsed" desc=" Generated Code ">//GEN-BEGIN:jdtausDependencies
+    // This section is managed by jdtaus-container-mojo.
+
+    /**
+     * Gets the configured <code>MemoryManager</code> implementation.
+     *
+     * @return The configured <code>MemoryManager</code> implementation.
+     */
+    private MemoryManager getMemoryManager()
+    {
+        return (MemoryManager) ContainerFactory.getContainer().
+            getDependency( this, "MemoryManager" );
+
+    }
+
+    /**
+     * Gets the configured <code>Locale</code> implementation.
+     *
+     * @return The configured <code>Locale</code> implementation.
+     */
+    private Locale getLocale()
+    {
+        return (Locale) ContainerFactory.getContainer().
+            getDependency( this, "Locale" );
+
+    }
+
+// </editor-fold>//GEN-END:jdtausDependencies
+
+    //------------------------------------------------------------Dependencies--
+    //--Properties--------------------------------------------------------------
+
+// <editor-fold defaultstate="collapsed" desc=" Generated Code ">//GEN-BEGIN:jdtausProperties
+    // This section is managed by jdtaus-container-mojo.
+
+    /**
+     * Gets the value of property <code>defaultSegmentSize</code>.
+     *
+     * @return Default number of bytes of one segment.
+     */
+    private java.lang.Integer getDefaultSegmentSize()
+    {
+        return (java.lang.Integer) ContainerFactory.getContainer().
+            getProperty( this, "defaultSegmentSize" );
+
+    }
+
+    /**
+     * Gets the value of property <code>defaultDirect</code>.
+     *
+     * @return Default flag indicating segments are allocated outside of the heap.
+     */
+    private java.lang.Boolean isDefaultDirect()
+    {
+        return (java.lang.Boolean) ContainerFactory.getContainer().
+            getProperty( this, "defaultDirect" );
+
+    }
+
+    /**
+     * Gets the value of property <code>streamBufferSize</code>.
+     *
+     * @return Size of the buffer for buffering streams.
+     */
+    private int getStreamBufferSize()
+    {
+        return ( (java.lang.Integer) ContainerFactory.getContainer().
+            getProperty( this, "streamBufferSize" ) ).intValue();
+
+    }
+
+// </editor-fold>//GEN-END:jdtausProperties
+
+    //--------------------------------------------------------------Properties--
+    //--FileOperations----------------------------------------------------------
+
+    public long getLength() throws IOException
+    {
+        this.assertNotClosed();
+
+        return this.length;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalArgumentException if {@code newLength} is negative or
+     * greater than the number of bytes {@code Integer.MAX_VALUE} segments can
+     * hold.
+     */
+    public void setLength( final long newLength ) throws IOException
+    {
+        if ( newLength < 0L )
+        {
+            throw new IllegalArgumentException( Long.toString( newLength ) );
+        }
+
+        this.assertNotClosed();
+
+        if ( newLength > this.length )
+        {
+            this.ensureCapacity( newLength );
+        }
+        else if ( newLength < this.length )
+        {
+            this.releaseSegments( newLength );
+        }
+
+        this.length = newLength;
+
+        if ( this.filePointer > newLength )
+        {
+            this.filePointer = newLength;
+        }
+    }
+
+    public long getFilePointer() throws IOException
+    {
+        this.assertNotClosed();
+
+        return this.filePointer;
+    }
+
+    public void setFilePointer( final long pos ) throws IOException
+    {
+        if ( pos < 0L )
+        {
+            throw new IllegalArgumentException( Long.toString( pos ) );
+        }
+
+        this.assertNotClosed();
+
+        this.filePointer = pos;
+    }
+
+    public int read( final byte[] buf, int off, int len ) throws IOException
+    {
+        if ( buf == null )
+        {
+            throw new NullPointerException( "buf" );
+        }
+        if ( off < 0 )
+        {
+            throw new IndexOutOfBoundsException( Integer.toString( off ) );
+        }
+        if ( len < 0 )
+        {
+            throw new IndexOutOfBoundsException( Integer.toString( len ) );
+        }
+        if ( off + len > buf.length )
+        {
+            throw new IndexOutOfBoundsException( Integer.toString( off + len ) );
+        }
+
+        this.assertNotClosed();
+
+        int read = FileOperations.EOF;
+
+        if ( len == 0 )
+        {
+            read = 0;
+        }
+        else if ( this.filePointer < this.length )
+        {
+            if ( len > this.length - this.filePointer )
+            {
+                len = (int) ( this.length - this.filePointer );
+            }
+
+            read = len;
+
+            while ( len > 0 )
+            {
+                final ByteBuffer segment = this.getSegment( this.filePointer );
+                final int chunk = len > segment.remaining()
+                                  ? segment.remaining()
+                                  : len;
+
+                segment.get( buf, off, chunk );
+
+                off += chunk;
+                len -= chunk;
+                this.filePointer += chunk;
+            }
+        }
+
+        return read;
+    }
+
+    public void write( final byte[] buf, int off, int len ) throws IOException
+    {
+        if ( buf == null )
+        {
+            throw new NullPointerException( "buf" );
+        }
+        if ( off < 0 )
+        {
+            throw new IndexOutOfBoundsException( Integer.toString( off ) );
+        }
+        if ( len < 0 )
+        {
+            throw new IndexOutOfBoundsException( Integer.toString( len ) );
+        }
+        if ( off + len > buf.length )
+        {
+            throw new IndexOutOfBoundsException( Integer.toString( off + len ) );
+        }
+
+        this.assertNotClosed();
+
+        if ( this.filePointer + len > this.length )
+        {
+            this.setLength( this.filePointer + len );
+        }
+
+        while ( len > 0 )
+        {
+            final ByteBuffer segment = this.getSegment( this.filePointer );
+            final int chunk = len > segment.remaining()
+                              ? segment.remaining()
+                              : len;
+
+            segment.put( buf, off, chunk );
+
+            off += chunk;
+            len -= chunk;
+            this.filePointer += chunk;
+        }
+    }
+
+    public void read( final OutputStream out ) throws IOException
+    {
+        if ( out == null )
+        {
+            throw new NullPointerException( "out" );
+        }
+
+        this.assertNotClosed();
+
+        final WritableByteChannel target = Channels.newChannel( out );
+
+        this.filePointer = 0L;
+
+        while ( this.filePointer < this.length )
+        {
+            final ByteBuffer segment = this.getSegment( this.filePointer );
+            final int chunk = this.length - this.filePointer <
+                              segment.remaining()
+                              ? (int) ( this.length - this.filePointer )
+                              : segment.remaining();
+
+            segment.limit( segment.position() + chunk );
+
+            while ( segment.hasRemaining() )
+            {
+                target.write( segment );
+            }
+
+            this.filePointer += chunk;
+        }
+    }
+
+    public void write( final InputStream in ) throws IOException
+    {
+        if ( in == null )
+        {
+            throw new NullPointerException( "in" );
+        }
+
+        this.assertNotClosed();
+
+        int read;
+        final byte[] buf = this.getStreamBuffer();
+
+        while ( ( read = in.read( buf, 0, buf.length ) ) != FileOperations.EOF )
+        {
+            this.write( buf, 0, read );
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * Releases all segments of the instance.
+     *
+     * @throws IOException if the instance already is closed.
+     */
+    public void close() throws IOException
+    {
+        this.assertNotClosed();
+
+        this.segments = null;
+        this.segmentCount = 0;
+        this.length = 0L;
+        this.closed = true;
+    }
+
+    //----------------------------------------------------------FileOperations--
+    //--ByteBufferFileOperations------------------------------------------------
+
+    public int read( final ByteBuffer buf ) throws IOException
+    {
+        final int read = this.read( this.filePointer, buf );
+
+        if ( read > 0 )
+        {
+            this.filePointer += read;
+        }
+
+        return read;
+    }
+
+    public void write( final ByteBuffer buf ) throws IOException
+    {
+        if ( buf == null )
+        {
+            throw new NullPointerException( "buf" );
+        }
+
+        final int len = buf.remaining();
+        this.write( this.filePointer, buf );
+        this.filePointer += len;
+    }
+
+    public int read( long position, final ByteBuffer buf ) throws IOException
+    {
+        if ( buf == null )
+        {
+            throw new NullPointerException( "buf" );
+        }
+        if ( position < 0L )
+        {
+            throw new IllegalArgumentException( Long.toString( position ) );
+        }
+
+        this.assertNotClosed();
+
+        int read = FileOperations.EOF;
+        int len = buf.remaining();
+
+        if ( len == 0 )
+        {
+            read = 0;
+        }
+        else if ( position < this.length )
+        {
+            if ( len > this.length - position )
+            {
+                len = (int) ( this.length - position );
+            }
+
+            read = len;
+
+            while ( len > 0 )
+            {
+                final ByteBuffer segment = this.getSegment( position );
+                final int chunk = len > segment.remaining()
+                                  ? segment.remaining()
+                                  : len;
+
+                segment.limit( segment.position() + chunk );
+                buf.put( segment );
+
+                len -= chunk;
+                position += chunk;
+            }
+        }
+
+        return read;
+    }
+
+    public void write( long position, final ByteBuffer buf )
+        throws IOException
+    {
+        if ( buf == null )
+        {
+            throw new NullPointerException( "buf" );
+        }
+        if ( position < 0L )
+        {
+            throw new IllegalArgumentException( Long.toString( position ) );
+        }
+
+        this.assertNotClosed();
+
+        final int limit = buf.limit();
+
+        if ( position + buf.remaining() > this.length )
+        {
+            final long filePointer = this.filePointer;
+            this.setLength( position + buf.remaining() );
+            this.filePointer = filePointer;
+        }
+
+        try
+        {
+            while ( buf.hasRemaining() )
+            {
+                final ByteBuffer segment = this.getSegment( position );
+                final int chunk = buf.remaining() > segment.remaining()
+                                  ? segment.remaining()
+                                  : buf.remaining();
+
+                buf.limit( buf.position() + chunk );
+                segment.put( buf );
+                buf.limit( limit );
+
+                position += chunk;
+            }
+        }
+        finally
+        {
+            buf.limit( limit );
+        }
+    }
+
+    //------------------------------------------------ByteBufferFileOperations--
+    //--SegmentedMemoryFileOperations-------------------------------------------
+
+    /** Segments holding the data. */
+    private ByteBuffer[] segments = new ByteBuffer[ 0 ];
+
+    /** Number of segments in use. */
+    private int segmentCount;
+
+    /** Number of bytes of one segment. */
+    private Integer segmentSize;
+
+    /** Flag indicating segments are allocated outside of the heap. */
+    private Boolean direct;
+
+    /** Length of the file. */
+    private long length;
+
+    /** File pointer. */
+    private long filePointer;
+
+    /** Stream buffer. */
+    private byte[] streamBuffer;
+
+    /** Flags the instance as beeing closed. */
+    private boolean closed;
+
+    /**
+     * Creates a new {@code SegmentedMemoryFileOperations} instance of no
+     * length.
+     */
+    public SegmentedMemoryFileOperations()
+    {
+        super();
+    }
+
+    /**
+     * Creates a new {@code SegmentedMemoryFileOperations} instance of no
+     * length taking the number of bytes of one segment and a flag indicating
+     * segments are allocated outside of the heap.
+     *
+     * @param segmentSize the number of bytes of one segment.
+     * @param direct {@code true} to allocate segments as direct
+     * {@code ByteBuffer}s outside of the heap; {@code false} to allocate
+     * segments on the heap.
+     */
+    public SegmentedMemoryFileOperations( final int segmentSize,
+                                          final boolean direct )
+    {
+        this();
+
+        if ( segmentSize > 0 )
+        {
+            this.segmentSize = new Integer( segmentSize );
+        }
+
+        this.direct = Boolean.valueOf( direct );
+    }
+
+    /**
+     * Gets the number of bytes of one segment.
+     *
+     * @return the number of bytes of one segment.
+     */
+    public int getSegmentSize()
+    {
+        if ( this.segmentSize == null )
+        {
+            this.segmentSize = this.getDefaultSegmentSize();
+        }
+
+        return this.segmentSize.intValue();
+    }
+
+    /**
+     * Gets a flag indicating segments are allocated outside of the heap.
+     *
+     * @return {@code true} if segments are allocated as direct
+     * {@code ByteBuffer}s outside of the heap; {@code false} if segments are
+     * allocated on the heap.
+     */
+    public boolean isDirect()
+    {
+        if ( this.direct == null )
+        {
+            this.direct = this.isDefaultDirect();
+        }
+
+        return this.direct.booleanValue();
+    }
+
+    /**
+     * Gets the number of bytes allocated by the instance.
+     *
+     * @return the number of bytes of all segments of the instance.
+     */
+    public long getCapacity()
+    {
+        return (long) this.segmentCount * this.getSegmentSize();
+    }
+
+    /**
+     * Gets the segment holding a given position of the file.
+     * <p>The returned buffer is positioned at {@code pos} and limited to the
+     * end of the segment.</p>
+     *
+     * @param pos the position in the file to get the segment for.
+     *
+     * @return a buffer of the segment holding {@code pos}.
+     */
+    private ByteBuffer getSegment( final long pos )
+    {
+        final long index = pos / this.getSegmentSize();
+
+        assert index < this.segmentCount : "Unexpected end of file.";
+
+        final ByteBuffer segment = this.segments[(int) index];
+        segment.clear();
+        segment.position( (int) ( pos - index * this.getSegmentSize() ) );
+        return segment;
+    }
+
+    /**
+     * Adds segments to the instance, if necessary, to ensure that it can hold
+     * at least the number of bytes specified by the minimum capacity
+     * argument. Existing segments are not copied.
+     *
+     * @param minimumCapacity the minimum capacity to ensure.
+     *
+     * @throws IllegalArgumentException if {@code minimumCapacity} is greater
+     * than the number of bytes {@code Integer.MAX_VALUE} segments can hold.
+     */
+    private void ensureCapacity( final long minimumCapacity )
+    {
+        final long count = ( minimumCapacity + this.getSegmentSize() - 1L ) /
+                           this.getSegmentSize();
+
+        if ( count > Integer.MAX_VALUE )
+        {
+            throw new IllegalArgumentException(
+                Long.toString( minimumCapacity ) );
+
+        }
+
+        if ( count > this.segments.length )
+        {
+            final ByteBuffer[] newSegments = new ByteBuffer[
+                this.segments.length * 2L >= count
+                ? this.segments.length * 2
+                : (int) count ];
+
+            System.arraycopy( this.segments, 0, newSegments, 0,
+                              this.segmentCount );
+
+            this.segments = newSegments;
+        }
+
+        while ( this.segmentCount < count )
+        {
+            this.segments[this.segmentCount++] = this.isDirect()
+                ? ByteBuffer.allocateDirect( this.getSegmentSize() )
+                : ByteBuffer.wrap( this.getMemoryManager().allocateBytes(
+                this.getSegmentSize() ) );
+
+        }
+    }
+
+    /**
+     * Releases the segments no longer needed for a file of a given length and
+     * clears the data of the last segment beyond that length.
+     *
+     * @param newLength the new length of the file.
+     */
+    private void releaseSegments( final long newLength )
+    {
+        final int count = (int) ( ( newLength + this.getSegmentSize() - 1L ) /
+                                  this.getSegmentSize() );
+
+        while ( this.segmentCount > count )
+        {
+            this.segments[--this.segmentCount] = null;
+        }
+
+        if ( count > 0 )
+        { // Data beyond the new length must read as zero when growing again.
+            final ByteBuffer segment = this.getSegment( newLength - 1L );
+            segment.position( segment.position() + 1 );
+
+            while ( segment.hasRemaining() )
+            {
+                segment.put( (byte) 0 );
+            }
+        }
+    }
+
+    /**
+     * Checks that the instance is not closed.
+     *
+     * @throws IOException if the instance is closed.
+     */
+    private void assertNotClosed() throws IOException
+    {
+        if ( this.closed )
+        {
+            throw new IOException( this.getAlreadyClosedMessage(
+                this.getLocale() ) );
+
+        }
+    }
+
+    /**
+     * Gets a buffer for buffering streams.
+     *
+     * @return a buffer for buffering streams.
+     */
+    private byte[] getStreamBuffer()
+    {
+        if ( this.streamBuffer == null )
+        {
+            this.streamBuffer = this.getMemoryManager().
+                allocateBytes( this.getStreamBufferSize() < 0
+                               ? 0
+                               : this.getStreamBufferSize() );
+
+        }
+
+        return this.streamBuffer;
+    }
+
+    //-------------------------------------------SegmentedMemoryFileOperations--
+    //--Messages----------------------------------------------------------------
+
+// <editor-fold defaultstate="collapsed" desc=" Generated Code ">//GEN-BEGIN:jdtausMessages
+    // This section is managed by jdtaus-container-mojo.
+
+    /**
+     * Gets the text of message <code>alreadyClosed</code>.
+     * <blockquote><pre>Instanz geschlossen - keine E/A-Operationen möglich.</pre></blockquote>
+     * <blockquote><pre>Instance closed - cannot perform I/O.</pre></blockquote>
+     *
+     * @param locale The locale of the message instance to return.
+     *
+     * @return Message stating that an instance is already closed.
+     */
+    private String getAlreadyClosedMessage( final Locale locale )
+    {
+        return ContainerFactory.getContainer().
+            getMessage( this, "alreadyClosed", locale, null );
+
+    }
+
+// </editor-fold>//GEN-END:jdtausMessages
+
+    //----------------------------------------------------------------Messages--
+}
@@ -0,0 +1,818 @@
+/*
+ *  jDTAUS Core Utilities
+ *  Copyright (C) 2005 Christian Schulte
+ *  <cs@schulte.it>
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+package org.jdtaus.core.io.util;
+
+import org.jdtaus.core.container.ContainerFactory;
+import org.jdtaus.core.lang.spi.MemoryManager;
+
+/**
+ * Block cache shared by multiple files.
+ * <p>This implementation manages a fixed number of frames each of which may
+ * hold the data of one block of any file using the cache. The number of
+ * frames is computed from configuration property {@code maximumMemory}
+ * holding the maximum number of bytes held by the cache (defaults to
+ * {@code 16777216} - 16 MB) limited by the number of bytes available to
+ * allocation reported by the {@code MemoryManager} of the system. The size of
+ * a block is controlled by configuration property {@code blockSize}
+ * (defaults to {@code 4096} - 4 kB). Memory for a frame is allocated when the
+ * frame is used for the first time so that no memory is allocated for frames
+ * never used. When all frames are in use, the frame to evict is selected by a
+ * {@code BlockEvictionPolicy} regardless of the file the block of the frame
+ * belongs to so that frequently accessed files keep more blocks cached than
+ * idle files. The policy is controlled by configuration property
+ * {@code evictionPolicy} (defaults to {@code LRU}).</p>
+ *
+ * <p>The cache holds copies of the data of files only. Data is written to
+ * the files when written to the cache so that blocks of any file can be
+ * evicted without performing any I/O. Files use the cache by means of the
+ * {@code SharedCachingFileOperations} class. The number of reads served from
+ * the cache, reads not served from the cache and blocks evicted is made
+ * available for the cache as a whole as well as for each file.</p>
+ *
+ * <p>Method {@code getDefault()} provides an instance shared by all files of
+ * the virtual machine not using an instance of their own.</p>
+ *
+ * <p><b>Note:</b><br>
+ * This implementation is thread-safe.</p>
+ *
+ * @author <a href="mailto:cs@schulte.it">Christian Schulte</a>
+ * @version $JDTAUS$
+ *
+ * @see SharedCachingFileOperations
+ */
+public final class SharedBlockCache
+{
+    //--Dependencies------------------------------------------------------------
+
+// <editor-fold defaultstate="collapsed" desc=" Generated Code ">//GEN-BEGIN:jdtausDependencies
+    // This section is managed by jdtaus-container-mojo.
+
+    /**
+     * Gets the configured <code>MemoryManager</code> implementation.
+     *
+     * @return The configured <code>MemoryManager</code> implementation.
+     */
+    private MemoryManager getMemoryManager()
+    {
+        return (MemoryManager) ContainerFactory.getContainer().
+            getDependency( this, "MemoryManager" );
+
+    }
+
+// </editor-fold>//GEN-END:jdtausDependencies
+
+    //------------------------------------------------------------Dependencies--
+    //--Properties--------------------------------------------------------------
+
+// <editor-fold defaultstate="collapsed" desc=" Generated Code ">//GEN-BEGIN:jdtausProperties
+    // This section is managed by jdtaus-container-mojo.
+
+    /**
+     * Gets the value of property <code>defaultBlockSize</code>.
+     *
+     * @return Default number of bytes of one block of the cache.
+     */
+    private java.lang.Integer getDefaultBlockSize()
+    {
+        return (java.lang.Integer) ContainerFactory.getContainer().
+            getProperty( this, "defaultBlockSize" );
+
+    }
+
+    /**
+     * Gets the value of property <code>defaultMaximumMemory</code>.
+     *
+     * @return Default maximum number of bytes held by the cache.
+     */
+    private java.lang.Integer getDefaultMaximumMemory()
+    {
+        return (java.lang.Integer) ContainerFactory.getContainer().
+            getProperty( this, "defaultMaximumMemory" );
+
+    }
+
+    /**
+     * Gets the value of property <code>defaultEvictionPolicy</code>.
+     *
+     * @return Name of the default eviction policy (one of LRU, CLOCK or 2Q).
+     */
+    private java.lang.String getDefaultEvictionPolicy()
+    {
+        return (java.lang.String) ContainerFactory.getContainer().
+            getProperty( this, "defaultEvictionPolicy" );
+
+    }
+
+// </editor-fold>//GEN-END:jdtausProperties
+
+    //--------------------------------------------------------------Properties--
+    //--SharedBlockCache--------------------------------------------------------
+
+    /** Value of an empty slot of the block index. */
+    private static final int NO_FRAME = -1;
+
+    /** Instance shared by all files not using an instance of their own. */
+    private static SharedBlockCache defaultInstance;
+
+    /** Lock guarding the state of the instance. */
+    private final Object lock = new Object();
+
+    /** Number of bytes of one block. */
+    private Integer blockSize;
+
+    /** Maximum number of bytes held by the cache. */
+    private Integer maximumMemory;
+
+    /** The policy selecting frames to evict. */
+    private BlockEvictionPolicy evictionPolicy;
+
+    /** Data of each frame, allocated on first use. */
+    private final byte[][] buffers;
+
+    /** Block held by each frame. */
+    private final long[] frameBlocks;
+
+    /** Client owning the block held by each frame, {@code null} if free. */
+    private final Client[] frameClients;
+
+    /** Number of valid bytes of each frame. */
+    private final int[] frameLengths;
+
+    /** Stack of free frames. */
+    private final int[] freeFrames;
+
+    /** Number of free frames. */
+    private int freeFrameCount;
+
+    /** Blocks of the slots of the block index. */
+    private final long[] slotBlocks;
+
+    /** Client identifiers of the slots of the block index. */
+    private final int[] slotClients;
+
+    /** Frames of the slots of the block index. */
+    private final int[] slotFrames;
+
+    /** Mask for computing slot indices. */
+    private final int mask;
+
+    /** Identifier of the next client. */
+    private int nextClientId;
+
+    /** Number of reads served from the cache. */
+    private long cacheHits;
+
+    /** Number of reads not served from the cache. */
+    private long cacheMisses;
+
+    /** Number of blocks evicted. */
+    private long cacheEvictions;
+
+    /**
+     * Creates a new {@code SharedBlockCache} instance using the block size,
+     * maximum amount of memory and eviction policy configured by the default
+     * property values.
+     */
+    public SharedBlockCache()
+    {
+        this( 0, 0, null );
+    }
+
+    /**
+     * Creates a new {@code SharedBlockCache} instance taking the size of one
+     * block, the maximum amount of memory and the policy selecting blocks to
+     * evict.
+     *
+     * @param blockSize the number of bytes of one block or {@code 0} to use
+     * the value of property {@code defaultBlockSize}.
+     * @param maximumMemory the maximum number of bytes held by the cache or
+     * {@code 0} to use the value of property {@code defaultMaximumMemory}.
+     * @param evictionPolicy the policy selecting blocks to evict or
+     * {@code null} to use the policy configured by property
+     * {@code defaultEvictionPolicy}.
+     *
+     * @throws IllegalArgumentException if {@code blockSize} or
+     * {@code maximumMemory} is negative or if property
+     * {@code defaultEvictionPolicy} does not denote a supported policy.
+     */
+    public SharedBlockCache( final int blockSize, final int maximumMemory,
+                             final BlockEvictionPolicy evictionPolicy )
+    {
+        super();
+
+        if ( blockSize < 0 )
+        {
+            throw new IllegalArgumentException( Integer.toString( blockSize ) );
+        }
+        if ( maximumMemory < 0 )
+        {
+            throw new IllegalArgumentException(
+                Integer.toString( maximumMemory ) );
+
+        }
+
+        if ( blockSize > 0 )
+        {
+            this.blockSize = new Integer( blockSize );
+        }
+        if ( maximumMemory > 0 )
+        {
+            this.maximumMemory = new Integer( maximumMemory );
+        }
+
+        this.evictionPolicy = evictionPolicy;
+
+        long memory = this.getMemoryManager().getAvailableBytes();
+        if ( memory > this.getMaximumMemory() )
+        {
+            memory = this.getMaximumMemory();
+        }
+
+        final int capacity = memory > this.getBlockSize()
+                             ? (int) ( memory / this.getBlockSize() )
+                             : 1;
+
+        int slots = 4;
+        while ( slots < capacity * 2 )
+        {
+            slots <<= 1;
+        }
+
+        this.buffers = new byte[ capacity ][];
+        this.frameBlocks = this.getMemoryManager().allocateLongs( capacity );
+        this.frameClients = new Client[ capacity ];
+        this.frameLengths =
+            this.getMemoryManager().allocateIntegers( capacity );
+
+        this.freeFrames = this.getMemoryManager().allocateIntegers( capacity );
+        this.slotBlocks = this.getMemoryManager().allocateLongs( slots );
+        this.slotClients = this.getMemoryManager().allocateIntegers( slots );
+        this.slotFrames = this.getMemoryManager().allocateIntegers( slots );
+        this.mask = slots - 1;
+
+        for ( int i = slots - 1; i >= 0; i-- )
+        {
+            this.slotFrames[i] = NO_FRAME;
+        }
+        for ( int i = capacity - 1; i >= 0; i-- )
+        {
+            this.freeFrames[this.freeFrameCount++] = i;
+        }
+
+        this.getEvictionPolicy().initialize( capacity );
+    }
+
+    /**
+     * Gets the instance shared by all files not using an instance of their
+     * own.
+     *
+     * @return the default {@code SharedBlockCache} instance of the virtual
+     * machine.
+     */
+    public static synchronized SharedBlockCache getDefault()
+    {
+        if ( defaultInstance == null )
+        {
+            defaultInstance = new SharedBlockCache();
+        }
+
+        return defaultInstance;
+    }
+
+    /**
+     * Gets the value of property {@code blockSize}.
+     *
+     * @return the number of bytes of one block.
+     */
+    public int getBlockSize()
+    {
+        if ( this.blockSize == null )
+        {
+            this.blockSize = this.getDefaultBlockSize();
+        }
+
+        return this.blockSize.intValue();
+    }
+
+    /**
+     * Gets the value of property {@code maximumMemory}.
+     *
+     * @return the maximum number of bytes held by the cache.
+     */
+    public int getMaximumMemory()
+    {
+        if ( this.maximumMemory == null )
+        {
+            this.maximumMemory = this.getDefaultMaximumMemory();
+        }
+
+        return this.maximumMemory.intValue();
+    }
+
+    /**
+     * Gets the policy selecting blocks to evict.
+     *
+     * @return the policy selecting blocks to evict.
+     *
+     * @throws IllegalArgumentException if property
+     * {@code defaultEvictionPolicy} does not denote a supported policy.
+     */
+    public BlockEvictionPolicy getEvictionPolicy()
+    {
+        if ( this.evictionPolicy == null )
+        {
+            final String name = this.getDefaultEvictionPolicy();
+
+            if ( "LRU".equalsIgnoreCase( name ) )
+            {
+                this.evictionPolicy = new LruBlockEvictionPolicy();
+            }
+            else if ( "CLOCK".equalsIgnoreCase( name ) )
+            {
+                this.evictionPolicy = new ClockBlockEvictionPolicy();
+            }
+            else if ( "2Q".equalsIgnoreCase( name ) )
+            {
+                this.evictionPolicy = new TwoQueueBlockEvictionPolicy();
+            }
+            else
+            {
+                throw new IllegalArgumentException( name );
+            }
+        }
+
+        return this.evictionPolicy;
+    }
+
+    /**
+     * Gets the number of frames of the cache.
+     *
+     * @return the maximum number of blocks held by the cache.
+     */
+    public int getCapacity()
+    {
+        return this.buffers.length;
+    }
+
+    /**
+     * Gets the number of blocks currently held by the cache.
+     *
+     * @return the number of blocks currently held by the cache.
+     */
+    public int getCachedBlocks()
+    {
+        synchronized ( this.lock )
+        {
+            return this.buffers.length - this.freeFrameCount;
+        }
+    }
+
+    /**
+     * Gets the number of reads served from the cache.
+     *
+     * @return the number of cache hits of all files.
+     */
+    public long getCacheHits()
+    {
+        synchronized ( this.lock )
+        {
+            return this.cacheHits;
+        }
+    }
+
+    /**
+     * Gets the number of reads not served from the cache.
+     *
+     * @return the number of cache misses of all files.
+     */
+    public long getCacheMisses()
+    {
+        synchronized ( this.lock )
+        {
+            return this.cacheMisses;
+        }
+    }
+
+    /**
+     * Gets the number of blocks evicted from the cache.
+     *
+     * @return the number of cache evictions of all files.
+     */
+    public long getCacheEvictions()
+    {
+        synchronized ( this.lock )
+        {
+            return this.cacheEvictions;
+        }
+    }
+
+    /**
+     * Registers a new file with the cache.
+     *
+     * @return a new handle identifying the file.
+     */
+    Client register()
+    {
+        synchronized ( this.lock )
+        {
+            return new Client( this.nextClientId++ );
+        }
+    }
+
+    /**
+     * Gets the number of reads of a file served from the cache.
+     *
+     * @param client the handle identifying the file.
+     *
+     * @return the number of cache hits of the file.
+     */
+    long getCacheHits( final Client client )
+    {
+        synchronized ( this.lock )
+        {
+            return client.cacheHits;
+        }
+    }
+
+    /**
+     * Gets the number of reads of a file not served from the cache.
+     *
+     * @param client the handle identifying the file.
+     *
+     * @return the number of cache misses of the file.
+     */
+    long getCacheMisses( final Client client )
+    {
+        synchronized ( this.lock )
+        {
+            return client.cacheMisses;
+        }
+    }
+
+    /**
+     * Gets the number of blocks of a file evicted from the cache.
+     *
+     * @param client the handle identifying the file.
+     *
+     * @return the number of cache evictions of the file.
+     */
+    long getCacheEvictions( final Client client )
+    {
+        synchronized ( this.lock )
+        {
+            return client.cacheEvictions;
+        }
+    }
+
+    /**
+     * Gets the number of blocks of a file held by the cache.
+     *
+     * @param client the handle identifying the file.
+     *
+     * @return the number of blocks of the file held by the cache.
+     */
+    int getCachedBlocks( final Client client )
+    {
+        synchronized ( this.lock )
+        {
+            return client.cachedBlocks;
+        }
+    }
+
+    /**
+     * Reads data of a block from the cache.
+     *
+     * @param client the handle identifying the file.
+     * @param block the index of the block to read.
+     * @param blockOff the offset of the data to read in the block.
+     * @param buf the buffer to read data into.
+     * @param off the offset in {@code buf} to read data to.
+     * @param len the maximum number of bytes to read.
+     *
+     * @return the number of bytes read or {@code -1} if the block is not held
+     * by the cache.
+     */
+    int read( final Client client, final long block, final int blockOff,
+              final byte[] buf, final int off, final int len )
+    {
+        synchronized ( this.lock )
+        {
+            final int frame = this.getFrame( client, block );
+
+            if ( frame == NO_FRAME || blockOff >= this.frameLengths[frame] )
+            {
+                client.cacheMisses++;
+                this.cacheMisses++;
+                return -1;
+            }
+
+            final int read = len < this.frameLengths[frame] - blockOff
+                             ? len
+                             : this.frameLengths[frame] - blockOff;
+
+            System.arraycopy( this.buffers[frame], blockOff, buf, off, read );
+            this.getEvictionPolicy().blockAccessed( frame );
+            client.cacheHits++;
+            this.cacheHits++;
+            return read;
+        }
+    }
+
+    /**
+     * Puts the data of a block into the cache evicting a block if needed.
+     *
+     * @param client the handle identifying the file.
+     * @param block the index of the block.
+     * @param buf the buffer holding the data of the block.
+     * @param off the offset of the data in {@code buf}.
+     * @param len the number of bytes of the block, less than the block size
+     * for the last block of a file only.
+     */
+    void put( final Client client, final long block, final byte[] buf,
+              final int off, final int len )
+    {
+        synchronized ( this.lock )
+        {
+            int frame = this.getFrame( client, block );
+
+            if ( frame == NO_FRAME )
+            {
+                frame = this.allocateFrame();
+
+                if ( this.buffers[frame] == null )
+                {
+                    this.buffers[frame] = this.getMemoryManager().
+                        allocateBytes( this.getBlockSize() );
+
+                }
+
+                this.frameBlocks[frame] = block;
+                this.frameClients[frame] = client;
+                this.putFrame( client, block, frame );
+                client.cachedBlocks++;
+
+                // Blocks of different files are distinguished by the client
+                // identifier in the upper bits.
+                this.getEvictionPolicy().blockCached(
+                    frame, ( (long) client.id << 40 ) ^ block );
+
+            }
+            else
+            {
+                this.getEvictionPolicy().blockAccessed( frame );
+            }
+
+            System.arraycopy( buf, off, this.buffers[frame], 0, len );
+            this.frameLengths[frame] = len;
+        }
+    }
+
+    /**
+     * Updates the data of a block held by the cache.
+     * <p>Nothing is done if the block is not held by the cache. A block is
+     * discarded if the data to update does not start inside the valid data of
+     * the block.</p>
+     *
+     * @param client the handle identifying the file.
+     * @param block the index of the block to update.
+     * @param blockOff the offset of the data to update in the block.
+     * @param buf the buffer holding the data.
+     * @param off the offset of the data in {@code buf}.
+     * @param len the number of bytes to update.
+     */
+    void update( final Client client, final long block, final int blockOff,
+                 final byte[] buf, final int off, final int len )
+    {
+        synchronized ( this.lock )
+        {
+            final int frame = this.getFrame( client, block );
+
+            if ( frame != NO_FRAME )
+            {
+                if ( blockOff > this.frameLengths[frame] )
+                {
+                    this.discardFrame( frame );
+                }
+                else
+                {
+                    System.arraycopy( buf, off, this.buffers[frame], blockOff,
+                                      len );
+
+                    if ( blockOff + len > this.frameLengths[frame] )
+                    {
+                        this.frameLengths[frame] = blockOff + len;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Discards blocks of a file.
+     *
+     * @param client the handle identifying the file.
+     * @param firstBlock the index of the first block to discard. All blocks
+     * of the file with an index greater than or equal to {@code firstBlock}
+     * are discarded.
+     */
+    void discard( final Client client, final long firstBlock )
+    {
+        synchronized ( this.lock )
+        {
+            for ( int i = this.frameClients.length - 1;
+                  i >= 0 && client.cachedBlocks > 0; i-- )
+            {
+                if ( this.frameClients[i] == client &&
+                     this.frameBlocks[i] >= firstBlock )
+                {
+                    this.discardFrame( i );
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets a free frame evicting a block if all frames are in use.
+     *
+     * @return the index of a free frame.
+     */
+    private int allocateFrame()
+    {
+        if ( this.freeFrameCount == 0 )
+        {
+            final int victim = this.getEvictionPolicy().getVictim();
+            final Client client = this.frameClients[victim];
+
+            client.cacheEvictions++;
+            this.cacheEvictions++;
+            this.discardFrame( victim );
+        }
+
+        return this.freeFrames[--this.freeFrameCount];
+    }
+
+    /**
+     * Removes the block held by a frame from the cache.
+     *
+     * @param frame the index of the frame to free.
+     */
+    private void discardFrame( final int frame )
+    {
+        final Client client = this.frameClients[frame];
+
+        this.removeFrame( client, this.frameBlocks[frame] );
+        this.getEvictionPolicy().blockDiscarded( frame );
+        this.frameClients[frame] = null;
+        this.frameLengths[frame] = 0;
+        this.freeFrames[this.freeFrameCount++] = frame;
+        client.cachedBlocks--;
+    }
+
+    /**
+     * Computes the slot of the block index of a block.
+     *
+     * @param clientId the identifier of the client of the block.
+     * @param block the index of the block.
+     *
+     * @return the index of the slot of the block.
+     */
+    private int slot( final int clientId, final long block )
+    {
+        final long h = block * 0x9E3779B97F4A7C15L +
+                       clientId * 0xC2B2AE3D27D4EB4FL;
+
+        return (int) ( h ^ ( h >>> 32 ) ) & this.mask;
+    }
+
+    /**
+     * Gets the frame holding a block.
+     *
+     * @param client the handle identifying the file of the block.
+     * @param block the index of the block.
+     *
+     * @return the index of the frame holding the block or {@code NO_FRAME}.
+     */
+    private int getFrame( final Client client, final long block )
+    {
+        for ( int i = this.slot( client.id, block );
+              this.slotFrames[i] != NO_FRAME; i = ( i + 1 ) & this.mask )
+        {
+            if ( this.slotBlocks[i] == block &&
+                 this.slotClients[i] == client.id )
+            {
+                return this.slotFrames[i];
+            }
+        }
+
+        return NO_FRAME;
+    }
+
+    /**
+     * Adds a block to the block index.
+     *
+     * @param client the handle identifying the file of the block.
+     * @param block the index of the block.
+     * @param frame the index of the frame holding the block.
+     */
+    private void putFrame( final Client client, final long block,
+                           final int frame )
+    {
+        int i = this.slot( client.id, block );
+        while ( this.slotFrames[i] != NO_FRAME )
+        {
+            i = ( i + 1 ) & this.mask;
+        }
+
+        this.slotBlocks[i] = block;
+        this.slotClients[i] = client.id;
+        this.slotFrames[i] = frame;
+    }
+
+    /**
+     * Removes a block from the block index.
+     *
+     * @param client the handle identifying the file of the block.
+     * @param block the index of the block.
+     */
+    private void removeFrame( final Client client, final long block )
+    {
+        int i = this.slot( client.id, block );
+        while ( this.slotFrames[i] != NO_FRAME &&
+                !( this.slotBlocks[i] == block &&
+                   this.slotClients[i] == client.id ) )
+        {
+            i = ( i + 1 ) & this.mask;
+        }
+
+        if ( this.slotFrames[i] != NO_FRAME )
+        {
+            this.slotFrames[i] = NO_FRAME;
+
+            // Shift back any following entries of the cluster.
+            for ( int j = ( i + 1 ) & this.mask;
+                  this.slotFrames[j] != NO_FRAME; j = ( j + 1 ) & this.mask )
+            {
+                final int k = this.slot( this.slotClients[j],
+                                         this.slotBlocks[j] );
+
+                if ( i <= j ? ( i < k && k <= j ) : ( i < k || k <= j ) )
+                { // Entry is reachable from its slot.
+                    continue;
+                }
+
+                this.slotBlocks[i] = this.slotBlocks[j];
+                this.slotClients[i] = this.slotClients[j];
+                this.slotFrames[i] = this.slotFrames[j];
+                this.slotFrames[j] = NO_FRAME;
+                i = j;
+            }
+        }
+    }
+
+    /** Handle identifying a file using the cache. */
+    static final class Client
+    {
+
+        /** Identifier of the file. */
+        private final int id;
+
+        /** Number of reads served from the cache. */
+        private long cacheHits;
+
+        /** Number of reads not served from the cache. */
+        private long cacheMisses;
+
+        /** Number of blocks evicted. */
+        private long cacheEvictions;
+
+        /** Number of blocks held by the cache. */
+        private int cachedBlocks;
+
+        private Client( final int id )
+        {
+            super();
+            this.id = id;
+        }
+
+    }
+
+    //--------------------------------------------------------SharedBlockCache--
+}
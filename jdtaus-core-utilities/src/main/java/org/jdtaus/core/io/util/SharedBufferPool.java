@@ -0,0 +1,526 @@
+/*
+ *  jDTAUS Core Utilities
+ *  Copyright (C) 2005 Christian Schulte
+ *  <cs@schulte.it>
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+package org.jdtaus.core.io.util;
+
+import java.util.ArrayList;
+import org.jdtaus.core.container.ContainerFactory;
+import org.jdtaus.core.lang.spi.MemoryManager;
+
+/**
+ * Pool of transfer buffers shared by multiple files.
+ * <p>This implementation hands out buffers of a fixed set of sizes, called
+ * size classes, each twice the size of the previous one starting at the
+ * value of configuration property {@code minimumBufferSize} (defaults to
+ * {@code 4096} - 4 kB) up to the value of configuration property
+ * {@code maximumBufferSize} (defaults to {@code 16777216} - 16 MB). Method
+ * {@code borrowBuffer()} returns a buffer of the smallest size class holding
+ * the requested number of bytes, taking a buffer returned earlier if
+ * available and allocating a new buffer using the {@code MemoryManager} of
+ * the system otherwise. Method {@code returnBuffer()} hands a buffer back
+ * to the pool for reuse. The number of bytes held by buffers returned and
+ * not borrowed again is limited by configuration property
+ * {@code maximumMemory} (defaults to {@code 16777216} - 16 MB). Buffers
+ * returned beyond that limit and buffers larger than the largest size class
+ * are discarded. When the {@code MemoryManager} reports less memory
+ * available than needed for a new buffer, all retained buffers are
+ * discarded before allocating.</p>
+ *
+ * <p>Buffers of a pool are used by the {@code StructuredFileOperations},
+ * {@code RandomAccessFileOperations} and {@code MemoryFileOperations}
+ * classes for moving data and buffering streams so that opening a large
+ * number of short lived files does not allocate a buffer per file. Method
+ * {@code getDefault()} provides the instance used by these classes.</p>
+ *
+ * <p><b>Note:</b><br>
+ * This implementation is thread-safe. A buffer must not be used after it has
+ * been returned and must not be returned more than once.</p>
+ *
+ * @author <a href="mailto:cs@schulte.it">Christian Schulte</a>
+ * @version $JDTAUS$
+ */
+public final class SharedBufferPool
+{
+    //--Dependencies------------------------------------------------------------
+
+// <editor-fold defaultstate="collapsed" desc=" Generated Code ">//GEN-BEGIN:jdtausDependencies
+    // This section is managed by jdtaus-container-mojo.
+
+    /**
+     * Gets the configured <code>MemoryManager</code> implementation.
+     *
+     * @return The configured <code>MemoryManager</code> implementation.
+     */
+    private MemoryManager getMemoryManager()
+    {
+        return (MemoryManager) ContainerFactory.getContainer().
+            getDependency( this, "MemoryManager" );
+
+    }
+
+// </editor-fold>//GEN-END:jdtausDependencies
+
+    //------------------------------------------------------------Dependencies--
+    //--Properties--------------------------------------------------------------
+
+// <editor-fold defaultstate="collapsed" desc=" Generated Code ">//GEN-BEGIN:jdtausProperties
+    // This section is managed by jdtaus-container-mojo.
+
+    /**
+     * Gets the value of property <code>defaultMinimumBufferSize</code>.
+     *
+     * @return Default number of bytes of the smallest size class.
+     */
+    private java.lang.Integer getDefaultMinimumBufferSize()
+    {
+        return (java.lang.Integer) ContainerFactory.getContainer().
+            getProperty( this, "defaultMinimumBufferSize" );
+
+    }
+
+    /**
+     * Gets the value of property <code>defaultMaximumBufferSize</code>.
+     *
+     * @return Default maximum number of bytes of the largest size class.
+     */
+    private java.lang.Integer getDefaultMaximumBufferSize()
+    {
+        return (java.lang.Integer) ContainerFactory.getContainer().
+            getProperty( this, "defaultMaximumBufferSize" );
+
+    }
+
+    /**
+     * Gets the value of property <code>defaultMaximumMemory</code>.
+     *
+     * @return Default maximum number of bytes held by retained buffers.
+     */
+    private java.lang.Integer getDefaultMaximumMemory()
+    {
+        return (java.lang.Integer) ContainerFactory.getContainer().
+            getProperty( this, "defaultMaximumMemory" );
+
+    }
+
+// </editor-fold>//GEN-END:jdtausProperties
+
+    //--------------------------------------------------------------Properties--
+    //--SharedBufferPool--------------------------------------------------------
+
+    /** Instance used by all files not using an instance of their own. */
+    private static SharedBufferPool defaultInstance;
+
+    /** Lock guarding the state of the instance. */
+    private final Object lock = new Object();
+
+    /** Number of bytes of the smallest size class. */
+    private Integer minimumBufferSize;
+
+    /** Maximum number of bytes of the largest size class. */
+    private Integer maximumBufferSize;
+
+    /** Maximum number of bytes held by retained buffers. */
+    private Integer maximumMemory;
+
+    /** Number of size classes. */
+    private final int sizeClasses;
+
+    /** Retained buffers of each size class; guarded by {@code lock}. */
+    private final ArrayList[] retainedBuffers;
+
+    /** Number of bytes held by retained buffers; guarded by {@code lock}. */
+    private long retainedMemory;
+
+    /** Number of buffers retained; guarded by {@code lock}. */
+    private int retainedCount;
+
+    /** Number of buffers borrowed and not returned; guarded by {@code lock}. */
+    private int borrowedCount;
+
+    /** Number of borrowed buffers taken from the pool. */
+    private long poolHits;
+
+    /** Number of borrowed buffers allocated. */
+    private long poolMisses;
+
+    /** Number of returned buffers not retained. */
+    private long discardedBuffers;
+
+    /**
+     * Creates a new {@code SharedBufferPool} instance using the values of
+     * properties {@code defaultMinimumBufferSize},
+     * {@code defaultMaximumBufferSize} and {@code defaultMaximumMemory}.
+     */
+    public SharedBufferPool()
+    {
+        this( 0, 0, 0 );
+    }
+
+    /**
+     * Creates a new {@code SharedBufferPool} instance taking the size of the
+     * smallest and largest size class and the maximum amount of memory held
+     * by retained buffers.
+     *
+     * @param minimumBufferSize the number of bytes of the smallest size class
+     * or {@code 0} to use the value of property
+     * {@code defaultMinimumBufferSize}. The value is rounded up to the next
+     * power of two.
+     * @param maximumBufferSize the maximum number of bytes of the largest size
+     * class or {@code 0} to use the value of property
+     * {@code defaultMaximumBufferSize}.
+     * @param maximumMemory the maximum number of bytes held by retained
+     * buffers or {@code 0} to use the value of property
+     * {@code defaultMaximumMemory}.
+     *
+     * @throws IllegalArgumentException if {@code minimumBufferSize},
+     * {@code maximumBufferSize} or {@code maximumMemory} is negative.
+     */
+    public SharedBufferPool( final int minimumBufferSize,
+                             final int maximumBufferSize,
+                             final int maximumMemory )
+    {
+        super();
+
+        if ( minimumBufferSize < 0 )
+        {
+            throw new IllegalArgumentException(
+                Integer.toString( minimumBufferSize ) );
+
+        }
+        if ( maximumBufferSize < 0 )
+        {
+            throw new IllegalArgumentException(
+                Integer.toString( maximumBufferSize ) );
+
+        }
+        if ( maximumMemory < 0 )
+        {
+            throw new IllegalArgumentException(
+                Integer.toString( maximumMemory ) );
+
+        }
+
+        if ( minimumBufferSize > 0 )
+        {
+            this.minimumBufferSize = new Integer( minimumBufferSize );
+        }
+        if ( maximumBufferSize > 0 )
+        {
+            this.maximumBufferSize = new Integer( maximumBufferSize );
+        }
+        if ( maximumMemory > 0 )
+        {
+            this.maximumMemory = new Integer( maximumMemory );
+        }
+
+        int minimum = 1;
+        while ( minimum < this.getMinimumBufferSize() &&
+                minimum <= Integer.MAX_VALUE / 2 )
+        {
+            minimum <<= 1;
+        }
+
+        this.minimumBufferSize = new Integer( minimum );
+
+        int classes = 1;
+        while ( classes < 31 &&
+                ( (long) minimum << classes ) <= this.getMaximumBufferSize() )
+        {
+            classes++;
+        }
+
+        this.sizeClasses = classes;
+        this.retainedBuffers = new ArrayList[ classes ];
+
+        for ( int i = classes - 1; i >= 0; i-- )
+        {
+            this.retainedBuffers[i] = new ArrayList();
+        }
+    }
+
+    /**
+     * Gets the instance used by all files not using an instance of their own.
+     *
+     * @return the default {@code SharedBufferPool} instance of the virtual
+     * machine.
+     */
+    public static synchronized SharedBufferPool getDefault()
+    {
+        if ( defaultInstance == null )
+        {
+            defaultInstance = new SharedBufferPool();
+        }
+
+        return defaultInstance;
+    }
+
+    /**
+     * Gets the number of bytes of the smallest size class.
+     *
+     * @return the number of bytes of the smallest size class.
+     */
+    public int getMinimumBufferSize()
+    {
+        if ( this.minimumBufferSize == null )
+        {
+            this.minimumBufferSize = this.getDefaultMinimumBufferSize();
+        }
+
+        return this.minimumBufferSize.intValue();
+    }
+
+    /**
+     * Gets the value of property {@code maximumBufferSize}.
+     *
+     * @return the maximum number of bytes of the largest size class.
+     */
+    public int getMaximumBufferSize()
+    {
+        if ( this.maximumBufferSize == null )
+        {
+            this.maximumBufferSize = this.getDefaultMaximumBufferSize();
+        }
+
+        return this.maximumBufferSize.intValue();
+    }
+
+    /**
+     * Gets the value of property {@code maximumMemory}.
+     *
+     * @return the maximum number of bytes held by retained buffers.
+     */
+    public int getMaximumMemory()
+    {
+        if ( this.maximumMemory == null )
+        {
+            this.maximumMemory = this.getDefaultMaximumMemory();
+        }
+
+        return this.maximumMemory.intValue();
+    }
+
+    /**
+     * Borrows a buffer from the pool.
+     *
+     * @param size the minimum number of bytes of the buffer.
+     *
+     * @return a buffer of at least {@code size} bytes. The contents of the
+     * buffer are undefined.
+     *
+     * @throws IllegalArgumentException if {@code size} is negative.
+     */
+    public byte[] borrowBuffer( final int size )
+    {
+        if ( size < 0 )
+        {
+            throw new IllegalArgumentException( Integer.toString( size ) );
+        }
+
+        final int sizeClass = this.getSizeClass( size );
+        final int length = sizeClass < this.sizeClasses
+                           ? this.getMinimumBufferSize() << sizeClass
+                           : size;
+
+        synchronized ( this.lock )
+        {
+            this.borrowedCount++;
+
+            if ( sizeClass < this.sizeClasses )
+            {
+                final ArrayList retained = this.retainedBuffers[sizeClass];
+
+                if ( retained.size() > 0 )
+                {
+                    this.retainedCount--;
+                    this.retainedMemory -= length;
+                    this.poolHits++;
+                    return (byte[]) retained.remove( retained.size() - 1 );
+                }
+            }
+
+            this.poolMisses++;
+
+            if ( this.retainedMemory > 0L &&
+                 this.getMemoryManager().getAvailableBytes() < length )
+            {
+                this.clear();
+            }
+        }
+
+        return this.getMemoryManager().allocateBytes( length );
+    }
+
+    /**
+     * Returns a buffer to the pool.
+     * <p>The buffer is retained for reuse if its size is one of the size
+     * classes of the pool and retaining it does not exceed the maximum amount
+     * of memory held by retained buffers. It is discarded otherwise.</p>
+     *
+     * @param buffer a buffer borrowed from the pool.
+     *
+     * @throws NullPointerException if {@code buffer} is {@code null}.
+     */
+    public void returnBuffer( final byte[] buffer )
+    {
+        if ( buffer == null )
+        {
+            throw new NullPointerException( "buffer" );
+        }
+
+        final int sizeClass = this.getSizeClass( buffer.length );
+
+        synchronized ( this.lock )
+        {
+            this.borrowedCount--;
+
+            if ( sizeClass < this.sizeClasses &&
+                 buffer.length == this.getMinimumBufferSize() << sizeClass &&
+                 this.retainedMemory + buffer.length <=
+                 this.getMaximumMemory() )
+            {
+                this.retainedBuffers[sizeClass].add( buffer );
+                this.retainedCount++;
+                this.retainedMemory += buffer.length;
+            }
+            else
+            {
+                this.discardedBuffers++;
+            }
+        }
+    }
+
+    /** Discards all retained buffers. */
+    public void clear()
+    {
+        synchronized ( this.lock )
+        {
+            for ( int i = this.sizeClasses - 1; i >= 0; i-- )
+            {
+                this.discardedBuffers += this.retainedBuffers[i].size();
+                this.retainedBuffers[i].clear();
+            }
+
+            this.retainedCount = 0;
+            this.retainedMemory = 0L;
+        }
+    }
+
+    /**
+     * Gets the number of buffers borrowed and not returned.
+     *
+     * @return the number of buffers borrowed and not returned.
+     */
+    public int getBorrowedBuffers()
+    {
+        synchronized ( this.lock )
+        {
+            return this.borrowedCount;
+        }
+    }
+
+    /**
+     * Gets the number of buffers retained for reuse.
+     *
+     * @return the number of buffers retained for reuse.
+     */
+    public int getRetainedBuffers()
+    {
+        synchronized ( this.lock )
+        {
+            return this.retainedCount;
+        }
+    }
+
+    /**
+     * Gets the number of bytes held by buffers retained for reuse.
+     *
+     * @return the number of bytes held by buffers retained for reuse.
+     */
+    public long getRetainedMemory()
+    {
+        synchronized ( this.lock )
+        {
+            return this.retainedMemory;
+        }
+    }
+
+    /**
+     * Gets the number of borrowed buffers taken from the pool.
+     *
+     * @return the number of borrowed buffers taken from the pool.
+     */
+    public long getPoolHits()
+    {
+        synchronized ( this.lock )
+        {
+            return this.poolHits;
+        }
+    }
+
+    /**
+     * Gets the number of borrowed buffers allocated.
+     *
+     * @return the number of borrowed buffers allocated.
+     */
+    public long getPoolMisses()
+    {
+        synchronized ( this.lock )
+        {
+            return this.poolMisses;
+        }
+    }
+
+    /**
+     * Gets the number of returned buffers discarded.
+     *
+     * @return the number of returned buffers discarded.
+     */
+    public long getDiscardedBuffers()
+    {
+        synchronized ( this.lock )
+        {
+            return this.discardedBuffers;
+        }
+    }
+
+    /**
+     * Gets the index of the smallest size class holding a number of bytes.
+     *
+     * @param size the number of bytes to hold.
+     *
+     * @return the index of the smallest size class holding {@code size}
+     * bytes or the number of size classes if no size class holds
+     * {@code size} bytes.
+     */
+    private int getSizeClass( final int size )
+    {
+        int sizeClass = 0;
+
+        while ( sizeClass < this.sizeClasses &&
+                (long) this.getMinimumBufferSize() << sizeClass < size )
+        {
+            sizeClass++;
+        }
+
+        return sizeClass;
+    }
+
+    //--------------------------------------------------------SharedBufferPool--
+}
@@ -0,0 +1,560 @@
+/*
+ *  jDTAUS Core Utilities
+ *  Copyright (C) 2005 Christian Schulte
+ *  <cs@schulte.it>
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+package org.jdtaus.core.io.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+import org.jdtaus.core.container.ContainerFactory;
+import org.jdtaus.core.io.FileOperations;
+import org.jdtaus.core.lang.spi.MemoryManager;
+
+/**
+ * {@code FileOperations} cache backed by a {@code SharedBlockCache}.
+ * <p>This implementation caches the blocks of a file read in a
+ * {@code SharedBlockCache} shared with other files so that the amount of
+ * memory used for caching is limited for all files together instead of per
+ * file. By default the instance returned by method
+ * {@code SharedBlockCache.getDefault()} is used. Reads not served from the
+ * cache read whole blocks from the {@code FileOperations} backing the
+ * instance. Writes are performed immediately on the {@code FileOperations}
+ * backing the instance updating any cached blocks so that no data needs to
+ * be written when blocks are evicted. The number of reads served from the
+ * cache, reads not served from the cache and blocks of the file evicted is
+ * made available by methods {@code getCacheHits()}, {@code getCacheMisses()}
+ * and {@code getCacheEvictions()}. All blocks of the file are discarded from
+ * the cache when the instance is closed.</p>
+ *
+ * <p><b>Note:</b><br>
+ * This implementation is not thread-safe and concurrent changes to the
+ * underlying {@code FileOperations} implementation are not supported.</p>
+ *
+ * @author <a href="mailto:cs@schulte.it">Christian Schulte</a>
+ * @version $JDTAUS$
+ *
+ * @see SharedBlockCache
+ */
+public final class SharedCachingFileOperations
+    implements FlushableFileOperations, CachingFileOperations
+{
+    //--Dependencies------------------------------------------------------------
+
+// <editor-fold defaultstate="collapsed" desc=" Generated Code ">//GEN-BEGIN:jdtausDependencies
+    // This section is managed by jdtaus-container-mojo.
+
+    /**
+     * Gets the configured <code>MemoryManager</code> implementation.
+     *
+     * @return The configured <code>MemoryManager</code> implementation.
+     */
+    private MemoryManager getMemoryManager()
+    {
+        return (MemoryManager) ContainerFactory.getContainer().
+            getDependency( this, "MemoryManager" );
+
+    }
+
+    /**
+     * Gets the configured <code>Locale</code> implementation.
+     *
+     * @return The configured <code>Locale</code> implementation.
+     */
+    private Locale getLocale()
+    {
+        return (Locale) ContainerFactory.getContainer().
+            getDependency( this, "Locale" );
+
+    }
+
+// </editor-fold>//GEN-END:jdtausDependencies
+
+    //------------------------------------------------------------Dependencies--
+    //--FileOperations----------------------------------------------------------
+
+    public long getLength() throws IOException
+    {
+        this.assertNotClosed();
+
+        return this.fileOperations.getLength();
+    }
+
+    public void setLength( final long newLength ) throws IOException
+    {
+        this.assertNotClosed();
+
+        final long oldLength = this.fileOperations.getLength();
+
+        this.fileOperations.setLength( newLength );
+
+        if ( newLength < oldLength )
+        { // Discard the blocks holding data beyond the new length.
+            this.cache.discard( this.client,
+                                newLength / this.cache.getBlockSize() );
+
+        }
+
+        if ( this.filePointer > newLength )
+        {
+            this.filePointer = newLength;
+        }
+    }
+
+    public long getFilePointer() throws IOException
+    {
+        this.assertNotClosed();
+
+        return this.filePointer;
+    }
+
+    public void setFilePointer( final long pos ) throws IOException
+    {
+        if ( pos < 0L )
+        {
+            throw new IllegalArgumentException( Long.toString( pos ) );
+        }
+
+        this.assertNotClosed();
+
+        this.filePointer = pos;
+    }
+
+    public int read( final byte[] buf, final int off, int len )
+        throws IOException
+    {
+        if ( buf == null )
+        {
+            throw new NullPointerException( "buf" );
+        }
+        if ( off < 0 )
+        {
+            throw new IndexOutOfBoundsException( Integer.toString( off ) );
+        }
+        if ( len < 0 )
+        {
+            throw new IndexOutOfBoundsException( Integer.toString( len ) );
+        }
+        if ( off + len > buf.length )
+        {
+            throw new IndexOutOfBoundsException( Integer.toString( off + len ) );
+        }
+
+        this.assertNotClosed();
+
+        final long fileLength = this.fileOperations.getLength();
+
+        if ( len == 0 )
+        {
+            return 0;
+        }
+        if ( this.filePointer >= fileLength )
+        {
+            return FileOperations.EOF;
+        }
+        if ( len > fileLength - this.filePointer )
+        {
+            len = (int) ( fileLength - this.filePointer );
+        }
+
+        final int blockSize = this.cache.getBlockSize();
+        int read = 0;
+
+        while ( read < len )
+        {
+            final long block = this.filePointer / blockSize;
+            final int blockOff = (int) ( this.filePointer % blockSize );
+            int copied = this.cache.read( this.client, block, blockOff, buf,
+                                          off + read, len - read );
+
+            if ( copied == FileOperations.EOF )
+            { // Block not cached or cached up to the position only.
+                final int blockLength = this.readBlock( block, fileLength );
+
+                if ( blockLength <= blockOff )
+                { // Unexpected end of file.
+                    break;
+                }
+
+                copied = len - read < blockLength - blockOff
+                         ? len - read
+                         : blockLength - blockOff;
+
+                System.arraycopy( this.getBuffer(), blockOff, buf, off + read,
+                                  copied );
+
+            }
+
+            read += copied;
+            this.filePointer += copied;
+        }
+
+        return read;
+    }
+
+    public void write( final byte[] buf, final int off, final int len )
+        throws IOException
+    {
+        if ( buf == null )
+        {
+            throw new NullPointerException( "buf" );
+        }
+        if ( off < 0 )
+        {
+            throw new IndexOutOfBoundsException( Integer.toString( off ) );
+        }
+        if ( len < 0 )
+        {
+            throw new IndexOutOfBoundsException( Integer.toString( len ) );
+        }
+        if ( off + len > buf.length )
+        {
+            throw new IndexOutOfBoundsException( Integer.toString( off + len ) );
+        }
+
+        this.assertNotClosed();
+
+        this.fileOperations.setFilePointer( this.filePointer );
+        this.fileOperations.write( buf, off, len );
+
+        final int blockSize = this.cache.getBlockSize();
+        int written = 0;
+
+        while ( written < len )
+        {
+            final long block = this.filePointer / blockSize;
+            final int blockOff = (int) ( this.filePointer % blockSize );
+            final int toWrite = len - written < blockSize - blockOff
+                                ? len - written
+                                : blockSize - blockOff;
+
+            if ( toWrite == blockSize )
+            { // Whole block written.
+                this.cache.put( this.client, block, buf, off + written,
+                                blockSize );
+
+            }
+            else
+            {
+                this.cache.update( this.client, block, blockOff, buf,
+                                   off + written, toWrite );
+
+            }
+
+            written += toWrite;
+            this.filePointer += toWrite;
+        }
+    }
+
+    public void read( final OutputStream out ) throws IOException
+    {
+        this.assertNotClosed();
+
+        this.fileOperations.read( out );
+        this.filePointer = this.fileOperations.getFilePointer();
+    }
+
+    public void write( final InputStream in ) throws IOException
+    {
+        this.assertNotClosed();
+
+        // The amount of data written is unknown so any cached blocks starting
+        // with the block of the file pointer are discarded.
+        this.cache.discard( this.client,
+                            this.filePointer / this.cache.getBlockSize() );
+
+        this.fileOperations.setFilePointer( this.filePointer );
+        this.fileOperations.write( in );
+        this.filePointer = this.fileOperations.getFilePointer();
+    }
+
+    /**
+     * {@inheritDoc}
+     * Discards all blocks of the file from the cache, flushes the instance
+     * and closes the {@code FileOperations} implementation backing the
+     * instance.
+     *
+     * @throws IOException if closing the {@code FileOperations} implementation
+     * backing the instance fails or if the instance already is closed.
+     */
+    public void close() throws IOException
+    {
+        this.assertNotClosed();
+
+        this.cache.discard( this.client, 0L );
+        this.flush();
+        this.fileOperations.close();
+        this.closed = true;
+    }
+
+    //----------------------------------------------------------FileOperations--
+    //--FlushableFileOperations-------------------------------------------------
+
+    /**
+     * {@inheritDoc}
+     * This method calls the {@code flush()} method of an underlying
+     * {@code FlushableFileOperations} implementation, if any.
+     */
+    public void flush() throws IOException
+    {
+        this.assertNotClosed();
+
+        if ( this.fileOperations instanceof FlushableFileOperations )
+        {
+            ( (FlushableFileOperations) this.fileOperations ).flush();
+        }
+    }
+
+    //-------------------------------------------------FlushableFileOperations--
+    //--CachingFileOperations---------------------------------------------------
+
+    /**
+     * Gets the number of reads of the file served from the cache.
+     *
+     * @return the number of cache hits.
+     */
+    public long getCacheHits()
+    {
+        return this.cache.getCacheHits( this.client );
+    }
+
+    /**
+     * Gets the number of reads of the file not served from the cache.
+     *
+     * @return the number of cache misses.
+     */
+    public long getCacheMisses()
+    {
+        return this.cache.getCacheMisses( this.client );
+    }
+
+    /**
+     * Gets the number of blocks of the file evicted from the cache to make
+     * room for other blocks of any file.
+     *
+     * @return the number of evictions.
+     */
+    public long getCacheEvictions()
+    {
+        return this.cache.getCacheEvictions( this.client );
+    }
+
+    //---------------------------------------------------CachingFileOperations--
+    //--SharedCachingFileOperations---------------------------------------------
+
+    /** {@code FileOperations} backing the instance. */
+    private final FileOperations fileOperations;
+
+    /** Cache holding the blocks of the file. */
+    private final SharedBlockCache cache;
+
+    /** Handle identifying the file in the cache. */
+    private final SharedBlockCache.Client client;
+
+    /** Buffer for reading blocks not held by the cache. */
+    private byte[] buffer;
+
+    /** File pointer. */
+    private long filePointer;
+
+    /** Flags the instance as beeing closed. */
+    private boolean closed;
+
+    /**
+     * Creates a new {@code SharedCachingFileOperations} instance taking the
+     * {@code FileOperations} backing the instance using the default
+     * {@code SharedBlockCache}.
+     *
+     * @param fileOperations the {@code FileOperations} backing the instance.
+     *
+     * @throws NullPointerException if {@code fileOperations} is {@code null}.
+     * @throws IOException if reading fails.
+     *
+     * @see SharedBlockCache#getDefault()
+     */
+    public SharedCachingFileOperations( final FileOperations fileOperations )
+        throws IOException
+    {
+        this( fileOperations, SharedBlockCache.getDefault() );
+    }
+
+    /**
+     * Creates a new {@code SharedCachingFileOperations} instance taking the
+     * {@code FileOperations} backing the instance and the cache to use.
+     *
+     * @param fileOperations the {@code FileOperations} backing the instance.
+     * @param cache the cache to hold the blocks of the file.
+     *
+     * @throws NullPointerException if {@code fileOperations} or {@code cache}
+     * is {@code null}.
+     * @throws IOException if reading fails.
+     */
+    public SharedCachingFileOperations( final FileOperations fileOperations,
+                                        final SharedBlockCache cache )
+        throws IOException
+    {
+        super();
+
+        if ( fileOperations == null )
+        {
+            throw new NullPointerException( "fileOperations" );
+        }
+        if ( cache == null )
+        {
+            throw new NullPointerException( "cache" );
+        }
+
+        this.fileOperations = fileOperations;
+        this.cache = cache;
+        this.client = cache.register();
+        this.filePointer = fileOperations.getFilePointer();
+    }
+
+    /**
+     * Gets the {@code FileOperations} implementation operations are performed
+     * with.
+     *
+     * @return the {@code FileOperations} implementation operations are
+     * performed with.
+     */
+    public FileOperations getFileOperations()
+    {
+        return this.fileOperations;
+    }
+
+    /**
+     * Gets the cache holding the blocks of the file.
+     *
+     * @return the cache holding the blocks of the file.
+     */
+    public SharedBlockCache getCache()
+    {
+        return this.cache;
+    }
+
+    /**
+     * Gets the number of blocks of the file currently held by the cache.
+     *
+     * @return the number of blocks of the file held by the cache.
+     */
+    public int getCachedBlocks()
+    {
+        return this.cache.getCachedBlocks( this.client );
+    }
+
+    /**
+     * Gets the buffer for reading blocks not held by the cache.
+     *
+     * @return the buffer for reading blocks.
+     */
+    private byte[] getBuffer()
+    {
+        if ( this.buffer == null )
+        {
+            this.buffer = this.getMemoryManager().
+                allocateBytes( this.cache.getBlockSize() );
+
+        }
+
+        return this.buffer;
+    }
+
+    /**
+     * Reads a block from the {@code FileOperations} backing the instance into
+     * the buffer and puts it into the cache.
+     *
+     * @param block the index of the block to read.
+     * @param fileLength the length of the file.
+     *
+     * @return the number of bytes of the block.
+     *
+     * @throws IOException if reading fails.
+     */
+    private int readBlock( final long block, final long fileLength )
+        throws IOException
+    {
+        final byte[] buf = this.getBuffer();
+        final long pos = block * buf.length;
+        final int blockLength = fileLength - pos < buf.length
+                                ? (int) ( fileLength - pos )
+                                : buf.length;
+
+        int read = 0;
+
+        this.fileOperations.setFilePointer( pos );
+
+        while ( read < blockLength )
+        {
+            final int r = this.fileOperations.read( buf, read,
+                                                    blockLength - read );
+
+            if ( r == FileOperations.EOF )
+            {
+                break;
+            }
+
+            read += r;
+        }
+
+        this.cache.put( this.client, block, buf, 0, read );
+        return read;
+    }
+
+    /**
+     * Checks that the instance is not closed.
+     *
+     * @throws IOException if the instance is closed.
+     */
+    private void assertNotClosed() throws IOException
+    {
+        if ( this.closed )
+        {
+            throw new IOException( this.getAlreadyClosedMessage(
+                this.getLocale() ) );
+
+        }
+    }
+
+    //---------------------------------------------SharedCachingFileOperations--
+    //--Messages----------------------------------------------------------------
+
+// <editor-fold defaultstate="collapsed" desc=" Generated Code ">//GEN-BEGIN:jdtausMessages
+    // This section is managed by jdtaus-container-mojo.
+
+    /**
+     * Gets the text of message <code>alreadyClosed</code>.
+     * <blockquote><pre>Instanz geschlossen - keine E/A-Operationen möglich.</pre></blockquote>
+     * <blockquote><pre>Instance closed - cannot perform I/O.</pre></blockquote>
+     *
+     * @param locale The locale of the message instance to return.
+     *
+     * @return Message stating that an instance is already closed.
+     */
+    private String getAlreadyClosedMessage( final Locale locale )
+    {
+        return ContainerFactory.getContainer().
+            getMessage( this, "alreadyClosed", locale, null );
+
+    }
+
+// </editor-fold>//GEN-END:jdtausMessages
+
+    //----------------------------------------------------------------Messages--
+}
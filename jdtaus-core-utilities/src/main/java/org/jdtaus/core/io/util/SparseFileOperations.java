@@ -0,0 +1,59 @@
+/*
+ *  jDTAUS Core Utilities
+ *  Copyright (C) 2005 Christian Schulte
+ *  <cs@schulte.it>
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+package org.jdtaus.core.io.util;
+
+import java.io.IOException;
+import org.jdtaus.core.io.FileOperations;
+
+/**
+ * Extension to {@code FileOperations} adding support for zeroing ranges of a
+ * file.
+ * <p>Zeroing a range does not require the caller to provide a buffer of
+ * zeros. Implementations backed by a file system supporting sparse files
+ * leave ranges beyond the end of the file unallocated when extending the
+ * file. Other than defined by {@code FileOperations}, the extended portion of
+ * a file extended by method {@code setLength()} holds zeros so that caching
+ * implementations need not read that portion. The file pointer is not
+ * changed by any of the methods of this interface.</p>
+ *
+ * @author <a href="mailto:cs@schulte.it">Christian Schulte</a>
+ * @version $JDTAUS$
+ */
+public interface SparseFileOperations extends FileOperations
+{
+    //--SparseFileOperations----------------------------------------------------
+
+    /**
+     * Sets a range of the file to zero.
+     * <p>A range extending beyond the end of the file extends the file to the
+     * end of the range.</p>
+     *
+     * @param position the file position of the range to zero.
+     * @param length the number of bytes to zero.
+     *
+     * @throws IllegalArgumentException if {@code position} or {@code length}
+     * is negative.
+     * @throws IOException if zeroing fails.
+     */
+    void zero( long position, long length ) throws IOException;
+
+    //----------------------------------------------------SparseFileOperations--
+}
@@ -0,0 +1,797 @@
+/*
+ *  jDTAUS Core Utilities
+ *  Copyright (C) 2005 Christian Schulte
+ *  <cs@schulte.it>
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+package org.jdtaus.core.io.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+import org.jdtaus.core.container.ContainerFactory;
+import org.jdtaus.core.io.StructuredFile;
+import org.jdtaus.core.io.StructuredFileListener;
+import org.jdtaus.core.lang.spi.MemoryManager;
+
+/**
+ * Memory resident index of the blocks of a {@code StructuredFile} by key.
+ * <p>This implementation maps keys extracted from the data of each block by a
+ * {@code BlockKeyExtractor} to the indices of the blocks holding them. For
+ * files sorted by key a sparse index is maintained holding the key of every
+ * n-th block only. Blocks are looked up by binary search over the keys of the
+ * index followed by binary search over the blocks between two keys of the
+ * index reading blocks from the file so that any cache backing the file is
+ * used. The number of blocks between two keys of the index is controlled by
+ * configuration property {@code interval} (defaults to {@code 64}). For
+ * unsorted files a hash table of all blocks is maintained holding the index
+ * and the hash code of the key of each block. Keys are not held in memory but
+ * read from the file for any block with a matching hash code.</p>
+ *
+ * <p>The index registers itself as a {@code StructuredFileListener} with the
+ * file so that inserting and deleting blocks keeps the index consistent.
+ * Since writing to blocks is not reported to listeners, any writes changing
+ * keys, including writes to inserted blocks, need to be reported to the index
+ * using method {@code blocksWritten()}.</p>
+ *
+ * <p><b>Note:</b><br>
+ * This implementation is not thread-safe.</p>
+ *
+ * @author <a href="mailto:cs@schulte.it">Christian Schulte</a>
+ * @version $JDTAUS$
+ *
+ * @see BlockKeyExtractor
+ * @see StructuredFileSorter
+ */
+public final class StructuredFileIndex implements StructuredFileListener
+{
+    //--Dependencies------------------------------------------------------------
+
+// <editor-fold defaultstate="collapsed" desc=" Generated Code ">//GEN-BEGIN:jdtausDependencies
+    // This section is managed by jdtaus-container-mojo.
+
+    /**
+     * Gets the configured <code>MemoryManager</code> implementation.
+     *
+     * @return The configured <code>MemoryManager</code> implementation.
+     */
+    private MemoryManager getMemoryManager()
+    {
+        return (MemoryManager) ContainerFactory.getContainer().
+            getDependency( this, "MemoryManager" );
+
+    }
+
+    /**
+     * Gets the configured <code>Locale</code> implementation.
+     *
+     * @return The configured <code>Locale</code> implementation.
+     */
+    private Locale getLocale()
+    {
+        return (Locale) ContainerFactory.getContainer().
+            getDependency( this, "Locale" );
+
+    }
+
+// </editor-fold>//GEN-END:jdtausDependencies
+
+    //------------------------------------------------------------Dependencies--
+    //--Properties--------------------------------------------------------------
+
+// <editor-fold defaultstate="collapsed" desc=" Generated Code ">//GEN-BEGIN:jdtausProperties
+    // This section is managed by jdtaus-container-mojo.
+
+    /**
+     * Gets the value of property <code>defaultInterval</code>.
+     *
+     * @return Default number of blocks between two keys of a sparse index.
+     */
+    private java.lang.Integer getDefaultInterval()
+    {
+        return (java.lang.Integer) ContainerFactory.getContainer().
+            getProperty( this, "defaultInterval" );
+
+    }
+
+// </editor-fold>//GEN-END:jdtausProperties
+
+    //--------------------------------------------------------------Properties--
+    //--StructuredFileListener--------------------------------------------------
+
+    public void blocksInserted( final long index, final long insertedBlocks )
+        throws IOException
+    {
+        this.assertNotClosed();
+
+        if ( this.sorted )
+        {
+            for ( int i = this.sampleCount - 1;
+                  i >= 0 && this.sampleBlocks[i] >= index; i-- )
+            {
+                this.sampleBlocks[i] += insertedBlocks;
+            }
+        }
+        else
+        {
+            for ( int i = this.slots.length - 1; i >= 0; i-- )
+            {
+                if ( this.slots[i] >= index )
+                {
+                    this.slots[i] += insertedBlocks;
+                }
+            }
+        }
+    }
+
+    public void blocksDeleted( final long index, final long deletedBlocks )
+        throws IOException
+    {
+        this.assertNotClosed();
+
+        final long end = index + deletedBlocks;
+
+        if ( this.sorted )
+        {
+            int count = 0;
+
+            for ( int i = 0; i < this.sampleCount; i++ )
+            {
+                final long block = this.sampleBlocks[i];
+
+                if ( block < index || block >= end )
+                {
+                    this.sampleBlocks[count] =
+                        block < index ? block : block - deletedBlocks;
+
+                    System.arraycopy( this.sampleKeys, i * this.keyLength,
+                                      this.sampleKeys, count * this.keyLength,
+                                      this.keyLength );
+
+                    count++;
+                }
+            }
+
+            this.sampleCount = count;
+        }
+        else
+        {
+            this.rehash( index, end, -deletedBlocks );
+        }
+    }
+
+    //--------------------------------------------------StructuredFileListener--
+    //--StructuredFileIndex-----------------------------------------------------
+
+    /** Value of an empty slot of the hash table. */
+    private static final long EMPTY = -1L;
+
+    /** The indexed {@code StructuredFile}. */
+    private final StructuredFile file;
+
+    /** The {@code BlockKeyExtractor} to extract keys with. */
+    private final BlockKeyExtractor keys;
+
+    /** The length of a key. */
+    private final int keyLength;
+
+    /** Flags the file to be sorted by key. */
+    private final boolean sorted;
+
+    /** Number of blocks between two keys of a sparse index. */
+    private Integer interval;
+
+    /** Buffer holding the data of a block. */
+    private final byte[] block;
+
+    /** Buffer holding a key read from the file. */
+    private final byte[] key;
+
+    /** Indices of the blocks of a sparse index. */
+    private long[] sampleBlocks;
+
+    /** Keys of the blocks of a sparse index. */
+    private byte[] sampleKeys;
+
+    /** Number of blocks of a sparse index. */
+    private int sampleCount;
+
+    /** Indices of the blocks of the hash table. */
+    private long[] slots;
+
+    /** Hash codes of the keys of the blocks of the hash table. */
+    private int[] hashes;
+
+    /** Number of blocks of the hash table. */
+    private int size;
+
+    /** Flags the instance as beeing closed. */
+    private boolean closed;
+
+    /**
+     * Creates a new {@code StructuredFileIndex} instance indexing a
+     * {@code StructuredFile}.
+     *
+     * @param file the {@code StructuredFile} to index.
+     * @param keys the {@code BlockKeyExtractor} to extract the key of a block
+     * with.
+     * @param sorted {@code true} if {@code file} is sorted by the keys
+     * extracted by {@code keys} to maintain a sparse index; {@code false} to
+     * maintain a hash table of all blocks.
+     *
+     * @throws NullPointerException if {@code file} or {@code keys} is
+     * {@code null}.
+     * @throws IllegalArgumentException if the key length of {@code keys} is
+     * negative or zero.
+     * @throws IOException if reading fails.
+     */
+    public StructuredFileIndex( final StructuredFile file,
+                                final BlockKeyExtractor keys,
+                                final boolean sorted ) throws IOException
+    {
+        this( file, keys, sorted, 0 );
+    }
+
+    /**
+     * Creates a new {@code StructuredFileIndex} instance indexing a
+     * {@code StructuredFile} taking the number of blocks between two keys of a
+     * sparse index.
+     *
+     * @param file the {@code StructuredFile} to index.
+     * @param keys the {@code BlockKeyExtractor} to extract the key of a block
+     * with.
+     * @param sorted {@code true} if {@code file} is sorted by the keys
+     * extracted by {@code keys} to maintain a sparse index; {@code false} to
+     * maintain a hash table of all blocks.
+     * @param interval the number of blocks between two keys of a sparse index
+     * or {@code 0} to use the value of property {@code defaultInterval}.
+     *
+     * @throws NullPointerException if {@code file} or {@code keys} is
+     * {@code null}.
+     * @throws IllegalArgumentException if the key length of {@code keys} is
+     * negative or zero or if {@code interval} is negative.
+     * @throws IOException if reading fails.
+     */
+    public StructuredFileIndex( final StructuredFile file,
+                                final BlockKeyExtractor keys,
+                                final boolean sorted, final int interval )
+        throws IOException
+    {
+        super();
+
+        if ( file == null )
+        {
+            throw new NullPointerException( "file" );
+        }
+        if ( keys == null )
+        {
+            throw new NullPointerException( "keys" );
+        }
+        if ( keys.getKeyLength() <= 0 )
+        {
+            throw new IllegalArgumentException(
+                Integer.toString( keys.getKeyLength() ) );
+
+        }
+        if ( interval < 0 )
+        {
+            throw new IllegalArgumentException( Integer.toString( interval ) );
+        }
+
+        this.file = file;
+        this.keys = keys;
+        this.keyLength = keys.getKeyLength();
+        this.sorted = sorted;
+        this.block = this.getMemoryManager().allocateBytes(
+            file.getBlockSize() );
+
+        this.key = this.getMemoryManager().allocateBytes( this.keyLength );
+
+        if ( interval > 0 )
+        {
+            this.interval = new Integer( interval );
+        }
+
+        this.rebuild();
+        file.addStructuredFileListener( this );
+    }
+
+    /**
+     * Gets the indexed {@code StructuredFile}.
+     *
+     * @return the indexed {@code StructuredFile}.
+     */
+    public StructuredFile getStructuredFile()
+    {
+        return this.file;
+    }
+
+    /**
+     * Gets a flag indicating the instance maintains a sparse index of a sorted
+     * file.
+     *
+     * @return {@code true} if the instance maintains a sparse index;
+     * {@code false} if the instance maintains a hash table of all blocks.
+     */
+    public boolean isSorted()
+    {
+        return this.sorted;
+    }
+
+    /**
+     * Gets the value of property {@code interval}.
+     *
+     * @return the number of blocks between two keys of a sparse index.
+     */
+    public int getInterval()
+    {
+        if ( this.interval == null )
+        {
+            this.interval = this.getDefaultInterval();
+        }
+
+        return this.interval.intValue();
+    }
+
+    /**
+     * Searches the file for a block holding a given key.
+     *
+     * @param key the key to search.
+     *
+     * @return the index of the first block holding {@code key} or {@code -1}
+     * if no block holds {@code key}.
+     *
+     * @throws NullPointerException if {@code key} is {@code null}.
+     * @throws IllegalArgumentException if the length of {@code key} differs
+     * from the key length of the {@code BlockKeyExtractor} of the instance.
+     * @throws IOException if reading fails or if the instance is closed.
+     */
+    public long find( final byte[] key ) throws IOException
+    {
+        if ( key == null )
+        {
+            throw new NullPointerException( "key" );
+        }
+        if ( key.length != this.keyLength )
+        {
+            throw new IllegalArgumentException(
+                Integer.toString( key.length ) );
+
+        }
+
+        this.assertNotClosed();
+
+        return this.sorted ? this.findSorted( key ) : this.findHashed( key );
+    }
+
+    /**
+     * Updates the index for blocks having been written to.
+     * <p>This method needs to be called whenever writing to blocks changes
+     * the keys of the blocks, including any writes to inserted blocks.</p>
+     *
+     * @param index the index of the first block written to.
+     * @param count the number of blocks written to.
+     *
+     * @throws IndexOutOfBoundsException if {@code index} or {@code count} is
+     * negative or {@code index + count} is greater than the number of blocks
+     * of the file.
+     * @throws IOException if reading fails or if the instance is closed.
+     */
+    public void blocksWritten( final long index, final long count )
+        throws IOException
+    {
+        if ( index < 0L )
+        {
+            throw new ArrayIndexOutOfBoundsException( (int) index );
+        }
+        if ( count < 0L || count > this.file.getBlockCount() - index )
+        {
+            throw new ArrayIndexOutOfBoundsException( (int) count );
+        }
+
+        this.assertNotClosed();
+
+        final long end = index + count;
+
+        if ( this.sorted )
+        {
+            for ( int i = 0; i < this.sampleCount; i++ )
+            {
+                if ( this.sampleBlocks[i] >= index &&
+                     this.sampleBlocks[i] < end )
+                {
+                    this.file.readBlock( this.sampleBlocks[i], 0, this.block );
+                    this.keys.getKey( this.block, 0, this.sampleKeys,
+                                      i * this.keyLength );
+
+                }
+            }
+        }
+        else if ( count > 0L )
+        {
+            this.rehash( index, end, 0L );
+
+            for ( long i = index; i < end; i++ )
+            {
+                this.file.readBlock( i, 0, this.block );
+                this.keys.getKey( this.block, 0, this.key, 0 );
+                this.add( i, hash( this.key, 0, this.keyLength ) );
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the index reading the keys of the blocks of the file.
+     *
+     * @throws IOException if reading fails or if the instance is closed.
+     */
+    public void rebuild() throws IOException
+    {
+        this.assertNotClosed();
+
+        final long blockCount = this.file.getBlockCount();
+
+        if ( this.sorted )
+        {
+            final long count =
+                ( blockCount + this.getInterval() - 1L ) / this.getInterval();
+
+            this.sampleBlocks =
+                this.getMemoryManager().allocateLongs( (int) count );
+
+            this.sampleKeys = this.getMemoryManager().allocateBytes(
+                (int) count * this.keyLength );
+
+            this.sampleCount = (int) count;
+
+            for ( int i = 0; i < this.sampleCount; i++ )
+            {
+                this.sampleBlocks[i] = (long) i * this.getInterval();
+                this.file.readBlock( this.sampleBlocks[i], 0, this.block );
+                this.keys.getKey( this.block, 0, this.sampleKeys,
+                                  i * this.keyLength );
+
+            }
+        }
+        else
+        {
+            this.allocateTable( blockCount );
+
+            if ( blockCount > 0L )
+            {
+                final BlockCursor cursor = new BlockCursor( this.file );
+
+                try
+                {
+                    while ( cursor.hasNext() )
+                    {
+                        final ByteBuffer buf = cursor.next();
+                        buf.get( this.block );
+                        this.keys.getKey( this.block, 0, this.key, 0 );
+                        this.add( cursor.getBlock(),
+                                  hash( this.key, 0, this.keyLength ) );
+
+                    }
+                }
+                finally
+                {
+                    cursor.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Closes the index removing the index from the listeners of the file.
+     * The file is not closed.
+     *
+     * @throws IOException if the instance already is closed.
+     */
+    public void close() throws IOException
+    {
+        this.assertNotClosed();
+        this.file.removeStructuredFileListener( this );
+        this.sampleBlocks = null;
+        this.sampleKeys = null;
+        this.slots = null;
+        this.hashes = null;
+        this.closed = true;
+    }
+
+    /**
+     * Searches a sorted file for the first block holding a key.
+     *
+     * @param key the key to search.
+     *
+     * @return the index of the first block holding {@code key} or {@code -1}.
+     *
+     * @throws IOException if reading fails.
+     */
+    private long findSorted( final byte[] key ) throws IOException
+    {
+        // First key of the index greater than or equal to the key to search.
+        int sample = 0;
+        int high = this.sampleCount;
+
+        while ( sample < high )
+        {
+            final int mid = ( sample + high ) >>> 1;
+
+            if ( compare( this.sampleKeys, mid * this.keyLength, key, 0,
+                          this.keyLength ) < 0 )
+            {
+                sample = mid + 1;
+            }
+            else
+            {
+                high = mid;
+            }
+        }
+
+        // First block greater than or equal to the key to search between the
+        // blocks of the index preceding and following the key.
+        long low = sample > 0 ? this.sampleBlocks[sample - 1] + 1L : 0L;
+        long end = sample < this.sampleCount
+                   ? this.sampleBlocks[sample]
+                   : this.file.getBlockCount();
+
+        while ( low < end )
+        {
+            final long mid = ( low + end ) >>> 1;
+
+            if ( compare( this.readKey( mid ), 0, key, 0,
+                          this.keyLength ) < 0 )
+            {
+                low = mid + 1L;
+            }
+            else
+            {
+                end = mid;
+            }
+        }
+
+        if ( sample < this.sampleCount && low == this.sampleBlocks[sample] )
+        {
+            return compare( this.sampleKeys, sample * this.keyLength, key, 0,
+                            this.keyLength ) == 0 ? low : -1L;
+
+        }
+
+        return low < this.file.getBlockCount() &&
+               compare( this.readKey( low ), 0, key, 0, this.keyLength ) == 0
+               ? low
+               : -1L;
+
+    }
+
+    /**
+     * Searches the hash table for the first block holding a key.
+     *
+     * @param key the key to search.
+     *
+     * @return the index of the first block holding {@code key} or {@code -1}.
+     *
+     * @throws IOException if reading fails.
+     */
+    private long findHashed( final byte[] key ) throws IOException
+    {
+        final int hash = hash( key, 0, this.keyLength );
+        final int mask = this.slots.length - 1;
+        long found = -1L;
+
+        for ( int i = hash & mask; this.slots[i] != EMPTY;
+              i = ( i + 1 ) & mask )
+        {
+            if ( this.hashes[i] == hash &&
+                 ( found == -1L || this.slots[i] < found ) &&
+                 compare( this.readKey( this.slots[i] ), 0, key, 0,
+                          this.keyLength ) == 0 )
+            {
+                found = this.slots[i];
+            }
+        }
+
+        return found;
+    }
+
+    /**
+     * Reads the key of a block.
+     *
+     * @param index the index of the block to read the key of.
+     *
+     * @return a buffer holding the key of the block at {@code index}.
+     *
+     * @throws IOException if reading fails.
+     */
+    private byte[] readKey( final long index ) throws IOException
+    {
+        this.file.readBlock( index, 0, this.block );
+        this.keys.getKey( this.block, 0, this.key, 0 );
+        return this.key;
+    }
+
+    /**
+     * Allocates an empty hash table for a number of blocks.
+     *
+     * @param blockCount the number of blocks to allocate the table for.
+     */
+    private void allocateTable( final long blockCount )
+    {
+        int capacity = 16;
+        while ( capacity < blockCount * 2L && capacity < 0x40000000 )
+        {
+            capacity <<= 1;
+        }
+
+        this.slots = this.getMemoryManager().allocateLongs( capacity );
+        this.hashes = this.getMemoryManager().allocateIntegers( capacity );
+        this.size = 0;
+
+        for ( int i = capacity - 1; i >= 0; i-- )
+        {
+            this.slots[i] = EMPTY;
+        }
+    }
+
+    /**
+     * Adds a block to the hash table.
+     *
+     * @param index the index of the block to add.
+     * @param hash the hash code of the key of the block.
+     */
+    private void add( final long index, final int hash )
+    {
+        if ( ( this.size + 1 ) * 2L > this.slots.length )
+        {
+            this.rehash( 0L, 0L, 0L );
+        }
+
+        final int mask = this.slots.length - 1;
+        int i = hash & mask;
+
+        while ( this.slots[i] != EMPTY )
+        {
+            i = ( i + 1 ) & mask;
+        }
+
+        this.slots[i] = index;
+        this.hashes[i] = hash;
+        this.size++;
+    }
+
+    /**
+     * Rebuilds the hash table removing a range of blocks and moving the blocks
+     * following the range.
+     *
+     * @param index the index of the first block to remove.
+     * @param end the index of the block following the last block to remove.
+     * @param distance the distance to move the blocks following the range.
+     */
+    private void rehash( final long index, final long end,
+                         final long distance )
+    {
+        final long[] oldSlots = this.slots;
+        final int[] oldHashes = this.hashes;
+
+        this.allocateTable( this.size + 1L );
+
+        for ( int i = oldSlots.length - 1; i >= 0; i-- )
+        {
+            final long block = oldSlots[i];
+
+            if ( block != EMPTY && ( block < index || block >= end ) )
+            {
+                this.add( block < index ? block : block + distance,
+                          oldHashes[i] );
+
+            }
+        }
+    }
+
+    /**
+     * Computes the hash code of a key.
+     *
+     * @param key buffer holding the key.
+     * @param off offset of the key in {@code key}.
+     * @param len the length of the key.
+     *
+     * @return the hash code of the key.
+     */
+    private static int hash( final byte[] key, final int off, final int len )
+    {
+        int hash = 1;
+
+        for ( int i = 0; i < len; i++ )
+        {
+            hash = 31 * hash + key[off + i];
+        }
+
+        // Spread the bits of the hash code over the lower bits used to index
+        // the table.
+        hash ^= ( hash >>> 20 ) ^ ( hash >>> 12 );
+        return hash ^ ( hash >>> 7 ) ^ ( hash >>> 4 );
+    }
+
+    /**
+     * Compares two keys treating each byte as an unsigned value.
+     *
+     * @param a buffer holding the first key.
+     * @param aOff offset of the first key in {@code a}.
+     * @param b buffer holding the second key.
+     * @param bOff offset of the second key in {@code b}.
+     * @param len the length of the keys.
+     *
+     * @return a negative integer, zero, or a positive integer as the first key
+     * is less than, equal to, or greater than the second key.
+     */
+    private static int compare( final byte[] a, final int aOff, final byte[] b,
+                                final int bOff, final int len )
+    {
+        for ( int i = 0; i < len; i++ )
+        {
+            final int c = ( a[aOff + i] & 0xFF ) - ( b[bOff + i] & 0xFF );
+
+            if ( c != 0 )
+            {
+                return c;
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * Checks that the instance is not closed.
+     *
+     * @throws IOException if the instance is closed.
+     */
+    private void assertNotClosed() throws IOException
+    {
+        if ( this.closed )
+        {
+            throw new IOException( this.getAlreadyClosedMessage(
+                this.getLocale() ) );
+
+        }
+    }
+
+    //-----------------------------------------------------StructuredFileIndex--
+    //--Messages----------------------------------------------------------------
+
+// <editor-fold defaultstate="collapsed" desc=" Generated Code ">//GEN-BEGIN:jdtausMessages
+    // This section is managed by jdtaus-container-mojo.
+
+    /**
+     * Gets the text of message <code>alreadyClosed</code>.
+     * <blockquote><pre>Instanz geschlossen - keine E/A-Operationen möglich.</pre></blockquote>
+     * <blockquote><pre>Instance closed - cannot perform I/O.</pre></blockquote>
+     *
+     * @param locale The locale of the message instance to return.
+     *
+     * @return Message stating that an instance is already closed.
+     */
+    private String getAlreadyClosedMessage( final Locale locale )
+    {
+        return ContainerFactory.getContainer().
+            getMessage( this, "alreadyClosed", locale, null );
+
+    }
+
+// </editor-fold>//GEN-END:jdtausMessages
+
+    //----------------------------------------------------------------Messages--
+}
@@ -21,16 +21,21 @@
 package org.jdtaus.core.io.util;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Locale;
 import javax.swing.event.EventListenerList;
 import org.jdtaus.core.container.ContainerFactory;
 import org.jdtaus.core.io.FileOperations;
 import org.jdtaus.core.io.StructuredFile;
 import org.jdtaus.core.io.StructuredFileListener;
+import org.jdtaus.core.lang.spi.Executor;
 import org.jdtaus.core.lang.spi.MemoryManager;
 import org.jdtaus.core.messages.DeletesBlocksMessage;
 import org.jdtaus.core.messages.InsertsBlocksMessage;
+import org.jdtaus.core.text.Message;
 import org.jdtaus.core.monitor.spi.Task;
 import org.jdtaus.core.monitor.spi.TaskMonitor;
 
@@ -50,6 +55,23 @@ import org.jdtaus.core.monitor.spi.TaskMonitor;
  * property {@code monitoringThreshold} holding the number of bytes which
  * need to minimally be copied to enable any task monitoring during the
  * copy operation (defaults to 5242880 - 5MB).</p>
+ * <p>If the {@code FileOperations} backing the instance provide access to a
+ * {@code FileChannel} (instances of {@code FileChannelFileOperations} and
+ * {@code RandomAccessFileOperations}), the {@code deleteBlocks()} and
+ * {@code insertBlocks()} methods move data using that channel. If the
+ * distance data is moved by is at least half the size of the buffer, data is
+ * transferred from the channel to itself in chunks of at most
+ * {@code transferSize} bytes (defaults to 8388608 - 8MB) not exceeding that
+ * distance so that source and target of a transfer never overlap. Otherwise
+ * two halves of the buffer are used alternately so that the next chunk is
+ * read while the previous chunk is written asynchronously using the
+ * {@code Executor} of the system. The buffer is borrowed from the default
+ * {@code SharedBufferPool} for the duration of a move only.</p>
+ * <p>Calls to the {@code insertBlocks()} and {@code deleteBlocks()} methods
+ * can be batched by enclosing them in calls to the {@link #beginEdit()} and
+ * {@link #commitEdit()} methods. Committing an edit moves every block to its
+ * final position at most once and notifies listeners about the range of
+ * blocks changed instead of notifying them about every single call.</p>
  *
  * <p><b>Note:</b><br>
  * This implementation is not thread-safe and concurrent changes to the
@@ -65,9 +87,6 @@ public final class StructuredFileOperations implements StructuredFile
 {
     //--Fields------------------------------------------------------------------
 
-    /** Pre-allocated temporary buffer. */
-    private byte[] defaultBuffer;
-
     /** Caches the value of property blockCount. */
     private long cachedBlockCount = NO_CACHED_BLOCKCOUNT;
 
@@ -79,6 +98,15 @@ public final class StructuredFileOperations implements StructuredFile
     /** Value of property {@code blockSize} as a {@code BigDecimal}. */
     private final BigDecimal decimalBlockSize;
 
+    /** Extents of the pending edit or {@code null}. */
+    private ExtentTable editExtents;
+
+    /** Number of blocks when the pending edit got started. */
+    private long editBlockCount;
+
+    /** Number of physical blocks of the pending edit. */
+    private long editPhysicalBlockCount;
+
     //------------------------------------------------------------------Fields--
     //--Dependencies------------------------------------------------------------
 
@@ -121,6 +149,18 @@ public final class StructuredFileOperations implements StructuredFile
 
     }
 
+    /**
+     * Gets the configured <code>Executor</code> implementation.
+     *
+     * @return The configured <code>Executor</code> implementation.
+     */
+    private Executor getExecutor()
+    {
+        return (Executor) ContainerFactory.getContainer().
+            getDependency( this, "Executor" );
+
+    }
+
 // </editor-fold>//GEN-END:jdtausDependencies
 
     //------------------------------------------------------------Dependencies--
@@ -153,6 +193,18 @@ public final class StructuredFileOperations implements StructuredFile
 
     }
 
+    /**
+     * Gets the value of property <code>transferSize</code>.
+     *
+     * @return Maximum number of bytes to transfer with one channel transfer operation.
+     */
+    private int getTransferSize()
+    {
+        return ( (java.lang.Integer) ContainerFactory.getContainer().
+            getProperty( this, "transferSize" ) ).intValue();
+
+    }
+
 // </editor-fold>//GEN-END:jdtausProperties
 
     //--------------------------------------------------------------Properties--
@@ -167,6 +219,11 @@ public final class StructuredFileOperations implements StructuredFile
     {
         this.assertNotClosed();
 
+        if ( this.editExtents != null )
+        {
+            return this.editExtents.getBlockCount();
+        }
+
         if ( this.cachedBlockCount == NO_CACHED_BLOCKCOUNT )
         {
             this.cachedBlockCount = BigDecimal.valueOf(
@@ -197,7 +254,14 @@ public final class StructuredFileOperations implements StructuredFile
 
         this.assertNotClosed();
 
-        this.deleteBlocksImpl( index, count, blockCount );
+        if ( this.editExtents != null )
+        {
+            this.editExtents.delete( index, count );
+        }
+        else
+        {
+            this.deleteBlocksImpl( index, count, blockCount );
+        }
     }
 
     private void deleteBlocksImpl( final long index, final long count,
@@ -226,10 +290,6 @@ public final class StructuredFileOperations implements StructuredFile
             return;
         }
 
-        final byte[] buf = this.getBuffer( toMoveByte > Integer.MAX_VALUE
-                                           ? Integer.MAX_VALUE
-                                           : (int) toMoveByte );
-
         while ( maxProgress > Integer.MAX_VALUE )
         {
             maxProgress /= 2L;
@@ -243,6 +303,8 @@ public final class StructuredFileOperations implements StructuredFile
         task.setProgress( (int) progress );
         task.setDescription( new DeletesBlocksMessage() );
 
+        final byte[] buf = this.getBuffer( this.getBufferSize( toMoveByte ) );
+
         final boolean monitoring = toMoveByte > this.getMonitoringThreshold();
         if ( monitoring )
         {
@@ -253,39 +315,8 @@ public final class StructuredFileOperations implements StructuredFile
         {
             // Move following blocks to the position of the first block to
             // remove.
-            while ( toMoveByte > 0L )
-            {
-                this.getFileOperations().setFilePointer( readPos );
-                final int len = toMoveByte <= buf.length
-                                ? (int) toMoveByte
-                                : buf.length;
-
-                int read = 0;
-                int total = 0;
-                do
-                {
-                    read = this.getFileOperations().
-                        read( buf, total, len - total );
-
-                    assert read != FileOperations.EOF :
-                        "Unexpected end of file.";
-
-                    total += read;
-
-                }
-                while ( total < len );
-
-                // Move the block count blocks to the beginning.
-                this.getFileOperations().setFilePointer( writePos );
-                this.getFileOperations().write( buf, 0, len );
-
-                readPos += len;
-                writePos += len;
-                toMoveByte -= len;
-                progress += len;
-
-                task.setProgress( (int) ( progress / progressDivisor ) );
-            }
+            this.moveData( readPos, writePos, toMoveByte, buf, task, progress,
+                           progressDivisor );
 
             // Truncate the file.
             this.getFileOperations().setLength( this.getFileOperations().
@@ -296,6 +327,8 @@ public final class StructuredFileOperations implements StructuredFile
         }
         finally
         {
+            SharedBufferPool.getDefault().returnBuffer( buf );
+
             if ( monitoring )
             {
                 this.getTaskMonitor().finish( task );
@@ -320,7 +353,20 @@ public final class StructuredFileOperations implements StructuredFile
 
         this.assertNotClosed();
 
-        this.insertBlocksImpl( index, count, blockCount );
+        if ( this.editExtents != null )
+        { // Append the new blocks to the end of the file.
+            this.getFileOperations().setLength(
+                ( this.editPhysicalBlockCount + count ) * this.getBlockSize() );
+
+            this.editExtents.insert( index, this.editPhysicalBlockCount,
+                                     count );
+
+            this.editPhysicalBlockCount += count;
+        }
+        else
+        {
+            this.insertBlocksImpl( index, count, blockCount );
+        }
     }
 
     private void insertBlocksImpl( final long index, final long count,
@@ -349,10 +395,6 @@ public final class StructuredFileOperations implements StructuredFile
             return;
         }
 
-        final byte[] buf = this.getBuffer( toMoveByte > Integer.MAX_VALUE
-                                           ? Integer.MAX_VALUE
-                                           : (int) toMoveByte );
-
         while ( maxProgress > Integer.MAX_VALUE )
         {
             maxProgress /= 2L;
@@ -366,6 +408,8 @@ public final class StructuredFileOperations implements StructuredFile
         task.setProgress( (int) progress );
         task.setDescription( new InsertsBlocksMessage() );
 
+        final byte[] buf = this.getBuffer( this.getBufferSize( toMoveByte ) );
+
         final boolean monitoring = toMoveByte > this.getMonitoringThreshold();
         if ( monitoring )
         {
@@ -376,45 +420,15 @@ public final class StructuredFileOperations implements StructuredFile
         {
             // Move all blocks from index inclusive count blocks to the end of
             // the file.
-            while ( toMoveByte > 0L )
-            {
-                final int moveLen = buf.length >= toMoveByte
-                                    ? (int) toMoveByte
-                                    : buf.length;
-
-                readPos -= moveLen;
-                writePos -= moveLen;
-                this.getFileOperations().setFilePointer( readPos );
-                int read = 0;
-                int total = 0;
-
-                do
-                {
-                    read = this.getFileOperations().
-                        read( buf, total, moveLen - total );
-
-                    assert read != FileOperations.EOF :
-                        "Unexpected end of file.";
-
-                    total += read;
-
-                }
-                while ( total < moveLen );
-
-                // Move the block count blocks to the end.
-                this.getFileOperations().setFilePointer( writePos );
-                this.getFileOperations().write( buf, 0, moveLen );
-
-                toMoveByte -= moveLen;
-                progress += moveLen;
-
-                task.setProgress( (int) ( progress / progressDivisor ) );
-            }
+            this.moveData( readPos - toMoveByte, writePos - toMoveByte,
+                           toMoveByte, buf, task, progress, progressDivisor );
 
             this.fireBlocksInserted( index, count );
         }
         finally
         {
+            SharedBufferPool.getDefault().returnBuffer( buf );
+
             if ( monitoring )
             {
                 this.getTaskMonitor().finish( task );
@@ -439,7 +453,7 @@ public final class StructuredFileOperations implements StructuredFile
         int toRead = length;
 
         this.getFileOperations().setFilePointer(
-            block * this.getBlockSize() + off );
+            this.getPhysicalBlock( block ) * this.getBlockSize() + off );
 
         do
         {
@@ -471,15 +485,74 @@ public final class StructuredFileOperations implements StructuredFile
         this.assertNotClosed();
 
         this.getFileOperations().setFilePointer(
-            block * this.getBlockSize() + off );
+            this.getPhysicalBlock( block ) * this.getBlockSize() + off );
 
         this.getFileOperations().write( buf, index, length );
     }
 
+    public void readBlocks( final long firstBlock, final int count,
+                            final byte[] buf, final int off )
+        throws IOException
+    {
+        this.assertValidArguments( firstBlock, count, buf, off );
+        this.assertNotClosed();
+
+        long block = firstBlock;
+        long remaining = count;
+        int index = off;
+
+        // One read per run of consecutive physical blocks.
+        while ( remaining > 0L )
+        {
+            final long blocks =
+                Math.min( remaining, this.getConsecutiveBlocks( block ) );
+
+            final int len = (int) ( blocks * this.getBlockSize() );
+
+            this.read( this.getPhysicalBlock( block ) *
+                       this.getBlockSize(), buf, index, len );
+
+            block += blocks;
+            remaining -= blocks;
+            index += len;
+        }
+    }
+
+    public void writeBlocks( final long firstBlock, final int count,
+                             final byte[] buf, final int off )
+        throws IOException
+    {
+        this.assertValidArguments( firstBlock, count, buf, off );
+        this.assertNotClosed();
+
+        long block = firstBlock;
+        long remaining = count;
+        int index = off;
+
+        // One write per run of consecutive physical blocks.
+        while ( remaining > 0L )
+        {
+            final long blocks =
+                Math.min( remaining, this.getConsecutiveBlocks( block ) );
+
+            final int len = (int) ( blocks * this.getBlockSize() );
+
+            this.getFileOperations().setFilePointer(
+                this.getPhysicalBlock( block ) *
+                this.getBlockSize() );
+
+            this.getFileOperations().write( buf, index, len );
+
+            block += blocks;
+            remaining -= blocks;
+            index += len;
+        }
+    }
+
     /**
      * {@inheritDoc}
-     * Flushes the instance and closes the {@code FileOperations} implementation
-     * backing the instance.
+     * Commits any pending edit, flushes the instance and closes the
+     * {@code FileOperations} implementation backing the instance.
      *
      * @throws IOException if closing the {@code FileOperations} implementation
      * backing the instance fails, or if the instance already is closed.
@@ -488,6 +561,11 @@ public final class StructuredFileOperations implements StructuredFile
     {
         this.assertNotClosed();
 
+        if ( this.editExtents != null )
+        {
+            this.commitEdit();
+        }
+
         this.flush();
         this.getFileOperations().close();
         this.closed = true;
@@ -636,6 +714,454 @@ public final class StructuredFileOperations implements StructuredFile
         }
     }
 
+    /**
+     * Hints that a number of blocks will be read soon.
+     * <p>If the {@code FileOperations} backing the instance implement
+     * {@code PrefetchingFileOperations}, the blocks starting at {@code block}
+     * stored in consecutive physical blocks are prefetched in the background
+     * so that reading them later does not need to wait for I/O. Otherwise
+     * this method does nothing.</p>
+     *
+     * @param block the index of the first block to prefetch.
+     * @param count the number of blocks to prefetch.
+     *
+     * @throws IndexOutOfBoundsException if {@code block} is negative,
+     * or {@code count} is negative, or {@code block + count} is greater
+     * than {@code getBlockCount()}.
+     * @throws IOException if prefetching cannot be started.
+     */
+    public void prefetch( final long block, final long count )
+        throws IOException
+    {
+        final long blockCount = this.getBlockCount();
+
+        if ( block < 0L || block > blockCount )
+        {
+            throw new ArrayIndexOutOfBoundsException( (int) block );
+        }
+        if ( count < 0L || count > blockCount - block )
+        {
+            throw new ArrayIndexOutOfBoundsException( (int) count );
+        }
+
+        this.assertNotClosed();
+
+        if ( count > 0L &&
+             this.getFileOperations() instanceof PrefetchingFileOperations )
+        {
+            final long blocks =
+                Math.min( count, this.getConsecutiveBlocks( block ) );
+
+            ( (PrefetchingFileOperations) this.getFileOperations() ).prefetch(
+                this.getPhysicalBlock( block ) * this.getBlockSize(),
+                blocks * this.getBlockSize() );
+
+        }
+    }
+
+    /**
+     * Starts recording calls to the {@code insertBlocks()} and
+     * {@code deleteBlocks()} methods.
+     * <p>Until the edit is committed, no data is moved by the
+     * {@code insertBlocks()} and {@code deleteBlocks()} methods and no
+     * {@code StructuredFileListener}s are notified. Inserted blocks are
+     * appended to the end of the file and blocks are read and written at the
+     * position they are recorded at until the edit is committed.</p>
+     *
+     * @throws IllegalStateException if an edit already is pending.
+     * @throws IOException if getting the block count fails.
+     *
+     * @see #commitEdit()
+     */
+    public void beginEdit() throws IOException
+    {
+        this.assertNotClosed();
+
+        if ( this.editExtents != null )
+        {
+            throw new IllegalStateException();
+        }
+
+        this.editBlockCount = this.getBlockCount();
+        this.editPhysicalBlockCount = this.editBlockCount;
+        this.editExtents = new ExtentTable( this.editBlockCount );
+    }
+
+    /**
+     * Commits the pending edit.
+     * <p>Every block is moved to its final position at most once unless
+     * blocks inserted during the edit need to be moved out of the way of
+     * other blocks first. The file is then truncated and registered
+     * {@code StructuredFileListener}s are notified about the range of blocks
+     * changed by the edit. If the edit only inserted or only deleted blocks at
+     * that range, listeners receive a single {@code blocksInserted()} or
+     * {@code blocksDeleted()} notification. Otherwise they receive a
+     * {@code blocksDeleted()} notification for the range of blocks replaced
+     * followed by a {@code blocksInserted()} notification for the range of
+     * blocks replacing them.</p>
+     *
+     * @throws IllegalStateException if no edit is pending.
+     * @throws IOException if reading or writing fails.
+     *
+     * @see #beginEdit()
+     */
+    public void commitEdit() throws IOException
+    {
+        this.assertNotClosed();
+
+        if ( this.editExtents == null )
+        {
+            throw new IllegalStateException();
+        }
+
+        final ExtentTable extents = this.editExtents;
+        final long blockCount = extents.getBlockCount();
+        final int extentCount = extents.getCount();
+        final long[] sources = new long[ extentCount ];
+        final long[] targets = new long[ extentCount ];
+        final long[] lengths = new long[ extentCount ];
+        int moves = 0;
+
+        this.editExtents = null;
+        this.cachedBlockCount = NO_CACHED_BLOCKCOUNT;
+
+        for ( int i = 0; i < extentCount; i++ )
+        {
+            if ( extents.getPosition( i ) != extents.getBlock( i ) )
+            {
+                sources[moves] = extents.getPosition( i ) * this.getBlockSize();
+                targets[moves] = extents.getBlock( i ) * this.getBlockSize();
+                lengths[moves] = extents.getLength( i ) * this.getBlockSize();
+                moves++;
+            }
+        }
+
+        if ( moves > 0 )
+        {
+            this.moveExtents( sources, targets, lengths, moves,
+                              blockCount >= this.editBlockCount );
+
+        }
+
+        if ( this.getFileOperations().getLength() !=
+             blockCount * this.getBlockSize() )
+        {
+            this.getFileOperations().setLength(
+                blockCount * this.getBlockSize() );
+
+        }
+
+        // Blocks unchanged at the beginning of the file.
+        long first = 0L;
+        for ( int i = 0; i < extentCount &&
+                         extents.getPosition( i ) == extents.getBlock( i ) &&
+                         first < this.editBlockCount; i++ )
+        {
+            first = Math.min( extents.getBlock( i ) + extents.getLength( i ),
+                              this.editBlockCount );
+
+        }
+
+        // Blocks unchanged at the end of the file.
+        long last = 0L;
+        final long shift = this.editBlockCount - blockCount;
+        for ( int i = extentCount - 1; i >= 0 &&
+                                       extents.getPosition( i ) -
+                                       extents.getBlock( i ) == shift &&
+                                       extents.getBlock( i ) +
+                                       extents.getLength( i ) ==
+                                       blockCount - last; i-- )
+        {
+            last += extents.getLength( i );
+        }
+
+        last = Math.min( last, Math.min( this.editBlockCount, blockCount ) -
+                               first );
+
+        final long deleted = this.editBlockCount - first - last;
+        final long inserted = blockCount - first - last;
+
+        if ( deleted > 0L )
+        {
+            this.fireBlocksDeleted( first, deleted );
+        }
+        if ( inserted > 0L )
+        {
+            this.fireBlocksInserted( first, inserted );
+        }
+    }
+
+    /**
+     * Moves the extents of an edit to their final position.
+     * <p>An extent is moved as soon as its target does not overlap the
+     * source of any other extent not moved yet. If no such extent exists, the
+     * extents form a cycle which is broken by moving one of them, preferably
+     * one inserted during the edit, behind any other data of the file.</p>
+     *
+     * @param sources the positions of the extents to move.
+     * @param targets the positions to move the extents to.
+     * @param lengths the lengths of the extents in bytes.
+     * @param count the number of extents to move.
+     * @param inserting {@code true} if the edit inserted more blocks than it
+     * deleted; {@code false} if the edit deleted more blocks than it inserted.
+     *
+     * @throws IOException if reading or writing fails.
+     */
+    private void moveExtents( final long[] sources, final long[] targets,
+                              final long[] lengths, final int count,
+                              final boolean inserting ) throws IOException
+    {
+        final Task task = new Task();
+        final boolean[] moved = new boolean[ count ];
+        final long originalLength = this.editBlockCount * this.getBlockSize();
+        long spare = this.getFileOperations().getLength();
+        long maxLength = 0L;
+        long toMoveByte = 0L;
+        long progress = 0L;
+        long progressDivisor = 1L;
+        int remaining = count;
+
+        for ( int i = 0; i < count; i++ )
+        {
+            toMoveByte += lengths[i];
+            maxLength = Math.max( maxLength, lengths[i] );
+        }
+
+        long maxProgress = toMoveByte;
+        while ( maxProgress > Integer.MAX_VALUE )
+        {
+            maxProgress /= 2L;
+            progressDivisor *= 2L;
+        }
+
+        task.setIndeterminate( false );
+        task.setCancelable( false );
+        task.setMinimum( 0 );
+        task.setMaximum( (int) maxProgress );
+        task.setProgress( (int) progress );
+        task.setDescription( inserting
+                             ? (Message) new InsertsBlocksMessage()
+                             : (Message) new DeletesBlocksMessage() );
+
+        final byte[] buf = this.getBuffer( this.getBufferSize( maxLength ) );
+
+        final boolean monitoring = toMoveByte > this.getMonitoringThreshold();
+        if ( monitoring )
+        {
+            this.getTaskMonitor().monitor( task );
+        }
+
+        try
+        {
+            while ( remaining > 0 )
+            {
+                final int previous = remaining;
+
+                // Extents moved towards the beginning of the file are moved
+                // in ascending order, extents moved towards the end of the
+                // file in descending order.
+                for ( int pass = 0; pass < 2; pass++ )
+                {
+                    for ( int n = 0; n < count; n++ )
+                    {
+                        final int i = pass == 0 ? n : count - n - 1;
+
+                        if ( !moved[i] && this.getBlockingExtent(
+                            i, sources, targets, lengths, moved, count ) < 0 )
+                        {
+                            this.moveData( sources[i], targets[i], lengths[i],
+                                           buf, task, progress,
+                                           progressDivisor );
+
+                            progress += lengths[i];
+                            moved[i] = true;
+                            remaining--;
+                        }
+                    }
+                }
+
+                if ( remaining == previous )
+                { // Break a cycle.
+                    final int[] visited = new int[ count ];
+                    int i = 0;
+
+                    while ( moved[i] )
+                    {
+                        i++;
+                    }
+
+                    // Follow the blocking extents until reaching the cycle.
+                    for ( int step = 1; visited[i] == 0; step++ )
+                    {
+                        visited[i] = step;
+                        i = this.getBlockingExtent( i, sources, targets,
+                                                    lengths, moved, count );
+
+                    }
+
+                    for ( int n = this.getBlockingExtent(
+                        i, sources, targets, lengths, moved, count ); n != i;
+                          n = this.getBlockingExtent(
+                        n, sources, targets, lengths, moved, count ) )
+                    {
+                        if ( sources[n] >= originalLength )
+                        {
+                            i = n;
+                            break;
+                        }
+                    }
+
+                    this.getFileOperations().setLength( spare + lengths[i] );
+                    this.moveData( sources[i], spare, lengths[i], buf, task,
+                                   progress, progressDivisor );
+
+                    sources[i] = spare;
+                    spare += lengths[i];
+                }
+            }
+        }
+        finally
+        {
+            SharedBufferPool.getDefault().returnBuffer( buf );
+
+            if ( monitoring )
+            {
+                this.getTaskMonitor().finish( task );
+            }
+        }
+    }
+
+    /**
+     * Gets an extent of an edit not moved yet whose source overlaps the
+     * target of another extent.
+     *
+     * @param extent the extent to get the blocking extent of.
+     * @param sources the positions of the extents to move.
+     * @param targets the positions to move the extents to.
+     * @param lengths the lengths of the extents in bytes.
+     * @param moved flags of extents already moved.
+     * @param count the number of extents to move.
+     *
+     * @return the index of an extent not moved yet which would be
+     * overwritten by moving {@code extent} or {@code -1} if {@code extent}
+     * can be moved.
+     */
+    private int getBlockingExtent( final int extent, final long[] sources,
+                                   final long[] targets, final long[] lengths,
+                                   final boolean[] moved, final int count )
+    {
+        for ( int i = 0; i < count; i++ )
+        {
+            if ( i != extent && !moved[i] &&
+                 targets[extent] < sources[i] + lengths[i] &&
+                 sources[i] < targets[extent] + lengths[extent] )
+            {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Gets the physical block a block is read from and written to.
+     *
+     * @param block the block to map.
+     *
+     * @return the physical block {@code block} is read from and written to.
+     */
+    private long getPhysicalBlock( final long block )
+    {
+        return this.editExtents != null
+               ? this.editExtents.getPhysicalBlock( block )
+               : block;
+
+    }
+
+    /**
+     * Gets the number of blocks starting at a block read from and written to
+     * consecutive physical blocks.
+     *
+     * @param block the first block.
+     *
+     * @return the number of blocks starting at {@code block} read from and
+     * written to consecutive physical blocks.
+     *
+     * @throws IOException if getting the block count fails.
+     */
+    private long getConsecutiveBlocks( final long block ) throws IOException
+    {
+        return this.editExtents != null
+               ? this.editExtents.getConsecutiveBlocks( block )
+               : this.getBlockCount() - block;
+
+    }
+
+    /**
+     * Reads a number of bytes from the {@code FileOperations} backing the
+     * instance.
+     *
+     * @param position the position to start reading at.
+     * @param buf the buffer to read into.
+     * @param off the offset into {@code buf} to start reading into.
+     * @param len the number of bytes to read.
+     *
+     * @throws IOException if reading fails.
+     */
+    private void read( final long position, final byte[] buf, final int off,
+                       final int len ) throws IOException
+    {
+        int totalRead = 0;
+
+        this.getFileOperations().setFilePointer( position );
+
+        while ( totalRead < len )
+        {
+            final int read = this.getFileOperations().
+                read( buf, off + totalRead, len - totalRead );
+
+            assert read != FileOperations.EOF :
+                "Unexpected end of file.";
+
+            totalRead += read;
+        }
+    }
+
+    /**
+     * Checks arguments provided to the {@code readBlocks} and
+     * {@code writeBlocks} methods.
+     *
+     * @throws NullPointerException if {@code buf} is {@code null}.
+     * @throws IndexOutOfBoundsException if {@code firstBlock} is negative,
+     * or {@code count} is negative, or {@code firstBlock + count} is greater
+     * than {@code getBlockCount()}, or {@code off} is negative, or
+     * {@code count * getBlockSize()} is greater than the length of
+     * {@code buf} minus {@code off}.
+     */
+    private void assertValidArguments( final long firstBlock, final int count,
+                                       final byte[] buf, final int off ) throws
+        NullPointerException, IndexOutOfBoundsException, IOException
+    {
+        final long blockCount = this.getBlockCount();
+
+        if ( buf == null )
+        {
+            throw new NullPointerException( "buf" );
+        }
+        if ( firstBlock < 0L || firstBlock > blockCount )
+        {
+            throw new ArrayIndexOutOfBoundsException( (int) firstBlock );
+        }
+        if ( count < 0 || count > blockCount - firstBlock )
+        {
+            throw new ArrayIndexOutOfBoundsException( count );
+        }
+        if ( off < 0 || (long) count * this.getBlockSize() > buf.length - off )
+        {
+            throw new ArrayIndexOutOfBoundsException( off );
+        }
+    }
+
     /**
      * Checks arguments provided to the {@code readBlock} and {@code writeBlock}
      * methods.
@@ -779,26 +1305,454 @@ public final class StructuredFileOperations implements StructuredFile
         }
     }
 
-    private byte[] getBuffer( final int requested ) throws IOException
+    /**
+     * Gets the size of the buffer to request for moving data.
+     *
+     * @param toMoveByte the number of bytes to move.
+     *
+     * @return the number of bytes to request from method {@code getBuffer}.
+     */
+    private int getBufferSize( final long toMoveByte )
     {
-        final long length = this.getFileOperations().getLength();
+        long size = toMoveByte;
 
-        if ( requested <= 0 || requested > length )
+        if ( this.getFileChannel() != null && this.getTransferSize() > 0 &&
+             size > this.getTransferSize() * 2L )
+        { // Two halves of at most transferSize bytes.
+            size = this.getTransferSize() * 2L;
+        }
+
+        return size > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) size;
+    }
+
+    /**
+     * Gets the {@code FileChannel} of the {@code FileOperations} backing the
+     * instance.
+     *
+     * @return the {@code FileChannel} of the {@code FileOperations} backing
+     * the instance or {@code null} if the {@code FileOperations} do not
+     * provide access to a {@code FileChannel}.
+     */
+    private FileChannel getFileChannel()
+    {
+        FileChannel channel = null;
+
+        if ( this.getFileOperations() instanceof FileChannelFileOperations )
         {
-            throw new IllegalArgumentException( Integer.toString( requested ) );
+            channel = ( (FileChannelFileOperations) this.getFileOperations() ).
+                getFileChannel();
+
         }
+        else if ( this.getFileOperations() instanceof
+                  RandomAccessFileOperations &&
+                  ( (RandomAccessFileOperations) this.getFileOperations() ).
+                  getRandomAccessFile() != null )
+        {
+            channel = ( (RandomAccessFileOperations) this.getFileOperations() ).
+                getRandomAccessFile().getChannel();
 
-        if ( this.defaultBuffer == null )
+        }
+
+        return channel;
+    }
+
+    /**
+     * Moves data of the file.
+     * <p>Data is moved starting at the end of the range if it is moved
+     * towards the end of the file, and starting at the beginning of the range
+     * otherwise, so that no data is overwritten before it got moved.</p>
+     *
+     * @param from the position of the data to move.
+     * @param to the position to move the data to.
+     * @param length the number of bytes to move.
+     * @param buf a buffer to use for moving data.
+     * @param task the task to update the progress of.
+     * @param progress the number of bytes already moved before.
+     * @param progressDivisor the divisor to apply to the number of bytes moved
+     * for computing the progress of {@code task}.
+     *
+     * @throws IOException if reading or writing fails.
+     */
+    private void moveData( final long from, final long to, final long length,
+                           final byte[] buf, final Task task,
+                           final long progress, final long progressDivisor )
+        throws IOException
+    {
+        final FileChannel channel = this.getFileChannel();
+
+        if ( channel != null )
         {
-            this.defaultBuffer = this.getMemoryManager().
-                allocateBytes( this.getDefaultBufferSize() );
+            this.moveChannelData( channel, from, to, length, buf, task,
+                                  progress, progressDivisor );
 
         }
+        else
+        {
+            final boolean backward = to > from;
+            long moved = 0L;
+
+            while ( moved < length )
+            {
+                final int len = length - moved <= buf.length
+                                ? (int) ( length - moved )
+                                : buf.length;
+
+                final long offset = backward
+                                    ? length - moved - len
+                                    : moved;
+
+                int read = 0;
+                int total = 0;
+
+                this.getFileOperations().setFilePointer( from + offset );
+
+                do
+                {
+                    read = this.getFileOperations().
+                        read( buf, total, len - total );
+
+                    assert read != FileOperations.EOF :
+                        "Unexpected end of file.";
+
+                    total += read;
+
+                }
+                while ( total < len );
+
+                this.getFileOperations().setFilePointer( to + offset );
+                this.getFileOperations().write( buf, 0, len );
+
+                moved += len;
+                task.setProgress(
+                    (int) ( ( progress + moved ) / progressDivisor ) );
+
+            }
+        }
+    }
+
+    /**
+     * Moves data of the file using a {@code FileChannel}.
+     * <p>Data is moved starting at the end of the range if it is moved
+     * towards the end of the file, and starting at the beginning of the range
+     * otherwise, so that no data is overwritten before it got moved.</p>
+     *
+     * @param channel the channel of the file.
+     * @param from the position of the data to move.
+     * @param to the position to move the data to.
+     * @param length the number of bytes to move.
+     * @param buf a buffer to use for moving data.
+     * @param task the task to update the progress of.
+     * @param progress the number of bytes already moved before.
+     * @param progressDivisor the divisor to apply to the number of bytes moved
+     * for computing the progress of {@code task}.
+     *
+     * @throws IOException if reading or writing fails.
+     */
+    private void moveChannelData( final FileChannel channel, final long from,
+                                  final long to, final long length,
+                                  final byte[] buf, final Task task,
+                                  final long progress,
+                                  final long progressDivisor )
+        throws IOException
+    {
+        final boolean backward = to > from;
+        final long distance = backward ? to - from : from - to;
+        long moved = 0L;
+
+        if ( distance >= buf.length / 2 )
+        { // Transfer chunks not overlapping their target.
+            final long position = channel.position();
+            final long maximum = this.getTransferSize() > 0
+                                 ? this.getTransferSize()
+                                 : Integer.MAX_VALUE;
+
+            try
+            {
+                while ( moved < length )
+                {
+                    long chunk = length - moved;
+                    if ( chunk > distance )
+                    {
+                        chunk = distance;
+                    }
+                    if ( chunk > maximum )
+                    {
+                        chunk = maximum;
+                    }
+
+                    final long offset = backward
+                                        ? length - moved - chunk
+                                        : moved;
+
+                    channel.position( from + offset );
+
+                    for ( long transferred = 0L; transferred < chunk; )
+                    {
+                        final long count = channel.transferFrom(
+                            channel, to + offset + transferred,
+                            chunk - transferred );
+
+                        assert count > 0L : "Unexpected end of file.";
+
+                        transferred += count;
+                    }
+
+                    moved += chunk;
+                    task.setProgress(
+                        (int) ( ( progress + moved ) / progressDivisor ) );
+
+                }
+            }
+            finally
+            {
+                channel.position( position );
+            }
+        }
+        else
+        { // Read the next chunk while writing the previous chunk.
+            final int half = buf.length > 1 ? buf.length / 2 : buf.length;
+            final ByteBuffer[] buffers =
+            {
+                ByteBuffer.wrap( buf, 0, half ).slice(),
+                ByteBuffer.wrap( buf, buf.length - half, half ).slice()
+            };
+
+            final ChannelWriter writer = new ChannelWriter( channel );
+
+            try
+            {
+                for ( int i = 0; moved < length; i ^= 1 )
+                {
+                    final int chunk = length - moved > half
+                                      ? half
+                                      : (int) ( length - moved );
+
+                    final long offset = backward
+                                        ? length - moved - chunk
+                                        : moved;
+
+                    writer.awaitWritten( i );
+                    buffers[i].clear();
+                    buffers[i].limit( chunk );
+
+                    while ( buffers[i].hasRemaining() )
+                    {
+                        final int read = channel.read(
+                            buffers[i], from + offset + buffers[i].position() );
+
+                        assert read != FileOperations.EOF :
+                            "Unexpected end of file.";
+
+                    }
+
+                    buffers[i].flip();
+                    writer.write( i, buffers[i], to + offset );
+
+                    moved += chunk;
+                    task.setProgress(
+                        (int) ( ( progress + moved ) / progressDivisor ) );
+
+                }
+            }
+            finally
+            { // The buffer must not be returned while still being written.
+                writer.awaitAll();
+            }
+        }
+    }
+
+    /**
+     * Writes buffers to a {@code FileChannel} asynchronously.
+     * <p>Each buffer is identified by an index. A buffer must not be
+     * modified after having been passed to method {@code write} until method
+     * {@code awaitWritten} returned for its index.</p>
+     */
+    private final class ChannelWriter
+    {
+
+        /** The channel to write to. */
+        private final FileChannel channel;
+
+        /** Flags buffers being written. */
+        private final boolean[] writing = new boolean[ 2 ];
+
+        /** Exception thrown writing a buffer. */
+        private Throwable failure;
+
+        private ChannelWriter( final FileChannel channel )
+        {
+            super();
+            this.channel = channel;
+        }
+
+        /**
+         * Writes a buffer asynchronously.
+         *
+         * @param index the index of the buffer.
+         * @param buffer the buffer to write.
+         * @param position the file position to write {@code buffer} to.
+         */
+        private void write( final int index, final ByteBuffer buffer,
+                            final long position )
+        {
+            synchronized ( this )
+            {
+                this.writing[index] = true;
+            }
+
+            boolean started = false;
+
+            try
+            {
+                getExecutor().executeAsynchronously( new Runnable()
+                {
+
+                    public void run()
+                    {
+                        Throwable t = null;
+
+                        try
+                        {
+                            while ( buffer.hasRemaining() )
+                            {
+                                channel.write( buffer,
+                                               position + buffer.position() );
+
+                            }
+                        }
+                        catch ( IOException e )
+                        {
+                            t = e;
+                        }
+                        catch ( RuntimeException e )
+                        {
+                            t = e;
+                        }
+                        finally
+                        {
+                            synchronized ( ChannelWriter.this )
+                            {
+                                if ( failure == null )
+                                {
+                                    failure = t;
+                                }
+
+                                writing[index] = false;
+                                ChannelWriter.this.notifyAll();
+                            }
+                        }
+                    }
+
+                } );
+
+                started = true;
+            }
+            finally
+            {
+                if ( !started )
+                {
+                    synchronized ( this )
+                    {
+                        this.writing[index] = false;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Waits for a buffer to be written.
+         *
+         * @param index the index of the buffer.
+         *
+         * @throws IOException if writing any buffer failed or waiting is
+         * interrupted.
+         */
+        private synchronized void awaitWritten( final int index )
+            throws IOException
+        {
+            try
+            {
+                while ( this.writing[index] )
+                {
+                    this.wait();
+                }
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException( e.getMessage() );
+            }
+
+            this.assertNotFailed();
+        }
+
+        /**
+         * Waits for all buffers to be written.
+         * <p>This method waits for all buffers even if writing a buffer failed
+         * or waiting is interrupted, so that no buffer is written to after
+         * this method returned.</p>
+         *
+         * @throws IOException if writing any buffer failed or waiting is
+         * interrupted.
+         */
+        private synchronized void awaitAll() throws IOException
+        {
+            InterruptedException interruption = null;
+
+            while ( this.writing[0] || this.writing[1] )
+            {
+                try
+                {
+                    this.wait();
+                }
+                catch ( InterruptedException e )
+                {
+                    interruption = e;
+                }
+            }
+
+            if ( interruption != null )
+            {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException( interruption.getMessage() );
+            }
+
+            this.assertNotFailed();
+        }
+
+        /**
+         * Checks that writing no buffer failed.
+         *
+         * @throws IOException if writing a buffer failed.
+         */
+        private void assertNotFailed() throws IOException
+        {
+            if ( this.failure instanceof IOException )
+            {
+                throw (IOException) this.failure;
+            }
+            if ( this.failure instanceof RuntimeException )
+            {
+                throw (RuntimeException) this.failure;
+            }
+        }
+
+    }
+
+    private byte[] getBuffer( final int requested ) throws IOException
+    {
+        final long length = this.getFileOperations().getLength();
+
+        if ( requested <= 0 || requested > length )
+        {
+            throw new IllegalArgumentException( Integer.toString( requested ) );
+        }
 
-        return requested <= this.defaultBuffer.length ||
-               this.getMemoryManager().getAvailableBytes() < requested
-               ? this.defaultBuffer
-               : this.getMemoryManager().allocateBytes( requested );
+        return SharedBufferPool.getDefault().borrowBuffer(
+            requested <= this.getDefaultBufferSize() ||
+            this.getMemoryManager().getAvailableBytes() < requested
+            ? this.getDefaultBufferSize()
+            : requested );
 
     }
 
@@ -0,0 +1,1092 @@
+/*
+ *  jDTAUS Core Utilities
+ *  Copyright (C) 2005 Christian Schulte
+ *  <cs@schulte.it>
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+package org.jdtaus.core.io.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import org.jdtaus.core.container.ContainerFactory;
+import org.jdtaus.core.io.StructuredFile;
+import org.jdtaus.core.lang.spi.Executor;
+import org.jdtaus.core.lang.spi.MemoryManager;
+import org.jdtaus.core.messages.SortsBlocksMessage;
+import org.jdtaus.core.monitor.spi.Task;
+import org.jdtaus.core.monitor.spi.TaskMonitor;
+
+/**
+ * External merge sort of the blocks of a {@code StructuredFile}.
+ * <p>This implementation sorts the blocks of a {@code StructuredFile} by keys
+ * extracted from the data of each block by a {@code BlockKeyExtractor}. The
+ * order of blocks with equal keys is preserved. Files not fitting into memory
+ * are sorted in two phases. The first phase reads runs of consecutive blocks
+ * filling the memory available for sorting, sorts the runs in parallel using
+ * the {@code Executor} of the system and writes the sorted runs to a scratch
+ * file. The second phase merges all runs into the target file. The number of
+ * runs sorted in parallel defaults to the number of processors available to
+ * the virtual machine. The amount of memory used is controlled by
+ * configuration property {@code maximumMemory} holding the maximum number of
+ * bytes to use (defaults to {@code 16777216} - 16 MB) limited by the number of
+ * bytes available to allocation reported by the {@code MemoryManager} of the
+ * system. Progress is reported using the {@code TaskMonitor} of the
+ * system.</p>
+ *
+ * <p><b>Note:</b><br>
+ * The source and target files must not be used otherwise while blocks are
+ * sorted.</p>
+ *
+ * @author <a href="mailto:cs@schulte.it">Christian Schulte</a>
+ * @version $JDTAUS$
+ *
+ * @see BlockKeyExtractor
+ */
+public final class StructuredFileSorter
+{
+    //--Dependencies------------------------------------------------------------
+
+// <editor-fold defaultstate="collapsed" desc=" Generated Code ">//GEN-BEGIN:jdtausDependencies
+    // This section is managed by jdtaus-container-mojo.
+
+    /**
+     * Gets the configured <code>MemoryManager</code> implementation.
+     *
+     * @return The configured <code>MemoryManager</code> implementation.
+     */
+    private MemoryManager getMemoryManager()
+    {
+        return (MemoryManager) ContainerFactory.getContainer().
+            getDependency( this, "MemoryManager" );
+
+    }
+
+    /**
+     * Gets the configured <code>TaskMonitor</code> implementation.
+     *
+     * @return The configured <code>TaskMonitor</code> implementation.
+     */
+    private TaskMonitor getTaskMonitor()
+    {
+        return (TaskMonitor) ContainerFactory.getContainer().
+            getDependency( this, "TaskMonitor" );
+
+    }
+
+    /**
+     * Gets the configured <code>Executor</code> implementation.
+     *
+     * @return The configured <code>Executor</code> implementation.
+     */
+    private Executor getExecutor()
+    {
+        return (Executor) ContainerFactory.getContainer().
+            getDependency( this, "Executor" );
+
+    }
+
+// </editor-fold>//GEN-END:jdtausDependencies
+
+    //------------------------------------------------------------Dependencies--
+    //--Properties--------------------------------------------------------------
+
+// <editor-fold defaultstate="collapsed" desc=" Generated Code ">//GEN-BEGIN:jdtausProperties
+    // This section is managed by jdtaus-container-mojo.
+
+    /**
+     * Gets the value of property <code>defaultMaximumMemory</code>.
+     *
+     * @return Default maximum number of bytes of memory used for sorting.
+     */
+    private java.lang.Integer getDefaultMaximumMemory()
+    {
+        return (java.lang.Integer) ContainerFactory.getContainer().
+            getProperty( this, "defaultMaximumMemory" );
+
+    }
+
+// </editor-fold>//GEN-END:jdtausProperties
+
+    //--------------------------------------------------------------Properties--
+    //--StructuredFileSorter----------------------------------------------------
+
+    /** Maximum number of bytes of memory used for sorting. */
+    private Integer maximumMemory;
+
+    /** Number of runs sorted in parallel. */
+    private final int parallelism;
+
+    /**
+     * Creates a new {@code StructuredFileSorter} instance sorting as many
+     * runs in parallel as there are processors available.
+     */
+    public StructuredFileSorter()
+    {
+        this( 0, 0 );
+    }
+
+    /**
+     * Creates a new {@code StructuredFileSorter} instance taking the maximum
+     * amount of memory to use and the number of runs to sort in parallel.
+     *
+     * @param maximumMemory the maximum number of bytes of memory to use for
+     * sorting or {@code 0} to use the value of property
+     * {@code defaultMaximumMemory}.
+     * @param parallelism the number of runs to sort in parallel or {@code 0}
+     * to sort as many runs in parallel as there are processors available.
+     *
+     * @throws IllegalArgumentException if {@code maximumMemory} or
+     * {@code parallelism} is negative.
+     */
+    public StructuredFileSorter( final int maximumMemory,
+                                 final int parallelism )
+    {
+        super();
+
+        if ( maximumMemory < 0 )
+        {
+            throw new IllegalArgumentException(
+                Integer.toString( maximumMemory ) );
+
+        }
+        if ( parallelism < 0 )
+        {
+            throw new IllegalArgumentException(
+                Integer.toString( parallelism ) );
+
+        }
+
+        if ( maximumMemory > 0 )
+        {
+            this.maximumMemory = new Integer( maximumMemory );
+        }
+
+        this.parallelism = parallelism > 0
+                           ? parallelism
+                           : Runtime.getRuntime().availableProcessors();
+
+    }
+
+    /**
+     * Gets the value of property {@code maximumMemory}.
+     *
+     * @return the maximum number of bytes of memory used for sorting.
+     */
+    public int getMaximumMemory()
+    {
+        if ( this.maximumMemory == null )
+        {
+            this.maximumMemory = this.getDefaultMaximumMemory();
+        }
+
+        return this.maximumMemory.intValue();
+    }
+
+    /**
+     * Gets the number of runs sorted in parallel.
+     *
+     * @return the number of runs sorted in parallel.
+     */
+    public int getParallelism()
+    {
+        return this.parallelism;
+    }
+
+    /**
+     * Sorts the blocks of a {@code StructuredFile} into another
+     * {@code StructuredFile} using a temporary file for holding sorted runs.
+     *
+     * @param source the file holding the blocks to sort.
+     * @param target the file to write the sorted blocks to. The file is
+     * truncated or extended to the number of blocks of {@code source}. May be
+     * the same as {@code source} to sort a file in place.
+     * @param keys the {@code BlockKeyExtractor} to extract the key of a block
+     * with.
+     *
+     * @throws NullPointerException if {@code source}, {@code target} or
+     * {@code keys} is {@code null}.
+     * @throws IllegalArgumentException if the block size of {@code target}
+     * differs from the block size of {@code source} or if the key length of
+     * {@code keys} is negative or zero.
+     * @throws IOException if reading or writing fails or if sorting is
+     * interrupted.
+     */
+    public void sort( final StructuredFile source, final StructuredFile target,
+                      final BlockKeyExtractor keys ) throws IOException
+    {
+        this.sort( source, target, keys, null );
+    }
+
+    /**
+     * Sorts the blocks of a {@code StructuredFile} into another
+     * {@code StructuredFile} taking the file to hold sorted runs.
+     *
+     * @param source the file holding the blocks to sort.
+     * @param target the file to write the sorted blocks to. The file is
+     * truncated or extended to the number of blocks of {@code source}. May be
+     * the same as {@code source} to sort a file in place.
+     * @param keys the {@code BlockKeyExtractor} to extract the key of a block
+     * with.
+     * @param scratch the file to hold sorted runs or {@code null} to use a
+     * temporary file. Any blocks of the file are overwritten. Must not be the
+     * same as {@code source} or {@code target}.
+     *
+     * @throws NullPointerException if {@code source}, {@code target} or
+     * {@code keys} is {@code null}.
+     * @throws IllegalArgumentException if the block size of {@code target} or
+     * {@code scratch} differs from the block size of {@code source}, if
+     * {@code scratch} is the same as {@code source} or {@code target} or if the
+     * key length of {@code keys} is negative or zero.
+     * @throws IOException if reading or writing fails or if sorting is
+     * interrupted.
+     */
+    public void sort( final StructuredFile source, final StructuredFile target,
+                      final BlockKeyExtractor keys,
+                      final StructuredFile scratch ) throws IOException
+    {
+        if ( source == null )
+        {
+            throw new NullPointerException( "source" );
+        }
+        if ( target == null )
+        {
+            throw new NullPointerException( "target" );
+        }
+        if ( keys == null )
+        {
+            throw new NullPointerException( "keys" );
+        }
+        if ( target.getBlockSize() != source.getBlockSize() )
+        {
+            throw new IllegalArgumentException(
+                Integer.toString( target.getBlockSize() ) );
+
+        }
+        if ( keys.getKeyLength() <= 0 )
+        {
+            throw new IllegalArgumentException(
+                Integer.toString( keys.getKeyLength() ) );
+
+        }
+        if ( scratch != null )
+        {
+            if ( scratch.getBlockSize() != source.getBlockSize() )
+            {
+                throw new IllegalArgumentException(
+                    Integer.toString( scratch.getBlockSize() ) );
+
+            }
+            if ( scratch == source || scratch == target )
+            {
+                throw new IllegalArgumentException( "scratch" );
+            }
+        }
+
+        final int blockSize = source.getBlockSize();
+        final int keyLength = keys.getKeyLength();
+        final long blockCount = source.getBlockCount();
+        final long recordSize = 2L * blockSize + keyLength + 8L;
+        final Task task = new Task();
+        long maxProgress = 2L * blockCount;
+        long progressDivisor = 1L;
+
+        long memory = this.getMemoryManager().getAvailableBytes();
+        if ( memory > this.getMaximumMemory() )
+        {
+            memory = this.getMaximumMemory();
+        }
+
+        while ( maxProgress > Integer.MAX_VALUE )
+        {
+            maxProgress /= 2L;
+            progressDivisor *= 2L;
+        }
+
+        task.setIndeterminate( false );
+        task.setCancelable( false );
+        task.setMinimum( 0 );
+        task.setMaximum( (int) maxProgress );
+        task.setProgress( 0 );
+        task.setDescription( new SortsBlocksMessage() );
+
+        this.getTaskMonitor().monitor( task );
+
+        try
+        {
+            if ( blockCount == 0L )
+            {
+                setBlockCount( target, 0L );
+            }
+            else if ( blockCount * recordSize <= memory )
+            { // Sort in memory.
+                final Run run = new Run( (int) blockCount, blockSize,
+                                         keyLength, this.getMemoryManager() );
+
+                run.count = (int) blockCount;
+                source.readBlocks( 0L, run.count, run.data, 0 );
+                task.setProgress( (int) ( blockCount / progressDivisor ) );
+
+                run.sort( keys, blockSize, keyLength );
+                setBlockCount( target, blockCount );
+                target.writeBlocks( 0L, run.count, run.sorted, 0 );
+            }
+            else if ( scratch != null )
+            {
+                setBlockCount( scratch, blockCount );
+                this.sortRuns( source, target, scratch, keys, memory, task,
+                               progressDivisor );
+
+            }
+            else
+            {
+                final File tmp = File.createTempFile( "jdtaus", ".tmp" );
+
+                try
+                {
+                    // Closing the scratch file closes the RandomAccessFile.
+                    final StructuredFile tmpFile =
+                        new StructuredFileOperations(
+                        blockSize, new RandomAccessFileOperations(
+                        new RandomAccessFile( tmp, "rw" ) ) );
+
+                    try
+                    {
+                        tmpFile.insertBlocks( 0L, blockCount );
+                        this.sortRuns( source, target, tmpFile, keys, memory,
+                                       task, progressDivisor );
+
+                    }
+                    finally
+                    {
+                        tmpFile.close();
+                    }
+                }
+                finally
+                {
+                    tmp.delete();
+                }
+            }
+        }
+        finally
+        {
+            this.getTaskMonitor().finish( task );
+        }
+    }
+
+    /**
+     * Sorts runs of blocks in parallel into a scratch file and merges the runs
+     * into the target file.
+     *
+     * @param source the file holding the blocks to sort.
+     * @param target the file to write the sorted blocks to.
+     * @param scratch the file to hold sorted runs.
+     * @param keys the {@code BlockKeyExtractor} to use.
+     * @param memory the number of bytes of memory to use.
+     * @param task the task to report progress with.
+     * @param progressDivisor the divisor of progress values.
+     *
+     * @throws IOException if reading or writing fails or if sorting is
+     * interrupted.
+     */
+    private void sortRuns( final StructuredFile source,
+                           final StructuredFile target,
+                           final StructuredFile scratch,
+                           final BlockKeyExtractor keys, final long memory,
+                           final Task task, final long progressDivisor )
+        throws IOException
+    {
+        final int blockSize = source.getBlockSize();
+        final int keyLength = keys.getKeyLength();
+        final long blockCount = source.getBlockCount();
+        final long recordSize = 2L * blockSize + keyLength + 8L;
+
+        long runBlocks = memory / this.getParallelism() / recordSize;
+        if ( runBlocks < 1L )
+        {
+            runBlocks = 1L;
+        }
+
+        final long runCount = ( blockCount + runBlocks - 1L ) / runBlocks;
+        final Runs runs = new Runs( (int) ( runCount < this.getParallelism()
+                                            ? runCount
+                                            : this.getParallelism() ) );
+
+        for ( int i = runs.idle.length - 1; i >= 0; i-- )
+        {
+            runs.idle[i] = new Run( (int) runBlocks, blockSize, keyLength,
+                                    this.getMemoryManager() );
+
+        }
+
+        runs.idleCount = runs.idle.length;
+
+        // Phase 1: sort runs in parallel.
+        boolean sorted = false;
+        long progress = 0L;
+
+        try
+        {
+            for ( long first = 0L; first < blockCount; first += runBlocks )
+            {
+                final Run run = runs.take();
+                run.first = first;
+                run.count = (int) ( blockCount - first < runBlocks
+                                    ? blockCount - first
+                                    : runBlocks );
+
+                source.readBlocks( first, run.count, run.data, 0 );
+                progress += run.count;
+                task.setProgress( (int) ( progress / progressDivisor ) );
+
+                this.getExecutor().executeAsynchronously( new Runnable()
+                {
+
+                    public void run()
+                    {
+                        sortRun( runs, run, scratch, keys );
+                    }
+
+                } );
+            }
+
+            runs.awaitIdle();
+            sorted = true;
+        }
+        finally
+        {
+            if ( !sorted )
+            {
+                runs.awaitIdle();
+            }
+        }
+
+        runs.assertNoFailure();
+
+        for ( int i = runs.idle.length - 1; i >= 0; i-- )
+        {
+            runs.idle[i] = null;
+        }
+
+        // Phase 2: merge runs.
+        setBlockCount( target, blockCount );
+        this.mergeRuns( scratch, target, keys, runBlocks, runCount, memory,
+                        task, progress, progressDivisor );
+
+    }
+
+    /**
+     * Sorts a run and writes the sorted run to the scratch file.
+     * <p>This method is executed asynchronously.</p>
+     *
+     * @param runs the runs of the sort.
+     * @param run the run to sort.
+     * @param scratch the file to hold sorted runs.
+     * @param keys the {@code BlockKeyExtractor} to use.
+     */
+    private void sortRun( final Runs runs, final Run run,
+                          final StructuredFile scratch,
+                          final BlockKeyExtractor keys )
+    {
+        Throwable failure = null;
+
+        try
+        {
+            run.sort( keys, scratch.getBlockSize(), keys.getKeyLength() );
+
+            synchronized ( runs.scratchLock )
+            {
+                scratch.writeBlocks( run.first, run.count, run.sorted, 0 );
+            }
+        }
+        catch ( IOException e )
+        {
+            failure = e;
+        }
+        catch ( RuntimeException e )
+        {
+            failure = e;
+        }
+        catch ( Error e )
+        {
+            failure = e;
+        }
+        finally
+        {
+            runs.release( run, failure );
+        }
+    }
+
+    /**
+     * Merges sorted runs of a scratch file into the target file.
+     *
+     * @param scratch the file holding the sorted runs.
+     * @param target the file to write the merged blocks to.
+     * @param keys the {@code BlockKeyExtractor} to use.
+     * @param runBlocks the number of blocks of a run.
+     * @param runCount the number of runs.
+     * @param memory the number of bytes of memory to use.
+     * @param task the task to report progress with.
+     * @param progressStart the progress of the task before merging.
+     * @param progressDivisor the divisor of progress values.
+     *
+     * @throws IOException if reading or writing fails.
+     */
+    private void mergeRuns( final StructuredFile scratch,
+                            final StructuredFile target,
+                            final BlockKeyExtractor keys, final long runBlocks,
+                            final long runCount, final long memory,
+                            final Task task, final long progressStart,
+                            final long progressDivisor ) throws IOException
+    {
+        final int blockSize = scratch.getBlockSize();
+        final int keyLength = keys.getKeyLength();
+        final long blockCount = scratch.getBlockCount();
+        final int runs = (int) runCount;
+
+        // One buffer per run and one output buffer.
+        long bufferBlocks = memory / ( ( runCount + 1L ) * blockSize );
+        if ( bufferBlocks > runBlocks )
+        {
+            bufferBlocks = runBlocks;
+        }
+        if ( bufferBlocks < 1L )
+        {
+            bufferBlocks = 1L;
+        }
+
+        final int chunk = (int) bufferBlocks;
+        final byte[][] buffers = new byte[ runs ][];
+        final int[] position = new int[ runs ];
+        final int[] length = new int[ runs ];
+        final long[] next = new long[ runs ];
+        final long[] end = new long[ runs ];
+        final byte[] heads =
+            this.getMemoryManager().allocateBytes( runs * keyLength );
+
+        final byte[] out =
+            this.getMemoryManager().allocateBytes( chunk * blockSize );
+
+        final int[] heap = new int[ runs ];
+        int heapSize = 0;
+        int outCount = 0;
+        long outFirst = 0L;
+        long progress = progressStart;
+
+        for ( int i = 0; i < runs; i++ )
+        {
+            buffers[i] =
+                this.getMemoryManager().allocateBytes( chunk * blockSize );
+
+            next[i] = i * runBlocks;
+            end[i] = next[i] + runBlocks < blockCount
+                     ? next[i] + runBlocks
+                     : blockCount;
+
+            fill( scratch, i, buffers, position, length, next, end );
+            keys.getKey( buffers[i], 0, heads, i * keyLength );
+            heap[heapSize++] = i;
+            siftUp( heap, heapSize - 1, heads, keyLength );
+        }
+
+        while ( heapSize > 0 )
+        {
+            final int run = heap[0];
+
+            System.arraycopy( buffers[run], position[run] * blockSize, out,
+                              outCount * blockSize, blockSize );
+
+            if ( ++outCount == chunk )
+            {
+                target.writeBlocks( outFirst, outCount, out, 0 );
+                outFirst += outCount;
+                progress += outCount;
+                outCount = 0;
+                task.setProgress( (int) ( progress / progressDivisor ) );
+            }
+
+            if ( ++position[run] == length[run] )
+            {
+                fill( scratch, run, buffers, position, length, next, end );
+            }
+
+            if ( position[run] < length[run] )
+            {
+                keys.getKey( buffers[run], position[run] * blockSize, heads,
+                             run * keyLength );
+
+            }
+            else
+            {
+                heap[0] = heap[--heapSize];
+            }
+
+            siftDown( heap, heapSize, heads, keyLength );
+        }
+
+        if ( outCount > 0 )
+        {
+            target.writeBlocks( outFirst, outCount, out, 0 );
+            progress += outCount;
+            task.setProgress( (int) ( progress / progressDivisor ) );
+        }
+    }
+
+    /**
+     * Reads the next chunk of a run into the buffer of the run.
+     *
+     * @param scratch the file holding the sorted runs.
+     * @param run the index of the run.
+     * @param buffers the buffers of the runs.
+     * @param position the index of the current block of the buffer of each
+     * run.
+     * @param length the number of blocks of the buffer of each run.
+     * @param next the index of the next block to read of each run.
+     * @param end the index of the block following the last block of each run.
+     *
+     * @throws IOException if reading fails.
+     */
+    private static void fill( final StructuredFile scratch, final int run,
+                              final byte[][] buffers, final int[] position,
+                              final int[] length, final long[] next,
+                              final long[] end ) throws IOException
+    {
+        final int blocks = buffers[run].length / scratch.getBlockSize();
+        final long remaining = end[run] - next[run];
+        final int count = remaining < blocks ? (int) remaining : blocks;
+
+        if ( count > 0 )
+        {
+            scratch.readBlocks( next[run], count, buffers[run], 0 );
+            next[run] += count;
+        }
+
+        position[run] = 0;
+        length[run] = count;
+    }
+
+    /**
+     * Tests a run to precede another run in the merge heap.
+     *
+     * @param a the index of the first run.
+     * @param b the index of the second run.
+     * @param heads the keys of the current block of each run.
+     * @param keyLength the length of a key.
+     *
+     * @return {@code true} if the current block of run {@code a} precedes the
+     * current block of run {@code b}; {@code false} else.
+     */
+    private static boolean precedes( final int a, final int b,
+                                     final byte[] heads, final int keyLength )
+    {
+        final int c = compare( heads, a * keyLength, heads, b * keyLength,
+                               keyLength );
+
+        return c < 0 || ( c == 0 && a < b );
+    }
+
+    /**
+     * Moves a run of the merge heap up to its position.
+     *
+     * @param heap the indices of the runs of the heap.
+     * @param i the position of the run to move up.
+     * @param heads the keys of the current block of each run.
+     * @param keyLength the length of a key.
+     */
+    private static void siftUp( final int[] heap, int i, final byte[] heads,
+                                final int keyLength )
+    {
+        final int run = heap[i];
+
+        while ( i > 0 )
+        {
+            final int parent = ( i - 1 ) >> 1;
+
+            if ( !precedes( run, heap[parent], heads, keyLength ) )
+            {
+                break;
+            }
+
+            heap[i] = heap[parent];
+            i = parent;
+        }
+
+        heap[i] = run;
+    }
+
+    /**
+     * Moves the first run of the merge heap down to its position.
+     *
+     * @param heap the indices of the runs of the heap.
+     * @param size the number of runs of the heap.
+     * @param heads the keys of the current block of each run.
+     * @param keyLength the length of a key.
+     */
+    private static void siftDown( final int[] heap, final int size,
+                                  final byte[] heads, final int keyLength )
+    {
+        if ( size > 0 )
+        {
+            final int run = heap[0];
+            int i = 0;
+
+            for ( int child = 1; child < size; child = 2 * i + 1 )
+            {
+                if ( child + 1 < size &&
+                     precedes( heap[child + 1], heap[child], heads,
+                               keyLength ) )
+                {
+                    child++;
+                }
+                if ( !precedes( heap[child], run, heads, keyLength ) )
+                {
+                    break;
+                }
+
+                heap[i] = heap[child];
+                i = child;
+            }
+
+            heap[i] = run;
+        }
+    }
+
+    /**
+     * Compares two keys treating each byte as an unsigned value.
+     *
+     * @param a buffer holding the first key.
+     * @param aOff offset of the first key in {@code a}.
+     * @param b buffer holding the second key.
+     * @param bOff offset of the second key in {@code b}.
+     * @param len the length of the keys.
+     *
+     * @return a negative integer, zero, or a positive integer as the first key
+     * is less than, equal to, or greater than the second key.
+     */
+    private static int compare( final byte[] a, final int aOff, final byte[] b,
+                                final int bOff, final int len )
+    {
+        for ( int i = 0; i < len; i++ )
+        {
+            final int c = ( a[aOff + i] & 0xFF ) - ( b[bOff + i] & 0xFF );
+
+            if ( c != 0 )
+            {
+                return c;
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * Truncates or extends a file to a given number of blocks.
+     *
+     * @param file the file to truncate or extend.
+     * @param blockCount the number of blocks of the file.
+     *
+     * @throws IOException if truncating or extending fails.
+     */
+    private static void setBlockCount( final StructuredFile file,
+                                       final long blockCount )
+        throws IOException
+    {
+        final long count = file.getBlockCount();
+
+        if ( count > blockCount )
+        {
+            file.deleteBlocks( blockCount, count - blockCount );
+        }
+        else if ( count < blockCount )
+        {
+            file.insertBlocks( count, blockCount - count );
+        }
+    }
+
+    /** Buffers of a run of blocks. */
+    private static final class Run
+    {
+
+        /** The data of the blocks of the run in file order. */
+        private final byte[] data;
+
+        /** The data of the blocks of the run in sorted order. */
+        private final byte[] sorted;
+
+        /** The keys of the blocks of the run in file order. */
+        private final byte[] keys;
+
+        /** Indices of the blocks of the run. */
+        private final int[] index;
+
+        /** Temporary indices for merging. */
+        private final int[] tmp;
+
+        /** Index of the first block of the run. */
+        private long first;
+
+        /** Number of blocks of the run. */
+        private int count;
+
+        private Run( final int blocks, final int blockSize,
+                     final int keyLength, final MemoryManager memoryManager )
+        {
+            super();
+            this.data = memoryManager.allocateBytes( blocks * blockSize );
+            this.sorted = memoryManager.allocateBytes( blocks * blockSize );
+            this.keys = memoryManager.allocateBytes( blocks * keyLength );
+            this.index = memoryManager.allocateIntegers( blocks );
+            this.tmp = memoryManager.allocateIntegers( blocks );
+        }
+
+        /**
+         * Sorts the blocks of the run from {@code data} into {@code sorted}.
+         *
+         * @param extractor the {@code BlockKeyExtractor} to use.
+         * @param blockSize the size of a block.
+         * @param keyLength the length of a key.
+         */
+        private void sort( final BlockKeyExtractor extractor,
+                           final int blockSize, final int keyLength )
+        {
+            for ( int i = this.count - 1; i >= 0; i-- )
+            {
+                extractor.getKey( this.data, i * blockSize, this.keys,
+                                  i * keyLength );
+
+                this.index[i] = i;
+            }
+
+            this.sort( 0, this.count, keyLength );
+
+            for ( int i = this.count - 1; i >= 0; i-- )
+            {
+                System.arraycopy( this.data, this.index[i] * blockSize,
+                                  this.sorted, i * blockSize, blockSize );
+
+            }
+        }
+
+        /**
+         * Sorts a range of {@code index} stable by the keys of the blocks.
+         *
+         * @param from the first index of the range.
+         * @param to the index following the last index of the range.
+         * @param keyLength the length of a key.
+         */
+        private void sort( final int from, final int to, final int keyLength )
+        {
+            if ( to - from < 8 )
+            {
+                for ( int i = from + 1; i < to; i++ )
+                {
+                    final int block = this.index[i];
+                    int j = i;
+
+                    for ( ; j > from &&
+                            this.compare( this.index[j - 1], block,
+                                          keyLength ) > 0; j-- )
+                    {
+                        this.index[j] = this.index[j - 1];
+                    }
+
+                    this.index[j] = block;
+                }
+            }
+            else
+            {
+                final int mid = ( from + to ) >>> 1;
+                this.sort( from, mid, keyLength );
+                this.sort( mid, to, keyLength );
+
+                if ( this.compare( this.index[mid - 1], this.index[mid],
+                                   keyLength ) > 0 )
+                {
+                    System.arraycopy( this.index, from, this.tmp, from,
+                                      to - from );
+
+                    for ( int i = from, l = from, r = mid; i < to; i++ )
+                    {
+                        if ( r >= to || ( l < mid &&
+                                          this.compare( this.tmp[l],
+                                                        this.tmp[r],
+                                                        keyLength ) <= 0 ) )
+                        {
+                            this.index[i] = this.tmp[l++];
+                        }
+                        else
+                        {
+                            this.index[i] = this.tmp[r++];
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Compares the keys of two blocks of the run.
+         *
+         * @param a the index of the first block.
+         * @param b the index of the second block.
+         * @param keyLength the length of a key.
+         *
+         * @return a negative integer, zero, or a positive integer as the key
+         * of the first block is less than, equal to, or greater than the key
+         * of the second block.
+         */
+        private int compare( final int a, final int b, final int keyLength )
+        {
+            return StructuredFileSorter.compare(
+                this.keys, a * keyLength, this.keys, b * keyLength,
+                keyLength );
+
+        }
+
+    }
+
+    /** Runs of a sort shared with the threads sorting runs. */
+    private static final class Runs
+    {
+
+        /** Lock guarding the fields of the instance. */
+        private final Object lock = new Object();
+
+        /** Lock guarding the scratch file. */
+        private final Object scratchLock = new Object();
+
+        /** Runs not beeing sorted; guarded by {@code lock}. */
+        private final Run[] idle;
+
+        /** Number of runs not beeing sorted; guarded by {@code lock}. */
+        private int idleCount;
+
+        /** Exception thrown sorting a run; guarded by {@code lock}. */
+        private Throwable failure;
+
+        private Runs( final int runs )
+        {
+            super();
+            this.idle = new Run[ runs ];
+        }
+
+        /**
+         * Waits for a run not beeing sorted.
+         *
+         * @return a run not beeing sorted.
+         *
+         * @throws IOException if sorting a run failed or waiting is
+         * interrupted.
+         */
+        private Run take() throws IOException
+        {
+            synchronized ( this.lock )
+            {
+                try
+                {
+                    while ( this.idleCount == 0 )
+                    {
+                        this.lock.wait();
+                    }
+                }
+                catch ( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException( e.getMessage() );
+                }
+
+                this.assertNoFailure();
+
+                final Run run = this.idle[--this.idleCount];
+                this.idle[this.idleCount] = null;
+                return run;
+            }
+        }
+
+        /**
+         * Releases a run having been sorted.
+         *
+         * @param run the run having been sorted.
+         * @param failure the exception thrown sorting {@code run} or
+         * {@code null}.
+         */
+        private void release( final Run run, final Throwable failure )
+        {
+            synchronized ( this.lock )
+            {
+                if ( this.failure == null )
+                {
+                    this.failure = failure;
+                }
+
+                this.idle[this.idleCount++] = run;
+                this.lock.notifyAll();
+            }
+        }
+
+        /**
+         * Waits for all runs to be sorted.
+         *
+         * @throws IOException if waiting is interrupted.
+         */
+        private void awaitIdle() throws IOException
+        {
+            synchronized ( this.lock )
+            {
+                try
+                {
+                    while ( this.idleCount < this.idle.length )
+                    {
+                        this.lock.wait();
+                    }
+                }
+                catch ( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException( e.getMessage() );
+                }
+            }
+        }
+
+        /**
+         * Throws any exception thrown sorting a run.
+         *
+         * @throws IOException if sorting a run failed.
+         */
+        private void assertNoFailure() throws IOException
+        {
+            synchronized ( this.lock )
+            {
+                if ( this.failure instanceof IOException )
+                {
+                    throw (IOException) this.failure;
+                }
+                if ( this.failure instanceof RuntimeException )
+                {
+                    throw (RuntimeException) this.failure;
+                }
+                if ( this.failure instanceof Error )
+                {
+                    throw (Error) this.failure;
+                }
+            }
+        }
+
+    }
+
+    //----------------------------------------------------StructuredFileSorter--
+}
@@ -0,0 +1,227 @@
+/*
+ *  jDTAUS Core Utilities
+ *  Copyright (C) 2005 Christian Schulte
+ *  <cs@schulte.it>
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+package org.jdtaus.core.io.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Scan resistant 2Q {@code BlockEvictionPolicy}.
+ * <p>This implementation keeps blocks loaded for the first time in a FIFO
+ * queue {@code A1in} limited to a quarter of the frames. Blocks evicted from
+ * that queue are remembered in a ghost queue {@code A1out} holding block
+ * numbers only, limited to half the number of frames. A block loaded again
+ * while remembered in {@code A1out} has proven to be accessed repeatedly and
+ * is placed in the least recently used queue {@code Am}. Blocks touched only
+ * once, for example by a sequential scan over a large file, thus never
+ * displace the blocks in {@code Am}.</p>
+ *
+ * @author <a href="mailto:cs@schulte.it">Christian Schulte</a>
+ * @version $JDTAUS$
+ */
+public final class TwoQueueBlockEvictionPolicy implements BlockEvictionPolicy
+{
+    //--BlockEvictionPolicy-----------------------------------------------------
+
+    public void initialize( final int capacity )
+    {
+        if ( capacity <= 0 )
+        {
+            throw new IllegalArgumentException( Integer.toString( capacity ) );
+        }
+
+        this.blocks = new long[ capacity ];
+        this.queues = new int[ capacity ];
+        this.previous = new int[ capacity ];
+        this.next = new int[ capacity ];
+        this.heads = new int[] { NO_FRAME, NO_FRAME };
+        this.tails = new int[] { NO_FRAME, NO_FRAME };
+        this.sizes = new int[ 2 ];
+        this.maximumIn = Math.max( 1, capacity / 4 );
+        this.maximumOut = Math.max( 1, capacity / 2 );
+        this.ghosts.clear();
+    }
+
+    public void blockCached( final int frame, final long block )
+    {
+        this.blocks[frame] = block;
+
+        if ( this.ghosts.remove( new Long( block ) ) )
+        { // Block has been accessed before.
+            this.linkFirst( AM, frame );
+        }
+        else
+        {
+            this.linkFirst( A1IN, frame );
+        }
+    }
+
+    public void blockAccessed( final int frame )
+    {
+        if ( this.queues[frame] == AM && this.heads[AM] != frame )
+        {
+            this.unlink( frame );
+            this.linkFirst( AM, frame );
+        }
+    }
+
+    public void blockDiscarded( final int frame )
+    {
+        if ( this.queues[frame] == A1IN )
+        { // Remember the block in A1out.
+            if ( this.ghosts.size() >= this.maximumOut )
+            {
+                final Iterator it = this.ghosts.iterator();
+                it.next();
+                it.remove();
+            }
+
+            this.ghosts.add( new Long( this.blocks[frame] ) );
+        }
+
+        this.unlink( frame );
+    }
+
+    public int getVictim()
+    {
+        final int victim = this.sizes[A1IN] > this.maximumIn ||
+                           this.tails[AM] == NO_FRAME
+                           ? this.tails[A1IN]
+                           : this.tails[AM];
+
+        if ( victim == NO_FRAME )
+        {
+            throw new IllegalStateException();
+        }
+
+        return victim;
+    }
+
+    //-----------------------------------------------------BlockEvictionPolicy--
+    //--TwoQueueBlockEvictionPolicy---------------------------------------------
+
+    /** Index denoting the absence of a frame. */
+    private static final int NO_FRAME = -1;
+
+    /** Index of the FIFO queue of blocks loaded for the first time. */
+    private static final int A1IN = 0;
+
+    /** Index of the LRU queue of blocks loaded repeatedly. */
+    private static final int AM = 1;
+
+    /** Block of each frame. */
+    private long[] blocks;
+
+    /** Queue of each frame. */
+    private int[] queues;
+
+    /** Previous (more recent) frame of each frame. */
+    private int[] previous;
+
+    /** Next (less recent) frame of each frame. */
+    private int[] next;
+
+    /** Most recent frame of each queue. */
+    private int[] heads;
+
+    /** Least recent frame of each queue. */
+    private int[] tails;
+
+    /** Number of frames of each queue. */
+    private int[] sizes;
+
+    /** Maximum number of frames in queue {@code A1in}. */
+    private int maximumIn;
+
+    /** Maximum number of blocks in queue {@code A1out}. */
+    private int maximumOut;
+
+    /** Blocks recently evicted from queue {@code A1in} in eviction order. */
+    private final Set ghosts = new LinkedHashSet();
+
+    /** Creates a new {@code TwoQueueBlockEvictionPolicy} instance. */
+    public TwoQueueBlockEvictionPolicy()
+    {
+        super();
+    }
+
+    /**
+     * Adds a frame to the head of a queue.
+     *
+     * @param queue the queue to add {@code frame} to.
+     * @param frame the frame to add.
+     */
+    private void linkFirst( final int queue, final int frame )
+    {
+        this.queues[frame] = queue;
+        this.previous[frame] = NO_FRAME;
+        this.next[frame] = this.heads[queue];
+
+        if ( this.heads[queue] != NO_FRAME )
+        {
+            this.previous[this.heads[queue]] = frame;
+        }
+        else
+        {
+            this.tails[queue] = frame;
+        }
+
+        this.heads[queue] = frame;
+        this.sizes[queue]++;
+    }
+
+    /**
+     * Removes a frame from its queue.
+     *
+     * @param frame the frame to remove.
+     */
+    private void unlink( final int frame )
+    {
+        final int queue = this.queues[frame];
+        final int p = this.previous[frame];
+        final int n = this.next[frame];
+
+        if ( p != NO_FRAME )
+        {
+            this.next[p] = n;
+        }
+        else
+        {
+            this.heads[queue] = n;
+        }
+
+        if ( n != NO_FRAME )
+        {
+            this.previous[n] = p;
+        }
+        else
+        {
+            this.tails[queue] = p;
+        }
+
+        this.previous[frame] = NO_FRAME;
+        this.next[frame] = NO_FRAME;
+        this.sizes[queue]--;
+    }
+
+    //---------------------------------------------TwoQueueBlockEvictionPolicy--
+}
@@ -0,0 +1,97 @@
+/*
+ *  jDTAUS Core Utilities
+ *  Copyright (C) 2005 Christian Schulte
+ *  <cs@schulte.it>
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+package org.jdtaus.core.io.util;
+
+import java.io.IOException;
+import org.jdtaus.core.io.FileOperations;
+
+/**
+ * Extension to {@code FileOperations} adding support for reading and writing
+ * multiple ranges of a file with one call.
+ * <p>Each range is described by a position in the file, a buffer, an offset
+ * into that buffer and a length. Implementations may transfer ranges
+ * adjacent in the file using scatter/gather I/O. The file pointer is not
+ * changed by any of the methods of this interface.</p>
+ *
+ * @author <a href="mailto:cs@schulte.it">Christian Schulte</a>
+ * @version $JDTAUS$
+ */
+public interface VectoredFileOperations extends FileOperations
+{
+    //--VectoredFileOperations--------------------------------------------------
+
+    /**
+     * Reads a number of ranges of the file.
+     * <p>For each index {@code i} from {@code 0} to {@code count - 1},
+     * {@code lengths[i]} bytes starting at file position {@code positions[i]}
+     * are read into {@code bufs[i]} starting at {@code offsets[i]}. Every
+     * range is read completely.</p>
+     *
+     * @param positions the file positions of the ranges to read.
+     * @param bufs the buffers to read the ranges into.
+     * @param offsets the offsets into the buffers to start reading the ranges
+     * into.
+     * @param lengths the number of bytes to read for each range.
+     * @param count the number of ranges to read.
+     *
+     * @throws NullPointerException if {@code positions}, {@code bufs},
+     * {@code offsets}, {@code lengths} or any of the first {@code count}
+     * elements of {@code bufs} is {@code null}.
+     * @throws IndexOutOfBoundsException if {@code count} is negative or
+     * greater than the length of any of the arrays, or if a range does not
+     * fit into its buffer.
+     * @throws IllegalArgumentException if a position is negative.
+     * @throws java.io.EOFException if a range extends beyond the end of the
+     * file.
+     * @throws IOException if reading fails.
+     */
+    void read( long[] positions, byte[][] bufs, int[] offsets, int[] lengths,
+               int count ) throws IOException;
+
+    /**
+     * Writes a number of ranges to the file.
+     * <p>For each index {@code i} from {@code 0} to {@code count - 1},
+     * {@code lengths[i]} bytes of {@code bufs[i]} starting at
+     * {@code offsets[i]} are written to the file starting at file position
+     * {@code positions[i]}. The file is extended as needed. Ranges are written
+     * in order so that a range overlapping a preceding range overwrites the
+     * data of the preceding range.</p>
+     *
+     * @param positions the file positions of the ranges to write.
+     * @param bufs the buffers holding the data to write.
+     * @param offsets the offsets into the buffers of the data to write.
+     * @param lengths the number of bytes to write for each range.
+     * @param count the number of ranges to write.
+     *
+     * @throws NullPointerException if {@code positions}, {@code bufs},
+     * {@code offsets}, {@code lengths} or any of the first {@code count}
+     * elements of {@code bufs} is {@code null}.
+     * @throws IndexOutOfBoundsException if {@code count} is negative or
+     * greater than the length of any of the arrays, or if a range does not
+     * fit into its buffer.
+     * @throws IllegalArgumentException if a position is negative.
+     * @throws IOException if writing fails.
+     */
+    void write( long[] positions, byte[][] bufs, int[] offsets, int[] lengths,
+                int count ) throws IOException;
+
+    //--------------------------------------------------VectoredFileOperations--
+}
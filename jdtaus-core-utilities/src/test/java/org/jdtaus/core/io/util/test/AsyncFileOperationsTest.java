@@ -0,0 +1,345 @@
+/*
+ *  jDTAUS Core Utilities
+ *  Copyright (C) 2005 Christian Schulte
+ *  <cs@schulte.it>
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+package org.jdtaus.core.io.util.test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import org.jdtaus.core.io.FileOperations;
+import org.jdtaus.core.io.util.AsyncFileOperations;
+import org.jdtaus.core.io.util.AsyncFileRequest;
+import org.jdtaus.core.io.util.MemoryFileOperations;
+
+/**
+ * Testcase for {@code AsyncFileOperations} implementations.
+ *
+ * @author <a href="mailto:cs@schulte.it">Christian Schulte</a>
+ * @version $JDTAUS$
+ */
+public class AsyncFileOperationsTest extends TestCase
+{
+    //--Tests-------------------------------------------------------------------
+
+    /**
+     * Tests requests to overlapping ranges to complete in the order they have
+     * been submitted.
+     * <p><ol>
+     * <li>Submits writes of overlapping ranges interleaved with reads of the
+     * ranges written and checks every read to observe the writes submitted
+     * before it.</li>
+     * <li>Checks the number of pending requests to never exceed the maximum
+     * number of requests.</li>
+     * </ol></p>
+     */
+    public void testOrdering() throws Exception
+    {
+        final MemoryFileOperations backing = new MemoryFileOperations();
+        final AsyncFileOperations ops = new AsyncFileOperations( backing, 3 );
+        final AsyncFileRequest[] reads = new AsyncFileRequest[ 100 ];
+        final byte[][] buffers = new byte[ reads.length ][];
+        final byte[] expected = new byte[ reads.length + 9 ];
+
+        Assert.assertSame( backing, ops.getFileOperations() );
+        Assert.assertEquals( 3, ops.getMaximumRequests() );
+
+        for ( int i = 0; i < reads.length; i++ )
+        {
+            final byte[] data = new byte[ 10 ];
+
+            for ( int j = 0; j < data.length; j++ )
+            {
+                data[j] = (byte) i;
+                expected[i + j] = (byte) i;
+            }
+
+            ops.writeAsync( i, data, 0, data.length );
+            Assert.assertTrue( ops.getPendingRequests() <= 3 );
+
+            buffers[i] = new byte[ 12 ];
+            reads[i] = ops.readAsync( i, buffers[i], 1, 10 );
+            Assert.assertTrue( ops.getPendingRequests() <= 3 );
+        }
+
+        for ( int i = 0; i < reads.length; i++ )
+        {
+            Assert.assertEquals( 10, reads[i].await() );
+            Assert.assertTrue( reads[i].isDone() );
+            Assert.assertFalse( reads[i].isWrite() );
+            Assert.assertEquals( i, reads[i].getPosition() );
+            Assert.assertEquals( 10, reads[i].getLength() );
+
+            for ( int j = 0; j < 10; j++ )
+            {
+                Assert.assertEquals( (byte) i, buffers[i][j + 1] );
+            }
+        }
+
+        ops.flush();
+        Assert.assertEquals( 0, ops.getPendingRequests() );
+        Assert.assertEquals( expected.length, backing.getLength() );
+
+        final byte[] data = backing.getData();
+        for ( int i = 0; i < expected.length; i++ )
+        {
+            Assert.assertEquals( expected[i], data[i] );
+        }
+
+        ops.close();
+    }
+
+    /**
+     * Tests reads reaching the end of the file.
+     */
+    public void testEndOfFile() throws Exception
+    {
+        final AsyncFileOperations ops = new AsyncFileOperations(
+            new MemoryFileOperations( new byte[] { 1, 2, 3, 4 } ) );
+
+        final byte[] buf = new byte[ 8 ];
+
+        Assert.assertEquals( 2, ops.readAsync( 2L, buf, 0, 8 ).await() );
+        Assert.assertEquals( 3, buf[0] );
+        Assert.assertEquals( 4, buf[1] );
+        Assert.assertEquals( FileOperations.EOF,
+                             ops.readAsync( 4L, buf, 0, 8 ).await() );
+
+        Assert.assertEquals( 0, ops.readAsync( 4L, buf, 0, 0 ).await() );
+        ops.close();
+    }
+
+    /**
+     * Tests failures of requests to be reported by their handles without
+     * affecting subsequent requests.
+     */
+    public void testFailure() throws Exception
+    {
+        final AsyncFileOperations ops =
+            new AsyncFileOperations( new MemoryFileOperations() );
+
+        final byte[] buf = new byte[] { 1, 2, 3, 4 };
+        final AsyncFileRequest failing =
+            ops.writeAsync( Integer.MAX_VALUE, buf, 0, buf.length );
+
+        final AsyncFileRequest succeeding =
+            ops.writeAsync( 0L, buf, 0, buf.length );
+
+        try
+        {
+            failing.await();
+            throw new AssertionError();
+        }
+        catch ( final IndexOutOfBoundsException e )
+        {
+            Assert.assertTrue( failing.isDone() );
+            System.out.println( e.toString() );
+        }
+
+        Assert.assertEquals( buf.length, succeeding.await() );
+        Assert.assertTrue( succeeding.isWrite() );
+        ops.close();
+    }
+
+    /**
+     * Tests errors performing a request to be reported by the handles of the
+     * requests without blocking the instance.
+     * <p><ol>
+     * <li>Submits writes throwing an error followed by a read and checks the
+     * error to be reported by the handles of the writes.</li>
+     * <li>Flushes the instance and checks subsequent requests to be
+     * performed.</li>
+     * </ol></p>
+     */
+    public void testError() throws Exception
+    {
+        final ErrorFileOperations backing = new ErrorFileOperations();
+        final AsyncFileOperations ops = new AsyncFileOperations( backing );
+        final byte[] buf = new byte[] { 1, 2, 3, 4 };
+        final AsyncFileRequest[] requests =
+        {
+            ops.writeAsync( 0L, buf, 0, buf.length ),
+            ops.writeAsync( 4L, buf, 0, buf.length ),
+            ops.readAsync( 0L, new byte[ 4 ], 0, 4 )
+        };
+
+        for ( int i = 0; i < requests.length; i++ )
+        {
+            boolean failed = false;
+
+            try
+            {
+                requests[i].await();
+            }
+            catch ( final AssertionError e )
+            {
+                Assert.assertNotNull( e.getMessage() );
+                System.out.println( e.toString() );
+                failed = true;
+            }
+
+            // Requests queued after the error may or may not be cancelled.
+            Assert.assertTrue( failed || !requests[i].isWrite() );
+            Assert.assertTrue( requests[i].isDone() );
+        }
+
+        ops.flush();
+        Assert.assertEquals( 0, ops.getPendingRequests() );
+
+        backing.failing = false;
+        Assert.assertEquals( buf.length,
+                             ops.writeAsync( 0L, buf, 0, buf.length ).
+                             await() );
+
+        ops.close();
+    }
+
+    /**
+     * Tests illegal arguments to be rejected and a closed instance to fail.
+     */
+    public void testIllegalArguments() throws Exception
+    {
+        final AsyncFileOperations ops =
+            new AsyncFileOperations( new MemoryFileOperations() );
+
+        try
+        {
+            new AsyncFileOperations( null );
+            throw new AssertionError();
+        }
+        catch ( final NullPointerException e )
+        {
+            Assert.assertNotNull( e.getMessage() );
+            System.out.println( e.toString() );
+        }
+
+        try
+        {
+            ops.readAsync( 0L, null, 0, 1 );
+            throw new AssertionError();
+        }
+        catch ( final NullPointerException e )
+        {
+            Assert.assertNotNull( e.getMessage() );
+            System.out.println( e.toString() );
+        }
+
+        try
+        {
+            ops.writeAsync( -1L, new byte[ 1 ], 0, 1 );
+            throw new AssertionError();
+        }
+        catch ( final IllegalArgumentException e )
+        {
+            Assert.assertNotNull( e.getMessage() );
+            System.out.println( e.toString() );
+        }
+
+        try
+        {
+            ops.readAsync( 0L, new byte[ 1 ], 1, 1 );
+            throw new AssertionError();
+        }
+        catch ( final IndexOutOfBoundsException e )
+        {
+            Assert.assertNotNull( e.getMessage() );
+            System.out.println( e.toString() );
+        }
+
+        ops.close();
+
+        try
+        {
+            ops.writeAsync( 0L, new byte[ 1 ], 0, 1 );
+            throw new AssertionError();
+        }
+        catch ( final IOException e )
+        {
+            Assert.assertNotNull( e.getMessage() );
+            System.out.println( e.toString() );
+        }
+    }
+
+    /** {@code FileOperations} throwing errors writing while failing. */
+    private static final class ErrorFileOperations implements FileOperations
+    {
+
+        private final MemoryFileOperations delegate =
+            new MemoryFileOperations();
+
+        private volatile boolean failing = true;
+
+        public long getLength() throws IOException
+        {
+            return this.delegate.getLength();
+        }
+
+        public void setLength( final long newLength ) throws IOException
+        {
+            this.delegate.setLength( newLength );
+        }
+
+        public long getFilePointer() throws IOException
+        {
+            return this.delegate.getFilePointer();
+        }
+
+        public void setFilePointer( final long pos ) throws IOException
+        {
+            this.delegate.setFilePointer( pos );
+        }
+
+        public int read( final byte[] buf, final int off, final int len )
+            throws IOException
+        {
+            return this.delegate.read( buf, off, len );
+        }
+
+        public void write( final byte[] buf, final int off, final int len )
+            throws IOException
+        {
+            if ( this.failing )
+            {
+                throw new AssertionError( "write" );
+            }
+
+            this.delegate.write( buf, off, len );
+        }
+
+        public void read( final OutputStream out ) throws IOException
+        {
+            this.delegate.read( out );
+        }
+
+        public void write( final InputStream in ) throws IOException
+        {
+            this.delegate.write( in );
+        }
+
+        public void close() throws IOException
+        {
+            this.delegate.close();
+        }
+
+    }
+
+    //-------------------------------------------------------------------Tests--
+}
@@ -0,0 +1,241 @@
+/*
+ *  jDTAUS Core Utilities
+ *  Copyright (C) 2005 Christian Schulte
+ *  <cs@schulte.it>
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+package org.jdtaus.core.io.util.test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.NoSuchElementException;
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import org.jdtaus.core.io.StructuredFile;
+import org.jdtaus.core.io.util.BlockCursor;
+import org.jdtaus.core.io.util.MemoryFileOperations;
+import org.jdtaus.core.io.util.StructuredFileOperations;
+
+/**
+ * Testcase for {@code BlockCursor} implementations.
+ *
+ * @author <a href="mailto:cs@schulte.it">Christian Schulte</a>
+ * @version $JDTAUS$
+ */
+public class BlockCursorTest extends TestCase
+{
+    //--BlockCursorTest---------------------------------------------------------
+
+    /** Block size of the files used for testing. */
+    private static final int BLOCK_SIZE = 4;
+
+    /** Number of blocks of the files used for testing. */
+    private static final int BLOCK_COUNT = 101;
+
+    /**
+     * Creates a {@code StructuredFile} holding {@code BLOCK_COUNT} blocks
+     * each starting with the index of the block.
+     *
+     * @return a new {@code StructuredFile} holding test data.
+     */
+    private StructuredFile getStructuredFile() throws IOException
+    {
+        final StructuredFile file =
+            new StructuredFileOperations( BLOCK_SIZE,
+                                          new MemoryFileOperations() );
+
+        final byte[] buf = new byte[ BLOCK_SIZE ];
+        file.insertBlocks( 0L, BLOCK_COUNT );
+
+        for ( int i = 0; i < BLOCK_COUNT; i++ )
+        {
+            ByteBuffer.wrap( buf ).putInt( i );
+            file.writeBlock( i, 0, buf );
+        }
+
+        return file;
+    }
+
+    /**
+     * Scans a range of blocks checking the blocks to be handed out in order.
+     *
+     * @param file the file to scan.
+     * @param firstBlock the index of the first block to scan.
+     * @param blockCount the number of blocks to scan.
+     * @param reverse {@code true} to scan in descending order.
+     * @param chunkBlocks the number of blocks of one chunk.
+     */
+    private void assertScan( final StructuredFile file, final long firstBlock,
+                             final long blockCount, final boolean reverse,
+                             final int chunkBlocks ) throws IOException
+    {
+        final BlockCursor cursor = new BlockCursor(
+            file, firstBlock, blockCount, reverse, chunkBlocks );
+
+        Assert.assertEquals( -1L, cursor.getBlock() );
+
+        for ( long i = 0L; i < blockCount; i++ )
+        {
+            final long expected = reverse
+                                  ? firstBlock + blockCount - i - 1L
+                                  : firstBlock + i;
+
+            Assert.assertTrue( cursor.hasNext() );
+
+            final ByteBuffer block = cursor.next();
+            Assert.assertTrue( block.isReadOnly() );
+            Assert.assertEquals( BLOCK_SIZE, block.remaining() );
+            Assert.assertEquals( expected, block.getInt( block.position() ) );
+            Assert.assertEquals( expected, cursor.getBlock() );
+        }
+
+        Assert.assertFalse( cursor.hasNext() );
+
+        try
+        {
+            cursor.next();
+            throw new AssertionError();
+        }
+        catch ( final NoSuchElementException e )
+        {
+            System.out.println( e.toString() );
+        }
+
+        cursor.close();
+    }
+
+    //---------------------------------------------------------BlockCursorTest--
+    //--Tests-------------------------------------------------------------------
+
+    /**
+     * Tests scanning all blocks of a file in ascending order using the default
+     * chunk size and chunk sizes not dividing the number of blocks.
+     */
+    public void testForwardScan() throws Exception
+    {
+        final StructuredFile file = this.getStructuredFile();
+        final BlockCursor cursor = new BlockCursor( file );
+
+        Assert.assertEquals( 0L, cursor.getFirstBlock() );
+        Assert.assertEquals( BLOCK_COUNT, cursor.getBlockCount() );
+        Assert.assertFalse( cursor.isReverse() );
+        Assert.assertEquals( BLOCK_COUNT, cursor.getChunkBlocks() );
+        Assert.assertSame( file, cursor.getStructuredFile() );
+        cursor.close();
+
+        this.assertScan( file, 0L, BLOCK_COUNT, false, 0 );
+        this.assertScan( file, 0L, BLOCK_COUNT, false, 1 );
+        this.assertScan( file, 0L, BLOCK_COUNT, false, 7 );
+        this.assertScan( file, 0L, BLOCK_COUNT, false, 10 );
+        this.assertScan( file, 0L, BLOCK_COUNT, false, 1000 );
+        file.close();
+    }
+
+    /**
+     * Tests scanning all blocks of a file in descending order using the
+     * default chunk size and chunk sizes not dividing the number of blocks.
+     */
+    public void testReverseScan() throws Exception
+    {
+        final StructuredFile file = this.getStructuredFile();
+
+        this.assertScan( file, 0L, BLOCK_COUNT, true, 0 );
+        this.assertScan( file, 0L, BLOCK_COUNT, true, 1 );
+        this.assertScan( file, 0L, BLOCK_COUNT, true, 7 );
+        this.assertScan( file, 0L, BLOCK_COUNT, true, 10 );
+        file.close();
+    }
+
+    /**
+     * Tests scanning ranges of blocks including empty ranges and ranges
+     * touching the end of the file.
+     */
+    public void testRangeScan() throws Exception
+    {
+        final StructuredFile file = this.getStructuredFile();
+
+        this.assertScan( file, 13L, 50L, false, 6 );
+        this.assertScan( file, 13L, 50L, true, 6 );
+        this.assertScan( file, 90L, 11L, false, 4 );
+        this.assertScan( file, 90L, 11L, true, 4 );
+        this.assertScan( file, 50L, 1L, true, 0 );
+        this.assertScan( file, 0L, 0L, false, 0 );
+        this.assertScan( file, BLOCK_COUNT, 0L, true, 3 );
+        file.close();
+    }
+
+    /**
+     * Tests illegal arguments to be rejected and a closed cursor to fail.
+     */
+    public void testIllegalArguments() throws Exception
+    {
+        final StructuredFile file = this.getStructuredFile();
+
+        try
+        {
+            new BlockCursor( null );
+            throw new AssertionError();
+        }
+        catch ( final NullPointerException e )
+        {
+            Assert.assertNotNull( e.getMessage() );
+            System.out.println( e.toString() );
+        }
+
+        try
+        {
+            new BlockCursor( file, -1L, 1L, false );
+            throw new AssertionError();
+        }
+        catch ( final IndexOutOfBoundsException e )
+        {
+            Assert.assertNotNull( e.getMessage() );
+            System.out.println( e.toString() );
+        }
+
+        try
+        {
+            new BlockCursor( file, 100L, 2L, false );
+            throw new AssertionError();
+        }
+        catch ( final IndexOutOfBoundsException e )
+        {
+            Assert.assertNotNull( e.getMessage() );
+            System.out.println( e.toString() );
+        }
+
+        final BlockCursor cursor = new BlockCursor( file, 0L, 10L, false, 3 );
+        cursor.next();
+        cursor.close();
+        Assert.assertFalse( cursor.hasNext() );
+
+        try
+        {
+            cursor.next();
+            throw new AssertionError();
+        }
+        catch ( final IOException e )
+        {
+            Assert.assertNotNull( e.getMessage() );
+            System.out.println( e.toString() );
+        }
+
+        file.close();
+    }
+
+    //-------------------------------------------------------------------Tests--
+}
@@ -0,0 +1,174 @@
+/*
+ *  jDTAUS Core Utilities
+ *  Copyright (C) 2005 Christian Schulte
+ *  <cs@schulte.it>
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+package org.jdtaus.core.io.util.test;
+
+import java.nio.ByteBuffer;
+import junit.framework.Assert;
+import org.jdtaus.core.io.FileOperations;
+import org.jdtaus.core.io.it.FileOperationsTest;
+import org.jdtaus.core.io.util.ByteBufferFileOperations;
+
+/**
+ * Testcase for {@code ByteBufferFileOperations} implementations.
+ *
+ * @author <a href="mailto:cs@schulte.it">Christian Schulte</a>
+ * @version $JDTAUS$
+ */
+public abstract class ByteBufferFileOperationsTest extends FileOperationsTest
+{
+    //--TestCase----------------------------------------------------------------
+
+    protected void runTest() throws Throwable
+    {
+        super.runTest();
+        this.testByteBuffers();
+    }
+
+    //----------------------------------------------------------------TestCase--
+    //--Tests-------------------------------------------------------------------
+
+    /**
+     * Tests the {@code read} and {@code write} methods of
+     * {@link ByteBufferFileOperations} with heap and direct buffers.
+     * <p><ol>
+     * <li>Writes a heap buffer at the file pointer and a direct buffer at a
+     * position beyond the end of the file and checks the file pointer and the
+     * length of the file.</li>
+     * <li>Reads the whole file into a direct buffer and checks the data
+     * read.</li>
+     * <li>Reads at the file pointer and checks the file pointer to have been
+     * advanced.</li>
+     * <li>Writes and reads more data than a cache can hold using direct
+     * buffers.</li>
+     * <li>Reads at the end of the file and checks {@code EOF} to be
+     * returned.</li>
+     * <li>Reads at a negative position and checks an
+     * {@code IllegalArgumentException} to be thrown.</li>
+     * <li>Writes at a position beyond the end of the file with the file
+     * pointer beyond the end of the written data and checks the file pointer
+     * not to have been changed.</li>
+     * </ol></p>
+     */
+    public void testByteBuffers() throws Exception
+    {
+        final ByteBufferFileOperations ops =
+            (ByteBufferFileOperations) this.getFileOperations();
+
+        ops.setLength( 0L );
+        ops.setFilePointer( 0L );
+
+        final ByteBuffer data =
+            ByteBuffer.wrap( "ABCDEFGHIJ".getBytes( "US-ASCII" ) );
+
+        ops.write( data );
+        Assert.assertFalse( data.hasRemaining() );
+        Assert.assertEquals( 10L, ops.getFilePointer() );
+
+        final ByteBuffer xyz = ByteBuffer.allocateDirect( 3 );
+        xyz.put( "XYZ".getBytes( "US-ASCII" ) );
+        xyz.flip();
+
+        ops.write( 12L, xyz );
+        Assert.assertFalse( xyz.hasRemaining() );
+        Assert.assertEquals( 10L, ops.getFilePointer() );
+        Assert.assertEquals( 15L, ops.getLength() );
+
+        ByteBuffer buf = ByteBuffer.allocateDirect( 15 );
+        this.readFully( ops, 0L, buf );
+        Assert.assertEquals( "ABCDEFGHIJ\0\0XYZ", this.toString( buf ) );
+        Assert.assertEquals( 10L, ops.getFilePointer() );
+
+        ops.setFilePointer( 2L );
+        buf = ByteBuffer.allocateDirect( 4 );
+        while ( buf.hasRemaining() )
+        {
+            Assert.assertTrue( ops.read( buf ) > 0 );
+        }
+
+        Assert.assertEquals( "CDEF", this.toString( buf ) );
+        Assert.assertEquals( 6L, ops.getFilePointer() );
+
+        final ByteBuffer large = ByteBuffer.allocateDirect( 100 );
+        for ( int i = 0; i < 100; i++ )
+        {
+            large.put( (byte) i );
+        }
+
+        large.flip();
+        ops.setFilePointer( 0L );
+        ops.write( large );
+        Assert.assertEquals( 100L, ops.getFilePointer() );
+        Assert.assertEquals( 100L, ops.getLength() );
+
+        buf = ByteBuffer.allocateDirect( 100 );
+        this.readFully( ops, 0L, buf );
+        buf.flip();
+        for ( int i = 0; i < 100; i++ )
+        {
+            Assert.assertEquals( (byte) i, buf.get() );
+        }
+
+        buf.clear();
+        Assert.assertEquals( FileOperations.EOF, ops.read( 100L, buf ) );
+
+        try
+        {
+            ops.read( -1L, buf );
+            throw new AssertionError();
+        }
+        catch ( IllegalArgumentException e )
+        {
+            Assert.assertNotNull( e.getMessage() );
+            System.out.println( e.toString() );
+        }
+
+        ops.setFilePointer( 200L );
+        ops.write( 100L, ByteBuffer.wrap( new byte[ 10 ] ) );
+        Assert.assertEquals( 110L, ops.getLength() );
+        Assert.assertEquals( 200L, ops.getFilePointer() );
+
+        ops.setLength( 0L );
+    }
+
+    //-------------------------------------------------------------------Tests--
+    //--ByteBufferFileOperationsTest--------------------------------------------
+
+    private void readFully( final ByteBufferFileOperations ops, long position,
+                            final ByteBuffer buf ) throws Exception
+    {
+        while ( buf.hasRemaining() )
+        {
+            final int read = ops.read( position, buf );
+            Assert.assertTrue( read > 0 );
+            position += read;
+        }
+    }
+
+    private String toString( final ByteBuffer buf ) throws Exception
+    {
+        final byte[] bytes = new byte[ buf.position() ];
+        buf.flip();
+        buf.get( bytes );
+        return new String( bytes, "US-ASCII" );
+    }
+
+    //--------------------------------------------ByteBufferFileOperationsTest--
+}
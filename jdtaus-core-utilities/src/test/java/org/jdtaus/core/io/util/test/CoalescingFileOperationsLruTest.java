@@ -0,0 +1,119 @@
+/*
+ *  jDTAUS Core Utilities
+ *  Copyright (C) 2005 Christian Schulte
+ *  <cs@schulte.it>
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+package org.jdtaus.core.io.util.test;
+
+import java.io.IOException;
+import junit.framework.Assert;
+import org.jdtaus.core.io.FileOperations;
+import org.jdtaus.core.io.util.CoalescingFileOperations;
+import org.jdtaus.core.io.util.LruBlockEvictionPolicy;
+
+/**
+ * Testcase for {@code CoalescingFileOperations} implementations using a
+ * {@code LruBlockEvictionPolicy}.
+ *
+ * @author <a href="mailto:cs@schulte.it">Christian Schulte</a>
+ * @version $JDTAUS$
+ */
+public class CoalescingFileOperationsLruTest
+    extends FlushableFileOperationsTest
+{
+    //--FileOperationsTest------------------------------------------------------
+
+    public FileOperations getFileOperations()
+    {
+        try
+        {
+            return new CoalescingFileOperations(
+                this.getMemoryFileOperations(), 3, 2,
+                new LruBlockEvictionPolicy() );
+
+        }
+        catch ( IOException e )
+        {
+            throw new AssertionError( e );
+        }
+    }
+
+    //------------------------------------------------------FileOperationsTest--
+    //--TestCase----------------------------------------------------------------
+
+    protected void runTest() throws Throwable
+    {
+        super.runTest();
+        this.testEviction();
+    }
+
+    //----------------------------------------------------------------TestCase--
+    //--Tests-------------------------------------------------------------------
+
+    /**
+     * Tests eviction of least recently used blocks and the cache statistics.
+     * <p><ol>
+     * <li>Reads blocks of a file larger than the cache and checks the number
+     * of cache hits, misses and evictions.</li>
+     * <li>Writes to a block and checks the block to get written back to the
+     * backing file when evicted without flushing.</li>
+     * </ol></p>
+     */
+    public void testEviction() throws Exception
+    {
+        final CoalescingFileOperations ops =
+            (CoalescingFileOperations) this.getFileOperations();
+
+        final byte[] buf = new byte[ 12 ];
+        final byte[] x = new byte[] { (byte) 'X' };
+
+        this.getMemoryFileOperations().setLength( 0L );
+        this.getMemoryFileOperations().write( buf, 0, buf.length );
+
+        this.readBlock( ops, 0L );
+        this.readBlock( ops, 1L );
+        this.readBlock( ops, 0L );
+        this.readBlock( ops, 2L );
+        this.readBlock( ops, 0L );
+        this.readBlock( ops, 1L );
+
+        Assert.assertEquals( 2L, ops.getCacheHits() );
+        Assert.assertEquals( 4L, ops.getCacheMisses() );
+        Assert.assertEquals( 2L, ops.getCacheEvictions() );
+
+        ops.setFilePointer( 9L );
+        ops.write( x, 0, 1 );
+        Assert.assertEquals( 0, this.getMemoryFileOperations().getData()[9] );
+
+        this.readBlock( ops, 1L );
+        this.readBlock( ops, 0L );
+        Assert.assertEquals( 'X', this.getMemoryFileOperations().getData()[9] );
+        Assert.assertEquals( 4L, ops.getCacheEvictions() );
+
+        ops.close();
+    }
+
+    private void readBlock( final FileOperations ops, final long block )
+        throws IOException
+    {
+        ops.setFilePointer( block * 3L );
+        Assert.assertEquals( 1, ops.read( new byte[ 1 ], 0, 1 ) );
+    }
+
+    //-------------------------------------------------------------------Tests--
+}
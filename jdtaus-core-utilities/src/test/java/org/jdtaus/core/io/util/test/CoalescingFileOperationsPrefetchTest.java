@@ -0,0 +1,221 @@
+/*
+ *  jDTAUS Core Utilities
+ *  Copyright (C) 2005 Christian Schulte
+ *  <cs@schulte.it>
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+package org.jdtaus.core.io.util.test;
+
+import java.io.IOException;
+import java.util.Random;
+import junit.framework.Assert;
+import org.jdtaus.core.io.FileOperations;
+import org.jdtaus.core.io.util.CoalescingFileOperations;
+import org.jdtaus.core.io.util.InstrumentedFileOperations;
+import org.jdtaus.core.io.util.MemoryFileOperations;
+import org.jdtaus.core.io.util.StructuredFileOperations;
+
+/**
+ * Testcase for {@code CoalescingFileOperations} implementations prefetching
+ * ranges of a file.
+ *
+ * @author <a href="mailto:cs@schulte.it">Christian Schulte</a>
+ * @version $JDTAUS$
+ */
+public class CoalescingFileOperationsPrefetchTest
+    extends FlushableFileOperationsTest
+{
+    //--FileOperationsTest------------------------------------------------------
+
+    public FileOperations getFileOperations()
+    {
+        try
+        {
+            return new CoalescingFileOperations(
+                this.getMemoryFileOperations(), 4, 4 );
+
+        }
+        catch ( IOException e )
+        {
+            throw new AssertionError( e );
+        }
+    }
+
+    //------------------------------------------------------FileOperationsTest--
+    //--TestCase----------------------------------------------------------------
+
+    protected void runTest() throws Throwable
+    {
+        super.runTest();
+        this.testPrefetch();
+        this.testPrefetchConsistency();
+    }
+
+    //----------------------------------------------------------------TestCase--
+    //--Tests-------------------------------------------------------------------
+
+    /**
+     * Tests prefetched data to be read without reading from the
+     * {@code FileOperations} backing the instance.
+     * <p><ol>
+     * <li>Prefetches a range of a file, reads the range and checks the data
+     * read and the number of reads performed on the backing instance.</li>
+     * <li>Prefetches blocks of a {@code StructuredFileOperations} instance
+     * and checks illegal arguments to be rejected.</li>
+     * </ol></p>
+     */
+    public void testPrefetch() throws Exception
+    {
+        final MemoryFileOperations memory = new MemoryFileOperations();
+        final byte[] data = new byte[ 64 ];
+        final byte[] buf = new byte[ 16 ];
+
+        for ( int i = data.length - 1; i >= 0; i-- )
+        {
+            data[i] = (byte) i;
+        }
+
+        memory.write( data, 0, data.length );
+
+        final InstrumentedFileOperations backing =
+            new InstrumentedFileOperations( memory );
+
+        final CoalescingFileOperations ops = new CoalescingFileOperations( backing, 4, 4 );
+
+        ops.prefetch( 8L, buf.length );
+        ops.setFilePointer( 8L );
+        Assert.assertEquals( buf.length, ops.read( buf, 0, buf.length ) );
+
+        for ( int i = buf.length - 1; i >= 0; i-- )
+        {
+            Assert.assertEquals( (byte) ( i + 8 ), buf[i] );
+        }
+
+        Assert.assertEquals( 4L, backing.getReadCount() );
+        Assert.assertEquals( 24L, ops.getFilePointer() );
+
+        try
+        {
+            ops.prefetch( -1L, 1L );
+            throw new AssertionError();
+        }
+        catch ( final IllegalArgumentException e )
+        {
+            Assert.assertNotNull( e.getMessage() );
+            System.out.println( e.toString() );
+        }
+
+        final StructuredFileOperations structuredFile =
+            new StructuredFileOperations( 4, ops );
+
+        structuredFile.prefetch( 12L, 4L );
+        structuredFile.readBlock( 12L, 0, buf, 0, 4 );
+        Assert.assertEquals( (byte) 48, buf[0] );
+
+        try
+        {
+            structuredFile.prefetch( 12L, 5L );
+            throw new AssertionError();
+        }
+        catch ( final IndexOutOfBoundsException e )
+        {
+            Assert.assertNotNull( e.getMessage() );
+            System.out.println( e.toString() );
+        }
+
+        structuredFile.close();
+    }
+
+    /**
+     * Tests data read to be consistent with data written while prefetching.
+     * <p><ol>
+     * <li>Performs random writes, reads, prefetches and changes of the length
+     * of the file and checks all data read to match the data written.</li>
+     * </ol></p>
+     */
+    public void testPrefetchConsistency() throws Exception
+    {
+        final MemoryFileOperations expected = new MemoryFileOperations();
+        final CoalescingFileOperations ops = new CoalescingFileOperations(
+            new MemoryFileOperations(), 4, 4 );
+
+        final Random random = new Random( 42L );
+        final byte[] buf = new byte[ 32 ];
+        final byte[] expectedBuf = new byte[ buf.length ];
+
+        for ( int i = 0; i < 5000; i++ )
+        {
+            final int op = random.nextInt( 10 );
+            final long length = expected.getLength();
+            final long pos = random.nextInt( (int) length + 8 );
+            final int len = random.nextInt( buf.length ) + 1;
+
+            if ( op < 3 )
+            { // Contents of any gap between the file and the data not defined.
+                random.nextBytes( buf );
+                expected.setFilePointer( Math.min( pos, length ) );
+                expected.write( buf, 0, len );
+                ops.setFilePointer( Math.min( pos, length ) );
+                ops.write( buf, 0, len );
+            }
+            else if ( op < 6 )
+            {
+                expected.setFilePointer( pos );
+                ops.setFilePointer( pos );
+                final int read = expected.read( expectedBuf, 0, len );
+                int totalRead = 0;
+
+                while ( totalRead < read )
+                {
+                    totalRead += ops.read( buf, totalRead, read - totalRead );
+                }
+
+                for ( int j = read - 1; j >= 0; j-- )
+                {
+                    Assert.assertEquals( expectedBuf[j], buf[j] );
+                }
+            }
+            else if ( op < 9 )
+            {
+                ops.prefetch( pos, len );
+            }
+            else if ( random.nextBoolean() )
+            {
+                final long newLength = random.nextInt( (int) length + 16 );
+                expected.setLength( newLength );
+                ops.setLength( newLength );
+
+                if ( newLength > length )
+                { // Contents of the extended portion of the file not defined.
+                    final byte[] zero = new byte[ (int) ( newLength - length ) ];
+                    expected.setFilePointer( length );
+                    expected.write( zero, 0, zero.length );
+                    ops.setFilePointer( length );
+                    ops.write( zero, 0, zero.length );
+                }
+            }
+            else
+            {
+                ops.flush();
+            }
+        }
+
+        ops.close();
+    }
+
+    //-------------------------------------------------------------------Tests--
+}
@@ -0,0 +1,416 @@
+/*
+ *  jDTAUS Core Utilities
+ *  Copyright (C) 2005 Christian Schulte
+ *  <cs@schulte.it>
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+package org.jdtaus.core.io.util.test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+import junit.framework.Assert;
+import org.jdtaus.core.io.FileOperations;
+import org.jdtaus.core.io.util.CoalescingFileOperations;
+import org.jdtaus.core.io.util.InstrumentedFileOperations;
+import org.jdtaus.core.io.util.MemoryFileOperations;
+import org.jdtaus.core.io.util.ReadAheadFileOperations;
+
+/**
+ * Testcase for {@code CoalescingFileOperations} implementations zeroing
+ * ranges of a file.
+ *
+ * @author <a href="mailto:cs@schulte.it">Christian Schulte</a>
+ * @version $JDTAUS$
+ */
+public class CoalescingFileOperationsSparseTest
+    extends FlushableFileOperationsTest
+{
+    //--FileOperationsTest------------------------------------------------------
+
+    public FileOperations getFileOperations()
+    {
+        try
+        {
+            return new CoalescingFileOperations(
+                this.getMemoryFileOperations(), 4, 4 );
+
+        }
+        catch ( IOException e )
+        {
+            throw new AssertionError( e );
+        }
+    }
+
+    //------------------------------------------------------FileOperationsTest--
+    //--TestCase----------------------------------------------------------------
+
+    protected void runTest() throws Throwable
+    {
+        super.runTest();
+        this.testExtensionNotRead();
+        this.testNonSparseExtension();
+        this.testZero();
+        this.testZeroConsistency();
+    }
+
+    //----------------------------------------------------------------TestCase--
+    //--Tests-------------------------------------------------------------------
+
+    /**
+     * Tests blocks of an extension of a file not to be read from the
+     * {@code FileOperations} backing the instance.
+     * <p><ol>
+     * <li>Extends a file, changes the extension in the backing instance
+     * directly, reads the extension and checks the data read to be zero
+     * without the change having been read.</li>
+     * <li>Reads the block holding the data written before the extension and
+     * checks the data read.</li>
+     * </ol></p>
+     */
+    public void testExtensionNotRead() throws Exception
+    {
+        final MemoryFileOperations memory = new MemoryFileOperations();
+        final CoalescingFileOperations ops =
+            new CoalescingFileOperations( memory, 4, 4 );
+
+        final byte[] buf = new byte[ 16 ];
+
+        ops.write( new byte[] { 1, 2, 3, 4, 5, 6 }, 0, 6 );
+        ops.flush();
+        ops.setLength( 1024L );
+
+        memory.setFilePointer( 512L );
+        memory.write( new byte[] { 7, 7, 7, 7 }, 0, 4 );
+
+        ops.setFilePointer( 512L );
+        Assert.assertEquals( buf.length, ops.read( buf, 0, buf.length ) );
+
+        for ( int i = buf.length - 1; i >= 0; i-- )
+        {
+            Assert.assertEquals( 0, buf[i] );
+        }
+
+        ops.setFilePointer( 4L );
+        Assert.assertEquals( 4, ops.read( buf, 0, 4 ) );
+        Assert.assertEquals( 5, buf[0] );
+        Assert.assertEquals( 6, buf[1] );
+        Assert.assertEquals( 0, buf[2] );
+
+        ops.close();
+    }
+
+    /**
+     * Tests extensions of a file backed by an instance not supporting sparse
+     * files to hold zeros.
+     * <p><ol>
+     * <li>Writes data, truncates and extends the file backed by an instance
+     * filling extensions with non-zero data and checks the extension to read
+     * as zeros through the instance and the backing instance.</li>
+     * </ol></p>
+     */
+    public void testNonSparseExtension() throws Exception
+    {
+        final DirtyFileOperations dirty = new DirtyFileOperations();
+        final CoalescingFileOperations ops =
+            new CoalescingFileOperations( dirty, 4, 4 );
+
+        final byte[] data = new byte[ 100 ];
+        final byte[] buf = new byte[ data.length ];
+
+        for ( int i = data.length - 1; i >= 0; i-- )
+        {
+            data[i] = (byte) ( i + 1 );
+        }
+
+        ops.write( data, 0, data.length );
+        ops.flush();
+        ops.setLength( 3L );
+        ops.flush();
+        ops.setLength( data.length );
+
+        for ( int pass = 0; pass < 2; pass++ )
+        {
+            final FileOperations file = pass == 0 ? (FileOperations) ops
+                                                  : dirty;
+
+            file.setFilePointer( 0L );
+            int totalRead = 0;
+            do
+            {
+                totalRead +=
+                    file.read( buf, totalRead, buf.length - totalRead );
+
+            }
+            while ( totalRead < buf.length );
+
+            for ( int i = buf.length - 1; i >= 0; i-- )
+            {
+                Assert.assertEquals( i < 3 ? data[i] : 0, buf[i] );
+            }
+
+            ops.flush();
+        }
+
+        ops.close();
+    }
+
+    /**
+     * {@code FileOperations} not supporting sparse files filling extensions
+     * with non-zero data.
+     */
+    private static final class DirtyFileOperations implements FileOperations
+    {
+
+        private final MemoryFileOperations delegate =
+            new MemoryFileOperations();
+
+        public long getLength() throws IOException
+        {
+            return this.delegate.getLength();
+        }
+
+        public void setLength( final long newLength ) throws IOException
+        {
+            final long oldLength = this.delegate.getLength();
+            final long pointer = this.delegate.getFilePointer();
+
+            this.delegate.setLength( newLength );
+
+            if ( newLength > oldLength )
+            {
+                final byte[] garbage =
+                    new byte[ (int) ( newLength - oldLength ) ];
+                Arrays.fill( garbage, (byte) -1 );
+                this.delegate.setFilePointer( oldLength );
+                this.delegate.write( garbage, 0, garbage.length );
+                this.delegate.setFilePointer( pointer );
+            }
+        }
+
+        public long getFilePointer() throws IOException
+        {
+            return this.delegate.getFilePointer();
+        }
+
+        public void setFilePointer( final long pos ) throws IOException
+        {
+            this.delegate.setFilePointer( pos );
+        }
+
+        public int read( final byte[] buf, final int off, final int len )
+            throws IOException
+        {
+            return this.delegate.read( buf, off, len );
+        }
+
+        public void write( final byte[] buf, final int off, final int len )
+            throws IOException
+        {
+            this.delegate.write( buf, off, len );
+        }
+
+        public void read( final OutputStream out ) throws IOException
+        {
+            this.delegate.read( out );
+        }
+
+        public void write( final InputStream in ) throws IOException
+        {
+            this.delegate.write( in );
+        }
+
+        public void close() throws IOException
+        {
+            this.delegate.close();
+        }
+
+    }
+
+    /**
+     * Tests zeroing ranges of a file.
+     * <p><ol>
+     * <li>Zeros a range inside a file backed by an instance supporting sparse
+     * files and checks the data of the backing instance and the file pointer
+     * not to have changed.</li>
+     * <li>Zeros a range extending the file and checks the length and the
+     * data of the file.</li>
+     * <li>Zeros a range extending the file with the file pointer beyond the
+     * end of the range and checks the file pointer not to have changed.</li>
+     * <li>Checks illegal arguments to be rejected.</li>
+     * </ol></p>
+     */
+    public void testZero() throws Exception
+    {
+        final MemoryFileOperations memory = new MemoryFileOperations();
+        final byte[] data = new byte[ 64 ];
+        final byte[] buf = new byte[ data.length ];
+
+        for ( int i = data.length - 1; i >= 0; i-- )
+        {
+            data[i] = (byte) ( i + 1 );
+        }
+
+        memory.write( data, 0, data.length );
+
+        final CoalescingFileOperations ops =
+            new CoalescingFileOperations( memory, 4, 4 );
+
+        ops.setFilePointer( 3L );
+        ops.zero( 6L, 50L );
+        Assert.assertEquals( 3L, ops.getFilePointer() );
+        ops.flush();
+
+        for ( int i = 6; i < 56; i++ )
+        {
+            data[i] = 0;
+        }
+
+        memory.setFilePointer( 0L );
+        Assert.assertEquals( data.length,
+                             memory.read( buf, 0, buf.length ) );
+
+        for ( int i = data.length - 1; i >= 0; i-- )
+        {
+            Assert.assertEquals( data[i], buf[i] );
+        }
+
+        ops.zero( 60L, 100L );
+        Assert.assertEquals( 160L, ops.getLength() );
+        ops.setFilePointer( 56L );
+        Assert.assertEquals( 8, ops.read( buf, 0, 8 ) );
+
+        for ( int i = 7; i >= 0; i-- )
+        {
+            Assert.assertEquals( i < 4 ? data[56 + i] : 0, buf[i] );
+        }
+
+        ops.setFilePointer( 500L );
+        ops.zero( 150L, 50L );
+        Assert.assertEquals( 200L, ops.getLength() );
+        Assert.assertEquals( 500L, ops.getFilePointer() );
+
+        try
+        {
+            ops.zero( -1L, 1L );
+            throw new AssertionError();
+        }
+        catch ( final IllegalArgumentException e )
+        {
+            Assert.assertNotNull( e.getMessage() );
+            System.out.println( e.toString() );
+        }
+
+        ops.close();
+    }
+
+    /**
+     * Tests data read to be consistent with ranges zeroed.
+     * <p><ol>
+     * <li>Performs random writes, reads, zeroing of ranges and changes of the
+     * length of files backed by instances supporting and not supporting
+     * sparse files, including an instance holding stale data in extensions,
+     * and checks all data read to match the data written.</li>
+     * </ol></p>
+     */
+    public void testZeroConsistency() throws Exception
+    {
+        this.assertZeroConsistency( new CoalescingFileOperations(
+            new MemoryFileOperations(), 4, 4 ) );
+
+        this.assertZeroConsistency( new CoalescingFileOperations(
+            new InstrumentedFileOperations( new MemoryFileOperations() ),
+            4, 4 ) );
+
+        this.assertZeroConsistency( new CoalescingFileOperations(
+            new MemoryFileOperations(), 4, 4, null, 2 ) );
+
+        this.assertZeroConsistency( new CoalescingFileOperations(
+            new ReadAheadFileOperations( new MemoryFileOperations(), 16 ),
+            4, 4 ) );
+
+    }
+
+    //-------------------------------------------------------------------Tests--
+    //--CoalescingFileOperationsSparseTest--------------------------------------
+
+    private void assertZeroConsistency( final CoalescingFileOperations ops )
+        throws IOException
+    {
+        final MemoryFileOperations expected = new MemoryFileOperations();
+        final Random random = new Random( 42L );
+        final byte[] buf = new byte[ 32 ];
+        final byte[] expectedBuf = new byte[ buf.length ];
+
+        for ( int i = 0; i < 5000; i++ )
+        {
+            final int op = random.nextInt( 10 );
+            final long length = expected.getLength();
+            final long pos = random.nextInt( (int) length + 8 );
+            final int len = random.nextInt( buf.length ) + 1;
+
+            if ( op < 3 )
+            { // Contents of any gap between the file and the data not defined.
+                random.nextBytes( buf );
+                expected.setFilePointer( Math.min( pos, length ) );
+                expected.write( buf, 0, len );
+                ops.setFilePointer( Math.min( pos, length ) );
+                ops.write( buf, 0, len );
+            }
+            else if ( op < 6 )
+            {
+                expected.setFilePointer( pos );
+                ops.setFilePointer( pos );
+                final int read = expected.read( expectedBuf, 0, len );
+                int totalRead = 0;
+
+                while ( totalRead < read )
+                {
+                    totalRead += ops.read( buf, totalRead, read - totalRead );
+                }
+
+                for ( int j = read - 1; j >= 0; j-- )
+                {
+                    Assert.assertEquals( expectedBuf[j], buf[j] );
+                }
+            }
+            else if ( op < 8 )
+            {
+                expected.zero( pos, len );
+                ops.zero( pos, len );
+            }
+            else if ( op < 9 )
+            {
+                ops.flush();
+            }
+            else
+            {
+                final long newLength = random.nextInt( (int) length + 16 );
+                expected.setLength( newLength );
+                ops.setLength( newLength );
+            }
+
+            Assert.assertEquals( expected.getLength(), ops.getLength() );
+        }
+
+        ops.close();
+    }
+
+    //--------------------------------------CoalescingFileOperationsSparseTest--
+}
@@ -0,0 +1,117 @@
+/*
+ *  jDTAUS Core Utilities
+ *  Copyright (C) 2005 Christian Schulte
+ *  <cs@schulte.it>
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+package org.jdtaus.core.io.util.test;
+
+import java.io.IOException;
+import junit.framework.Assert;
+import org.jdtaus.core.io.FileOperations;
+import org.jdtaus.core.io.util.CoalescingFileOperations;
+import org.jdtaus.core.io.util.TwoQueueBlockEvictionPolicy;
+
+/**
+ * Testcase for {@code CoalescingFileOperations} implementations using a
+ * {@code TwoQueueBlockEvictionPolicy}.
+ *
+ * @author <a href="mailto:cs@schulte.it">Christian Schulte</a>
+ * @version $JDTAUS$
+ */
+public class CoalescingFileOperationsTwoQueueTest
+    extends FlushableFileOperationsTest
+{
+    //--FileOperationsTest------------------------------------------------------
+
+    public FileOperations getFileOperations()
+    {
+        try
+        {
+            return new CoalescingFileOperations(
+                this.getMemoryFileOperations(), 3, 2,
+                new TwoQueueBlockEvictionPolicy() );
+
+        }
+        catch ( IOException e )
+        {
+            throw new AssertionError( e );
+        }
+    }
+
+    //------------------------------------------------------FileOperationsTest--
+    //--TestCase----------------------------------------------------------------
+
+    protected void runTest() throws Throwable
+    {
+        super.runTest();
+        this.testScanResistance();
+    }
+
+    //----------------------------------------------------------------TestCase--
+    //--Tests-------------------------------------------------------------------
+
+    /**
+     * Tests a block accessed repeatedly to survive a sequential scan.
+     * <p><ol>
+     * <li>Reads a block twice with other blocks read in between so that the
+     * block is evicted and loaded again.</li>
+     * <li>Reads all blocks of a file larger than the cache sequentially and
+     * checks the block read repeatedly to still be cached.</li>
+     * </ol></p>
+     */
+    public void testScanResistance() throws Exception
+    {
+        final CoalescingFileOperations ops = new CoalescingFileOperations(
+            this.getMemoryFileOperations(), 1, 4,
+            new TwoQueueBlockEvictionPolicy() );
+
+        final byte[] buf = new byte[ 32 ];
+
+        this.getMemoryFileOperations().setLength( 0L );
+        this.getMemoryFileOperations().write( buf, 0, buf.length );
+
+        ops.setFilePointer( 0L );
+        ops.read( buf, 0, 1 );
+
+        for ( int i = 16; i < 20; i++ )
+        {
+            ops.setFilePointer( i );
+            ops.read( buf, 0, 1 );
+        }
+
+        ops.setFilePointer( 0L );
+        ops.read( buf, 0, 1 );
+        Assert.assertEquals( 0L, ops.getCacheHits() );
+
+        for ( int i = 1; i < 16; i++ )
+        {
+            ops.setFilePointer( i );
+            ops.read( buf, 0, 1 );
+        }
+
+        final long evictions = ops.getCacheEvictions();
+        ops.setFilePointer( 0L );
+        ops.read( buf, 0, 1 );
+        Assert.assertEquals( evictions, ops.getCacheEvictions() );
+        Assert.assertEquals( 1L, ops.getCacheHits() );
+
+        ops.close();
+    }
+
+    //-------------------------------------------------------------------Tests--
+}
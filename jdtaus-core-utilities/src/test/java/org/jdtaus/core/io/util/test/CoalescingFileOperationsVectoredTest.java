@@ -0,0 +1,116 @@
+/*
+ *  jDTAUS Core Utilities
+ *  Copyright (C) 2005 Christian Schulte
+ *  <cs@schulte.it>
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+package org.jdtaus.core.io.util.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import junit.framework.Assert;
+import org.jdtaus.core.io.FileOperations;
+import org.jdtaus.core.io.util.CoalescingFileOperations;
+import org.jdtaus.core.io.util.FileChannelFileOperations;
+
+/**
+ * Testcase for {@code CoalescingFileOperations} implementations backed by
+ * {@code VectoredFileOperations}.
+ *
+ * @author <a href="mailto:cs@schulte.it">Christian Schulte</a>
+ * @version $JDTAUS$
+ */
+public class CoalescingFileOperationsVectoredTest
+    extends VectoredFileOperationsTest
+{
+    //--FileOperationsTest------------------------------------------------------
+
+    /** Temporary random access file. */
+    private File tmp;
+
+    public FileOperations getFileOperations()
+    {
+        try
+        {
+            if ( this.tmp != null )
+            {
+                this.tmp.delete();
+            }
+
+            this.tmp = File.createTempFile( "jdtaus", "tmp" );
+            this.tmp.deleteOnExit();
+            return new CoalescingFileOperations(
+                new FileChannelFileOperations(
+                new RandomAccessFile( this.tmp, "rw" ) ), 3, 4 );
+
+        }
+        catch ( IOException e )
+        {
+            throw new AssertionError( e );
+        }
+    }
+
+    //------------------------------------------------------FileOperationsTest--
+    //--TestCase----------------------------------------------------------------
+
+    protected void runTest() throws Throwable
+    {
+        super.runTest();
+        this.testVectoredFlush();
+    }
+
+    //----------------------------------------------------------------TestCase--
+    //--Tests-------------------------------------------------------------------
+
+    /**
+     * Tests flushing dirty blocks with a vectored write.
+     * <p><ol>
+     * <li>Writes to non-adjacent and adjacent blocks, flushes the instance and
+     * checks the backing file to hold the written data.</li>
+     * </ol></p>
+     */
+    public void testVectoredFlush() throws Exception
+    {
+        final CoalescingFileOperations ops =
+            (CoalescingFileOperations) this.getFileOperations();
+
+        final byte[] data = "ABCDEFGHIJKLMNOPQRSTUVWXYZ".getBytes( "US-ASCII" );
+        final byte[] buf = new byte[ data.length ];
+
+        ops.write( data, 0, data.length );
+        ops.flush();
+
+        ops.setFilePointer( 4L );
+        ops.write( new byte[] { 'e', 'f', 'g' }, 0, 3 );
+        ops.setFilePointer( 21L );
+        ops.write( new byte[] { 'v' }, 0, 1 );
+        ops.setFilePointer( 15L );
+        ops.write( new byte[] { 'p' }, 0, 1 );
+        ops.flush();
+
+        final FileOperations backing = ops.getFileOperations();
+        backing.setFilePointer( 0L );
+        Assert.assertEquals( data.length, backing.read( buf, 0, buf.length ) );
+        Assert.assertEquals( "ABCDefgHIJKLMNOpQRSTUvWXYZ",
+                             new String( buf, "US-ASCII" ) );
+
+        ops.close();
+    }
+
+    //-------------------------------------------------------------------Tests--
+}
@@ -0,0 +1,238 @@
+/*
+ *  jDTAUS Core Utilities
+ *  Copyright (C) 2005 Christian Schulte
+ *  <cs@schulte.it>
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+package org.jdtaus.core.io.util.test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import junit.framework.Assert;
+import org.jdtaus.core.io.FileOperations;
+import org.jdtaus.core.io.util.CoalescingFileOperations;
+import org.jdtaus.core.io.util.MemoryFileOperations;
+
+/**
+ * Testcase for {@code CoalescingFileOperations} implementations performing
+ * asynchronous write-behind.
+ *
+ * @author <a href="mailto:cs@schulte.it">Christian Schulte</a>
+ * @version $JDTAUS$
+ */
+public class CoalescingFileOperationsWriteBehindTest
+    extends FlushableFileOperationsTest
+{
+    //--FileOperationsTest------------------------------------------------------
+
+    public FileOperations getFileOperations()
+    {
+        try
+        {
+            return new CoalescingFileOperations(
+                this.getMemoryFileOperations(), 3, 2, null, 1 );
+
+        }
+        catch ( IOException e )
+        {
+            throw new AssertionError( e );
+        }
+    }
+
+    //------------------------------------------------------FileOperationsTest--
+    //--TestCase----------------------------------------------------------------
+
+    protected void runTest() throws Throwable
+    {
+        super.runTest();
+        this.testWriteBehind();
+        this.testWriteBehindFailure();
+    }
+
+    //----------------------------------------------------------------TestCase--
+    //--Tests-------------------------------------------------------------------
+
+    /**
+     * Tests data written asynchronously to be written completely after
+     * flushing.
+     * <p><ol>
+     * <li>Writes a number of bytes in small chunks reaching the high-water
+     * mark repeatedly, interleaved with reads of previously written data.</li>
+     * <li>Flushes the instance and checks the backing file to hold the written
+     * data.</li>
+     * </ol></p>
+     */
+    public void testWriteBehind() throws Exception
+    {
+        final MemoryFileOperations memory = new MemoryFileOperations();
+        final CoalescingFileOperations ops =
+            new CoalescingFileOperations( memory, 4, 4, null, 2 );
+
+        final byte[] buf = new byte[ 5 ];
+
+        for ( int i = 0; i < 1000; i++ )
+        {
+            for ( int j = buf.length - 1; j >= 0; j-- )
+            {
+                buf[j] = (byte) ( i + j );
+            }
+
+            ops.write( buf, 0, buf.length );
+
+            if ( i % 7 == 0 )
+            {
+                final long pos = ops.getFilePointer();
+                ops.setFilePointer( ( i / 2 ) * buf.length );
+                ops.read( buf, 0, buf.length );
+                Assert.assertEquals( (byte) ( i / 2 ), buf[0] );
+                ops.setFilePointer( pos );
+            }
+        }
+
+        ops.flush();
+
+        final byte[] data = memory.getData();
+        Assert.assertEquals( 5000, data.length );
+
+        for ( int i = 0; i < 1000; i++ )
+        {
+            for ( int j = buf.length - 1; j >= 0; j-- )
+            {
+                Assert.assertEquals( (byte) ( i + j ), data[i * 5 + j] );
+            }
+        }
+
+        ops.close();
+    }
+
+    /**
+     * Tests an exception thrown by a write-behind to be rethrown by the next
+     * call to method {@code flush()} and the data not written to stay
+     * pending.
+     * <p><ol>
+     * <li>Writes data reaching the high-water mark to a backing file failing
+     * to write and checks flushing to fail repeatedly.</li>
+     * <li>Lets the backing file succeed to write, flushes the instance and
+     * checks the backing file to hold the written data.</li>
+     * </ol></p>
+     */
+    public void testWriteBehindFailure() throws Exception
+    {
+        final FailingFileOperations memory = new FailingFileOperations();
+        final CoalescingFileOperations ops =
+            new CoalescingFileOperations( memory, 4, 4, null, 1 );
+
+        ops.write( new byte[] { 1, 2, 3, 4 }, 0, 4 );
+
+        for ( int i = 0; i < 2; i++ )
+        {
+            try
+            {
+                ops.flush();
+                Assert.fail();
+            }
+            catch ( IOException e )
+            {
+                Assert.assertNotNull( e );
+            }
+        }
+
+        memory.failing = false;
+        ops.flush();
+
+        final byte[] data = memory.delegate.getData();
+        Assert.assertEquals( 4, data.length );
+
+        for ( int i = data.length - 1; i >= 0; i-- )
+        {
+            Assert.assertEquals( i + 1, data[i] );
+        }
+
+        ops.close();
+    }
+
+    /** {@code FileOperations} failing to write until told otherwise. */
+    private static final class FailingFileOperations implements FileOperations
+    {
+
+        private final MemoryFileOperations delegate =
+            new MemoryFileOperations();
+
+        private boolean failing = true;
+
+        public long getLength() throws IOException
+        {
+            return this.delegate.getLength();
+        }
+
+        public void setLength( final long newLength ) throws IOException
+        {
+            this.delegate.setLength( newLength );
+        }
+
+        public long getFilePointer() throws IOException
+        {
+            return this.delegate.getFilePointer();
+        }
+
+        public void setFilePointer( final long pos ) throws IOException
+        {
+            this.delegate.setFilePointer( pos );
+        }
+
+        public int read( final byte[] buf, final int off, final int len )
+            throws IOException
+        {
+            return this.delegate.read( buf, off, len );
+        }
+
+        public void write( final byte[] buf, final int off, final int len )
+            throws IOException
+        {
+            if ( this.failing )
+            {
+                throw new IOException();
+            }
+
+            this.delegate.write( buf, off, len );
+        }
+
+        public void read( final OutputStream out ) throws IOException
+        {
+            this.delegate.read( out );
+        }
+
+        public void write( final InputStream in ) throws IOException
+        {
+            if ( this.failing )
+            {
+                throw new IOException();
+            }
+
+            this.delegate.write( in );
+        }
+
+        public void close() throws IOException
+        {
+            this.delegate.close();
+        }
+
+    }
+
+    //-------------------------------------------------------------------Tests--
+}
@@ -0,0 +1,158 @@
+/*
+ *  jDTAUS Core Utilities
+ *  Copyright (C) 2005 Christian Schulte
+ *  <cs@schulte.it>
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+package org.jdtaus.core.io.util.test;
+
+import java.io.IOException;
+import java.util.Random;
+import junit.framework.Assert;
+import org.jdtaus.core.io.FileOperations;
+import org.jdtaus.core.io.it.FileOperationsTest;
+import org.jdtaus.core.io.util.CompressedFileOperations;
+import org.jdtaus.core.io.util.MemoryFileOperations;
+
+/**
+ * Testcase for {@code CompressedFileOperations} implementations.
+ *
+ * @author <a href="mailto:cs@schulte.it">Christian Schulte</a>
+ * @version $JDTAUS$
+ */
+public class CompressedFileOperationsTest extends FileOperationsTest
+{
+    //--FileOperationsTest------------------------------------------------------
+
+    public FileOperations getFileOperations()
+    {
+        try
+        {
+            return new CompressedFileOperations(
+                new MemoryFileOperations(), 64, -1 );
+
+        }
+        catch ( IOException e )
+        {
+            throw new AssertionError( e );
+        }
+    }
+
+    //------------------------------------------------------FileOperationsTest--
+    //--TestCase----------------------------------------------------------------
+
+    protected void runTest() throws Throwable
+    {
+        super.runTest();
+        this.testCompression();
+        this.testIllegalFileFormat();
+    }
+
+    //----------------------------------------------------------------TestCase--
+    //--Tests-------------------------------------------------------------------
+
+    /**
+     * Tests compressing data.
+     * <p><ol>
+     * <li>Writes compressible data, flushes the instance and checks the
+     * backing file to be smaller than the data.</li>
+     * <li>Overwrites a range with incompressible data, closes the instance,
+     * creates a new instance for the backing file and checks the data read to
+     * match the data written.</li>
+     * <li>Truncates the file to the middle of a block, increases the length
+     * again and checks the data beyond the truncated length to read as
+     * zero.</li>
+     * </ol></p>
+     */
+    public void testCompression() throws Exception
+    {
+        final MemoryFileOperations backing = new MemoryFileOperations();
+        CompressedFileOperations ops =
+            new CompressedFileOperations( backing, 4096, 9 );
+
+        final byte[] data = new byte[ 100000 ];
+        for ( int i = 0; i < data.length; i++ )
+        {
+            data[i] = (byte) ( '0' + i % 10 );
+        }
+
+        ops.write( data, 0, data.length );
+        ops.flush();
+        Assert.assertTrue( backing.getLength() < data.length / 4 );
+
+        final byte[] random = new byte[ 3000 ];
+        new Random( 42L ).nextBytes( random );
+        System.arraycopy( random, 0, data, 5000, random.length );
+
+        ops.setFilePointer( 5000L );
+        ops.write( random, 0, random.length );
+        ops.close();
+
+        ops = new CompressedFileOperations( backing );
+        Assert.assertEquals( 4096, ops.getBlockSize() );
+        Assert.assertEquals( data.length, ops.getLength() );
+
+        final byte[] buf = new byte[ data.length ];
+        int totalRead = 0;
+        do
+        {
+            totalRead += ops.read( buf, totalRead, buf.length - totalRead );
+        }
+        while ( totalRead < buf.length );
+
+        for ( int i = 0; i < data.length; i++ )
+        {
+            Assert.assertEquals( data[i], buf[i] );
+        }
+
+        ops.setLength( 50L );
+        ops.setLength( 5000L );
+        ops.setFilePointer( 0L );
+        Assert.assertEquals( 4096, ops.read( buf, 0, 4096 ) );
+        Assert.assertEquals( 904, ops.read( buf, 4096, 904 ) );
+
+        for ( int i = 0; i < 5000; i++ )
+        {
+            Assert.assertEquals( i < 50 ? data[i] : 0, buf[i] );
+        }
+
+        ops.close();
+    }
+
+    /**
+     * Tests creating an instance for a backing file not written by the class
+     * to fail with an {@code IOException}.
+     */
+    public void testIllegalFileFormat() throws Exception
+    {
+        try
+        {
+            new CompressedFileOperations( new MemoryFileOperations(
+                "ABCDEFGHIJKLMNOPQRSTUVWXYZABCDEFGHIJKLMNOPQRSTUVWXYZ".
+                getBytes( "US-ASCII" ) ) );
+
+            throw new AssertionError();
+        }
+        catch ( final IOException e )
+        {
+            Assert.assertNotNull( e.getMessage() );
+            System.out.println( e.toString() );
+        }
+    }
+
+    //-------------------------------------------------------------------Tests--
+}
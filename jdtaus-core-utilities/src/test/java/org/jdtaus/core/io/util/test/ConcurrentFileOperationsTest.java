@@ -0,0 +1,209 @@
+/*
+ *  jDTAUS Core Utilities
+ *  Copyright (C) 2005 Christian Schulte
+ *  <cs@schulte.it>
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+package org.jdtaus.core.io.util.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import junit.framework.Assert;
+import org.jdtaus.core.io.FileOperations;
+import org.jdtaus.core.io.util.ConcurrentFileOperations;
+import org.jdtaus.core.io.util.FileChannelFileOperations;
+import org.jdtaus.core.io.util.MemoryFileOperations;
+
+/**
+ * Testcase for {@code ConcurrentFileOperations} implementations.
+ *
+ * @author <a href="mailto:cs@schulte.it">Christian Schulte</a>
+ * @version $JDTAUS$
+ */
+public class ConcurrentFileOperationsTest extends ByteBufferFileOperationsTest
+{
+    //--FileOperationsTest------------------------------------------------------
+
+    /** Temporary random access file. */
+    private File tmp;
+
+    public FileOperations getFileOperations()
+    {
+        try
+        {
+            if ( this.tmp != null )
+            {
+                this.tmp.delete();
+            }
+
+            this.tmp = File.createTempFile( "jdtaus", "tmp" );
+            this.tmp.deleteOnExit();
+            return new ConcurrentFileOperations(
+                new FileChannelFileOperations(
+                new RandomAccessFile( this.tmp, "rw" ) ), 16, 4 );
+
+        }
+        catch ( IOException e )
+        {
+            throw new AssertionError( e );
+        }
+    }
+
+    //------------------------------------------------------FileOperationsTest--
+    //--TestCase----------------------------------------------------------------
+
+    protected void runTest() throws Throwable
+    {
+        super.runTest();
+        this.testConcurrentAccess();
+    }
+
+    //----------------------------------------------------------------TestCase--
+    //--Tests-------------------------------------------------------------------
+
+    /**
+     * Tests multiple threads reading and writing the same instance.
+     * <p><ol>
+     * <li>Starts threads each repeatedly writing a pattern to its own region
+     * of the file using its own file pointer and reading the region of
+     * another thread, and checks every region to only ever hold a complete
+     * pattern.</li>
+     * <li>Performs the same with an instance not backed by a channel.</li>
+     * </ol></p>
+     */
+    public void testConcurrentAccess() throws Exception
+    {
+        this.assertConcurrentAccess(
+            (ConcurrentFileOperations) this.getFileOperations() );
+
+        this.assertConcurrentAccess( new ConcurrentFileOperations(
+            new MemoryFileOperations(), 16, 4 ) );
+
+    }
+
+    //-------------------------------------------------------------------Tests--
+    //--ConcurrentFileOperationsTest--------------------------------------------
+
+    /** Number of threads accessing the file. */
+    private static final int THREADS = 8;
+
+    /** Number of bytes of the region of one thread. */
+    private static final int REGION_SIZE = 40;
+
+    /** Number of writes performed by one thread. */
+    private static final int ITERATIONS = 500;
+
+    private void assertConcurrentAccess( final ConcurrentFileOperations ops )
+        throws Exception
+    {
+        final Throwable[] failures = new Throwable[ THREADS ];
+        final Thread[] threads = new Thread[ THREADS ];
+
+        ops.setLength( THREADS * REGION_SIZE );
+
+        for ( int i = 0; i < THREADS; i++ )
+        {
+            final int region = i;
+
+            threads[i] = new Thread()
+            {
+
+                public void run()
+                {
+                    try
+                    {
+                        final byte[] data = new byte[ REGION_SIZE ];
+                        final byte[] buf = new byte[ REGION_SIZE ];
+                        final long other =
+                            ( ( region + 1 ) % THREADS ) * REGION_SIZE;
+
+                        for ( int j = 1; j <= ITERATIONS; j++ )
+                        {
+                            for ( int k = 0; k < REGION_SIZE; k++ )
+                            {
+                                data[k] = (byte) j;
+                            }
+
+                            ops.setFilePointer( region * REGION_SIZE );
+                            ops.write( data, 0, REGION_SIZE );
+                            Assert.assertEquals(
+                                ( region + 1 ) * REGION_SIZE,
+                                ops.getFilePointer() );
+
+                            ops.setFilePointer( other );
+                            int totalRead = 0;
+                            do
+                            {
+                                totalRead += ops.read(
+                                    buf, totalRead, REGION_SIZE - totalRead );
+
+                            }
+                            while ( totalRead < REGION_SIZE );
+
+                            for ( int k = 1; k < REGION_SIZE; k++ )
+                            {
+                                Assert.assertEquals( buf[0], buf[k] );
+                            }
+                        }
+                    }
+                    catch ( Throwable t )
+                    {
+                        failures[region] = t;
+                    }
+                }
+
+            };
+
+            threads[i].start();
+        }
+
+        for ( int i = 0; i < THREADS; i++ )
+        {
+            threads[i].join();
+
+            if ( failures[i] != null )
+            {
+                throw new AssertionError( failures[i] );
+            }
+        }
+
+        final byte[] buf = new byte[ THREADS * REGION_SIZE ];
+        ops.setFilePointer( 0L );
+        Assert.assertEquals( buf.length, ops.read( buf, 0, buf.length ) );
+
+        for ( int i = 0; i < buf.length; i++ )
+        {
+            Assert.assertEquals( (byte) ITERATIONS, buf[i] );
+        }
+
+        ops.close();
+    }
+
+    //--------------------------------------------ConcurrentFileOperationsTest--
+    //--Object------------------------------------------------------------------
+
+    public void finalize()
+    {
+        if ( this.tmp != null && this.tmp.exists() )
+        {
+            this.tmp.delete();
+        }
+    }
+
+    //------------------------------------------------------------------Object--
+}
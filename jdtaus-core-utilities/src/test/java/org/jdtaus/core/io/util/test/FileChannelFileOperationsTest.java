@@ -0,0 +1,227 @@
+/*
+ *  jDTAUS Core Utilities
+ *  Copyright (C) 2005 Christian Schulte
+ *  <cs@schulte.it>
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+package org.jdtaus.core.io.util.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import junit.framework.Assert;
+import org.jdtaus.core.io.FileOperations;
+import org.jdtaus.core.io.util.FileChannelFileOperations;
+
+/**
+ * Testcase for {@code FileChannelFileOperations} implementations.
+ *
+ * @author <a href="mailto:cs@schulte.it">Christian Schulte</a>
+ * @version $JDTAUS$
+ */
+public class FileChannelFileOperationsTest extends VectoredFileOperationsTest
+{
+    //--FileOperationsTest------------------------------------------------------
+
+    /** Temporary random access file. */
+    private File tmp;
+
+    public FileOperations getFileOperations()
+    {
+        try
+        {
+            if ( this.tmp != null )
+            {
+                this.tmp.delete();
+            }
+
+            this.tmp = File.createTempFile( "jdtaus", "tmp" );
+            this.tmp.deleteOnExit();
+            return new FileChannelFileOperations(
+                new RandomAccessFile( this.tmp, "rw" ) );
+
+        }
+        catch ( IOException e )
+        {
+            throw new AssertionError( e );
+        }
+    }
+
+    //------------------------------------------------------FileOperationsTest--
+    //--TestCase----------------------------------------------------------------
+
+    protected void runTest() throws Throwable
+    {
+        super.runTest();
+        this.testStreaming();
+        this.testFileStreaming();
+        this.testZero();
+    }
+
+    //----------------------------------------------------------------TestCase--
+    //--FileChannelFileOperationsTest-------------------------------------------
+
+    /**
+     * Tests the {@link FileOperations#read(OutputStream)} and
+     * {@link FileOperations#write(InputStream)} methods.
+     * <p><ol>
+     * <li>Writes a testfile from an {@code InputStream} to the file, then reads
+     * the file contents into a {@code ByteArrayOutputStream} and checks
+     * that the read data matches the written data.</li>
+     * </ol></p>
+     */
+    public void testStreaming() throws Exception
+    {
+        final File testFile = File.createTempFile( "jdtaus", "tmp" );
+        final FileChannelFileOperations ops = new FileChannelFileOperations(
+            new RandomAccessFile( testFile, "rw" ) );
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        ops.write( this.getTestFile() );
+        ops.read( out );
+        out.close();
+        this.assertValidTestFile( new String( out.toByteArray(), "UTF-8" ) );
+        testFile.delete();
+    }
+
+    /**
+     * Tests the {@link FileOperations#read(OutputStream)} and
+     * {@link FileOperations#write(InputStream)} methods with file streams.
+     * <p><ol>
+     * <li>Writes the contents of a file from a {@code FileInputStream} to the
+     * file behind some data, then reads the file contents into a
+     * {@code FileOutputStream} behind some data and checks the file written
+     * to hold all data.</li>
+     * </ol></p>
+     */
+    public void testFileStreaming() throws Exception
+    {
+        final File testFile = File.createTempFile( "jdtaus", "tmp" );
+        final File source = File.createTempFile( "jdtaus", "tmp" );
+        final File target = File.createTempFile( "jdtaus", "tmp" );
+        final byte[] data = new byte[ 100000 ];
+
+        for ( int i = data.length - 1; i >= 0; i-- )
+        {
+            data[i] = (byte) i;
+        }
+
+        final FileOutputStream sourceOut = new FileOutputStream( source );
+        sourceOut.write( data );
+        sourceOut.close();
+
+        final FileChannelFileOperations ops = new FileChannelFileOperations(
+            new RandomAccessFile( testFile, "rw" ) );
+
+        ops.write( new byte[] { 1, 2, 3 }, 0, 3 );
+
+        final FileInputStream in = new FileInputStream( source );
+        ops.write( in );
+        in.close();
+        Assert.assertEquals( data.length + 3, ops.getLength() );
+        Assert.assertEquals( data.length + 3, ops.getFilePointer() );
+
+        final FileOutputStream out = new FileOutputStream( target );
+        out.write( new byte[] { 4, 5 } );
+        ops.read( out );
+        out.close();
+        ops.close();
+
+        final RandomAccessFile result = new RandomAccessFile( target, "r" );
+        final byte[] buf = new byte[ data.length + 5 ];
+        result.readFully( buf );
+        Assert.assertEquals( buf.length, result.length() );
+        result.close();
+
+        for ( int i = buf.length - 1; i >= 0; i-- )
+        {
+            Assert.assertEquals( i < 2 ? i + 4 : i < 5 ? i - 1 : data[i - 5],
+                                 buf[i] );
+
+        }
+
+        testFile.delete();
+        source.delete();
+        target.delete();
+    }
+
+    /**
+     * Tests the {@link FileChannelFileOperations#zero(long,long)} method.
+     * <p><ol>
+     * <li>Writes some data, zeros a range inside the file and a range
+     * extending the file with the file pointer beyond the end of the range
+     * and checks the data of the file and the file pointer not to have
+     * changed.</li>
+     * </ol></p>
+     */
+    public void testZero() throws Exception
+    {
+        final FileChannelFileOperations ops =
+            (FileChannelFileOperations) this.getFileOperations();
+
+        final byte[] data = new byte[ 100 ];
+        final byte[] buf = new byte[ 150 ];
+
+        for ( int i = data.length - 1; i >= 0; i-- )
+        {
+            data[i] = (byte) ( i + 1 );
+        }
+
+        ops.write( data, 0, data.length );
+        ops.setFilePointer( 1000L );
+        ops.zero( 10L, 20L );
+        ops.zero( 90L, buf.length - 90L );
+
+        Assert.assertEquals( buf.length, ops.getLength() );
+        Assert.assertEquals( 1000L, ops.getFilePointer() );
+
+        ops.setFilePointer( 0L );
+        int totalRead = 0;
+        do
+        {
+            totalRead += ops.read( buf, totalRead, buf.length - totalRead );
+        }
+        while ( totalRead < buf.length );
+
+        for ( int i = buf.length - 1; i >= 0; i-- )
+        {
+            Assert.assertEquals( ( i >= 10 && i < 30 ) || i >= 90
+                                 ? (byte) 0
+                                 : data[i], buf[i] );
+
+        }
+
+        ops.close();
+    }
+
+    //-------------------------------------------FileChannelFileOperationsTest--
+    //--Object------------------------------------------------------------------
+
+    public void finalize()
+    {
+        if ( this.tmp != null && this.tmp.exists() )
+        {
+            this.tmp.delete();
+        }
+    }
+
+    //------------------------------------------------------------------Object--
+}
@@ -0,0 +1,185 @@
+/*
+ *  jDTAUS Core Utilities
+ *  Copyright (C) 2005 Christian Schulte
+ *  <cs@schulte.it>
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+package org.jdtaus.core.io.util.test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import junit.framework.Assert;
+import org.jdtaus.core.io.StructuredFile;
+import org.jdtaus.core.io.it.StructuredFileTest;
+import org.jdtaus.core.io.util.IndirectStructuredFileOperations;
+import org.jdtaus.core.io.util.MemoryFileOperations;
+
+/**
+ * Testcase for {@code IndirectStructuredFileOperations} implementations.
+ *
+ * @author <a href="mailto:cs@schulte.it">Christian Schulte</a>
+ * @version $JDTAUS$
+ */
+public class IndirectStructuredFileOperationsTest extends StructuredFileTest
+{
+    //--StructuredFileTest------------------------------------------------------
+
+    /** {@code FileOperations} backing the {@code StructuredFile}. */
+    private final MemoryFileOperations memOps = new MemoryFileOperations();
+
+    /** {@code StructuredFile} implementation being tested. */
+    private IndirectStructuredFileOperations structuredFile;
+
+    protected byte[] getStructuredData()
+    {
+        try
+        {
+            this.structuredFile.compact();
+            this.structuredFile.flush();
+            return this.memOps.getData();
+
+        }
+        catch ( IOException e )
+        {
+            throw new AssertionError( e );
+        }
+    }
+
+    protected StructuredFile getStructuredFile()
+    {
+        try
+        {
+            if ( this.structuredFile == null )
+            {
+                this.structuredFile = new IndirectStructuredFileOperations(
+                    StructuredFileTest.BLOCK_SIZE, this.memOps );
+
+            }
+
+            return this.structuredFile;
+        }
+        catch ( IOException e )
+        {
+            throw new AssertionError( e );
+        }
+    }
+
+    //------------------------------------------------------StructuredFileTest--
+    //--TestCase----------------------------------------------------------------
+
+    protected void runTest() throws Throwable
+    {
+        super.runTest();
+        this.testIndirection();
+    }
+
+    //----------------------------------------------------------------TestCase--
+    //--Tests-------------------------------------------------------------------
+
+    /**
+     * Tests inserting and deleting blocks without moving any data and
+     * compacting the file afterwards.
+     */
+    public void testIndirection() throws Exception
+    {
+        final int blockSize = 3;
+        final Random random = new Random( 1L );
+        final MemoryFileOperations ops = new MemoryFileOperations();
+        final IndirectStructuredFileOperations file =
+            new IndirectStructuredFileOperations( blockSize, ops );
+
+        byte[] expected = new byte[ 0 ];
+
+        for ( int i = 0; i < 500; i++ )
+        {
+            final long blockCount = file.getBlockCount();
+
+            if ( blockCount == 0L || random.nextBoolean() )
+            {
+                final int index = random.nextInt( (int) blockCount + 1 );
+                final int count = random.nextInt( 10 ) + 1;
+                final long length = ops.getLength();
+                final byte[] data = new byte[ count * blockSize ];
+                final byte[] next = new byte[ expected.length + data.length ];
+
+                random.nextBytes( data );
+                file.insertBlocks( index, count );
+                for ( int j = 0; j < count; j++ )
+                {
+                    file.writeBlock( index + j, 0, data, j * blockSize,
+                                     blockSize );
+
+                }
+
+                Assert.assertEquals( length + data.length, ops.getLength() );
+
+                System.arraycopy( expected, 0, next, 0, index * blockSize );
+                System.arraycopy( data, 0, next, index * blockSize,
+                                  data.length );
+
+                System.arraycopy( expected, index * blockSize, next,
+                                  ( index + count ) * blockSize,
+                                  expected.length - index * blockSize );
+
+                expected = next;
+            }
+            else
+            {
+                final int index = random.nextInt( (int) blockCount );
+                final int count =
+                    random.nextInt( (int) Math.min( 10L, blockCount - index ) ) +
+                    1;
+
+                final byte[] next =
+                    new byte[ expected.length - count * blockSize ];
+
+                file.deleteBlocks( index, count );
+
+                System.arraycopy( expected, 0, next, 0, index * blockSize );
+                System.arraycopy( expected, ( index + count ) * blockSize,
+                                  next, index * blockSize,
+                                  next.length - index * blockSize );
+
+                expected = next;
+            }
+
+            Assert.assertEquals( expected.length / blockSize,
+                                 file.getBlockCount() );
+
+            final byte[] read = new byte[ expected.length ];
+            for ( int j = 0; j < file.getBlockCount(); j++ )
+            {
+                file.readBlock( j, 0, read, j * blockSize, blockSize );
+            }
+
+            Assert.assertTrue( Arrays.equals( expected, read ) );
+
+            if ( i % 50 == 49 )
+            {
+                file.compact();
+                Assert.assertTrue( file.getExtentCount() <= 1 );
+                Assert.assertTrue( Arrays.equals( expected, ops.getData() ) );
+            }
+        }
+
+        file.close();
+        Assert.assertTrue( Arrays.equals( expected, ops.getData() ) );
+    }
+
+    //-------------------------------------------------------------------Tests--
+}
@@ -0,0 +1,169 @@
+/*
+ *  jDTAUS Core Utilities
+ *  Copyright (C) 2005 Christian Schulte
+ *  <cs@schulte.it>
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+package org.jdtaus.core.io.util.test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import junit.framework.Assert;
+import org.jdtaus.core.io.FileOperations;
+import org.jdtaus.core.io.util.InstrumentedFileOperations;
+import org.jdtaus.core.io.util.MemoryFileOperations;
+import org.jdtaus.core.io.util.ReadAheadFileOperations;
+
+/**
+ * Testcase for {@code InstrumentedFileOperations} implementations.
+ *
+ * @author <a href="mailto:cs@schulte.it">Christian Schulte</a>
+ * @version $JDTAUS$
+ */
+public class InstrumentedFileOperationsTest extends VectoredFileOperationsTest
+{
+    //--FileOperationsTest------------------------------------------------------
+
+    public FileOperations getFileOperations()
+    {
+        try
+        {
+            return new InstrumentedFileOperations(
+                new MemoryFileOperations() );
+
+        }
+        catch ( IOException e )
+        {
+            throw new AssertionError( e );
+        }
+    }
+
+    //------------------------------------------------------FileOperationsTest--
+    //--TestCase----------------------------------------------------------------
+
+    protected void runTest() throws Throwable
+    {
+        super.runTest();
+        this.testStatistics();
+        this.testCacheStatistics();
+    }
+
+    //----------------------------------------------------------------TestCase--
+    //--Tests-------------------------------------------------------------------
+
+    /**
+     * Tests the statistics collected by an instance.
+     * <p><ol>
+     * <li>Writes and reads sequentially and at different positions and checks
+     * the number of operations, bytes and seeks.</li>
+     * <li>Resets the statistics and checks all statistics to be zero.</li>
+     * </ol></p>
+     */
+    public void testStatistics() throws Exception
+    {
+        final InstrumentedFileOperations ops =
+            (InstrumentedFileOperations) this.getFileOperations();
+
+        final byte[] data = "ABCDEFGHIJ".getBytes( "US-ASCII" );
+        final byte[] buf = new byte[ data.length ];
+
+        ops.write( data, 0, data.length );
+        ops.write( data, 0, data.length );
+        ops.setFilePointer( 0L );
+        Assert.assertEquals( 5, ops.read( buf, 0, 5 ) );
+        ops.setFilePointer( 15L );
+        Assert.assertEquals( 5, ops.read( ByteBuffer.wrap( buf ) ) );
+        Assert.assertEquals( FileOperations.EOF, ops.read( buf, 0, 1 ) );
+        ops.write( new long[] { 2L }, new byte[][] { data },
+                   new int[] { 0 }, new int[] { 3 }, 1 );
+
+        Assert.assertEquals( 3L, ops.getWriteCount() );
+        Assert.assertEquals( 3L, ops.getReadCount() );
+        Assert.assertEquals( 23L, ops.getBytesWritten() );
+        Assert.assertEquals( 10L, ops.getBytesRead() );
+        Assert.assertEquals( 3L, ops.getSeekCount() );
+        Assert.assertEquals( 20L + 10L + 18L, ops.getSeekDistance() );
+
+        long operations = 0L;
+        final long[] latencies = ops.getReadLatencies();
+        for ( int i = latencies.length - 1; i >= 0; i-- )
+        {
+            operations += latencies[i];
+        }
+
+        Assert.assertEquals( 3L, operations );
+        Assert.assertEquals( 0L, ops.getCacheHits() );
+        Assert.assertEquals( 0.0D, ops.getCacheHitRatio(), 0.0D );
+
+        ops.resetStatistics();
+        Assert.assertEquals( 0L, ops.getWriteCount() );
+        Assert.assertEquals( 0L, ops.getReadCount() );
+        Assert.assertEquals( 0L, ops.getBytesWritten() );
+        Assert.assertEquals( 0L, ops.getBytesRead() );
+        Assert.assertEquals( 0L, ops.getSeekCount() );
+        Assert.assertEquals( 0L, ops.getSeekDistance() );
+        Assert.assertEquals( 0L, ops.getWriteLatencies()[0] );
+
+        ops.close();
+    }
+
+    /**
+     * Tests the cache statistics reported by an instance backed by a cache.
+     * <p><ol>
+     * <li>Reads a file sequentially using a read-ahead cache and checks the
+     * number of cache hits and misses.</li>
+     * <li>Resets the statistics and checks the cache statistics to be zero
+     * although the cache still reports its own statistics.</li>
+     * </ol></p>
+     */
+    public void testCacheStatistics() throws Exception
+    {
+        final ReadAheadFileOperations cache = new ReadAheadFileOperations(
+            new MemoryFileOperations(), 16 );
+
+        final InstrumentedFileOperations ops =
+            new InstrumentedFileOperations( cache );
+
+        final byte[] data = new byte[ 64 ];
+        final byte[] buf = new byte[ 1 ];
+
+        ops.write( data, 0, data.length );
+        ops.setFilePointer( 0L );
+        for ( int i = 0; i < data.length; i++ )
+        {
+            Assert.assertEquals( 1, ops.read( buf, 0, buf.length ) );
+        }
+
+        Assert.assertEquals( cache.getCacheHits(), ops.getCacheHits() );
+        Assert.assertEquals( cache.getCacheMisses(), ops.getCacheMisses() );
+        Assert.assertEquals( 64L, ops.getCacheHits() + ops.getCacheMisses() );
+        Assert.assertTrue( ops.getCacheMisses() > 0L );
+        Assert.assertTrue( ops.getCacheHitRatio() > 0.5D );
+        Assert.assertTrue( ops.getCacheEvictions() > 0L );
+
+        ops.resetStatistics();
+        Assert.assertEquals( 0L, ops.getCacheHits() );
+        Assert.assertEquals( 0L, ops.getCacheMisses() );
+        Assert.assertEquals( 0L, ops.getCacheEvictions() );
+        Assert.assertEquals( 0.0D, ops.getCacheHitRatio(), 0.0D );
+        Assert.assertTrue( cache.getCacheHits() > 0L );
+
+        ops.close();
+    }
+
+    //-------------------------------------------------------------------Tests--
+}
@@ -0,0 +1,157 @@
+/*
+ *  jDTAUS Core Utilities
+ *  Copyright (C) 2005 Christian Schulte
+ *  <cs@schulte.it>
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+package org.jdtaus.core.io.util.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import junit.framework.Assert;
+import org.jdtaus.core.io.FileOperations;
+import org.jdtaus.core.io.util.MappedFileOperations;
+
+/**
+ * Testcase for {@code MappedFileOperations} implementations.
+ *
+ * @author <a href="mailto:cs@schulte.it">Christian Schulte</a>
+ * @version $JDTAUS$
+ */
+public class MappedFileOperationsTest extends ByteBufferFileOperationsTest
+{
+    //--FileOperationsTest------------------------------------------------------
+
+    /** Temporary random access file. */
+    private File tmp;
+
+    public FileOperations getFileOperations()
+    {
+        try
+        {
+            if ( this.tmp != null )
+            {
+                this.tmp.delete();
+            }
+
+            this.tmp = File.createTempFile( "jdtaus", "tmp" );
+            this.tmp.deleteOnExit();
+            return new MappedFileOperations(
+                new RandomAccessFile( this.tmp, "rw" ) );
+
+        }
+        catch ( IOException e )
+        {
+            throw new AssertionError( e );
+        }
+    }
+
+    //------------------------------------------------------FileOperationsTest--
+    //--TestCase----------------------------------------------------------------
+
+    protected void runTest() throws Throwable
+    {
+        super.runTest();
+        this.testStreaming();
+        this.testGrowth();
+    }
+
+    //----------------------------------------------------------------TestCase--
+    //--MappedFileOperationsTest------------------------------------------------
+
+    /**
+     * Tests the {@link FileOperations#read(OutputStream)} and
+     * {@link FileOperations#write(InputStream)} methods.
+     * <p><ol>
+     * <li>Writes a testfile from an {@code InputStream} to the file, then reads
+     * the file contents into a {@code ByteArrayOutputStream} and checks
+     * that the read data matches the written data.</li>
+     * </ol></p>
+     */
+    public void testStreaming() throws Exception
+    {
+        final File testFile = File.createTempFile( "jdtaus", "tmp" );
+        final MappedFileOperations ops = new MappedFileOperations(
+            new RandomAccessFile( testFile, "rw" ) );
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        ops.write( this.getTestFile() );
+        ops.read( out );
+        out.close();
+        this.assertValidTestFile( new String( out.toByteArray(), "UTF-8" ) );
+        testFile.delete();
+    }
+
+    /**
+     * Tests files to grow in steps of the window size and to be trimmed on
+     * close.
+     * <p><ol>
+     * <li>Appends data byte by byte and checks the backing file to grow in
+     * steps of the window size while the length of the file matches the data
+     * written.</li>
+     * <li>Truncates the file and checks the data to end at the new
+     * length.</li>
+     * <li>Closes the instance and checks the backing file to have been trimmed
+     * to the length of the file.</li>
+     * </ol></p>
+     */
+    public void testGrowth() throws Exception
+    {
+        final File testFile = File.createTempFile( "jdtaus", "tmp" );
+        final RandomAccessFile file = new RandomAccessFile( testFile, "rw" );
+        final MappedFileOperations ops = new MappedFileOperations( file, 64 );
+        final byte[] buf = new byte[ 100 ];
+
+        for ( int i = 0; i < buf.length; i++ )
+        {
+            ops.write( new byte[] { (byte) ( i + 1 ) }, 0, 1 );
+            Assert.assertEquals( i + 1, ops.getLength() );
+            Assert.assertEquals( i < 64 ? 64L : 128L, file.length() );
+        }
+
+        ops.setLength( 70L );
+        ops.setFilePointer( 0L );
+        Assert.assertEquals( 70, ops.read( buf, 0, buf.length ) );
+        Assert.assertEquals( FileOperations.EOF,
+                             ops.read( buf, 0, buf.length ) );
+
+        for ( int i = 69; i >= 0; i-- )
+        {
+            Assert.assertEquals( (byte) ( i + 1 ), buf[i] );
+        }
+
+        ops.close();
+        Assert.assertEquals( 70L, testFile.length() );
+        testFile.delete();
+    }
+
+    //------------------------------------------------MappedFileOperationsTest--
+    //--Object------------------------------------------------------------------
+
+    public void finalize()
+    {
+        if ( this.tmp != null && this.tmp.exists() )
+        {
+            this.tmp.delete();
+        }
+    }
+
+    //------------------------------------------------------------------Object--
+}
@@ -20,9 +20,12 @@
  */
 package org.jdtaus.core.io.util.test;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import junit.framework.Assert;
 import org.jdtaus.core.io.FileOperations;
-import org.jdtaus.core.io.it.FileOperationsTest;
 import org.jdtaus.core.io.util.MemoryFileOperations;
 
 /**
@@ -31,7 +34,7 @@ import org.jdtaus.core.io.util.MemoryFileOperations;
  * @author <a href="mailto:cs@schulte.it">Christian Schulte</a>
  * @version $JDTAUS$
  */
-public class MemoryFileOperationsTest extends FileOperationsTest
+public class MemoryFileOperationsTest extends ByteBufferFileOperationsTest
 {
     //--FileOperationsTest------------------------------------------------------
 
@@ -47,6 +50,7 @@ public class MemoryFileOperationsTest extends FileOperationsTest
     {
         super.runTest();
         this.testStreaming();
+        this.testSerialization();
     }
 
     //----------------------------------------------------------------TestCase--
@@ -73,5 +77,60 @@ public class MemoryFileOperationsTest extends FileOperationsTest
         this.assertValidTestFile( new String( out.toByteArray(), "UTF-8" ) );
     }
 
+    /**
+     * Tests serializing and deserializing instances.
+     * <p><ol>
+     * <li>Deserializes an instance serialized by version 1.0 holding
+     * {@code ABC} with the file pointer at {@code 1} and checks its
+     * state.</li>
+     * <li>Serializes and deserializes an instance and checks its state.</li>
+     * </ol></p>
+     */
+    public void testSerialization() throws Exception
+    {
+        ObjectInputStream in = new ObjectInputStream(
+            new ByteArrayInputStream( SERIALIZED_1_0 ) );
+
+        MemoryFileOperations ops = (MemoryFileOperations) in.readObject();
+        in.close();
+
+        Assert.assertEquals( 3L, ops.getLength() );
+        Assert.assertEquals( 1L, ops.getFilePointer() );
+        Assert.assertEquals( "ABC", new String( ops.getData(), "US-ASCII" ) );
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final ObjectOutputStream out = new ObjectOutputStream( bytes );
+
+        ops.setFilePointer( 3L );
+        ops.write( "DE".getBytes( "US-ASCII" ), 0, 2 );
+        out.writeObject( ops );
+        out.close();
+
+        in = new ObjectInputStream(
+            new ByteArrayInputStream( bytes.toByteArray() ) );
+
+        ops = (MemoryFileOperations) in.readObject();
+        in.close();
+
+        Assert.assertEquals( 5L, ops.getLength() );
+        Assert.assertEquals( 5L, ops.getFilePointer() );
+        Assert.assertEquals( "ABCDE", new String( ops.getData(), "US-ASCII" ) );
+    }
+
+    /** Instance holding {@code ABC} serialized by version 1.0. */
+    private static final byte[] SERIALIZED_1_0 =
+    {
+        -84, -19, 0, 5, 115, 114, 0, 44, 111, 114, 103, 46, 106, 100, 116, 97,
+        117, 115, 46, 99, 111, 114, 101, 46, 105, 111, 46, 117, 116, 105, 108,
+        46, 77, 101, 109, 111, 114, 121, 70, 105, 108, 101, 79, 112, 101, 114,
+        97, 116, 105, 111, 110, 115, -72, -89, -84, 6, 75, -119, 98, -96, 2,
+        0, 4, 74, 0, 11, 102, 105, 108, 101, 80, 111, 105, 110, 116, 101, 114,
+        73, 0, 6, 108, 101, 110, 103, 116, 104, 91, 0, 4, 100, 97, 116, 97,
+        116, 0, 2, 91, 66, 91, 0, 13, 100, 101, 102, 97, 117, 108, 116, 66,
+        117, 102, 102, 101, 114, 113, 0, 126, 0, 1, 120, 112, 0, 0, 0, 0, 0,
+        0, 0, 1, 0, 0, 0, 3, 117, 114, 0, 2, 91, 66, -84, -13, 23, -8, 6, 8,
+        84, -32, 2, 0, 0, 120, 112, 0, 0, 0, 3, 65, 66, 67, 112
+    };
+
     //------------------------------------------------MemoryFileOperationsTest--
 }
@@ -24,8 +24,8 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import junit.framework.Assert;
 import org.jdtaus.core.io.FileOperations;
-import org.jdtaus.core.io.it.FileOperationsTest;
 import org.jdtaus.core.io.util.RandomAccessFileOperations;
 
 /**
@@ -34,7 +34,7 @@ import org.jdtaus.core.io.util.RandomAccessFileOperations;
  * @author <a href="mailto:cs@schulte.it">Christian Schulte</a>
  * @version $JDTAUS$
  */
-public class RandomAccessFileOperationsTest extends FileOperationsTest
+public class RandomAccessFileOperationsTest extends VectoredFileOperationsTest
 {
     //--FileOperationsTest------------------------------------------------------
 
@@ -69,6 +69,7 @@ public class RandomAccessFileOperationsTest extends FileOperationsTest
     {
         super.runTest();
         this.testStreaming();
+        this.testZero();
     }
 
     //----------------------------------------------------------------TestCase--
@@ -98,6 +99,60 @@ public class RandomAccessFileOperationsTest extends FileOperationsTest
         testFile.delete();
     }
 
+    /**
+     * Tests the {@link RandomAccessFileOperations#zero(long,long)} method.
+     * <p><ol>
+     * <li>Writes some data, zeros a range inside the file and a range
+     * extending the file and checks the data of the file and the file pointer
+     * not to have changed.</li>
+     * <li>Zeros a range extending the file with the file pointer beyond the
+     * end of the range and checks the file pointer not to have changed.</li>
+     * </ol></p>
+     */
+    public void testZero() throws Exception
+    {
+        final RandomAccessFileOperations ops =
+            (RandomAccessFileOperations) this.getFileOperations();
+
+        final byte[] data = new byte[ 100 ];
+        final byte[] buf = new byte[ 200000 ];
+
+        for ( int i = data.length - 1; i >= 0; i-- )
+        {
+            data[i] = (byte) ( i + 1 );
+        }
+
+        ops.write( data, 0, data.length );
+        ops.zero( 10L, 20L );
+        ops.zero( 90L, buf.length - 90L );
+
+        Assert.assertEquals( buf.length, ops.getLength() );
+        Assert.assertEquals( data.length, ops.getFilePointer() );
+
+        ops.setFilePointer( 0L );
+        int totalRead = 0;
+        do
+        {
+            totalRead += ops.read( buf, totalRead, buf.length - totalRead );
+        }
+        while ( totalRead < buf.length );
+
+        for ( int i = buf.length - 1; i >= 0; i-- )
+        {
+            Assert.assertEquals( ( i >= 10 && i < 30 ) || i >= 90
+                                 ? (byte) 0
+                                 : data[i], buf[i] );
+
+        }
+
+        ops.setFilePointer( 300000L );
+        ops.zero( buf.length, 100L );
+        Assert.assertEquals( buf.length + 100L, ops.getLength() );
+        Assert.assertEquals( 300000L, ops.getFilePointer() );
+
+        ops.close();
+    }
+
     //------------------------------------------RandomAccessFileOperationsTest--
     //--Object------------------------------------------------------------------
 
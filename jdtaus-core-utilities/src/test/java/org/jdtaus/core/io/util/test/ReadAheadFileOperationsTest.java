@@ -55,6 +55,7 @@ public class ReadAheadFileOperationsTest extends FlushableFileOperationsTest
     {
         super.runTest();
         this.testWriteUpdatesCache();
+        this.testScans();
     }
 
     //----------------------------------------------------------------TestCase--
@@ -124,5 +125,76 @@ public class ReadAheadFileOperationsTest extends FlushableFileOperationsTest
         ops.setLength( 0L );
     }
 
+    /**
+     * Tests reading a file in forward, backward and random order.
+     * <p><ol>
+     * <li>Writes a file larger than the cache, then reads the file in small
+     * chunks from the end to the beginning and checks the data read.</li>
+     * <li>Reads the file in small chunks from the beginning to the end and
+     * checks the data read.</li>
+     * <li>Reads chunks at random positions and checks the data read.</li>
+     * </ol></p>
+     */
+    public void testScans() throws Exception
+    {
+        final ReadAheadFileOperations ops = new ReadAheadFileOperations(
+            this.getMemoryFileOperations(), 256 );
+
+        final byte[] data = new byte[ 4099 ];
+        final byte[] buf = new byte[ 7 ];
+
+        for ( int i = data.length - 1; i >= 0; i-- )
+        {
+            data[i] = ( byte ) ( i % 251 );
+        }
+
+        ops.setLength( 0L );
+        ops.write( data, 0, data.length );
+
+        for ( int pos = data.length - buf.length; pos > -buf.length;
+              pos -= buf.length )
+        {
+            final int start = pos < 0 ? 0 : pos;
+            this.assertRead( ops, data, buf, start, pos + buf.length - start );
+        }
+
+        for ( int pos = 0; pos < data.length; pos += buf.length )
+        {
+            this.assertRead( ops, data, buf, pos,
+                             pos + buf.length > data.length
+                             ? data.length - pos
+                             : buf.length );
+
+        }
+
+        for ( int i = 0; i < 100; i++ )
+        {
+            this.assertRead( ops, data, buf, ( i * 2897 ) % 4092, buf.length );
+        }
+
+        ops.setLength( 0L );
+    }
+
+    private void assertRead( final FileOperations ops, final byte[] data,
+                             final byte[] buf, final int pos, final int len )
+        throws IOException
+    {
+        int totalRead = 0;
+        ops.setFilePointer( pos );
+
+        do
+        {
+            final int read = ops.read( buf, totalRead, len - totalRead );
+            assert read != -1;
+            totalRead += read;
+        }
+        while ( totalRead < len );
+
+        for ( int i = len - 1; i >= 0; i-- )
+        {
+            Assert.assertEquals( data[pos + i], buf[i] );
+        }
+    }
+
     //---------------------------------------------ReadAheadFileOperationsTest--
 }
@@ -0,0 +1,142 @@
+/*
+ *  jDTAUS Core Utilities
+ *  Copyright (C) 2005 Christian Schulte
+ *  <cs@schulte.it>
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+package org.jdtaus.core.io.util.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import junit.framework.Assert;
+import org.jdtaus.core.io.FileOperations;
+import org.jdtaus.core.io.util.SegmentedMemoryFileOperations;
+
+/**
+ * Testcase for {@code SegmentedMemoryFileOperations} implementations.
+ *
+ * @author <a href="mailto:cs@schulte.it">Christian Schulte</a>
+ * @version $JDTAUS$
+ */
+public class SegmentedMemoryFileOperationsTest
+    extends ByteBufferFileOperationsTest
+{
+    //--FileOperationsTest------------------------------------------------------
+
+    public FileOperations getFileOperations()
+    {
+        return new SegmentedMemoryFileOperations( 7, true );
+    }
+
+    //------------------------------------------------------FileOperationsTest--
+    //--TestCase----------------------------------------------------------------
+
+    protected void runTest() throws Throwable
+    {
+        super.runTest();
+        this.testStreaming();
+        this.testSegments();
+    }
+
+    //----------------------------------------------------------------TestCase--
+    //--SegmentedMemoryFileOperationsTest---------------------------------------
+
+    /**
+     * Tests the {@link FileOperations#read(OutputStream)} and
+     * {@link FileOperations#write(InputStream)} methods.
+     * <p><ol>
+     * <li>Writes a testfile from an {@code InputStream} to the file, then reads
+     * the file contents into a {@code ByteArrayOutputStream} and checks
+     * that the read data matches the written data.</li>
+     * </ol></p>
+     */
+    public void testStreaming() throws Exception
+    {
+        final SegmentedMemoryFileOperations ops =
+            new SegmentedMemoryFileOperations();
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        ops.write( this.getTestFile() );
+        ops.read( out );
+        out.close();
+        this.assertValidTestFile( new String( out.toByteArray(), "UTF-8" ) );
+        ops.close();
+    }
+
+    /**
+     * Tests growing and truncating the file.
+     * <p><ol>
+     * <li>Writes data spanning multiple segments and checks the capacity to
+     * have been increased by whole segments.</li>
+     * <li>Truncates the file to the middle of a segment, increases the length
+     * again and checks the data beyond the truncated length to read as
+     * zero.</li>
+     * <li>Sets the length to a value the maximum number of segments cannot
+     * hold and checks an {@code IllegalArgumentException} to be thrown.</li>
+     * <li>Closes the instance and checks an {@code IOException} to be thrown
+     * when using it afterwards.</li>
+     * </ol></p>
+     */
+    public void testSegments() throws Exception
+    {
+        final SegmentedMemoryFileOperations ops =
+            new SegmentedMemoryFileOperations( 4, false );
+
+        final byte[] data = "ABCDEFGHIJ".getBytes( "US-ASCII" );
+        final byte[] buf = new byte[ 10 ];
+
+        ops.write( data, 0, data.length );
+        Assert.assertEquals( 10L, ops.getLength() );
+        Assert.assertEquals( 12L, ops.getCapacity() );
+
+        ops.setLength( 5L );
+        Assert.assertEquals( 8L, ops.getCapacity() );
+        ops.setLength( 10L );
+        ops.setFilePointer( 0L );
+        Assert.assertEquals( 10, ops.read( buf, 0, buf.length ) );
+        Assert.assertEquals( "ABCDE\0\0\0\0\0", new String( buf, "US-ASCII" ) );
+
+        try
+        {
+            new SegmentedMemoryFileOperations( 1, false ).
+                setLength( Integer.MAX_VALUE + 1L );
+
+            throw new AssertionError();
+        }
+        catch ( final IllegalArgumentException e )
+        {
+            Assert.assertNotNull( e.getMessage() );
+            System.out.println( e.toString() );
+        }
+
+        ops.close();
+
+        try
+        {
+            ops.getLength();
+            throw new AssertionError();
+        }
+        catch ( final IOException e )
+        {
+            Assert.assertNotNull( e.getMessage() );
+            System.out.println( e.toString() );
+        }
+    }
+
+    //---------------------------------------SegmentedMemoryFileOperationsTest--
+}
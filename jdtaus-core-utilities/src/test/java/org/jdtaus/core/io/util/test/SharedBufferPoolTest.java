@@ -0,0 +1,161 @@
+/*
+ *  jDTAUS Core Utilities
+ *  Copyright (C) 2005 Christian Schulte
+ *  <cs@schulte.it>
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+package org.jdtaus.core.io.util.test;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import org.jdtaus.core.io.util.SharedBufferPool;
+
+/**
+ * Testcase for {@code SharedBufferPool} implementations.
+ *
+ * @author <a href="mailto:cs@schulte.it">Christian Schulte</a>
+ * @version $JDTAUS$
+ */
+public class SharedBufferPoolTest extends TestCase
+{
+    //--Tests-------------------------------------------------------------------
+
+    /**
+     * Tests buffers to be rounded up to size classes and to be reused after
+     * they have been returned.
+     */
+    public void testSizeClasses() throws Exception
+    {
+        final SharedBufferPool pool = new SharedBufferPool( 1000, 8192, 65536 );
+
+        Assert.assertEquals( 1024, pool.getMinimumBufferSize() );
+        Assert.assertEquals( 8192, pool.getMaximumBufferSize() );
+        Assert.assertEquals( 65536, pool.getMaximumMemory() );
+
+        final byte[] small = pool.borrowBuffer( 0 );
+        final byte[] medium = pool.borrowBuffer( 1025 );
+        final byte[] large = pool.borrowBuffer( 8192 );
+        final byte[] oversized = pool.borrowBuffer( 8193 );
+
+        Assert.assertEquals( 1024, small.length );
+        Assert.assertEquals( 2048, medium.length );
+        Assert.assertEquals( 8192, large.length );
+        Assert.assertEquals( 8193, oversized.length );
+        Assert.assertEquals( 4, pool.getBorrowedBuffers() );
+        Assert.assertEquals( 0L, pool.getPoolHits() );
+        Assert.assertEquals( 4L, pool.getPoolMisses() );
+
+        pool.returnBuffer( small );
+        pool.returnBuffer( medium );
+        pool.returnBuffer( large );
+        pool.returnBuffer( oversized );
+
+        Assert.assertEquals( 0, pool.getBorrowedBuffers() );
+        Assert.assertEquals( 3, pool.getRetainedBuffers() );
+        Assert.assertEquals( 1024L + 2048L + 8192L, pool.getRetainedMemory() );
+        Assert.assertEquals( 1L, pool.getDiscardedBuffers() );
+
+        Assert.assertSame( medium, pool.borrowBuffer( 2000 ) );
+        Assert.assertSame( small, pool.borrowBuffer( 1 ) );
+        Assert.assertTrue( medium != pool.borrowBuffer( 2048 ) );
+        Assert.assertEquals( 2L, pool.getPoolHits() );
+        Assert.assertEquals( 5L, pool.getPoolMisses() );
+        Assert.assertEquals( 1, pool.getRetainedBuffers() );
+        Assert.assertEquals( 8192L, pool.getRetainedMemory() );
+
+        pool.clear();
+        Assert.assertEquals( 0, pool.getRetainedBuffers() );
+        Assert.assertEquals( 0L, pool.getRetainedMemory() );
+        Assert.assertEquals( 2L, pool.getDiscardedBuffers() );
+    }
+
+    /**
+     * Tests the memory held by retained buffers not to exceed the maximum
+     * amount of memory.
+     */
+    public void testMaximumMemory() throws Exception
+    {
+        final SharedBufferPool pool = new SharedBufferPool( 1024, 4096, 10000 );
+        final byte[][] buffers = new byte[ 5 ][];
+
+        for ( int i = buffers.length - 1; i >= 0; i-- )
+        {
+            buffers[i] = pool.borrowBuffer( 4096 );
+        }
+        for ( int i = buffers.length - 1; i >= 0; i-- )
+        {
+            pool.returnBuffer( buffers[i] );
+            Assert.assertTrue( pool.getRetainedMemory() <= 10000L );
+        }
+
+        Assert.assertEquals( 2, pool.getRetainedBuffers() );
+        Assert.assertEquals( 8192L, pool.getRetainedMemory() );
+        Assert.assertEquals( 3L, pool.getDiscardedBuffers() );
+
+        // Buffers of other sizes are not retained beyond the limit either.
+        pool.returnBuffer( pool.borrowBuffer( 2048 ) );
+        Assert.assertEquals( 2, pool.getRetainedBuffers() );
+        pool.returnBuffer( pool.borrowBuffer( 1024 ) );
+        Assert.assertEquals( 3, pool.getRetainedBuffers() );
+        Assert.assertEquals( 9216L, pool.getRetainedMemory() );
+    }
+
+    /**
+     * Tests the default instance to be shared and illegal arguments to be
+     * rejected.
+     */
+    public void testIllegalArguments() throws Exception
+    {
+        Assert.assertSame( SharedBufferPool.getDefault(),
+                           SharedBufferPool.getDefault() );
+
+        try
+        {
+            new SharedBufferPool( -1, 0, 0 );
+            throw new AssertionError();
+        }
+        catch ( final IllegalArgumentException e )
+        {
+            Assert.assertNotNull( e.getMessage() );
+            System.out.println( e.toString() );
+        }
+
+        try
+        {
+            SharedBufferPool.getDefault().borrowBuffer( -1 );
+            throw new AssertionError();
+        }
+        catch ( final IllegalArgumentException e )
+        {
+            Assert.assertNotNull( e.getMessage() );
+            System.out.println( e.toString() );
+        }
+
+        try
+        {
+            SharedBufferPool.getDefault().returnBuffer( null );
+            throw new AssertionError();
+        }
+        catch ( final NullPointerException e )
+        {
+            Assert.assertNotNull( e.getMessage() );
+            System.out.println( e.toString() );
+        }
+    }
+
+    //-------------------------------------------------------------------Tests--
+}
@@ -0,0 +1,267 @@
+/*
+ *  jDTAUS Core Utilities
+ *  Copyright (C) 2005 Christian Schulte
+ *  <cs@schulte.it>
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+package org.jdtaus.core.io.util.test;
+
+import java.io.IOException;
+import junit.framework.Assert;
+import org.jdtaus.core.io.FileOperations;
+import org.jdtaus.core.io.util.MemoryFileOperations;
+import org.jdtaus.core.io.util.SharedBlockCache;
+import org.jdtaus.core.io.util.SharedCachingFileOperations;
+
+/**
+ * Testcase for {@code SharedCachingFileOperations} implementations.
+ *
+ * @author <a href="mailto:cs@schulte.it">Christian Schulte</a>
+ * @version $JDTAUS$
+ */
+public class SharedCachingFileOperationsTest
+    extends FlushableFileOperationsTest
+{
+    //--FileOperationsTest------------------------------------------------------
+
+    /** Cache shared by the instances tested. */
+    private SharedBlockCache cache;
+
+    public FileOperations getFileOperations()
+    {
+        try
+        {
+            if ( this.cache == null )
+            {
+                this.cache = new SharedBlockCache( 16, 256, null );
+            }
+
+            return new SharedCachingFileOperations(
+                this.getMemoryFileOperations(), this.cache );
+
+        }
+        catch ( IOException e )
+        {
+            throw new AssertionError( e );
+        }
+    }
+
+    //------------------------------------------------------FileOperationsTest--
+    //--TestCase----------------------------------------------------------------
+
+    protected void runTest() throws Throwable
+    {
+        super.runTest();
+        this.testWriteUpdatesCache();
+        this.testSharedCache();
+        this.testIllegalFilePointer();
+    }
+
+    //----------------------------------------------------------------TestCase--
+    //--Tests-------------------------------------------------------------------
+
+    /**
+     * Tests writes to update cached blocks.
+     * <p><ol>
+     * <li>Writes and reads a file so that all its blocks are cached.</li>
+     * <li>Overwrites single bytes, extends the file leaving a gap and
+     * truncates the file checking the data read after each change.</li>
+     * </ol></p>
+     */
+    public void testWriteUpdatesCache() throws Exception
+    {
+        final SharedCachingFileOperations ops =
+            new SharedCachingFileOperations( new MemoryFileOperations(),
+                                             new SharedBlockCache( 16, 1024,
+                                                                   null ) );
+
+        final byte[] data = new byte[ 100 ];
+
+        for ( int i = data.length - 1; i >= 0; i-- )
+        {
+            data[i] = (byte) i;
+        }
+
+        ops.write( data, 0, 40 );
+        this.assertData( ops, data, 40 );
+        Assert.assertEquals( 3, ops.getCachedBlocks() );
+
+        data[5] = (byte) -1;
+        data[33] = (byte) -2;
+        ops.setFilePointer( 5L );
+        ops.write( data, 5, 1 );
+        ops.setFilePointer( 33L );
+        ops.write( data, 33, 1 );
+        this.assertData( ops, data, 40 );
+
+        for ( int i = 40; i < 70; i++ )
+        {
+            data[i] = 0;
+        }
+
+        ops.setFilePointer( 70L );
+        ops.write( data, 70, 30 );
+        this.assertData( ops, data, 100 );
+
+        ops.setLength( 35L );
+        Assert.assertEquals( 2, ops.getCachedBlocks() );
+        this.assertData( ops, data, 35 );
+
+        final long hits = ops.getCacheHits();
+        this.assertData( ops, data, 35 );
+        Assert.assertTrue( ops.getCacheHits() > hits );
+
+        ops.close();
+        Assert.assertEquals( 0, ops.getCache().getCachedBlocks() );
+    }
+
+    /**
+     * Tests files sharing a cache.
+     * <p><ol>
+     * <li>Writes two files larger than the cache and reads them alternately
+     * checking the data read and the number of blocks held by the cache not
+     * to exceed its capacity.</li>
+     * <li>Checks the statistics of the files to add up to the statistics of
+     * the cache.</li>
+     * <li>Closes one file checking its blocks to be discarded.</li>
+     * </ol></p>
+     */
+    public void testSharedCache() throws Exception
+    {
+        final SharedBlockCache sharedCache =
+            new SharedBlockCache( 16, 128, null );
+
+        final SharedCachingFileOperations ops1 =
+            new SharedCachingFileOperations( new MemoryFileOperations(),
+                                             sharedCache );
+
+        final SharedCachingFileOperations ops2 =
+            new SharedCachingFileOperations( new MemoryFileOperations(),
+                                             sharedCache );
+
+        final byte[] data1 = new byte[ 200 ];
+        final byte[] data2 = new byte[ 150 ];
+
+        for ( int i = data1.length - 1; i >= 0; i-- )
+        {
+            data1[i] = (byte) ( i % 251 );
+        }
+        for ( int i = data2.length - 1; i >= 0; i-- )
+        {
+            data2[i] = (byte) ( 255 - i % 251 );
+        }
+
+        Assert.assertEquals( 8, sharedCache.getCapacity() );
+
+        ops1.write( data1, 0, data1.length );
+        ops2.write( data2, 0, data2.length );
+
+        for ( int i = 0; i < 5; i++ )
+        {
+            this.assertData( ops1, data1, data1.length );
+            this.assertData( ops2, data2, data2.length );
+            this.assertRead( ops2, data2, data2.length - 32, 32 );
+            Assert.assertTrue( sharedCache.getCachedBlocks() <=
+                               sharedCache.getCapacity() );
+
+        }
+
+        Assert.assertTrue( ops1.getCacheEvictions() > 0L );
+        Assert.assertTrue( ops2.getCacheHits() > 0L );
+        Assert.assertEquals( sharedCache.getCapacity(),
+                             sharedCache.getCachedBlocks() );
+
+        Assert.assertEquals( sharedCache.getCacheHits(),
+                             ops1.getCacheHits() + ops2.getCacheHits() );
+
+        Assert.assertEquals( sharedCache.getCacheMisses(),
+                             ops1.getCacheMisses() + ops2.getCacheMisses() );
+
+        Assert.assertEquals( sharedCache.getCacheEvictions(),
+                             ops1.getCacheEvictions() +
+                             ops2.getCacheEvictions() );
+
+        Assert.assertEquals( sharedCache.getCachedBlocks(),
+                             ops1.getCachedBlocks() + ops2.getCachedBlocks() );
+
+        ops2.close();
+        Assert.assertEquals( 0, ops2.getCache().getCachedBlocks() -
+                                ops1.getCachedBlocks() );
+
+        ops1.close();
+    }
+
+    /**
+     * Tests a negative file pointer to be rejected.
+     */
+    public void testIllegalFilePointer() throws Exception
+    {
+        final SharedCachingFileOperations ops =
+            new SharedCachingFileOperations( new MemoryFileOperations() );
+
+        try
+        {
+            ops.setFilePointer( -1L );
+            throw new AssertionError();
+        }
+        catch ( final IllegalArgumentException e )
+        {
+            Assert.assertNotNull( e.getMessage() );
+            System.out.println( e.toString() );
+        }
+
+        Assert.assertEquals( 0L, ops.getFilePointer() );
+        ops.close();
+    }
+
+    //-------------------------------------------------------------------Tests--
+    //--SharedCachingFileOperationsTest-----------------------------------------
+
+    private void assertData( final FileOperations ops, final byte[] data,
+                             final int len ) throws IOException
+    {
+        Assert.assertEquals( len, ops.getLength() );
+        this.assertRead( ops, data, 0, len );
+        Assert.assertEquals( FileOperations.EOF,
+                             ops.read( new byte[ 1 ], 0, 1 ) );
+
+    }
+
+    private void assertRead( final FileOperations ops, final byte[] data,
+                             final int pos, final int len ) throws IOException
+    {
+        final byte[] buf = new byte[ len ];
+        int totalRead = 0;
+
+        ops.setFilePointer( pos );
+
+        do
+        {
+            final int read = ops.read( buf, totalRead, len - totalRead );
+            assert read != FileOperations.EOF;
+            totalRead += read;
+        }
+        while ( totalRead < len );
+
+        for ( int i = len - 1; i >= 0; i-- )
+        {
+            Assert.assertEquals( data[pos + i], buf[i] );
+        }
+    }
+
+    //-----------------------------------------SharedCachingFileOperationsTest--
+}
@@ -0,0 +1,361 @@
+/*
+ *  jDTAUS Core Utilities
+ *  Copyright (C) 2005 Christian Schulte
+ *  <cs@schulte.it>
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+package org.jdtaus.core.io.util.test;
+
+import java.io.IOException;
+import java.util.Random;
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import org.jdtaus.core.io.StructuredFile;
+import org.jdtaus.core.io.util.FieldBlockKeyExtractor;
+import org.jdtaus.core.io.util.MemoryFileOperations;
+import org.jdtaus.core.io.util.StructuredFileIndex;
+import org.jdtaus.core.io.util.StructuredFileOperations;
+
+/**
+ * Testcase for {@code StructuredFileIndex} implementations.
+ *
+ * @author <a href="mailto:cs@schulte.it">Christian Schulte</a>
+ * @version $JDTAUS$
+ */
+public class StructuredFileIndexTest extends TestCase
+{
+    //--StructuredFileIndexTest-------------------------------------------------
+
+    /** Block size of the files used for testing. */
+    private static final int BLOCK_SIZE = 8;
+
+    /** Length of the key field at the start of each block. */
+    private static final int KEY_LENGTH = 2;
+
+    /**
+     * Creates a {@code StructuredFile} holding blocks with keys.
+     *
+     * @param blockCount the number of blocks to create.
+     * @param sorted {@code true} to create blocks sorted by key with each key
+     * held by three consecutive blocks; {@code false} to create blocks with
+     * random keys.
+     * @param random the random number generator to use.
+     *
+     * @return a new {@code StructuredFile} holding test data.
+     */
+    private StructuredFile getStructuredFile( final int blockCount,
+                                              final boolean sorted,
+                                              final Random random )
+        throws IOException
+    {
+        final StructuredFile file = new StructuredFileOperations(
+            BLOCK_SIZE, new MemoryFileOperations() );
+
+        file.insertBlocks( 0L, blockCount );
+
+        for ( int i = 0; i < blockCount; i++ )
+        {
+            this.writeKey( file, i, sorted ? 2 * ( i / 3 )
+                                           : random.nextInt( 100 ) );
+
+        }
+
+        return file;
+    }
+
+    /**
+     * Writes a key to a block.
+     *
+     * @param file the file to write to.
+     * @param block the index of the block to write to.
+     * @param key the key to write.
+     */
+    private void writeKey( final StructuredFile file, final long block,
+                           final int key ) throws IOException
+    {
+        file.writeBlock( block, 0, this.getKey( key ) );
+    }
+
+    /**
+     * Encodes a key.
+     *
+     * @param key the value of the key.
+     *
+     * @return the bytes of the key.
+     */
+    private byte[] getKey( final int key )
+    {
+        return new byte[]
+            {
+                (byte) ( key >>> 8 ), (byte) key
+            };
+    }
+
+    /**
+     * Searches a file for the first block holding a key without using an
+     * index.
+     *
+     * @param file the file to search.
+     * @param key the key to search.
+     *
+     * @return the index of the first block holding {@code key} or {@code -1}.
+     */
+    private long scan( final StructuredFile file, final byte[] key )
+        throws IOException
+    {
+        final byte[] buf = new byte[ KEY_LENGTH ];
+
+        for ( long i = 0L; i < file.getBlockCount(); i++ )
+        {
+            file.readBlock( i, 0, buf );
+            if ( buf[0] == key[0] && buf[1] == key[1] )
+            {
+                return i;
+            }
+        }
+
+        return -1L;
+    }
+
+    /**
+     * Checks the index to find the same blocks as a scan of the file.
+     *
+     * @param index the index to check.
+     * @param maxKey the maximum key to search.
+     */
+    private void assertIndex( final StructuredFileIndex index,
+                              final int maxKey ) throws IOException
+    {
+        for ( int i = 0; i <= maxKey; i++ )
+        {
+            final byte[] key = this.getKey( i );
+            Assert.assertEquals( this.scan( index.getStructuredFile(), key ),
+                                 index.find( key ) );
+
+        }
+    }
+
+    /**
+     * Inserts, deletes and writes random blocks of a file checking the index
+     * to stay consistent.
+     *
+     * @param sorted {@code true} to test a sparse index of a sorted file;
+     * {@code false} to test a hash table.
+     * @param interval the number of blocks between two keys of a sparse index.
+     */
+    private void assertRandomUpdates( final boolean sorted,
+                                      final int interval ) throws IOException
+    {
+        final Random random = new Random( 42L );
+        final StructuredFile file =
+            this.getStructuredFile( 200, sorted, random );
+
+        final StructuredFileIndex index = new StructuredFileIndex(
+            file, new FieldBlockKeyExtractor( 0, KEY_LENGTH ), sorted,
+            interval );
+
+        Assert.assertEquals( sorted, index.isSorted() );
+        this.assertIndex( index, 150 );
+
+        for ( int op = 0; op < 200; op++ )
+        {
+            final long blockCount = file.getBlockCount();
+            final long block = (long) random.nextInt( (int) blockCount + 1 );
+
+            switch ( random.nextInt( 3 ) )
+            {
+                case 0:
+                    final int inserted = 1 + random.nextInt( 10 );
+                    file.insertBlocks( block, inserted );
+
+                    for ( int i = 0; i < inserted; i++ )
+                    {
+                        // Keep sorted files sorted by copying the key of the
+                        // preceding block.
+                        final int key = sorted
+                                        ? this.keyOf( file, block )
+                                        : random.nextInt( 150 );
+
+                        this.writeKey( file, block + i, key );
+                    }
+
+                    index.blocksWritten( block, inserted );
+                    break;
+
+                case 1:
+                    if ( block < blockCount && blockCount > 10 )
+                    {
+                        final long deleted = Math.min(
+                            1 + random.nextInt( 10 ), blockCount - block );
+
+                        file.deleteBlocks( block, deleted );
+                    }
+                    break;
+
+                default:
+                    if ( block < blockCount )
+                    {
+                        final int key = sorted
+                                        ? this.keyOf( file, block + 1L )
+                                        : random.nextInt( 150 );
+
+                        this.writeKey( file, block, key );
+                        index.blocksWritten( block, 1L );
+                    }
+            }
+
+            this.assertIndex( index, 150 );
+        }
+
+        index.rebuild();
+        this.assertIndex( index, 150 );
+        index.close();
+        file.close();
+    }
+
+    /**
+     * Gets the key of a block suitable for keeping a sorted file sorted when
+     * written to the block at a given index.
+     *
+     * @param file the file to read from.
+     * @param block the index of the block following the key.
+     *
+     * @return the key of the block preceding {@code block} or {@code 0}.
+     */
+    private int keyOf( final StructuredFile file, final long block )
+        throws IOException
+    {
+        final byte[] buf = new byte[ KEY_LENGTH ];
+
+        if ( block == 0L )
+        {
+            return 0;
+        }
+
+        file.readBlock( block - 1L, 0, buf );
+        return ( ( buf[0] & 0xFF ) << 8 ) | ( buf[1] & 0xFF );
+    }
+
+    //-------------------------------------------------StructuredFileIndexTest--
+    //--Tests-------------------------------------------------------------------
+
+    /**
+     * Tests a sparse index of a sorted file to find the first block of keys
+     * held by multiple blocks and to stay consistent with inserted, deleted
+     * and written blocks.
+     */
+    public void testSortedIndex() throws Exception
+    {
+        final StructuredFile file =
+            this.getStructuredFile( 100, true, new Random( 42L ) );
+
+        final StructuredFileIndex index = new StructuredFileIndex(
+            file, new FieldBlockKeyExtractor( 0, KEY_LENGTH ), true );
+
+        Assert.assertEquals( 64, index.getInterval() );
+        Assert.assertEquals( 0L, index.find( this.getKey( 0 ) ) );
+        Assert.assertEquals( 63L, index.find( this.getKey( 42 ) ) );
+        Assert.assertEquals( 99L, index.find( this.getKey( 66 ) ) );
+        Assert.assertEquals( -1L, index.find( this.getKey( 1 ) ) );
+        Assert.assertEquals( -1L, index.find( this.getKey( 67 ) ) );
+        index.close();
+
+        this.assertRandomUpdates( true, 1 );
+        this.assertRandomUpdates( true, 7 );
+        this.assertRandomUpdates( true, 0 );
+    }
+
+    /**
+     * Tests a hash table of an unsorted file to find the first block of keys
+     * held by multiple blocks and to stay consistent with inserted, deleted
+     * and written blocks.
+     */
+    public void testHashedIndex() throws Exception
+    {
+        this.assertRandomUpdates( false, 0 );
+
+        final StructuredFile file = new StructuredFileOperations(
+            BLOCK_SIZE, new MemoryFileOperations() );
+
+        final StructuredFileIndex index = new StructuredFileIndex(
+            file, new FieldBlockKeyExtractor( 0, KEY_LENGTH ), false );
+
+        Assert.assertEquals( -1L, index.find( this.getKey( 0 ) ) );
+
+        file.insertBlocks( 0L, 1000 );
+        for ( int i = 0; i < 1000; i++ )
+        {
+            this.writeKey( file, i, 999 - i );
+        }
+
+        index.blocksWritten( 0L, 1000 );
+        this.assertIndex( index, 1000 );
+        index.close();
+    }
+
+    /**
+     * Tests illegal arguments to be rejected and a closed index to fail.
+     */
+    public void testIllegalArguments() throws Exception
+    {
+        final StructuredFile file =
+            this.getStructuredFile( 10, true, new Random( 42L ) );
+
+        final StructuredFileIndex index = new StructuredFileIndex(
+            file, new FieldBlockKeyExtractor( 0, KEY_LENGTH ), true );
+
+        try
+        {
+            index.find( new byte[ KEY_LENGTH + 1 ] );
+            throw new AssertionError();
+        }
+        catch ( final IllegalArgumentException e )
+        {
+            Assert.assertNotNull( e.getMessage() );
+            System.out.println( e.toString() );
+        }
+
+        try
+        {
+            index.blocksWritten( 5L, 6L );
+            throw new AssertionError();
+        }
+        catch ( final IndexOutOfBoundsException e )
+        {
+            Assert.assertNotNull( e.getMessage() );
+            System.out.println( e.toString() );
+        }
+
+        index.close();
+
+        try
+        {
+            index.find( this.getKey( 0 ) );
+            throw new AssertionError();
+        }
+        catch ( final IOException e )
+        {
+            Assert.assertNotNull( e.getMessage() );
+            System.out.println( e.toString() );
+        }
+
+        // Closed index not notified anymore.
+        file.insertBlocks( 0L, 1L );
+    }
+
+    //-------------------------------------------------------------------Tests--
+}
@@ -0,0 +1,185 @@
+/*
+ *  jDTAUS Core Utilities
+ *  Copyright (C) 2005 Christian Schulte
+ *  <cs@schulte.it>
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+package org.jdtaus.core.io.util.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import junit.framework.Assert;
+import org.jdtaus.core.io.StructuredFile;
+import org.jdtaus.core.io.it.StructuredFileTest;
+import org.jdtaus.core.io.util.FileChannelFileOperations;
+import org.jdtaus.core.io.util.StructuredFileOperations;
+
+/**
+ * Testcase for {@code StructuredFileOperations} implementations backed by
+ * {@code FileChannelFileOperations} moving blocks using the channel of the
+ * file.
+ *
+ * @author <a href="mailto:cs@schulte.it">Christian Schulte</a>
+ * @version $JDTAUS$
+ */
+public class StructuredFileOperationsChannelTest extends StructuredFileTest
+{
+    //--StructuredFileTest------------------------------------------------------
+
+    /** Temporary random access file. */
+    private File tmp;
+
+    /** {@code FileOperations} backing the {@code StructuredFile}. */
+    private FileChannelFileOperations channelOps;
+
+    /** {@code StructuredFile} implementation being tested. */
+    private StructuredFileOperations structuredFile;
+
+    protected byte[] getStructuredData()
+    {
+        try
+        {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            this.structuredFile.flush();
+            this.channelOps.read( out );
+            out.close();
+            return out.toByteArray();
+        }
+        catch ( IOException e )
+        {
+            throw new AssertionError( e );
+        }
+    }
+
+    protected StructuredFile getStructuredFile()
+    {
+        try
+        {
+            if ( this.structuredFile == null )
+            {
+                this.tmp = File.createTempFile( "jdtaus", "tmp" );
+                this.tmp.deleteOnExit();
+                this.channelOps = new FileChannelFileOperations(
+                    new RandomAccessFile( this.tmp, "rw" ) );
+
+                this.structuredFile = new StructuredFileOperations(
+                    StructuredFileTest.BLOCK_SIZE, this.channelOps );
+
+            }
+
+            return this.structuredFile;
+        }
+        catch ( IOException e )
+        {
+            throw new AssertionError( e );
+        }
+    }
+
+    //------------------------------------------------------StructuredFileTest--
+    //--TestCase----------------------------------------------------------------
+
+    protected void runTest() throws Throwable
+    {
+        super.runTest();
+        this.testMoveBlocks();
+    }
+
+    //----------------------------------------------------------------TestCase--
+    //--Tests-------------------------------------------------------------------
+
+    /**
+     * Tests moving blocks by distances smaller and larger than the buffer
+     * used for moving blocks.
+     */
+    public void testMoveBlocks() throws Exception
+    {
+        final StructuredFile file = this.getStructuredFile();
+        final byte[] data = new byte[ 262144 ];
+
+        for ( int i = 0; i < data.length; i++ )
+        {
+            data[i] = (byte) ( i % 251 );
+        }
+
+        if ( file.getBlockCount() > 0L )
+        {
+            file.deleteBlocks( 0L, file.getBlockCount() );
+        }
+
+        file.insertBlocks( 0L, data.length );
+        for ( int i = 0; i < data.length; i++ )
+        {
+            file.writeBlock( i, 0, data, i, 1 );
+        }
+
+        // Distance larger than the buffer.
+        file.insertBlocks( 10L, 200000 );
+        Assert.assertEquals( data.length + 200000L, file.getBlockCount() );
+        this.assertBlocks( file, 0L, data, 0, 10 );
+        this.assertBlocks( file, 200010L, data, 10, data.length - 10 );
+
+        file.deleteBlocks( 10L, 200000 );
+        Assert.assertEquals( data.length, file.getBlockCount() );
+        this.assertBlocks( file, 0L, data, 0, data.length );
+
+        // Distance smaller than the buffer.
+        file.insertBlocks( 5L, 3 );
+        Assert.assertEquals( data.length + 3L, file.getBlockCount() );
+        this.assertBlocks( file, 0L, data, 0, 5 );
+        this.assertBlocks( file, 8L, data, 5, data.length - 5 );
+
+        file.deleteBlocks( 5L, 3 );
+        Assert.assertEquals( data.length, file.getBlockCount() );
+        this.assertBlocks( file, 0L, data, 0, data.length );
+
+        file.deleteBlocks( 0L, file.getBlockCount() );
+    }
+
+    //-------------------------------------------------------------------Tests--
+    //--StructuredFileOperationsChannelTest-------------------------------------
+
+    private void assertBlocks( final StructuredFile file, final long block,
+                               final byte[] expected, final int off,
+                               final int len ) throws IOException
+    {
+        final byte[] buf = new byte[ len ];
+
+        for ( int i = 0; i < len; i++ )
+        {
+            file.readBlock( block + i, 0, buf, i, 1 );
+        }
+        for ( int i = 0; i < len; i++ )
+        {
+            Assert.assertEquals( expected[off + i], buf[i] );
+        }
+    }
+
+    //-------------------------------------StructuredFileOperationsChannelTest--
+    //--Object------------------------------------------------------------------
+
+    public void finalize()
+    {
+        if ( this.tmp != null && this.tmp.exists() )
+        {
+            this.tmp.delete();
+        }
+    }
+
+    //------------------------------------------------------------------Object--
+}
@@ -0,0 +1,88 @@
+/*
+ *  jDTAUS Core Utilities
+ *  Copyright (C) 2005 Christian Schulte
+ *  <cs@schulte.it>
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+package org.jdtaus.core.io.util.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import org.jdtaus.core.io.StructuredFile;
+import org.jdtaus.core.io.it.StructuredFileTest;
+import org.jdtaus.core.io.util.CompressedFileOperations;
+import org.jdtaus.core.io.util.MemoryFileOperations;
+import org.jdtaus.core.io.util.StructuredFileOperations;
+
+/**
+ * Testcase for {@code StructuredFileOperations} implementations backed by
+ * {@code CompressedFileOperations}.
+ *
+ * @author <a href="mailto:cs@schulte.it">Christian Schulte</a>
+ * @version $JDTAUS$
+ */
+public class StructuredFileOperationsCompressedTest extends StructuredFileTest
+{
+    //--StructuredFileTest------------------------------------------------------
+
+    /** {@code FileOperations} backing the {@code StructuredFile}. */
+    private CompressedFileOperations compressedOps;
+
+    /** {@code StructuredFile} implementation being tested. */
+    private StructuredFileOperations structuredFile;
+
+    protected byte[] getStructuredData()
+    {
+        try
+        {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            this.structuredFile.flush();
+            this.compressedOps.read( out );
+            out.close();
+            return out.toByteArray();
+
+        }
+        catch ( IOException e )
+        {
+            throw new AssertionError( e );
+        }
+    }
+
+    protected StructuredFile getStructuredFile()
+    {
+        try
+        {
+            if ( this.structuredFile == null )
+            {
+                this.compressedOps = new CompressedFileOperations(
+                    new MemoryFileOperations(), 256, -1 );
+
+                this.structuredFile = new StructuredFileOperations(
+                    StructuredFileTest.BLOCK_SIZE, this.compressedOps );
+
+            }
+
+            return this.structuredFile;
+        }
+        catch ( IOException e )
+        {
+            throw new AssertionError( e );
+        }
+    }
+
+    //------------------------------------------------------StructuredFileTest--
+}
@@ -0,0 +1,104 @@
+/*
+ *  jDTAUS Core Utilities
+ *  Copyright (C) 2005 Christian Schulte
+ *  <cs@schulte.it>
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+package org.jdtaus.core.io.util.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import org.jdtaus.core.io.StructuredFile;
+import org.jdtaus.core.io.it.StructuredFileTest;
+import org.jdtaus.core.io.util.MappedFileOperations;
+import org.jdtaus.core.io.util.StructuredFileOperations;
+
+/**
+ * Testcase for {@code StructuredFileOperations} implementations backed by
+ * {@code MappedFileOperations} using windows smaller than the data.
+ *
+ * @author <a href="mailto:cs@schulte.it">Christian Schulte</a>
+ * @version $JDTAUS$
+ */
+public class StructuredFileOperationsMappedTest extends StructuredFileTest
+{
+    //--StructuredFileTest------------------------------------------------------
+
+    /** Temporary random access file. */
+    private File tmp;
+
+    /** {@code FileOperations} backing the {@code StructuredFile}. */
+    private MappedFileOperations mappedOps;
+
+    /** {@code StructuredFile} implementation being tested. */
+    private StructuredFileOperations structuredFile;
+
+    protected byte[] getStructuredData()
+    {
+        try
+        {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            this.structuredFile.flush();
+            this.mappedOps.read( out );
+            out.close();
+            return out.toByteArray();
+        }
+        catch ( IOException e )
+        {
+            throw new AssertionError( e );
+        }
+    }
+
+    protected StructuredFile getStructuredFile()
+    {
+        try
+        {
+            if ( this.structuredFile == null )
+            {
+                this.tmp = File.createTempFile( "jdtaus", "tmp" );
+                this.tmp.deleteOnExit();
+                this.mappedOps = new MappedFileOperations(
+                    new RandomAccessFile( this.tmp, "rw" ), 3 );
+
+                this.structuredFile = new StructuredFileOperations(
+                    StructuredFileTest.BLOCK_SIZE, this.mappedOps );
+
+            }
+
+            return this.structuredFile;
+        }
+        catch ( IOException e )
+        {
+            throw new AssertionError( e );
+        }
+    }
+
+    //------------------------------------------------------StructuredFileTest--
+    //--Object------------------------------------------------------------------
+
+    public void finalize()
+    {
+        if ( this.tmp != null && this.tmp.exists() )
+        {
+            this.tmp.delete();
+        }
+    }
+
+    //------------------------------------------------------------------Object--
+}
@@ -21,7 +21,11 @@
 package org.jdtaus.core.io.util.test;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import junit.framework.Assert;
 import org.jdtaus.core.io.StructuredFile;
+import org.jdtaus.core.io.StructuredFileListener;
 import org.jdtaus.core.io.it.StructuredFileTest;
 import org.jdtaus.core.io.util.MemoryFileOperations;
 import org.jdtaus.core.io.util.StructuredFileOperations;
@@ -76,4 +80,142 @@ public class StructuredFileOperationsTest extends StructuredFileTest
     }
 
     //------------------------------------------------------StructuredFileTest--
+    //--TestCase----------------------------------------------------------------
+
+    protected void runTest() throws Throwable
+    {
+        super.runTest();
+        this.testEdit();
+    }
+
+    //----------------------------------------------------------------TestCase--
+    //--Tests-------------------------------------------------------------------
+
+    /**
+     * Tests the {@link StructuredFileOperations#beginEdit()} and
+     * {@link StructuredFileOperations#commitEdit()} methods.
+     */
+    public void testEdit() throws Exception
+    {
+        final int blockSize = 2;
+        final Random random = new Random( 1L );
+        final MemoryFileOperations ops = new MemoryFileOperations();
+        final StructuredFileOperations file =
+            new StructuredFileOperations( blockSize, ops );
+
+        final long[] event = new long[ 3 ];
+        file.addStructuredFileListener( new StructuredFileListener()
+        {
+
+            public void blocksInserted( final long index,
+                                        final long insertedBlocks )
+            {
+                Assert.assertTrue( event[2] == 0L || event[2] == -1L );
+                Assert.assertTrue( event[2] == 0L || event[0] == index );
+                event[0] = index;
+                event[1] = insertedBlocks;
+                event[2] = 1L;
+            }
+
+            public void blocksDeleted( final long index,
+                                       final long deletedBlocks )
+            {
+                Assert.assertEquals( 0L, event[2] );
+                event[0] = index;
+                event[1] = deletedBlocks;
+                event[2] = -1L;
+            }
+
+        } );
+
+        byte[] expected = new byte[ 0 ];
+
+        for ( int i = 0; i < 50; i++ )
+        {
+            final byte[] original = expected;
+
+            Arrays.fill( event, 0L );
+            file.beginEdit();
+
+            for ( int j = random.nextInt( 20 ); j >= 0; j-- )
+            {
+                final long blockCount = file.getBlockCount();
+
+                if ( blockCount == 0L || random.nextInt( 3 ) > 0 )
+                {
+                    final int index = random.nextInt( (int) blockCount + 1 );
+                    final int count = random.nextInt( 5 ) + 1;
+                    final byte[] data = new byte[ count * blockSize ];
+                    final byte[] next =
+                        new byte[ expected.length + data.length ];
+
+                    random.nextBytes( data );
+                    file.insertBlocks( index, count );
+                    for ( int k = 0; k < count; k++ )
+                    {
+                        file.writeBlock( index + k, 0, data, k * blockSize,
+                                         blockSize );
+
+                    }
+
+                    System.arraycopy( expected, 0, next, 0, index * blockSize );
+                    System.arraycopy( data, 0, next, index * blockSize,
+                                      data.length );
+
+                    System.arraycopy( expected, index * blockSize, next,
+                                      ( index + count ) * blockSize,
+                                      expected.length - index * blockSize );
+
+                    expected = next;
+                }
+                else
+                {
+                    final int index = random.nextInt( (int) blockCount );
+                    final int count = random.nextInt(
+                        (int) Math.min( 5L, blockCount - index ) ) + 1;
+
+                    final byte[] next =
+                        new byte[ expected.length - count * blockSize ];
+
+                    file.deleteBlocks( index, count );
+
+                    System.arraycopy( expected, 0, next, 0, index * blockSize );
+                    System.arraycopy( expected, ( index + count ) * blockSize,
+                                      next, index * blockSize,
+                                      next.length - index * blockSize );
+
+                    expected = next;
+                }
+
+                final byte[] read = new byte[ expected.length ];
+                for ( int k = 0; k < file.getBlockCount(); k++ )
+                {
+                    file.readBlock( k, 0, read, k * blockSize, blockSize );
+                }
+
+                Assert.assertTrue( Arrays.equals( expected, read ) );
+            }
+
+            file.commitEdit();
+            Assert.assertTrue( Arrays.equals( expected, ops.getData() ) );
+
+            // Blocks outside the range notified to have changed are unchanged.
+            final int first = (int) event[0] * blockSize;
+            final int changed = event[2] == 1L ? (int) event[1] * blockSize : 0;
+            final int tail = expected.length - first - changed;
+
+            for ( int k = 0; k < first; k++ )
+            {
+                Assert.assertEquals( original[k], expected[k] );
+            }
+            for ( int k = 0; k < tail; k++ )
+            {
+                Assert.assertEquals( original[original.length - k - 1],
+                                     expected[expected.length - k - 1] );
+
+            }
+        }
+    }
+
+    //-------------------------------------------------------------------Tests--
 }
@@ -0,0 +1,308 @@
+/*
+ *  jDTAUS Core Utilities
+ *  Copyright (C) 2005 Christian Schulte
+ *  <cs@schulte.it>
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+package org.jdtaus.core.io.util.test;
+
+import java.io.IOException;
+import java.util.Random;
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import org.jdtaus.core.io.StructuredFile;
+import org.jdtaus.core.io.util.BlockKeyExtractor;
+import org.jdtaus.core.io.util.FieldBlockKeyExtractor;
+import org.jdtaus.core.io.util.MemoryFileOperations;
+import org.jdtaus.core.io.util.StructuredFileOperations;
+import org.jdtaus.core.io.util.StructuredFileSorter;
+
+/**
+ * Testcase for {@code StructuredFileSorter} implementations.
+ *
+ * @author <a href="mailto:cs@schulte.it">Christian Schulte</a>
+ * @version $JDTAUS$
+ */
+public class StructuredFileSorterTest extends TestCase
+{
+    //--StructuredFileSorterTest------------------------------------------------
+
+    /** Block size of the files used for testing. */
+    private static final int BLOCK_SIZE = 16;
+
+    /** Offset of the key field of the blocks used for testing. */
+    private static final int KEY_OFFSET = 6;
+
+    /** Length of the key field of the blocks used for testing. */
+    private static final int KEY_LENGTH = 3;
+
+    /** Number of blocks of the files used for testing. */
+    private static final int BLOCK_COUNT = 5000;
+
+    /**
+     * Creates a new, empty {@code StructuredFile} backed by memory.
+     *
+     * @return a new, empty {@code StructuredFile}.
+     */
+    private StructuredFile getStructuredFile() throws IOException
+    {
+        return new StructuredFileOperations( BLOCK_SIZE,
+                                             new MemoryFileOperations() );
+
+    }
+
+    /**
+     * Creates a {@code StructuredFile} holding blocks starting with the index
+     * of the block followed by a field of random digits at
+     * {@code KEY_OFFSET}.
+     *
+     * @param blockCount the number of blocks to create.
+     *
+     * @return a new {@code StructuredFile} holding test data.
+     */
+    private StructuredFile getStructuredFile( final int blockCount )
+        throws IOException
+    {
+        final StructuredFile file = this.getStructuredFile();
+        final Random random = new Random( 42L );
+        final byte[] buf = new byte[ BLOCK_SIZE * blockCount ];
+
+        for ( int i = 0; i < blockCount; i++ )
+        {
+            final int off = i * BLOCK_SIZE;
+            buf[off] = (byte) ( i >>> 24 );
+            buf[off + 1] = (byte) ( i >>> 16 );
+            buf[off + 2] = (byte) ( i >>> 8 );
+            buf[off + 3] = (byte) i;
+
+            for ( int j = 0; j < KEY_LENGTH; j++ )
+            {
+                buf[off + KEY_OFFSET + j] =
+                    (byte) ( '0' + random.nextInt( 10 ) );
+
+            }
+        }
+
+        if ( blockCount > 0 )
+        {
+            file.insertBlocks( 0L, blockCount );
+            file.writeBlocks( 0L, blockCount, buf, 0 );
+        }
+
+        return file;
+    }
+
+    /**
+     * Checks a file to hold the blocks of the file created by method
+     * {@code getStructuredFile( int )} sorted by key and, for equal keys, by
+     * index.
+     *
+     * @param file the file to check.
+     * @param blockCount the expected number of blocks.
+     */
+    private void assertSorted( final StructuredFile file, final int blockCount )
+        throws IOException
+    {
+        final byte[] expected = new byte[ BLOCK_SIZE * blockCount ];
+        final byte[] buf = new byte[ BLOCK_SIZE * blockCount ];
+        final boolean[] seen = new boolean[ blockCount ];
+
+        Assert.assertEquals( blockCount, file.getBlockCount() );
+        if ( blockCount == 0 )
+        {
+            return;
+        }
+
+        this.getStructuredFile( blockCount ).readBlocks(
+            0L, blockCount, expected, 0 );
+
+        file.readBlocks( 0L, blockCount, buf, 0 );
+
+        for ( int i = 0; i < blockCount; i++ )
+        {
+            final int off = i * BLOCK_SIZE;
+            final int index = ( ( buf[off] & 0xFF ) << 24 ) |
+                              ( ( buf[off + 1] & 0xFF ) << 16 ) |
+                              ( ( buf[off + 2] & 0xFF ) << 8 ) |
+                              ( buf[off + 3] & 0xFF );
+
+            Assert.assertFalse( seen[index] );
+            seen[index] = true;
+
+            for ( int j = 0; j < BLOCK_SIZE; j++ )
+            {
+                Assert.assertEquals( expected[index * BLOCK_SIZE + j],
+                                     buf[off + j] );
+
+            }
+
+            if ( i > 0 )
+            {
+                final int previous = off - BLOCK_SIZE;
+                final String key =
+                    new String( buf, off + KEY_OFFSET, KEY_LENGTH, "US-ASCII" );
+
+                final String previousKey = new String(
+                    buf, previous + KEY_OFFSET, KEY_LENGTH, "US-ASCII" );
+
+                final int previousIndex =
+                    ( ( buf[previous] & 0xFF ) << 24 ) |
+                    ( ( buf[previous + 1] & 0xFF ) << 16 ) |
+                    ( ( buf[previous + 2] & 0xFF ) << 8 ) |
+                    ( buf[previous + 3] & 0xFF );
+
+                Assert.assertTrue( previousKey.compareTo( key ) < 0 ||
+                                   ( previousKey.equals( key ) &&
+                                     previousIndex < index ) );
+
+            }
+        }
+    }
+
+    //------------------------------------------------StructuredFileSorterTest--
+    //--Tests-------------------------------------------------------------------
+
+    /**
+     * Tests sorting a file fitting into memory.
+     */
+    public void testSortInMemory() throws Exception
+    {
+        final StructuredFileSorter sorter = new StructuredFileSorter();
+        final BlockKeyExtractor keys =
+            new FieldBlockKeyExtractor( KEY_OFFSET, KEY_LENGTH );
+
+        final StructuredFile source = this.getStructuredFile( BLOCK_COUNT );
+        final StructuredFile target = this.getStructuredFile( 10 );
+
+        sorter.sort( source, target, keys );
+        this.assertSorted( target, BLOCK_COUNT );
+
+        sorter.sort( source, source, keys );
+        this.assertSorted( source, BLOCK_COUNT );
+
+        sorter.sort( this.getStructuredFile( 1 ), target, keys );
+        this.assertSorted( target, 1 );
+
+        sorter.sort( this.getStructuredFile( 0 ), target, keys );
+        this.assertSorted( target, 0 );
+    }
+
+    /**
+     * Tests sorting a file not fitting into memory using runs sorted in
+     * parallel.
+     */
+    public void testSortExternal() throws Exception
+    {
+        final BlockKeyExtractor keys =
+            new FieldBlockKeyExtractor( KEY_OFFSET, KEY_LENGTH );
+
+        final StructuredFileSorter sorter = new StructuredFileSorter( 4096, 3 );
+        Assert.assertEquals( 4096, sorter.getMaximumMemory() );
+        Assert.assertEquals( 3, sorter.getParallelism() );
+
+        final StructuredFile source = this.getStructuredFile( BLOCK_COUNT );
+        final StructuredFile target = this.getStructuredFile();
+        final StructuredFile scratch = this.getStructuredFile( 7 );
+
+        sorter.sort( source, target, keys, scratch );
+        this.assertSorted( target, BLOCK_COUNT );
+
+        sorter.sort( source, source, keys );
+        this.assertSorted( source, BLOCK_COUNT );
+
+        // Number of blocks not dividing the size of a run.
+        final StructuredFile uneven = this.getStructuredFile( 997 );
+        new StructuredFileSorter( 1000, 2 ).sort( uneven, target, keys );
+        this.assertSorted( target, 997 );
+
+        // Runs of a single block.
+        final StructuredFile small = this.getStructuredFile( 50 );
+        new StructuredFileSorter( 1, 4 ).sort( small, target, keys, scratch );
+        this.assertSorted( target, 50 );
+    }
+
+    /**
+     * Tests illegal arguments to be rejected.
+     */
+    public void testIllegalArguments() throws Exception
+    {
+        final StructuredFileSorter sorter = new StructuredFileSorter();
+        final BlockKeyExtractor keys =
+            new FieldBlockKeyExtractor( KEY_OFFSET, KEY_LENGTH );
+
+        final StructuredFile file = this.getStructuredFile( 10 );
+
+        try
+        {
+            sorter.sort( null, file, keys );
+            throw new AssertionError();
+        }
+        catch ( final NullPointerException e )
+        {
+            Assert.assertNotNull( e.getMessage() );
+            System.out.println( e.toString() );
+        }
+
+        try
+        {
+            sorter.sort( file, file, keys, file );
+            throw new AssertionError();
+        }
+        catch ( final IllegalArgumentException e )
+        {
+            Assert.assertNotNull( e.getMessage() );
+            System.out.println( e.toString() );
+        }
+
+        try
+        {
+            sorter.sort( file, new StructuredFileOperations(
+                         BLOCK_SIZE + 1, new MemoryFileOperations() ), keys );
+
+            throw new AssertionError();
+        }
+        catch ( final IllegalArgumentException e )
+        {
+            Assert.assertNotNull( e.getMessage() );
+            System.out.println( e.toString() );
+        }
+
+        try
+        {
+            new StructuredFileSorter( -1, 0 );
+            throw new AssertionError();
+        }
+        catch ( final IllegalArgumentException e )
+        {
+            Assert.assertNotNull( e.getMessage() );
+            System.out.println( e.toString() );
+        }
+
+        try
+        {
+            new FieldBlockKeyExtractor( 0, 0 );
+            throw new AssertionError();
+        }
+        catch ( final IllegalArgumentException e )
+        {
+            Assert.assertNotNull( e.getMessage() );
+            System.out.println( e.toString() );
+        }
+    }
+
+    //-------------------------------------------------------------------Tests--
+}
@@ -0,0 +1,104 @@
+/*
+ *  jDTAUS Core Utilities
+ *  Copyright (C) 2005 Christian Schulte
+ *  <cs@schulte.it>
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+package org.jdtaus.core.io.util.test;
+
+import java.io.EOFException;
+import junit.framework.Assert;
+import org.jdtaus.core.io.util.VectoredFileOperations;
+
+/**
+ * Testcase for {@code VectoredFileOperations} implementations.
+ *
+ * @author <a href="mailto:cs@schulte.it">Christian Schulte</a>
+ * @version $JDTAUS$
+ */
+public abstract class VectoredFileOperationsTest
+    extends ByteBufferFileOperationsTest
+{
+    //--TestCase----------------------------------------------------------------
+
+    protected void runTest() throws Throwable
+    {
+        super.runTest();
+        this.testVectored();
+    }
+
+    //----------------------------------------------------------------TestCase--
+    //--Tests-------------------------------------------------------------------
+
+    /**
+     * Tests the {@link VectoredFileOperations#read(long[],byte[][],int[],int[],int)}
+     * and {@link VectoredFileOperations#write(long[],byte[][],int[],int[],int)}
+     * methods.
+     * <p><ol>
+     * <li>Writes adjacent, non-adjacent and overlapping ranges extending the
+     * file and checks the file pointer not to have changed.</li>
+     * <li>Reads adjacent and non-adjacent ranges and checks the data read.</li>
+     * <li>Reads a range extending beyond the end of the file and checks an
+     * {@code EOFException} to be thrown.</li>
+     * </ol></p>
+     */
+    public void testVectored() throws Exception
+    {
+        final VectoredFileOperations ops =
+            (VectoredFileOperations) this.getFileOperations();
+
+        final byte[] data = "ABCDEFGHIJ".getBytes( "US-ASCII" );
+        final byte[] xyz = "XYZ".getBytes( "US-ASCII" );
+
+        ops.setLength( 0L );
+        ops.setFilePointer( 0L );
+        ops.write( new long[] { 0L, 4L, 7L, 12L, 3L },
+                   new byte[][] { data, data, data, xyz, xyz },
+                   new int[] { 0, 4, 7, 0, 0 },
+                   new int[] { 4, 3, 3, 3, 2 }, 5 );
+
+        Assert.assertEquals( 0L, ops.getFilePointer() );
+        Assert.assertEquals( 15L, ops.getLength() );
+
+        final byte[] buf = new byte[ 9 ];
+        ops.read( new long[] { 12L, 0L, 2L, 5L },
+                  new byte[][] { buf, buf, buf, buf },
+                  new int[] { 0, 3, 5, 7 },
+                  new int[] { 3, 2, 2, 2 }, 4 );
+
+        Assert.assertEquals( "XYZABCXFG",
+                             new String( buf, "US-ASCII" ) );
+
+        Assert.assertEquals( 0L, ops.getFilePointer() );
+
+        try
+        {
+            ops.read( new long[] { 14L }, new byte[][] { buf },
+                      new int[] { 0 }, new int[] { 2 }, 1 );
+
+            Assert.fail();
+        }
+        catch ( EOFException e )
+        {
+            Assert.assertNotNull( e );
+        }
+
+        ops.setLength( 0L );
+    }
+
+    //-------------------------------------------------------------------Tests--
+}